@@ -0,0 +1,112 @@
+package com.api.pagamento.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+//Ponto de entrada do benchmarks.jar. Aceita os mesmos parâmetros do JMH e sempre executa com o profiler de GC
+//(-prof gc), que reporta os bytes alocados por operação (gc.alloc.rate.norm).
+//
+//Ao final, a alocação de cada benchmark é comparada com o orçamento em orcamento-alocacao.properties. Se algum
+//benchmark passar do orçamento, o processo termina com o código 1 e lista os benchmarks excedidos. Um PR que aumenta
+//a alocação de propósito deve atualizar o orçamento junto.
+
+public class Benchmarks {
+
+    private static final String ORCAMENTO = "/orcamento-alocacao.properties";
+
+    private static final String ALOCACAO_POR_OPERACAO = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws Exception {
+
+        CommandLineOptions linhaDeComando = new CommandLineOptions(args);
+
+        //Ajuda, listagem de benchmarks e de profilers ficam com o Main do próprio JMH
+        if (linhaDeComando.shouldHelp() || linhaDeComando.shouldList() || linhaDeComando.shouldListWithParams()
+                || linhaDeComando.shouldListProfilers() || linhaDeComando.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        OptionsBuilder opcoes = new OptionsBuilder();
+        opcoes.parent(linhaDeComando);
+        if (linhaDeComando.getProfilers().stream().noneMatch(profiler -> profiler.getKlass().equals(GCProfiler.class.getName()))) {
+            opcoes.addProfiler(GCProfiler.class);
+        }
+
+        Collection<RunResult> resultados = new Runner(opcoes.build()).run();
+
+        List<String> excedidos = verificarOrcamento(resultados, carregarOrcamento());
+        if (!excedidos.isEmpty()) {
+            System.err.println();
+            System.err.println("Benchmarks acima do orçamento de alocação (" + ORCAMENTO.substring(1) + "):");
+            excedidos.forEach(excedido -> System.err.println("  " + excedido));
+            System.exit(1);
+        }
+
+    }
+
+    static List<String> verificarOrcamento(Collection<RunResult> resultados, Properties orcamento) {
+
+        List<String> excedidos = new ArrayList<>();
+
+        for (RunResult resultado : resultados) {
+
+            String chave = chave(resultado);
+            String limite = orcamento.getProperty(chave);
+            Double alocado = alocacaoPorOperacao(resultado.getSecondaryResults());
+
+            if (limite != null && alocado != null && alocado > Double.parseDouble(limite)) {
+                excedidos.add(String.format("%s: %.0f B/op (orçamento: %s B/op)", chave, alocado, limite));
+            }
+        }
+
+        return excedidos;
+    }
+
+    //Nome do benchmark sem o pacote, seguido dos parâmetros: CodecBenchmark.encode.codec.binario. Sem ":" e "=", que
+    //separam chave e valor em um arquivo .properties
+    static String chave(RunResult resultado) {
+
+        String benchmark = resultado.getParams().getBenchmark();
+        StringBuilder chave = new StringBuilder(benchmark.substring(Benchmarks.class.getPackageName().length() + 1));
+        for (String parametro : resultado.getParams().getParamsKeys()) {
+            chave.append('.').append(parametro).append('.').append(resultado.getParams().getParam(parametro));
+        }
+        return chave.toString();
+    }
+
+    private static Double alocacaoPorOperacao(Map<String, Result> secundarios) {
+
+        //O nome do resultado tem um prefixo que varia entre versões do JMH (ex.: "·gc.alloc.rate.norm")
+        for (Map.Entry<String, Result> secundario : secundarios.entrySet()) {
+            if (secundario.getKey().endsWith(ALOCACAO_POR_OPERACAO)) {
+                return secundario.getValue().getScore();
+            }
+        }
+        return null;
+    }
+
+    private static Properties carregarOrcamento() throws IOException {
+
+        Properties orcamento = new Properties();
+        try (InputStream entrada = Benchmarks.class.getResourceAsStream(ORCAMENTO)) {
+            if (entrada != null) {
+                orcamento.load(entrada);
+            }
+        }
+        return orcamento;
+    }
+
+}
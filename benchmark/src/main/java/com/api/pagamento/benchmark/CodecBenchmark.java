@@ -0,0 +1,66 @@
+package com.api.pagamento.benchmark;
+
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
+import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.repository.codec.BinarioTransacaoCodec;
+import com.api.pagamento.repository.codec.HashTransacaoCodec;
+import com.api.pagamento.repository.codec.TransacaoCacheCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//Codificação e decodificação do hash transacao::<id> pelos codecs do TransacaoCacheRepository. O decode recebe o
+//mapa campo -> valor já com os nomes dos campos em String, como o repositório o entrega ao codec.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CodecBenchmark {
+
+    @Param({BinarioTransacaoCodec.NOME, HashTransacaoCodec.NOME})
+    private String codec;
+
+    private TransacaoCacheCodec transacaoCacheCodec;
+
+    private Transacao transacao;
+
+    private Map<String, byte[]> campos;
+
+    @Setup
+    public void setUp() {
+
+        transacaoCacheCodec = BinarioTransacaoCodec.NOME.equals(codec) ? new BinarioTransacaoCodec() : new HashTransacaoCodec();
+        transacao = TransacaoMapper.toTransacao(Transacoes.autorizada(1L));
+
+        campos = new HashMap<>();
+        transacaoCacheCodec.encode(transacao).forEach((campo, valor) -> campos.put(new String(campo, StandardCharsets.UTF_8), valor));
+    }
+
+    @Benchmark
+    public Map<byte[], byte[]> encode() {
+        return transacaoCacheCodec.encode(transacao);
+    }
+
+    @Benchmark
+    public TransacaoDTO decode() {
+        return transacaoCacheCodec.decode(campos);
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.api.pagamento.benchmark;
+
+import com.api.pagamento.config.FormatosTransacao;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.FormatoEnum;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//Serialização e desserialização de um TransacaoDTO em cada formato do TransacaoController, com os mesmos mapeadores
+//e esquemas da aplicação (FormatosTransacao). O tamanho do corpo de cada formato é impresso no início de cada fork.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FormatoBenchmark {
+
+    @Param({"JSON", "CBOR", "SMILE", "PROTOBUF"})
+    private FormatoEnum formato;
+
+    private ObjectWriter writer;
+
+    private ObjectReader reader;
+
+    private TransacaoDTO transacaoDTO;
+
+    private byte[] corpo;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        FormatosTransacao formatosTransacao = new FormatosTransacao(Jackson2ObjectMapperBuilder.json().build());
+        writer = formatosTransacao.writer(formato, TransacaoDTO.class);
+        reader = formatosTransacao.reader(formato, TransacaoDTO.class);
+
+        transacaoDTO = Transacoes.autorizada(1L);
+        corpo = writer.writeValueAsBytes(transacaoDTO);
+
+        System.out.printf("%n%s: %d bytes por transação%n", formato, corpo.length);
+    }
+
+    @Benchmark
+    public byte[] serializar() throws IOException {
+        return writer.writeValueAsBytes(transacaoDTO);
+    }
+
+    @Benchmark
+    public TransacaoDTO desserializar() throws IOException {
+        return reader.readValue(corpo);
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.api.pagamento.benchmark;
+
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Serialização do TransacaoDTO com um ObjectMapper configurado como o do Spring MVC (Jackson2ObjectMapperBuilder).
+//As listas são escritas em um OutputStream descartável, para medir a serialização e não o crescimento do buffer.
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JacksonBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Transacao {
+
+        ObjectWriter writer;
+
+        TransacaoDTO transacaoDTO;
+
+        @Setup
+        public void setUp() {
+            writer = objectMapper().writerFor(TransacaoDTO.class);
+            transacaoDTO = Transacoes.autorizada(1L);
+        }
+
+    }
+
+    @State(Scope.Benchmark)
+    public static class Lista {
+
+        @Param({"1000", "100000"})
+        int tamanho;
+
+        ObjectWriter writer;
+
+        List<TransacaoDTO> transacoesDTO;
+
+        @Setup
+        public void setUp() {
+
+            writer = objectMapper().writerFor(objectMapper().getTypeFactory().constructCollectionType(List.class, TransacaoDTO.class));
+            transacoesDTO = new ArrayList<>(tamanho);
+            for (long id = 1; id <= tamanho; id++) {
+                transacoesDTO.add(Transacoes.autorizada(id));
+            }
+        }
+
+    }
+
+    @Benchmark
+    public byte[] serializarTransacao(Transacao estado) throws IOException {
+        return estado.writer.writeValueAsBytes(estado.transacaoDTO);
+    }
+
+    @Benchmark
+    public void serializarLista(Lista estado) throws IOException {
+        estado.writer.writeValue(OutputStream.nullOutputStream(), estado.transacoesDTO);
+    }
+
+    private static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+}
@@ -1,11 +1,13 @@
-package com.api.pagamento.domain.dto.util;
+package com.api.pagamento.benchmark;
 
 import org.modelmapper.ModelMapper;
 
+//Conversão genérica por reflexão (ModelMapper), como o serviço fazia antes do TransacaoMapper. Mantida apenas como
+//referência no MapperBenchmark.
+
 public class Mapper {
 
     public static Object convert(Object origem, Class<?> destino) {
-
         return new ModelMapper().map(origem, destino);
     }
 
@@ -0,0 +1,82 @@
+package com.api.pagamento.benchmark;
+
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
+import com.api.pagamento.domain.model.Transacao;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Conversão entre Transacao e TransacaoDTO nos dois sentidos:
+//
+//  mapperConvert          caminho anterior do serviço: um ModelMapper novo por chamada (Mapper.convert)
+//  modelMapperReutilizado um único ModelMapper, com o mapa de tipos já montado; ainda copia os campos por reflexão
+//  transacaoMapper        conversão escrita à mão (TransacaoMapper), usada hoje pelo serviço
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MapperBenchmark {
+
+    private TransacaoDTO transacaoDTO;
+
+    private Transacao transacao;
+
+    private ModelMapper modelMapper;
+
+    @Setup
+    public void setUp() {
+
+        transacaoDTO = Transacoes.autorizada(1L);
+
+        transacao = TransacaoMapper.toTransacao(transacaoDTO);
+
+        modelMapper = new ModelMapper();
+        modelMapper.map(transacao, TransacaoDTO.class);
+        modelMapper.map(transacaoDTO, Transacao.class);
+    }
+
+    @Benchmark
+    public Object mapperConvertParaDTO() {
+        return Mapper.convert(transacao, TransacaoDTO.class);
+    }
+
+    @Benchmark
+    public TransacaoDTO modelMapperReutilizadoParaDTO() {
+        return modelMapper.map(transacao, TransacaoDTO.class);
+    }
+
+    @Benchmark
+    public TransacaoDTO transacaoMapperParaDTO() {
+        return TransacaoMapper.toTransacaoDTO(transacao);
+    }
+
+    @Benchmark
+    public Object mapperConvertParaEntidade() {
+        return Mapper.convert(transacaoDTO, Transacao.class);
+    }
+
+    @Benchmark
+    public Transacao modelMapperReutilizadoParaEntidade() {
+        return modelMapper.map(transacaoDTO, Transacao.class);
+    }
+
+    @Benchmark
+    public Transacao transacaoMapperParaEntidade() {
+        return TransacaoMapper.toTransacao(transacaoDTO);
+    }
+
+}
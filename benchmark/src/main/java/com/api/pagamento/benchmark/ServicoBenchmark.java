@@ -0,0 +1,108 @@
+package com.api.pagamento.benchmark;
+
+import com.api.pagamento.benchmark.memoria.MemoriaTransacaoCacheRepository;
+import com.api.pagamento.benchmark.memoria.MemoriaTransacaoPersistencia;
+import com.api.pagamento.benchmark.memoria.MemoriaTransactionManager;
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
+import com.api.pagamento.domain.exception.InsercaoNaoPermitidaException;
+import com.api.pagamento.domain.exception.TransacaoInexistenteException;
+import com.api.pagamento.repository.TransacaoNearCache;
+import com.api.pagamento.repository.codec.BinarioTransacaoCodec;
+import com.api.pagamento.repository.codec.HashTransacaoCodec;
+import com.api.pagamento.service.TransacaoServiceImp;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//pagar e estornar do TransacaoServiceImp com o Redis e o banco substituídos por mapas em memória (ver memoria/).
+//O serviço é instanciado diretamente, sem o proxy do Spring: não há transação, @Timed nem validação. O
+//TransactionTemplate do INSERT de pagar e do UPDATE de estornar apenas executa o callback (MemoriaTransactionManager).
+//O near-cache fica desligado, porque a invalidação publica no Redis.
+//
+//pagar inclui a cópia do pagamento de exemplo (o serviço altera a transação recebida). A cada LIMITE_RETIDAS
+//pagamentos os mapas são esvaziados (sem alocação), para que a memória retida não cresça durante a iteração e não
+//distorça o GC. estornar percorre sempre o caminho completo (cache ESTORNADO + UPDATE no banco): a cada operação a
+//transação volta a AUTORIZADO, também sem alocação.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ServicoBenchmark {
+
+    private static final int LIMITE_RETIDAS = 10_000;
+
+    @Param({BinarioTransacaoCodec.NOME, HashTransacaoCodec.NOME})
+    private String codec;
+
+    private TransacaoServiceImp transacaoService;
+
+    private MemoriaTransacaoPersistencia transacaoPersistencia;
+
+    private MemoriaTransacaoCacheRepository transacaoCacheRepository;
+
+    private TransacaoDTO pagamento;
+
+    private Long idEstornado;
+
+    private int retidas;
+
+    //Refeito a cada iteração para que os pagamentos das iterações anteriores não se acumulem nos mapas
+    @Setup(Level.Iteration)
+    public void setUp() throws InsercaoNaoPermitidaException {
+
+        TransacaoProperties transacaoProperties = new TransacaoProperties();
+        transacaoProperties.getCache().setCodec(codec);
+        transacaoProperties.getCache().getNearCache().setEnabled(false);
+
+        transacaoPersistencia = new MemoriaTransacaoPersistencia();
+        transacaoCacheRepository = new MemoriaTransacaoCacheRepository(
+                List.of(new BinarioTransacaoCodec(), new HashTransacaoCodec()), transacaoProperties);
+
+        transacaoService = new TransacaoServiceImp(transacaoPersistencia, transacaoCacheRepository,
+                new TransacaoNearCache(null, transacaoProperties), null, transacaoProperties,
+                new SimpleMeterRegistry(), null, new TransactionTemplate(new MemoriaTransactionManager()));
+
+        pagamento = Transacoes.pagamento();
+        idEstornado = transacaoService.pagar(TransacaoMapper.toTransacao(pagamento)).getId();
+    }
+
+    @Benchmark
+    public TransacaoDTO pagar() throws InsercaoNaoPermitidaException {
+
+        if (++retidas == LIMITE_RETIDAS) {
+            transacaoPersistencia.limpar();
+            transacaoCacheRepository.limpar();
+            retidas = 0;
+        }
+        return transacaoService.pagar(TransacaoMapper.toTransacao(pagamento));
+    }
+
+    @Benchmark
+    public TransacaoDTO estornar() throws TransacaoInexistenteException {
+
+        TransacaoDTO transacaoDTO = transacaoService.estornar(idEstornado);
+        transacaoCacheRepository.reautorizar(idEstornado);
+        transacaoPersistencia.reautorizar(idEstornado);
+        return transacaoDTO;
+    }
+
+}
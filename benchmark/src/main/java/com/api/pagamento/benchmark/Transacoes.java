@@ -0,0 +1,29 @@
+package com.api.pagamento.benchmark;
+
+import com.api.pagamento.domain.dto.DescricaoDTO;
+import com.api.pagamento.domain.dto.FormaPagamentoDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.enumeration.TipoEnum;
+
+//Transações usadas pelos benchmarks, com os mesmos valores dos builders dos testes
+
+final class Transacoes {
+
+    private Transacoes() {
+    }
+
+    static TransacaoDTO autorizada(long id) {
+        return new TransacaoDTO(id, "4444********1234",
+                new DescricaoDTO(id, "500.50", "01/05/2021 18:00:00", "PetShop Mundo cão", "1234567890", "147258369", StatusEnum.AUTORIZADO),
+                new FormaPagamentoDTO(id, TipoEnum.AVISTA, "1"));
+    }
+
+    //Pagamento como enviado pelo cliente: sem ids, nsu, código de autorização e status
+    static TransacaoDTO pagamento() {
+        return new TransacaoDTO(null, "4444********1234",
+                new DescricaoDTO(null, "500.50", "01/05/2021 18:00:00", "PetShop Mundo cão", null, null, null),
+                new FormaPagamentoDTO(null, TipoEnum.AVISTA, "1"));
+    }
+
+}
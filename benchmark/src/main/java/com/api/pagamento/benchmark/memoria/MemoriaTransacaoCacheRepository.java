@@ -0,0 +1,135 @@
+package com.api.pagamento.benchmark.memoria;
+
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.dto.PaginaTransacaoDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.repository.TransacaoCacheRepository;
+import com.api.pagamento.repository.codec.BinarioTransacaoCodec;
+import com.api.pagamento.repository.codec.JsonRespostaTransacao;
+import com.api.pagamento.repository.codec.TransacaoCacheCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+//Redis em memória: os hashes ficam em um mapa, gravados e lidos pelos mesmos codecs da aplicação. O custo medido é o
+//do codec e do serviço, sem a rede.
+
+public class MemoriaTransacaoCacheRepository extends TransacaoCacheRepository {
+
+    private static final byte[] AUTORIZADO = StatusEnum.AUTORIZADO.toString().getBytes(StandardCharsets.UTF_8);
+
+    private static final String CAMPO_STATUS = "descricao::status";
+
+    private final Map<String, Map<String, byte[]>> hashes = new ConcurrentHashMap<>();
+
+    private final List<TransacaoCacheCodec> codecs;
+
+    private final TransacaoCacheCodec codecEscrita;
+
+    public MemoriaTransacaoCacheRepository(List<TransacaoCacheCodec> codecs, TransacaoProperties transacaoProperties) {
+
+        super(null, codecs, new JsonRespostaTransacao(new ObjectMapper(), transacaoProperties), transacaoProperties);
+        this.codecs = codecs;
+        this.codecEscrita = codecs.stream()
+                .filter(codec -> codec.nome().equals(transacaoProperties.getCache().getCodec()))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Override
+    public boolean existHashMap(String key) {
+        return hashes.containsKey(key);
+    }
+
+    @Override
+    public TransacaoDTO getHashMapByKey(String key) {
+        Map<String, byte[]> campos = hashes.get(key);
+        return campos == null ? null : decode(campos);
+    }
+
+    @Override
+    public PaginaTransacaoDTO getPageHashMap(long cursor, int tamanho) {
+        throw new UnsupportedOperationException("A paginação do cache não é usada nos benchmarks");
+    }
+
+    @Override
+    public PaginaChaves scanPage(long cursor, int tamanho) {
+        throw new UnsupportedOperationException("A paginação do cache não é usada nos benchmarks");
+    }
+
+    @Override
+    public void percorrer(PaginaChaves paginaChaves, Consumer<TransacaoDTO> consumidor) {
+        throw new UnsupportedOperationException("A paginação do cache não é usada nos benchmarks");
+    }
+
+    @Override
+    public void setHashMaps(List<Transacao> transacoes) {
+
+        for (Transacao transacao : transacoes) {
+            Map<String, byte[]> campos = new HashMap<>();
+            codecEscrita.encode(transacao).forEach((campo, valor) -> campos.put(new String(campo, StandardCharsets.UTF_8), valor));
+            hashes.put("transacao::" + transacao.getId(), campos);
+        }
+
+    }
+
+    //Mesmo resultado do script estornar.lua
+    @Override
+    public EstornoCache estornarHashMapByKey(String key) {
+
+        Map<String, byte[]> campos = hashes.get(key);
+        if (campos == null) {
+            return new EstornoCache(ResultadoEstorno.INEXISTENTE, null);
+        }
+
+        TransacaoDTO transacaoDTO = decode(campos);
+        if (transacaoDTO.getDescricao().getStatus() != StatusEnum.AUTORIZADO) {
+            return new EstornoCache(ResultadoEstorno.NAO_ESTORNAVEL, transacaoDTO);
+        }
+
+        transacaoDTO.getDescricao().setStatus(StatusEnum.NEGADO);
+        setHashMap(TransacaoMapper.toTransacao(transacaoDTO));
+        return new EstornoCache(ResultadoEstorno.ESTORNADO, transacaoDTO);
+    }
+
+    @Override
+    public void deleteHashMap(String key) {
+        hashes.remove(key);
+    }
+
+    //Devolve a transação ao status AUTORIZADO sem alocar, para que o mesmo id possa ser estornado de novo
+    public void reautorizar(Long id) {
+
+        Map<String, byte[]> campos = hashes.get("transacao::" + id);
+        byte[] dados = campos.get(BinarioTransacaoCodec.CAMPO);
+        if (dados != null) {
+            dados[BinarioTransacaoCodec.POSICAO_STATUS] = (byte) StatusEnum.AUTORIZADO.ordinal();
+        } else {
+            campos.put(CAMPO_STATUS, AUTORIZADO);
+        }
+
+    }
+
+    private TransacaoDTO decode(Map<String, byte[]> campos) {
+
+        for (TransacaoCacheCodec codec : codecs) {
+            if (codec.suporta(campos)) {
+                return codec.decode(campos);
+            }
+        }
+        throw new IllegalStateException("Nenhum codec reconhece os campos " + campos.keySet());
+    }
+
+    public void limpar() {
+        hashes.clear();
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.api.pagamento.benchmark.memoria;
+
+import com.api.pagamento.domain.dto.CursorBusca;
+import com.api.pagamento.domain.dto.FiltroBuscaDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.repository.persistencia.TransacaoPersistencia;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+//Banco em memória: os ids vêm de um contador, como de uma sequence, e o estorno segue a mesma regra do UPDATE
+//condicional (só altera uma transação AUTORIZADO).
+
+public class MemoriaTransacaoPersistencia implements TransacaoPersistencia {
+
+    private final AtomicLong sequencia = new AtomicLong();
+
+    private final Map<Long, Transacao> transacoes = new ConcurrentHashMap<>();
+
+    @Override
+    public Transacao salvar(Transacao transacao) {
+
+        long id = sequencia.incrementAndGet();
+        transacao.setId(id);
+        transacao.getDescricao().setId(id);
+        transacao.getFormaPagamento().setId(id);
+        transacoes.put(id, transacao);
+        return transacao;
+    }
+
+    @Override
+    public List<Transacao> salvarTodos(List<Transacao> transacoes) {
+        transacoes.forEach(this::salvar);
+        return transacoes;
+    }
+
+    @Override
+    public Optional<Transacao> procurarPeloId(Long id) {
+        return Optional.ofNullable(transacoes.get(id));
+    }
+
+    @Override
+    public List<Transacao> procurarLoteAnteriorA(Long id, String dataHoraInicio, int tamanho) {
+        throw new UnsupportedOperationException("O aquecimento do cache não é usado nos benchmarks");
+    }
+
+    @Override
+    public List<TransacaoDTO> buscar(FiltroBuscaDTO filtro, CursorBusca cursor, int tamanho) {
+        throw new UnsupportedOperationException("A busca não é usada nos benchmarks");
+    }
+
+    @Override
+    public CursorBusca cursorApos(FiltroBuscaDTO filtro, TransacaoDTO transacao) {
+        throw new UnsupportedOperationException("A busca não é usada nos benchmarks");
+    }
+
+    @Override
+    public void exportar(FiltroBuscaDTO filtro, int tamanhoFetch, Consumer<TransacaoDTO> consumidor) {
+        throw new UnsupportedOperationException("A exportação não é usada nos benchmarks");
+    }
+
+    @Override
+    public int estornar(Long id) {
+
+        Transacao transacao = transacoes.get(id);
+        if (transacao == null || transacao.getDescricao().getStatus() != StatusEnum.AUTORIZADO) {
+            return 0;
+        }
+        transacao.getDescricao().setStatus(StatusEnum.NEGADO);
+        return 1;
+    }
+
+    //Devolve a transação ao status AUTORIZADO, para que o mesmo id possa ser estornado de novo
+    public void reautorizar(Long id) {
+        transacoes.get(id).getDescricao().setStatus(StatusEnum.AUTORIZADO);
+    }
+
+    public void limpar() {
+        transacoes.clear();
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.api.pagamento.benchmark.memoria;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+//Gerenciador de transações sem banco: o TransactionTemplate do serviço apenas executa o callback. O status é sempre o
+//mesmo objeto, então o benchmark mede a alocação do serviço, e não a do gerenciamento de transações.
+
+public class MemoriaTransactionManager implements PlatformTransactionManager {
+
+    private static final TransactionStatus STATUS = new SimpleTransactionStatus();
+
+    @Override
+    public TransactionStatus getTransaction(TransactionDefinition definition) {
+        return STATUS;
+    }
+
+    @Override
+    public void commit(TransactionStatus status) {
+    }
+
+    @Override
+    public void rollback(TransactionStatus status) {
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.api.pagamento.carga;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//A aplicação é iniciada em outra JVM, com o mesmo classpath do teste de carga, para que o gerador de carga não
+//divida o heap e as pausas de GC com ela. O Redis é o servidor embutido e o banco é um H2 em memória no modo
+//PostgreSQL. A saída da aplicação vai para aplicacao.log no diretório do relatório.
+
+final class Aplicacao {
+
+    private final Process processo;
+
+    private final String base;
+
+    private Aplicacao(Process processo, int porta) {
+        this.processo = processo;
+        this.base = "http://localhost:" + porta;
+    }
+
+    static Aplicacao iniciar(int portaRedis, List<String> opcoesJvm, List<String> propriedades, Path log) throws IOException {
+
+        int porta = portaLivre();
+
+        List<String> comando = new ArrayList<>();
+        comando.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        comando.addAll(opcoesJvm);
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add("com.api.pagamento.ApiPagamentoApplication");
+        comando.add("--server.port=" + porta);
+        comando.add("--spring.redis.host=localhost");
+        comando.add("--spring.redis.port=" + portaRedis);
+        comando.add("--spring.redis.password=");
+        comando.add("--spring.datasource.url=jdbc:h2:mem:carga;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        comando.add("--spring.datasource.driverClassName=org.h2.Driver");
+        comando.add("--spring.datasource.username=sa");
+        comando.add("--spring.datasource.password=");
+        comando.add("--spring.jpa.database=H2");
+        comando.add("--spring.jpa.show-sql=false");
+        comando.add("--spring.jpa.properties.hibernate.format_sql=false");
+        comando.add("--logging.level.root=WARN");
+        propriedades.forEach(propriedade -> comando.add("--" + propriedade));
+
+        Process processo = new ProcessBuilder(comando)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+
+        return new Aplicacao(processo, porta);
+    }
+
+    //Espera o /actuator/health responder 200
+    void aguardar(HttpClient httpClient, Duration prazo) throws Exception {
+
+        HttpRequest health = HttpRequest.newBuilder(URI.create(base + "/actuator/health")).timeout(Duration.ofSeconds(2)).build();
+        long limite = System.nanoTime() + prazo.toNanos();
+
+        while (System.nanoTime() < limite) {
+            if (!processo.isAlive()) {
+                throw new IllegalStateException("A aplicação terminou durante a inicialização (código " + processo.exitValue() + ")");
+            }
+            try {
+                if (httpClient.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                //Ainda não está aceitando conexões
+            }
+            Thread.sleep(250);
+        }
+
+        throw new IllegalStateException("A aplicação não ficou pronta em " + prazo);
+    }
+
+    //Soma das séries de uma métrica em /actuator/prometheus (ex.: transacao_threads_fixacoes_total de todas as origens);
+    //0 quando a métrica não existe
+    double metrica(HttpClient httpClient, String nome) throws Exception {
+
+        HttpRequest prometheus = HttpRequest.newBuilder(URI.create(base + "/actuator/prometheus")).timeout(Duration.ofSeconds(5)).build();
+        String corpo = httpClient.send(prometheus, HttpResponse.BodyHandlers.ofString()).body();
+
+        double soma = 0;
+        for (String linha : corpo.split("\n")) {
+            if (linha.startsWith(nome + " ") || linha.startsWith(nome + "{")) {
+                soma += Double.parseDouble(linha.substring(linha.lastIndexOf(' ') + 1));
+            }
+        }
+        return soma;
+    }
+
+    String base() {
+        return base;
+    }
+
+    void parar() throws InterruptedException {
+
+        processo.destroy();
+        if (!processo.waitFor(30, TimeUnit.SECONDS)) {
+            processo.destroyForcibly();
+        }
+    }
+
+    static int portaLivre() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.api.pagamento.carga;
+
+import lombok.Value;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.Map;
+
+//Resultado de um estágio do teste: uma taxa constante de requisições durante um período.
+//semResposta conta as requisições que não terminaram dentro do timeout após o fim do estágio.
+
+@Value
+class Estagio {
+
+    int taxa;
+
+    Duration duracao;
+
+    Map<Operacao, Histogram> latencias;
+
+    Map<Operacao, Long> erros;
+
+    int semResposta;
+
+    double vazao(Operacao operacao) {
+        return latencias.get(operacao).getTotalCount() / (duracao.toNanos() / 1e9);
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.api.pagamento.carga;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+//Carga em modelo aberto: as requisições são disparadas em instantes fixos (taxa constante), sem esperar as respostas
+//das anteriores. Se a aplicação ficar lenta, as requisições se acumulam, como aconteceria com clientes reais.
+//
+//A latência é medida a partir do instante em que a requisição deveria ter sido enviada, e não de quando foi de fato
+//enviada. Assim, um atraso do próprio gerador (ou uma pausa da aplicação) aparece nos percentis, em vez de ser
+//escondido pela redução da taxa (coordinated omission).
+
+final class GeradorDeCarga {
+
+    //Latências acima de 1 minuto são registradas como 1 minuto
+    private static final long LATENCIA_MAXIMA_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final HttpClient httpClient;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String base;
+
+    private final Map<Operacao, Integer> mix;
+
+    private final int pesoTotal;
+
+    private final Duration timeout;
+
+    private final Ids ids = new Ids();
+
+    GeradorDeCarga(HttpClient httpClient, String base, Map<Operacao, Integer> mix, Duration timeout) {
+        this.httpClient = httpClient;
+        this.base = base;
+        this.mix = mix;
+        this.pesoTotal = mix.values().stream().mapToInt(Integer::intValue).sum();
+        this.timeout = timeout;
+    }
+
+    //Pagamentos síncronos para que as consultas e os estornos tenham ids desde o início
+    void semear(int pagamentos) throws Exception {
+
+        for (int i = 0; i < pagamentos; i++) {
+            HttpResponse<String> resposta = httpClient.send(Operacao.PAGAMENTO.requisicao(base, 0, timeout), HttpResponse.BodyHandlers.ofString());
+            if (resposta.statusCode() != 200) {
+                throw new IllegalStateException("Pagamento inicial falhou com status " + resposta.statusCode() + ": " + resposta.body());
+            }
+            ids.adicionar(objectMapper.readTree(resposta.body()).get("id").asLong());
+        }
+    }
+
+    Estagio executar(int taxa, Duration duracao) throws InterruptedException {
+
+        Map<Operacao, Recorder> latencias = new EnumMap<>(Operacao.class);
+        Map<Operacao, AtomicLong> erros = new EnumMap<>(Operacao.class);
+        for (Operacao operacao : Operacao.values()) {
+            latencias.put(operacao, new Recorder(LATENCIA_MAXIMA_MICROS, 3));
+            erros.put(operacao, new AtomicLong());
+        }
+
+        AtomicInteger pendentes = new AtomicInteger();
+        long intervalo = TimeUnit.SECONDS.toNanos(1) / taxa;
+        long inicio = System.nanoTime();
+        long fim = inicio + duracao.toNanos();
+
+        for (long i = 0; ; i++) {
+
+            long previsto = inicio + i * intervalo;
+            if (previsto >= fim) {
+                break;
+            }
+
+            long espera = previsto - System.nanoTime();
+            if (espera > 0) {
+                LockSupport.parkNanos(espera);
+            }
+
+            Operacao operacao = sortear();
+            long id = operacao.precisaDeId() ? ids.sortear() : 0;
+            if (operacao.precisaDeId() && id == 0) {
+                operacao = Operacao.PAGAMENTO;
+            }
+
+            Operacao enviada = operacao;
+            pendentes.incrementAndGet();
+            httpClient.sendAsync(operacao.requisicao(base, id, timeout), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((resposta, erro) -> {
+
+                        long latencia = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - previsto);
+                        latencias.get(enviada).recordValue(Math.min(latencia, LATENCIA_MAXIMA_MICROS));
+
+                        if (erro != null || resposta.statusCode() != 200) {
+                            erros.get(enviada).incrementAndGet();
+                        } else if (enviada == Operacao.PAGAMENTO) {
+                            registrarId(resposta.body());
+                        }
+                        pendentes.decrementAndGet();
+                    });
+        }
+
+        //As respostas que ainda não chegaram contam no estágio em que foram enviadas
+        long prazo = System.nanoTime() + timeout.toNanos();
+        while (pendentes.get() > 0 && System.nanoTime() < prazo) {
+            Thread.sleep(10);
+        }
+        long duracaoReal = System.nanoTime() - inicio;
+
+        Map<Operacao, Histogram> histogramas = new EnumMap<>(Operacao.class);
+        Map<Operacao, Long> quantidadeErros = new EnumMap<>(Operacao.class);
+        for (Operacao operacao : Operacao.values()) {
+            histogramas.put(operacao, latencias.get(operacao).getIntervalHistogram());
+            quantidadeErros.put(operacao, erros.get(operacao).get());
+        }
+
+        return new Estagio(taxa, Duration.ofNanos(duracaoReal), histogramas, quantidadeErros, pendentes.get());
+    }
+
+    private Operacao sortear() {
+
+        int sorteio = ThreadLocalRandom.current().nextInt(pesoTotal);
+        for (Map.Entry<Operacao, Integer> peso : mix.entrySet()) {
+            sorteio -= peso.getValue();
+            if (sorteio < 0) {
+                return peso.getKey();
+            }
+        }
+        return Operacao.PAGAMENTO;
+    }
+
+    private void registrarId(String corpo) {
+
+        try {
+            ids.adicionar(objectMapper.readTree(corpo).get("id").asLong());
+        } catch (Exception e) {
+            //Um corpo inesperado não interrompe a carga; o pagamento já foi contado como sucesso pelo status
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.api.pagamento.carga;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Ids das transações pagas durante o teste, usados pelas consultas e estornos. Guarda os últimos CAPACIDADE ids em um
+//buffer circular, sem lock. O sorteio favorece os pagamentos recentes, que são os mais consultados em produção: a
+//distância até o último id é janela * u², com u uniforme, então metade dos sorteios cai no quarto mais recente.
+
+final class Ids {
+
+    private static final int CAPACIDADE = 1 << 20;
+
+    private static final int TENTATIVAS = 8;
+
+    private final AtomicLongArray ids = new AtomicLongArray(CAPACIDADE);
+
+    private final AtomicLong quantidade = new AtomicLong();
+
+    void adicionar(long id) {
+        ids.set((int) (quantidade.getAndIncrement() & (CAPACIDADE - 1)), id);
+    }
+
+    //0 quando ainda não há nenhum id
+    long sortear() {
+
+        long total = quantidade.get();
+        long janela = Math.min(total, CAPACIDADE);
+
+        //Uma posição já reservada por adicionar (getAndIncrement) pode ainda não ter sido escrita (0): nesse caso o
+        //sorteio é refeito, em vez de consultar a transação 0
+        for (int tentativa = 0; tentativa < TENTATIVAS && janela > 0; tentativa++) {
+            double u = ThreadLocalRandom.current().nextDouble();
+            long distancia = (long) (janela * u * u);
+            long id = ids.get((int) ((total - 1 - distancia) & (CAPACIDADE - 1)));
+            if (id != 0) {
+                return id;
+            }
+        }
+        return 0;
+    }
+
+    long quantidade() {
+        return quantidade.get();
+    }
+
+}
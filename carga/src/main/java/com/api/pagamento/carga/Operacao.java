@@ -0,0 +1,46 @@
+package com.api.pagamento.carga;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+
+//Os quatro endpoints do TransacaoController exercitados pelo teste de carga
+
+enum Operacao {
+
+    PAGAMENTO,
+    CONSULTA,
+    ESTORNO,
+    LISTAGEM;
+
+    private static final String PAGAMENTO_JSON = "{\"cartao\":\"4444********1234\"," +
+            "\"descricao\":{\"valor\":\"500.50\",\"dataHora\":\"01/05/2021 18:00:00\",\"estabelecimento\":\"PetShop Mundo cão\"}," +
+            "\"formaPagamento\":{\"tipo\":\"AVISTA\",\"parcelas\":\"1\"}}";
+
+    HttpRequest requisicao(String base, long id, Duration timeout) {
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder().timeout(timeout);
+
+        switch (this) {
+            case PAGAMENTO:
+                return builder.uri(URI.create(base + "/transacao/v1/pagamento"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(PAGAMENTO_JSON))
+                        .build();
+            case CONSULTA:
+                return builder.uri(URI.create(base + "/transacao/v1/" + id)).GET().build();
+            case ESTORNO:
+                return builder.uri(URI.create(base + "/transacao/v1/estorno/" + id))
+                        .PUT(HttpRequest.BodyPublishers.noBody())
+                        .build();
+            default:
+                return builder.uri(URI.create(base + "/transacao/v1?tamanho=100")).GET().build();
+        }
+    }
+
+    //Consulta e estorno precisam de um id já pago
+    boolean precisaDeId() {
+        return this == CONSULTA || this == ESTORNO;
+    }
+
+}
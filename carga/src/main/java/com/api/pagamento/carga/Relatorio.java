@@ -0,0 +1,108 @@
+package com.api.pagamento.carga;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+//Relatório do teste de carga, no diretório de saída:
+//
+//  relatorio.csv                      uma linha por estágio e operação: requisições, erros, vazão e percentis (ms)
+//  latencias-<taxa>-<operacao>.hgrm   distribuição completa de cada histograma, no formato do HdrHistogram
+//                                     (pode ser plotada em https://hdrhistogram.github.io/HdrHistogram/plotFiles.html)
+//
+//O CSV tem sempre as mesmas colunas, então dois relatórios podem ser comparados diretamente. Com --base=<relatorio.csv>
+//a diferença de cada percentil em relação ao relatório base é impressa ao final.
+
+final class Relatorio {
+
+    static final String CABECALHO = "taxa,operacao,requisicoes,erros,sem_resposta,vazao,p50_ms,p90_ms,p99_ms,p999_ms,max_ms";
+
+    private static final double MICROS_POR_MS = 1000.0;
+
+    private Relatorio() {
+    }
+
+    static void escrever(List<Estagio> estagios, Path diretorio, PrintStream saida) throws IOException {
+
+        StringBuilder csv = new StringBuilder(CABECALHO).append('\n');
+
+        for (Estagio estagio : estagios) {
+            for (Operacao operacao : Operacao.values()) {
+
+                Histogram histograma = estagio.getLatencias().get(operacao);
+                if (histograma.getTotalCount() == 0) {
+                    continue;
+                }
+
+                csv.append(String.format(Locale.ROOT, "%d,%s,%d,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                        estagio.getTaxa(), operacao, histograma.getTotalCount(), estagio.getErros().get(operacao),
+                        estagio.getSemResposta(), estagio.vazao(operacao),
+                        percentil(histograma, 50), percentil(histograma, 90), percentil(histograma, 99),
+                        percentil(histograma, 99.9), histograma.getMaxValue() / MICROS_POR_MS));
+
+                try (PrintStream hgrm = new PrintStream(Files.newOutputStream(
+                        diretorio.resolve("latencias-" + estagio.getTaxa() + "-" + operacao.name().toLowerCase(Locale.ROOT) + ".hgrm")),
+                        false, StandardCharsets.UTF_8)) {
+                    histograma.outputPercentileDistribution(hgrm, MICROS_POR_MS);
+                }
+            }
+        }
+
+        Files.writeString(diretorio.resolve("relatorio.csv"), csv);
+        saida.println();
+        saida.print(csv);
+    }
+
+    //Diferença percentual de p50, p99 e p99.9 em relação ao relatório base, para cada taxa e operação presentes nos dois
+    static void comparar(Path atual, Path base, PrintStream saida) throws IOException {
+
+        Map<String, String[]> linhasBase = ler(base);
+
+        saida.println();
+        saida.println("Comparação com " + base + " (positivo = mais lento)");
+        saida.println("taxa,operacao,p50,p99,p999");
+
+        for (Map.Entry<String, String[]> linha : ler(atual).entrySet()) {
+
+            String[] anterior = linhasBase.get(linha.getKey());
+            if (anterior == null) {
+                continue;
+            }
+            saida.printf(Locale.ROOT, "%s,%+.1f%%,%+.1f%%,%+.1f%%%n", linha.getKey(),
+                    variacao(anterior[6], linha.getValue()[6]),
+                    variacao(anterior[8], linha.getValue()[8]),
+                    variacao(anterior[9], linha.getValue()[9]));
+        }
+    }
+
+    private static Map<String, String[]> ler(Path csv) throws IOException {
+
+        Map<String, String[]> linhas = new HashMap<>();
+        for (String linha : Files.readAllLines(csv)) {
+            if (linha.isBlank() || linha.equals(CABECALHO)) {
+                continue;
+            }
+            String[] colunas = linha.split(",");
+            linhas.put(colunas[0] + "," + colunas[1], colunas);
+        }
+        return linhas;
+    }
+
+    private static double variacao(String anterior, String atual) {
+        double valorAnterior = Double.parseDouble(anterior);
+        return valorAnterior == 0 ? 0 : (Double.parseDouble(atual) - valorAnterior) / valorAnterior * 100;
+    }
+
+    private static double percentil(Histogram histograma, double percentil) {
+        return histograma.getValueAtPercentile(percentil) / MICROS_POR_MS;
+    }
+
+}
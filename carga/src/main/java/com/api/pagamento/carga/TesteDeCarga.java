@@ -0,0 +1,216 @@
+package com.api.pagamento.carga;
+
+import redis.embedded.RedisServer;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+//Teste de carga de ponta a ponta dos endpoints do TransacaoController, em uma única máquina e sem rede externa:
+//
+//  1. sobe um Redis embutido (redis-server empacotado no embedded-redis) em uma porta livre
+//  2. sobe a aplicação em outra JVM, apontando para esse Redis e para um H2 em memória (ver Aplicacao)
+//  3. faz alguns pagamentos para que consultas e estornos tenham ids, e aquece a aplicação na primeira taxa
+//  4. executa um estágio por taxa, em modelo aberto (ver GeradorDeCarga)
+//  5. escreve o relatório (ver Relatorio)
+//
+//Com --modos, os passos 1 a 5 são repetidos para cada modo de threads da aplicação (transacao.threads.virtuais), com o
+//relatório de cada um em saida/<modo>. Ao final, threads.csv resume o pico de threads de plataforma e as fixações de
+//threads virtuais de cada modo, e os relatórios são comparados com o do primeiro modo.
+//
+//Uso (a partir da raiz do repositório):
+//
+//  mvn -B install -DskipTests
+//  mvn -B -f carga/pom.xml compile exec:exec -Dcarga.args="--taxas=200,500,1000 --duracao=60s"
+//  mvn -B -f carga/pom.xml compile exec:exec -Dcarga.args="--modos=plataforma,virtual --taxas=500,1000,2000"
+//
+//Parâmetros (todos opcionais):
+//
+//  --taxas=100,250,500             requisições por segundo de cada estágio
+//  --duracao=30s                   duração de cada estágio
+//  --aquecimento=15s               carga na primeira taxa antes do primeiro estágio, sem medição
+//  --mix=pagamento:30,consulta:50,estorno:10,listagem:10   peso de cada operação
+//  --semente=200                   pagamentos feitos antes do aquecimento
+//  --timeout=10s                   timeout de cada requisição
+//  --saida=target/carga            diretório do relatório
+//  --base=<relatorio.csv>          relatório anterior para comparação (sem --modos)
+//  --modos=plataforma,virtual      modos de threads da aplicação, executados um após o outro
+//  --jvm=-Xms1g,-Xmx1g             opções da JVM da aplicação, separadas por vírgula
+//  --app=transacao.cache.codec=hash,transacao.persistencia.modelo=plano   propriedades extras da aplicação
+
+public class TesteDeCarga {
+
+    public static void main(String[] args) throws Exception {
+
+        Map<String, String> parametros = parametros(args);
+
+        Duration timeout = duracao(parametros.getOrDefault("timeout", "10s"));
+        Path saida = Path.of(parametros.getOrDefault("saida", "target/carga"));
+        List<String> propriedades = lista(parametros.getOrDefault("app", ""));
+        List<String> modos = lista(parametros.getOrDefault("modos", ""));
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .executor(Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors())))
+                .build();
+
+        if (modos.isEmpty()) {
+
+            executar(parametros, propriedades, saida, httpClient);
+            if (parametros.containsKey("base")) {
+                Relatorio.comparar(saida.resolve("relatorio.csv"), Path.of(parametros.get("base")), System.out);
+            }
+
+        } else {
+
+            //Cada modo com um Redis e uma aplicação novos, para que um não herde o cache ou o JIT do outro
+            Map<String, Threads> threads = new LinkedHashMap<>();
+            for (String modo : modos) {
+                List<String> propriedadesModo = new ArrayList<>(propriedades);
+                propriedadesModo.add("transacao.threads.virtuais=" + virtuais(modo));
+                System.out.println("Modo: " + modo);
+                threads.put(modo, executar(parametros, propriedadesModo, saida.resolve(modo), httpClient));
+            }
+
+            StringBuilder csv = new StringBuilder("modo,threads_pico,fixacoes\n");
+            threads.forEach((modo, execucao) -> csv.append(modo).append(',').append(execucao.getPico()).append(',')
+                    .append(execucao.getFixacoes()).append('\n'));
+            Files.writeString(saida.resolve("threads.csv"), csv);
+            System.out.println();
+            System.out.print(csv);
+
+            //Cada modo comparado com o primeiro (ex.: --modos=plataforma,virtual compara o virtual com o de plataforma)
+            for (String modo : modos.subList(1, modos.size())) {
+                Relatorio.comparar(saida.resolve(modo).resolve("relatorio.csv"), saida.resolve(modos.get(0)).resolve("relatorio.csv"), System.out);
+            }
+        }
+
+        //As threads do HttpClient não são daemon
+        System.exit(0);
+    }
+
+    //Uma execução completa (Redis, aplicação, semente, aquecimento e estágios), com o relatório em saida
+    private static Threads executar(Map<String, String> parametros, List<String> propriedades, Path saida,
+                                    HttpClient httpClient) throws Exception {
+
+        List<Integer> taxas = new ArrayList<>();
+        for (String taxa : parametros.getOrDefault("taxas", "100,250,500").split(",")) {
+            taxas.add(Integer.parseInt(taxa.trim()));
+        }
+        Duration duracao = duracao(parametros.getOrDefault("duracao", "30s"));
+        Duration aquecimento = duracao(parametros.getOrDefault("aquecimento", "15s"));
+        Duration timeout = duracao(parametros.getOrDefault("timeout", "10s"));
+        Map<Operacao, Integer> mix = mix(parametros.getOrDefault("mix", "pagamento:30,consulta:50,estorno:10,listagem:10"));
+        int semente = Integer.parseInt(parametros.getOrDefault("semente", "200"));
+        List<String> opcoesJvm = lista(parametros.getOrDefault("jvm", "-Xms1g,-Xmx1g"));
+
+        Files.createDirectories(saida);
+
+        int portaRedis = Aplicacao.portaLivre();
+        RedisServer redis = RedisServer.newRedisServer().port(portaRedis).bind("127.0.0.1").setting("save \"\"").setting("appendonly no").build();
+        Aplicacao aplicacao = null;
+
+        try {
+
+            redis.start();
+            System.out.println("Redis embutido na porta " + portaRedis);
+
+            aplicacao = Aplicacao.iniciar(portaRedis, opcoesJvm, propriedades, saida.resolve("aplicacao.log"));
+            aplicacao.aguardar(httpClient, Duration.ofMinutes(2));
+            System.out.println("Aplicação pronta em " + aplicacao.base());
+
+            GeradorDeCarga gerador = new GeradorDeCarga(httpClient, aplicacao.base(), mix, timeout);
+            gerador.semear(semente);
+
+            System.out.println("Aquecimento: " + taxas.get(0) + " req/s por " + aquecimento.toSeconds() + "s");
+            gerador.executar(taxas.get(0), aquecimento);
+
+            List<Estagio> estagios = new ArrayList<>();
+            for (int taxa : taxas) {
+                System.out.println("Estágio: " + taxa + " req/s por " + duracao.toSeconds() + "s");
+                estagios.add(gerador.executar(taxa, duracao));
+            }
+
+            Relatorio.escrever(estagios, saida, System.out);
+
+            return new Threads((long) aplicacao.metrica(httpClient, "jvm_threads_peak_threads"),
+                    (long) aplicacao.metrica(httpClient, "transacao_threads_fixacoes_total"));
+
+        } finally {
+
+            if (aplicacao != null) {
+                aplicacao.parar();
+            }
+            redis.stop();
+        }
+    }
+
+    private static boolean virtuais(String modo) {
+
+        switch (modo) {
+            case "plataforma":
+                return false;
+            case "virtual":
+                return true;
+            default:
+                throw new IllegalArgumentException("Modo desconhecido: " + modo + " (esperado plataforma ou virtual)");
+        }
+    }
+
+    //--chave=valor; valores vazios (ex.: carga.args sem parâmetros) são ignorados
+    private static Map<String, String> parametros(String[] args) {
+
+        Map<String, String> parametros = new HashMap<>();
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Parâmetro inválido: " + arg + " (esperado --chave=valor)");
+            }
+            parametros.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return parametros;
+    }
+
+    private static Map<Operacao, Integer> mix(String mix) {
+
+        Map<Operacao, Integer> pesos = new EnumMap<>(Operacao.class);
+        for (String peso : mix.split(",")) {
+            String[] partes = peso.split(":");
+            pesos.put(Operacao.valueOf(partes[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(partes[1].trim()));
+        }
+        return pesos;
+    }
+
+    //30s, 2m ou qualquer formato ISO-8601 (PT30S)
+    private static Duration duracao(String valor) {
+
+        if (valor.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(valor.substring(0, valor.length() - 2)));
+        }
+        if (valor.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(valor.substring(0, valor.length() - 1)));
+        }
+        if (valor.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(valor.substring(0, valor.length() - 1)));
+        }
+        return Duration.parse(valor);
+    }
+
+    private static List<String> lista(String valor) {
+        return valor.isBlank() ? List.of() : Arrays.asList(valor.split(","));
+    }
+
+}
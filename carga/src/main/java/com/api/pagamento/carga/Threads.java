@@ -0,0 +1,15 @@
+package com.api.pagamento.carga;
+
+import lombok.Value;
+
+//Threads da aplicação ao fim de uma execução, lidas de /actuator/prometheus: o pico de threads de plataforma
+//(jvm.threads.peak; threads virtuais não entram nessa conta) e as fixações de threads virtuais (transacao.threads.fixacoes).
+
+@Value
+class Threads {
+
+    long pico;
+
+    long fixacoes;
+
+}
@@ -1,10 +1,15 @@
 package com.api.pagamento;
 
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfoHandlerMapping;
 import springfox.documentation.builders.ApiInfoBuilder;
 import springfox.documentation.builders.PathSelectors;
 import springfox.documentation.builders.RequestHandlerSelectors;
@@ -12,8 +17,12 @@ import springfox.documentation.service.ApiInfo;
 import springfox.documentation.service.Contact;
 import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
+import springfox.documentation.spring.web.plugins.WebMvcRequestHandlerProvider;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
+import java.lang.reflect.Field;
+import java.util.List;
+
 /*
     @SpringBootApplication = @Configuration + @ComponentScan + @EnableAutoConfiguration
         A anotação @SpringBootApplication é uma combinação das seguintes três anotações Spring e fornece a funcionalidade
@@ -41,6 +50,7 @@ import springfox.documentation.swagger2.annotations.EnableSwagger2;
 */
 @EnableWebMvc
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class ApiPagamentoApplication {
 
     public static void main(String[] args) {
@@ -59,6 +69,30 @@ public class ApiPagamentoApplication {
                     .build()
                     .apiInfo(apiInfo());
         }
+
+        //Os endpoints do Actuator usam PathPatternParser, que o springfox 3 não suporta: ao listar esses
+        //mapeamentos, ele falha na inicialização. Apenas os mapeamentos baseados em AntPathMatcher (os controllers da
+        //aplicação) são mantidos para a documentação.
+        @Bean
+        public static BeanPostProcessor springfoxHandlerProviderBeanPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                    if (bean instanceof WebMvcRequestHandlerProvider) {
+                        List<RequestMappingInfoHandlerMapping> mappings = getHandlerMappings(bean);
+                        mappings.removeIf(mapping -> mapping.getPatternParser() != null);
+                    }
+                    return bean;
+                }
+
+                @SuppressWarnings("unchecked")
+                private List<RequestMappingInfoHandlerMapping> getHandlerMappings(Object bean) {
+                    Field field = ReflectionUtils.findField(bean.getClass(), "handlerMappings");
+                    ReflectionUtils.makeAccessible(field);
+                    return (List<RequestMappingInfoHandlerMapping>) ReflectionUtils.getField(field, bean);
+                }
+            };
+        }
     }
 
     private ApiInfo apiInfo() {
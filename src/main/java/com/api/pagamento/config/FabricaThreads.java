@@ -0,0 +1,38 @@
+package com.api.pagamento.config;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+
+//Threads criadas pela própria aplicação (aquecimento do cache, flusher do write-behind, respostas assíncronas e, no
+//modo virtual, requisições do Tomcat): virtuais ou de plataforma, conforme transacao.threads.virtuais.
+//As de plataforma são daemon, como as virtuais sempre são, para que nenhuma delas impeça a JVM de terminar.
+
+@Component
+public class FabricaThreads {
+
+    private final boolean virtuais;
+
+    public FabricaThreads(TransacaoProperties transacaoProperties) {
+        this.virtuais = transacaoProperties.getThreads().isVirtuais();
+    }
+
+    public boolean isVirtuais() {
+        return virtuais;
+    }
+
+    //Threads nomeadas prefixo1, prefixo2, ...
+    public ThreadFactory criar(String prefixo) {
+        return construtor().name(prefixo, 1).factory();
+    }
+
+    //Uma única thread, ainda não iniciada
+    public Thread nova(String nome, Runnable tarefa) {
+        return construtor().name(nome).unstarted(tarefa);
+    }
+
+    private Thread.Builder construtor() {
+        return virtuais ? Thread.ofVirtual() : Thread.ofPlatform().daemon(true);
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.api.pagamento.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+//Fixações (pinning) de threads virtuais: uma thread virtual que bloqueia dentro de um synchronized ou de código nativo
+//por mais de transacao.threads.limite-fixacao ocupa a thread de plataforma durante todo o bloqueio.
+//
+//Os eventos jdk.VirtualThreadPinned do JFR são lidos em streaming, na própria JVM, e contados na métrica
+//transacao.threads.fixacoes, com a tag "origem": a primeira classe da pilha fora do JDK (ex.: o driver ou a classe da
+//aplicação que segurava o monitor). A primeira fixação de cada origem é registrada no log com a pilha, para que o
+//synchronized possa ser encontrado. O teste de carga (carga/, --modos) mostra o total de fixações de cada execução.
+
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "transacao.threads", name = "virtuais", havingValue = "true")
+public class FixacaoThreadsVirtuais implements SmartLifecycle, MeterBinder {
+
+    public static final String EVENTO = "jdk.VirtualThreadPinned";
+
+    private static final int FRAMES_NO_LOG = 20;
+
+    private final TransacaoProperties transacaoProperties;
+
+    private final Map<String, Counter> contadores = new ConcurrentHashMap<>();
+
+    private MeterRegistry meterRegistry;
+
+    private RecordingStream stream;
+
+    public FixacaoThreadsVirtuais(TransacaoProperties transacaoProperties) {
+        this.transacaoProperties = transacaoProperties;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+    }
+
+    @Override
+    public void start() {
+
+        stream = new RecordingStream();
+        stream.enable(EVENTO).withThreshold(transacaoProperties.getThreads().getLimiteFixacao()).withStackTrace();
+        stream.onEvent(EVENTO, this::registrar);
+        stream.startAsync();
+    }
+
+    @Override
+    public void stop() {
+
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return stream != null;
+    }
+
+    private void registrar(RecordedEvent evento) {
+
+        List<RecordedFrame> frames = evento.getStackTrace() == null ? List.of() : evento.getStackTrace().getFrames();
+        String origem = origem(frames);
+
+        contadores.computeIfAbsent(origem, chave -> {
+            log.warn("Thread virtual fixada por {} ms em {}:\n\t{}", evento.getDuration().toMillis(), chave, frames.stream()
+                    .limit(FRAMES_NO_LOG)
+                    .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber())
+                    .collect(Collectors.joining("\n\t")));
+            return Counter.builder("transacao.threads.fixacoes")
+                    .description("Threads virtuais presas à thread de plataforma por mais do que transacao.threads.limite-fixacao")
+                    .tag("origem", chave)
+                    .register(meterRegistry);
+        }).increment();
+    }
+
+    //Os primeiros frames são do próprio JDK (o park ou o I/O que bloqueou)
+    private static String origem(List<RecordedFrame> frames) {
+
+        for (RecordedFrame frame : frames) {
+            String classe = frame.getMethod().getType().getName();
+            if (!classe.startsWith("java.") && !classe.startsWith("jdk.") && !classe.startsWith("sun.")) {
+                return classe;
+            }
+        }
+        return "jdk";
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.api.pagamento.config;
+
+import com.api.pagamento.domain.dto.ResponseErrorDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.FormatoEnum;
+import com.api.pagamento.domain.model.Transacao;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufFactory;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+//Um ObjectMapper por formato (ver FormatoEnum), com a mesma configuração que o Spring MVC usa nos seus conversores
+//(Jackson2ObjectMapperBuilder), e os esquemas Protobuf de proto/transacao.proto.
+//Usado pelo TransacaoProtobufHttpMessageConverter e pela listagem, que é escrita fora dos conversores.
+//
+//Os mapeadores de CBOR, Smile e Protobuf não são beans: um segundo bean ObjectMapper desligaria o ObjectMapper
+//autoconfigurado pelo Spring Boot.
+
+@Component
+public class FormatosTransacao {
+
+    private static final String ESQUEMA = "/proto/transacao.proto";
+
+    private final Map<FormatoEnum, ObjectMapper> mapeadores = new EnumMap<>(FormatoEnum.class);
+
+    private final Map<Class<?>, ProtobufSchema> esquemas;
+
+    public FormatosTransacao(ObjectMapper objectMapper) {
+
+        mapeadores.put(FormatoEnum.JSON, objectMapper);
+        mapeadores.put(FormatoEnum.CBOR, Jackson2ObjectMapperBuilder.cbor().build());
+        mapeadores.put(FormatoEnum.SMILE, Jackson2ObjectMapperBuilder.smile().build());
+        mapeadores.put(FormatoEnum.PROTOBUF, Jackson2ObjectMapperBuilder.json().factory(new ProtobufFactory()).build());
+
+        NativeProtobufSchema esquema;
+        try {
+            esquema = ProtobufSchemaLoader.std.loadNative(FormatosTransacao.class.getResource(ESQUEMA));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Esquema Protobuf inválido: " + ESQUEMA, e);
+        }
+        esquemas = Map.of(
+                TransacaoDTO.class, esquema.forType("Transacao"),
+                Transacao.class, esquema.forType("Transacao"),
+                ResponseErrorDTO.class, esquema.forType("Erro"));
+    }
+
+    public ObjectMapper mapeador(FormatoEnum formato) {
+        return mapeadores.get(formato);
+    }
+
+    //Tipos que têm uma mensagem no esquema Protobuf
+    public boolean suportaProtobuf(Class<?> tipo) {
+        return esquemas.containsKey(tipo);
+    }
+
+    public ObjectWriter writer(FormatoEnum formato, Class<?> tipo) {
+        ObjectWriter writer = mapeadores.get(formato).writerFor(tipo);
+        return formato == FormatoEnum.PROTOBUF ? writer.with(esquemas.get(tipo)) : writer;
+    }
+
+    public ObjectReader reader(FormatoEnum formato, Class<?> tipo) {
+        ObjectReader reader = mapeadores.get(formato).readerFor(tipo);
+        return formato == FormatoEnum.PROTOBUF ? reader.with(esquemas.get(tipo)) : reader;
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.api.pagamento.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+//Idas e voltas ao Redis por requisição
+//
+//O RedisTemplate (ver RedisConfig) chama registrar() a cada comando enviado fora de um pipeline e a cada pipeline, ou
+//seja, a cada ida e volta. Este filtro zera o contador no início da requisição e, ao final, grava o total em
+//transacao.redis.idas-e-voltas, com o padrão da URI e o método HTTP como tags.
+
+@Component
+@RequiredArgsConstructor
+public class IdasEVoltasRedis extends OncePerRequestFilter {
+
+    private static final ThreadLocal<int[]> CONTADOR = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+
+    public static void registrar() {
+        int[] contador = CONTADOR.get();
+        if (contador != null) {
+            contador[0]++;
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+
+        int[] contador = new int[1];
+        CONTADOR.set(contador);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            CONTADOR.remove();
+
+            Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            DistributionSummary.builder("transacao.redis.idas-e-voltas")
+                    .description("Idas e voltas ao Redis por requisição")
+                    .tag("uri", uri == null ? "UNKNOWN" : uri.toString())
+                    .tag("method", request.getMethod())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(contador[0]);
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.api.pagamento.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+//Métricas expostas em /actuator/prometheus
+//
+//  transacao.service               tempo de cada método do TransacaoService (@Timed)
+//  transacao.cache.operacao        tempo de cada operação do TransacaoCacheRepository (@Timed)
+//  transacao.cache.consultas       acertos, falhas e páginas vazias por camada (Redis, banco)
+//  cache.*{cache=transacao.near-cache}   acertos, falhas e evicções do near-cache
+//  transacao.redis.idas-e-voltas   idas e voltas ao Redis por requisição
+//  transacao.write-behind.*        atraso e vazão do write-behind
+//  transacao.aquecimento.*         progresso do aquecimento do cache
+//  transacao.threads.fixacoes      threads virtuais presas à thread de plataforma, por origem (FixacaoThreadsVirtuais)
+//  spring.data.repository.invocations, http.server.requests   tempos do Spring Data JPA e do Spring MVC
+
+@Configuration
+public class MetricasConfig {
+
+    //Necessário para que as anotações @Timed sejam processadas fora dos controllers
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+}
@@ -1,47 +1,54 @@
 package com.api.pagamento.config;
 
-import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.repository.TransacaoNearCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.redis.connection.RedisPassword;
-import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
-import org.springframework.data.redis.connection.jedis.JedisClientConfiguration;
-import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.repository.configuration.EnableRedisRepositories;
 import org.springframework.data.redis.serializer.*;
 
-import java.io.Serializable;
-import java.time.Duration;
+//A RedisConnectionFactory é criada pela autoconfiguração do Spring Boot a partir do bloco spring.redis do
+//application.yaml (host, porta, senha, timeouts e pool). O cliente é escolhido por spring.redis.client-type:
+//  jedis    uma conexão por comando, emprestada de um pool (spring.redis.jedis.pool.*)
+//  lettuce  uma única conexão multiplexada, compartilhada por todas as threads (spring.redis.lettuce.*)
 
 @Configuration
 @RequiredArgsConstructor
 @EnableRedisRepositories
 public class RedisConfig {
 
-    @Bean
-    public JedisConnectionFactory jedisConnectionFactory() {
-        RedisStandaloneConfiguration redisStandaloneConfiguration = new RedisStandaloneConfiguration();
-        redisStandaloneConfiguration.setHostName("localhost");
-        redisStandaloneConfiguration.setPort(6379);
-        redisStandaloneConfiguration.setPassword(RedisPassword.of("12345"));
-
-        //JedisClientConfiguration.JedisClientConfigurationBuilder jedisClientConfiguration = JedisClientConfiguration.builder();
-        //jedisClientConfiguration.connectTimeout(Duration.ofMillis(10));
-        //jedisClientConfiguration.usePooling();
-        return new JedisConnectionFactory(redisStandaloneConfiguration);
-    }
-
     @Bean()
-    public RedisTemplate<String, Object> redisTemplate() {
-        RedisTemplate<String, Object> template = new RedisTemplate<>();
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+        //Todo acesso do RedisTemplate ao Redis (comandos, pipelines, scripts e publicações) passa por este método,
+        //que é onde as idas e voltas de cada requisição são contadas
+        RedisTemplate<String, Object> template = new RedisTemplate<>() {
+            @Override
+            public <T> T execute(RedisCallback<T> action, boolean exposeConnection, boolean pipeline) {
+                IdasEVoltasRedis.registrar();
+                return super.execute(action, exposeConnection, pipeline);
+            }
+        };
         template.setKeySerializer(new StringRedisSerializer());
         template.setHashKeySerializer(new StringRedisSerializer());
         template.setHashValueSerializer(new StringRedisSerializer());
         template.setValueSerializer(new StringRedisSerializer());
-        template.setConnectionFactory(jedisConnectionFactory());
+        template.setConnectionFactory(redisConnectionFactory);
         return template;
     }
 
+    //Assina o canal de invalidação do near-cache: cada instância remove do seu cache local as transações alteradas
+    //pelas demais
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory, TransacaoNearCache transacaoNearCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(transacaoNearCache, new ChannelTopic(TransacaoNearCache.CANAL_INVALIDACAO));
+        return container;
+    }
+
 }
@@ -0,0 +1,49 @@
+package com.api.pagamento.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.util.concurrent.Executors;
+
+//Modo de execução com threads virtuais (transacao.threads.virtuais = true)
+//
+//Cada requisição do Tomcat e cada resposta assíncrona (StreamingResponseBody) recebe uma thread virtual nova, sem
+//pool. Uma chamada bloqueante ao Redis (Jedis) ou ao banco (JDBC) dentro do TransacaoServiceImp desmonta a thread
+//virtual e libera a thread de plataforma para outra requisição, então a vazão deixa de ser limitada pela quantidade
+//de threads (server.tomcat.threads.max). O limite de concorrência passa a ser o dos pools de conexões
+//(spring.redis.jedis.pool.max-active, spring.datasource.hikari.maximum-pool-size): as requisições excedentes esperam
+//uma conexão por até max-wait / connection-timeout.
+//
+//Uma thread virtual que bloqueia dentro de um synchronized fica presa à thread de plataforma (pinning) e perde esse
+//ganho. Por isso o código da aplicação usa ReentrantLock em volta de I/O (ex.: TransacaoWriteBehindRepository.proximoId)
+//e o driver do PostgreSQL é o 42.7.x (ver pom.xml). Jedis (commons-pool2), Lettuce e HikariCP esperam com locks de
+//java.util.concurrent. As fixações que ainda acontecerem são contadas por FixacaoThreadsVirtuais.
+//
+//Sem a propriedade, o Tomcat e o Spring usam os pools de threads de plataforma padrão.
+
+@Configuration
+@ConditionalOnProperty(prefix = "transacao.threads", name = "virtuais", havingValue = "true")
+public class ThreadsConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> tomcatThreadsVirtuais(FabricaThreads fabricaThreads) {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newThreadPerTaskExecutor(fabricaThreads.criar("http-virtual-")));
+    }
+
+    //Substitui o applicationTaskExecutor do Spring Boot (um pool de threads de plataforma), usado pelo WebConfig nas
+    //respostas assíncronas
+    @Bean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor(FabricaThreads fabricaThreads) {
+
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor();
+        executor.setThreadFactory(fabricaThreads.criar("tarefa-virtual-"));
+        return executor;
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.api.pagamento.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+//@ConfigurationProperties
+//Associa as propriedades do application.yaml que começam com o prefixo "transacao" aos campos desta classe.
+
+@Data
+@ConfigurationProperties(prefix = "transacao")
+public class TransacaoProperties {
+
+    private Cache cache = new Cache();
+
+    private Aquecimento aquecimento = new Aquecimento();
+
+    private WriteBehind writeBehind = new WriteBehind();
+
+    private Lote lote = new Lote();
+
+    private Persistencia persistencia = new Persistencia();
+
+    private Exportacao exportacao = new Exportacao();
+
+    private Threads threads = new Threads();
+
+    @Data
+    public static class Cache {
+
+        //Quando a transação não está no Redis, ela é procurada no banco de dados e gravada novamente no cache
+        private boolean readThrough = true;
+
+        //Formato usado para gravar as transações no Redis: "binario" (compacto, um único campo) ou "hash" (um campo
+        //de texto por atributo). Os dois formatos são lidos independentemente do valor configurado.
+        private String codec = "binario";
+
+        //Grava também o JSON da resposta no hash (ver JsonRespostaTransacao). O GET por id passa a ler apenas esse
+        //campo do Redis, antes do near-cache, e volta ao caminho normal quando o campo não existe (ex.: transações
+        //gravadas antes de habilitar a opção).
+        private boolean jsonPronto = false;
+
+        private NearCache nearCache = new NearCache();
+
+    }
+
+    @Data
+    public static class NearCache {
+
+        //Cache local (em memória, por instância da aplicação) consultado antes do Redis
+        private boolean enabled = false;
+
+        private long tamanhoMaximo = 10_000;
+
+        //Tempo máximo que uma transação permanece no cache local. Limita a janela em que uma instância pode servir
+        //um valor desatualizado caso a mensagem de invalidação se perca.
+        private Duration ttl = Duration.ofSeconds(5);
+
+    }
+
+    @Data
+    public static class Aquecimento {
+
+        //Na inicialização, grava no Redis as transações do banco antes de a aplicação passar a receber requisições
+        private boolean enabled = false;
+
+        //Apenas as transações dos últimos N dias são gravadas. 0 = todas.
+        private int dias = 30;
+
+        //Quantidade de transações lidas por consulta e gravadas por pipeline
+        private int tamanhoLote = 500;
+
+        //Threads que gravam os lotes no Redis enquanto o próximo lote é lido do banco
+        private int threads = 4;
+
+        //Tempo máximo de espera pelo aquecimento. Ao final do prazo, a aplicação fica pronta mesmo com o cache incompleto.
+        private Duration prazo = Duration.ofMinutes(2);
+
+    }
+
+    @Data
+    public static class WriteBehind {
+
+        //O pagamento é registrado no Redis e persistido no banco de forma assíncrona, em lotes. Deve ter o mesmo valor
+        //em todas as instâncias.
+        private boolean enabled = false;
+
+        //Entradas do stream gravadas no banco por transação JDBC
+        private int tamanhoLote = 500;
+
+        //Tempo máximo que o flusher fica bloqueado esperando novas entradas
+        private Duration espera = Duration.ofSeconds(1);
+
+        //Entradas entregues e não confirmadas há mais do que esse tempo são reprocessadas por qualquer instância
+        private Duration ociosidade = Duration.ofSeconds(30);
+
+        //Ids reservados por INCRBY a cada ida ao Redis
+        private int blocoIds = 100;
+
+        //Nome desta instância no grupo de consumo. Deve ser estável entre restarts para que a instância retome as
+        //entradas que ficaram pendentes. Vazio = nome do host.
+        private String consumidor;
+
+    }
+
+    @Data
+    public static class Lote {
+
+        //Pagamentos gravados por transação do banco e por pipeline do Redis
+        private int tamanhoChunk = 500;
+
+        //Pagamentos aceitos em uma única requisição. Os excedentes são rejeitados.
+        private int tamanhoMaximo = 100_000;
+
+    }
+
+    @Data
+    public static class Persistencia {
+
+        //Layout das tabelas: "normalizado" (transacao, descricao e forma_pagamento) ou "plano" (uma linha por
+        //transação em transacao_plana). Ver TransacaoPersistencia.
+        private String modelo = "normalizado";
+
+        public boolean isPlano() {
+            return "plano".equals(modelo);
+        }
+
+    }
+
+    @Data
+    public static class Exportacao {
+
+        //Linhas trazidas do banco por ida ao cursor. A memória usada pela exportação é proporcional a esse valor, e
+        //não à quantidade de transações exportadas.
+        private int tamanhoFetch = 1000;
+
+        //Tempo máximo de uma requisição assíncrona (a exportação é escrita fora da thread da requisição)
+        private Duration timeout = Duration.ofMinutes(30);
+
+    }
+
+    @Data
+    public static class Threads {
+
+        //Requisições do Tomcat, respostas assíncronas, aquecimento do cache e flusher do write-behind executados em
+        //threads virtuais, em vez de threads de plataforma (ver ThreadsConfig)
+        private boolean virtuais = false;
+
+        //Tempo a partir do qual uma thread virtual presa à thread de plataforma (pinning) é contada (ver
+        //FixacaoThreadsVirtuais)
+        private Duration limiteFixacao = Duration.ofMillis(20);
+
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.api.pagamento.config;
+
+import com.api.pagamento.domain.enumeration.FormatoEnum;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+
+//application/x-protobuf para as classes com mensagem em proto/transacao.proto (ver FormatosTransacao).
+//O ProtobufHttpMessageConverter do Spring exige classes geradas pelo protoc; aqui as próprias classes da API são
+//serializadas pelo Jackson a partir do esquema, como nos demais formatos.
+//CBOR e Smile não precisam de um conversor próprio: o Spring MVC registra os seus quando as bibliotecas estão no
+//classpath.
+
+public class TransacaoProtobufHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    private final FormatosTransacao formatosTransacao;
+
+    public TransacaoProtobufHttpMessageConverter(FormatosTransacao formatosTransacao) {
+        super(MediaType.parseMediaType(FormatoEnum.PROTOBUF.getContentType()));
+        this.formatosTransacao = formatosTransacao;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return formatosTransacao.suportaProtobuf(clazz);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return formatosTransacao.reader(FormatoEnum.PROTOBUF, clazz).readValue(inputMessage.getBody());
+    }
+
+    //A resposta não é fechada pelo Jackson, como nos conversores do Spring
+    @Override
+    protected void writeInternal(Object objeto, HttpOutputMessage outputMessage) throws IOException {
+        formatosTransacao.writer(FormatoEnum.PROTOBUF, objeto.getClass()).writeValue(StreamUtils.nonClosing(outputMessage.getBody()), objeto);
+    }
+
+}
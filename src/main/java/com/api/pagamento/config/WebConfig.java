@@ -0,0 +1,50 @@
+package com.api.pagamento.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+//Com @EnableWebMvc a autoconfiguração do Spring MVC não é aplicada, então spring.mvc.async.request-timeout é ignorado.
+//As respostas assíncronas (StreamingResponseBody da exportação) usam o timeout de transacao.exportacao.timeout e o
+//applicationTaskExecutor: o pool de threads da aplicação (spring.task.execution.pool.*) ou, com
+//transacao.threads.virtuais, uma thread virtual por resposta (ver ThreadsConfig).
+//O conversor de application/x-protobuf é acrescentado aos conversores padrão (ver TransacaoProtobufHttpMessageConverter).
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final TransacaoProperties transacaoProperties;
+
+    private final ObjectProvider<AsyncTaskExecutor> applicationTaskExecutor;
+
+    private final FormatosTransacao formatosTransacao;
+
+    public WebConfig(TransacaoProperties transacaoProperties,
+                     @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) ObjectProvider<AsyncTaskExecutor> applicationTaskExecutor,
+                     FormatosTransacao formatosTransacao) {
+        this.transacaoProperties = transacaoProperties;
+        this.applicationTaskExecutor = applicationTaskExecutor;
+        this.formatosTransacao = formatosTransacao;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+
+        configurer.setDefaultTimeout(transacaoProperties.getExportacao().getTimeout().toMillis());
+        applicationTaskExecutor.ifAvailable(configurer::setTaskExecutor);
+
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new TransacaoProtobufHttpMessageConverter(formatosTransacao));
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.api.pagamento.controller;
+
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.FormatoExportacaoEnum;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+//Escreve uma transação por linha no corpo da exportação. As linhas ficam no buffer do escritor e só vão para a
+//resposta quando ele enche, para que cada transação não vire uma escrita (ou um bloco gzip) separada.
+//Os erros de escrita (ex.: o cliente fechou a conexão) são relançados como UncheckedIOException para interromper a
+//leitura do banco.
+
+abstract class EscritorExportacao {
+
+    static final String CABECALHO_CSV = "id,cartao,valor,dataHora,estabelecimento,nsu,codigoAutorizacao,status,tipo,parcelas";
+
+    static EscritorExportacao para(FormatoExportacaoEnum formato, OutputStream saida, ObjectMapper objectMapper) throws IOException {
+        return formato == FormatoExportacaoEnum.CSV ? new Csv(saida) : new Ndjson(saida, objectMapper);
+    }
+
+    abstract void escrever(TransacaoDTO transacaoDTO) throws IOException;
+
+    //Envia o que restou no buffer. A saída não é fechada: ela pertence à resposta (ou ao GZIPOutputStream que a envolve).
+    abstract void terminar() throws IOException;
+
+    void escreverOuFalhar(TransacaoDTO transacaoDTO) {
+        try {
+            escrever(transacaoDTO);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //Cada transação é serializada pelo ObjectMapper da aplicação, com o mesmo JSON dos demais endpoints, sem o flush
+    //que o Jackson faz por padrão ao final de cada writeValue
+    private static class Ndjson extends EscritorExportacao {
+
+        private final JsonGenerator generator;
+
+        private final ObjectWriter writer;
+
+        Ndjson(OutputStream saida, ObjectMapper objectMapper) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(saida);
+            this.generator.setRootValueSeparator(null);
+            this.writer = objectMapper.writerFor(TransacaoDTO.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        }
+
+        @Override
+        void escrever(TransacaoDTO transacaoDTO) throws IOException {
+            writer.writeValue(generator, transacaoDTO);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        void terminar() throws IOException {
+            generator.flush();
+        }
+
+    }
+
+    private static class Csv extends EscritorExportacao {
+
+        private final Writer writer;
+
+        Csv(OutputStream saida) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(saida, StandardCharsets.UTF_8), 8192);
+            this.writer.write(CABECALHO_CSV);
+            this.writer.write('\n');
+        }
+
+        @Override
+        void escrever(TransacaoDTO transacaoDTO) throws IOException {
+
+            campo(transacaoDTO.getId(), ',');
+            campo(transacaoDTO.getCartao(), ',');
+            campo(transacaoDTO.getDescricao().getValor(), ',');
+            campo(transacaoDTO.getDescricao().getDataHora(), ',');
+            campo(transacaoDTO.getDescricao().getEstabelecimento(), ',');
+            campo(transacaoDTO.getDescricao().getNsu(), ',');
+            campo(transacaoDTO.getDescricao().getCodigoAutorizacao(), ',');
+            campo(transacaoDTO.getDescricao().getStatus(), ',');
+            campo(transacaoDTO.getFormaPagamento().getTipo(), ',');
+            campo(transacaoDTO.getFormaPagamento().getParcelas(), '\n');
+
+        }
+
+        //RFC 4180: campos com vírgula, aspas ou quebra de linha ficam entre aspas, com as aspas internas duplicadas.
+        //Campos nulos ficam vazios.
+        private void campo(Object valor, char separador) throws IOException {
+
+            if (valor != null) {
+                String texto = valor.toString();
+                if (texto.indexOf(',') >= 0 || texto.indexOf('"') >= 0 || texto.indexOf('\n') >= 0 || texto.indexOf('\r') >= 0) {
+                    writer.write('"');
+                    writer.write(texto.replace("\"", "\"\""));
+                    writer.write('"');
+                } else {
+                    writer.write(texto);
+                }
+            }
+            writer.write(separador);
+
+        }
+
+        @Override
+        void terminar() throws IOException {
+            writer.flush();
+        }
+
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.api.pagamento.controller;
+
+import com.api.pagamento.config.FormatosTransacao;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.FormatoEnum;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+//Escreve a página da listagem (GET /transacao/v1) uma transação por vez, no formato negociado. Como o corpo é um
+//StreamingResponseBody, ele não passa pelos conversores do Spring MVC.
+//Os erros de escrita são relançados como UncheckedIOException para interromper a leitura do Redis.
+
+abstract class EscritorListagem {
+
+    static EscritorListagem para(FormatoEnum formato, OutputStream saida, FormatosTransacao formatosTransacao) throws IOException {
+        return formato == FormatoEnum.PROTOBUF
+                ? new Protobuf(saida, formatosTransacao.writer(FormatoEnum.PROTOBUF, TransacaoDTO.class))
+                : new Jackson(saida, formatosTransacao.mapeador(formato));
+    }
+
+    abstract void iniciar() throws IOException;
+
+    abstract void escrever(TransacaoDTO transacaoDTO) throws IOException;
+
+    //Fecha a lista e envia o que restou no buffer, sem fechar a saída
+    abstract void terminar() throws IOException;
+
+    void escreverOuFalhar(TransacaoDTO transacaoDTO) {
+        try {
+            escrever(transacaoDTO);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //JSON, CBOR e Smile: um array, escrito pelo generator do formato. Sem o flush que o Jackson faz por padrão ao
+    //final de cada writeValue: o buffer do generator vai para a resposta quando enche.
+    private static class Jackson extends EscritorListagem {
+
+        private final JsonGenerator generator;
+
+        private final ObjectWriter writer;
+
+        Jackson(OutputStream saida, ObjectMapper objectMapper) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(saida);
+            this.writer = objectMapper.writerFor(TransacaoDTO.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        }
+
+        @Override
+        void iniciar() throws IOException {
+            generator.writeStartArray();
+        }
+
+        @Override
+        void escrever(TransacaoDTO transacaoDTO) throws IOException {
+            writer.writeValue(generator, transacaoDTO);
+        }
+
+        @Override
+        void terminar() throws IOException {
+            generator.writeEndArray();
+            generator.flush();
+        }
+
+    }
+
+    //Protobuf: a mensagem PaginaTransacoes. O campo repeated transacoes (número 1) é codificado como uma sequência de
+    //campos 1 independentes (tag 0x0A, tamanho em varint e a mensagem Transacao), então cada transação pode ser
+    //escrita assim que é lida, sem conhecer o tamanho da página.
+    private static class Protobuf extends EscritorListagem {
+
+        private static final int TAG_TRANSACOES = (1 << 3) | 2;
+
+        private final OutputStream saida;
+
+        private final ObjectWriter writer;
+
+        Protobuf(OutputStream saida, ObjectWriter writer) {
+            this.saida = new BufferedOutputStream(saida, 8192);
+            this.writer = writer;
+        }
+
+        @Override
+        void iniciar() {
+        }
+
+        @Override
+        void escrever(TransacaoDTO transacaoDTO) throws IOException {
+
+            byte[] transacao = writer.writeValueAsBytes(transacaoDTO);
+
+            saida.write(TAG_TRANSACOES);
+            int tamanho = transacao.length;
+            while ((tamanho & ~0x7F) != 0) {
+                saida.write((tamanho & 0x7F) | 0x80);
+                tamanho >>>= 7;
+            }
+            saida.write(tamanho);
+            saida.write(transacao);
+
+        }
+
+        @Override
+        void terminar() throws IOException {
+            saida.flush();
+        }
+
+    }
+
+}
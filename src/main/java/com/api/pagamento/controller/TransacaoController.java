@@ -1,20 +1,39 @@
 package com.api.pagamento.controller;
 
+import com.api.pagamento.config.FormatosTransacao;
+import com.api.pagamento.domain.dto.CursorBusca;
+import com.api.pagamento.domain.dto.FiltroBuscaDTO;
+import com.api.pagamento.domain.dto.PaginaBuscaDTO;
 import com.api.pagamento.domain.dto.ResponseErrorDTO;
+import com.api.pagamento.domain.dto.ResultadoLoteDTO;
 import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.FormatoEnum;
+import com.api.pagamento.domain.enumeration.FormatoExportacaoEnum;
+import com.api.pagamento.domain.exception.CursorInvalidoException;
 import com.api.pagamento.domain.exception.InsercaoNaoPermitidaException;
 import com.api.pagamento.domain.exception.TransacaoInexistenteException;
 import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.repository.TransacaoCacheRepository.JsonCache;
+import com.api.pagamento.repository.TransacaoCacheRepository.PaginaChaves;
 import com.api.pagamento.service.TransacaoService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 //@RestController: @Controller + @ResponseBody
 
@@ -43,33 +62,175 @@ import java.util.List;
 
 @RequiredArgsConstructor
 public class TransacaoController {
+
+    public static final String CABECALHO_PROXIMO_CURSOR = "X-Proximo-Cursor";
+
     private final TransacaoService transacaoService;
 
+    private final ObjectMapper objectMapper;
+
+    private final FormatosTransacao formatosTransacao;
+
     //ResponseEntity vs ResponseStatus: https://www.youtube.com/watch?v=D1TiEm956WE
 
-    @ApiOperation(value = "Procura uma transação pelo id")
+    //A resposta tem um ETag forte com a versão da transação no cache (ver VersaoTransacao), que muda no estorno.
+    //Com If-None-Match, apenas a versão é consultada (no near-cache ou com um HGET) e, se ela não mudou, a resposta é
+    //um 304 sem corpo, sem ler a transação. Como a resposta não é comprimida pelo servidor (o Tomcat não comprime
+    //respostas com ETag forte), a mesma versão sempre corresponde aos mesmos bytes em cada formato.
+
+    @ApiOperation(value = "Procura uma transação pelo id", response = TransacaoDTO.class)
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "A transação foi encontrada"),
+            @ApiResponse(code = 304, message = "A transação não mudou desde a versão informada em If-None-Match"),
             @ApiResponse(code = 404, message = "A transação com o id em questão não foi encontrada"),
             @ApiResponse(code = 500, message = "Internal Server Error")
     })
-    @GetMapping(value = "/{id}", produces = "application/json")
-    public ResponseEntity<TransacaoDTO> procurarPeloId(@PathVariable Long id) throws TransacaoInexistenteException {
+    @GetMapping(value = "/{id}", produces = {FormatoEnum.JSON_VALUE, FormatoEnum.CBOR_VALUE, FormatoEnum.SMILE_VALUE, FormatoEnum.PROTOBUF_VALUE})
+    public ResponseEntity<?> procurarPeloId(@PathVariable Long id,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws TransacaoInexistenteException {
 
-       return ResponseEntity.ok().body(transacaoService.procurarPeloId(id));
+       FormatoEnum formato = negociar(accept);
+
+       if (ifNoneMatch != null) {
+           Long versao = transacaoService.procurarVersaoPeloId(id);
+           if (versao != null && naoModificado(ifNoneMatch, etag(versao, formato))) {
+               return versionada(HttpStatus.NOT_MODIFIED, etag(versao, formato)).build();
+           }
+       }
+
+       //Com transacao.cache.json-pronto, o corpo gravado no Redis é copiado para a resposta como está (byte[] é
+       //escrito pelo ByteArrayHttpMessageConverter, sem o Jackson). Só vale quando a resposta é em JSON.
+       if (formato == FormatoEnum.JSON) {
+           JsonCache json = transacaoService.procurarJsonPeloId(id);
+           if (json != null) {
+               return versionada(HttpStatus.OK, etag(json.getVersao(), formato)).contentType(MediaType.APPLICATION_JSON).body(json.getJson());
+           }
+       }
+
+       TransacaoDTO transacaoDTO = transacaoService.procurarPeloId(id);
+       return versionada(HttpStatus.OK, etag(transacaoDTO.getVersao(), formato)).body(transacaoDTO);
 
     }
 
-    @ApiOperation(value = "Procura todas as transações")
+    //A listagem é paginada por cursor: o corpo continua sendo uma lista de transações e o cursor da próxima página
+    //é retornado no cabeçalho X-Proximo-Cursor. Quando ele é 0, não há mais páginas.
+    //O corpo é escrito por um StreamingResponseBody: o SCAN das chaves é feito antes, para o cabeçalho e o 404, e cada
+    //transação é escrita na lista assim que o seu lote de HGETALLs chega. A lista da página nunca é montada.
+    //Um erro do Redis no meio da escrita interrompe a resposta, que já foi iniciada com 200, com uma lista incompleta.
+    //Em Protobuf, o corpo é a mensagem PaginaTransacoes (ver proto/transacao.proto).
+    //O ETag da página é fraco e vem do contador versao::transacoes, que muda a cada escrita no cache (ver
+    //VersaoTransacao), e da impressão digital das chaves da página: uma transação que expira (TTL) ou é removida pela
+    //eviction do Redis não passa pela aplicação nem muda o contador, mas muda as chaves do SCAN. Com If-None-Match, um
+    //304 custa um GET e o SCAN da página, sem as leituras das transações. O contador é lido antes do SCAN, então uma
+    //escrita concorrente no máximo faz a próxima requisição receber um 200 desnecessário. Por ser fraco, o ETag não
+    //impede a compressão gzip do servidor (server.compression).
+
+    @ApiOperation(value = "Procura todas as transações, uma página por vez")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Pelo menos uma transação foi encontrada"),
+            @ApiResponse(code = 304, message = "Nenhuma transação mudou desde a versão informada em If-None-Match"),
             @ApiResponse(code = 404, message = "Nenhuma transação foi encontrada"),
             @ApiResponse(code = 500, message = "Internal Server Error")
     })
-    @GetMapping(produces = "application/json")
-    public ResponseEntity<List<TransacaoDTO>> procurarTodos() throws TransacaoInexistenteException {
+    @GetMapping(produces = {FormatoEnum.JSON_VALUE, FormatoEnum.CBOR_VALUE, FormatoEnum.SMILE_VALUE, FormatoEnum.PROTOBUF_VALUE})
+    public ResponseEntity<StreamingResponseBody> procurarTodos(@RequestParam(defaultValue = "0") long cursor,
+                                                               @RequestParam(defaultValue = "100") int tamanho,
+                                                               @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws TransacaoInexistenteException {
+
+        FormatoEnum formato = negociar(accept);
 
-        return ResponseEntity.ok().body(transacaoService.procurarTodos());
+        Long versao = transacaoService.procurarVersaoDaListagem();
+
+        PaginaChaves paginaChaves = transacaoService.procurarTodos(cursor, tamanho);
+
+        String etag = versao == null ? null : "W/" + etag(versao + "-" + paginaChaves.impressaoDigital(), formato);
+        if (etag != null && naoModificado(ifNoneMatch, etag)) {
+            return versionada(HttpStatus.NOT_MODIFIED, etag).build();
+        }
+
+        StreamingResponseBody corpo = saida -> {
+
+            EscritorListagem escritor = EscritorListagem.para(formato, saida, formatosTransacao);
+            escritor.iniciar();
+            transacaoService.lerPagina(paginaChaves, escritor::escreverOuFalhar);
+            escritor.terminar();
+
+        };
+
+        return versionada(HttpStatus.OK, etag)
+                .contentType(MediaType.parseMediaType(formato.getContentType()))
+                .header(CABECALHO_PROXIMO_CURSOR, String.valueOf(paginaChaves.getProximoCursor()))
+                .body(corpo);
+
+    }
+
+    //Busca no banco com filtros opcionais (ver FiltroBuscaDTO), da transação mais recente para a mais antiga.
+    //Mesma paginação por cursor da listagem: o cursor da próxima página vem no cabeçalho X-Proximo-Cursor e é 0 na
+    //última página. O cursor depende da ordem da busca (ver CursorBusca) e só vale para os mesmos filtros de período
+    //e valor. Uma busca sem resultados retorna uma lista vazia.
+
+    @ApiOperation(value = "Busca transações por estabelecimento, status, tipo, final do cartão, período e faixa de valor")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "A busca foi realizada"),
+            @ApiResponse(code = 400, message = "Há filtros ou cursor em formato inválido"),
+            @ApiResponse(code = 500, message = "Internal Server Error")
+    })
+    @GetMapping(value = "/busca", produces = "application/json")
+    public ResponseEntity<List<TransacaoDTO>> buscar(@Valid FiltroBuscaDTO filtro,
+                                                     @RequestParam(defaultValue = "0") CursorBusca cursor,
+                                                     @RequestParam(defaultValue = "100") int tamanho) throws CursorInvalidoException {
+
+        PaginaBuscaDTO paginaBuscaDTO = transacaoService.buscar(filtro, cursor, tamanho);
+
+        return ResponseEntity.ok()
+                .header(CABECALHO_PROXIMO_CURSOR, paginaBuscaDTO.getProximoCursor().toString())
+                .body(paginaBuscaDTO.getTransacoes());
+
+    }
+
+    //Exportação com os mesmos filtros da busca, sem paginação. O corpo é escrito por um StreamingResponseBody, fora da
+    //thread da requisição, enquanto as transações são lidas do banco por um cursor: a memória usada não depende do
+    //tamanho da exportação. Com Accept-Encoding: gzip, o corpo é comprimido durante a escrita.
+
+    @ApiOperation(value = "Exporta as transações que atendem aos filtros, em NDJSON ou CSV")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "A exportação foi iniciada"),
+            @ApiResponse(code = 400, message = "Há filtros em formato inválido"),
+            @ApiResponse(code = 500, message = "Internal Server Error")
+    })
+    @GetMapping(value = "/exportacao")
+    public ResponseEntity<StreamingResponseBody> exportar(@Valid FiltroBuscaDTO filtro,
+                                                          @RequestParam(defaultValue = "NDJSON") FormatoExportacaoEnum formato,
+                                                          @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+
+        boolean gzip = aceitaGzip(acceptEncoding);
+
+        StreamingResponseBody corpo = saida -> {
+
+            OutputStream destino = gzip ? new GZIPOutputStream(saida, 8192) : saida;
+
+            EscritorExportacao escritor = EscritorExportacao.para(formato, destino, objectMapper);
+            transacaoService.exportar(filtro, escritor::escreverOuFalhar);
+            escritor.terminar();
+
+            if (gzip) {
+                ((GZIPOutputStream) destino).finish();
+            }
+
+        };
+
+        ResponseEntity.BodyBuilder resposta = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(formato.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=transacoes." + formato.getExtensao())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (gzip) {
+            resposta.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        return resposta.body(corpo);
 
     }
 
@@ -80,13 +241,33 @@ public class TransacaoController {
             @ApiResponse(code = 400, message = "Há campos obrigatórios que não foram preenchidos"),
             @ApiResponse(code = 500, message = "Internal Server Error")
     })
-    @PostMapping(value = "/pagamento", produces = "application/json", consumes = "application/json")
+    @PostMapping(value = "/pagamento",
+            produces = {FormatoEnum.JSON_VALUE, FormatoEnum.CBOR_VALUE, FormatoEnum.SMILE_VALUE, FormatoEnum.PROTOBUF_VALUE},
+            consumes = {FormatoEnum.JSON_VALUE, FormatoEnum.CBOR_VALUE, FormatoEnum.SMILE_VALUE, FormatoEnum.PROTOBUF_VALUE})
     public ResponseEntity<TransacaoDTO> pagar(@RequestBody @Valid Transacao transacao) throws InsercaoNaoPermitidaException {
 
         return ResponseEntity.ok().body(transacaoService.pagar(transacao));
 
     }
 
+    //O corpo pode ser um array JSON ou NDJSON (um pagamento por linha). Ele é lido um pagamento por vez, sem ser
+    //carregado inteiro na memória. O resultado de cada pagamento é retornado na mesma ordem do corpo; um pagamento
+    //rejeitado não impede os demais.
+
+    @ApiOperation(value = "Realiza um lote de pagamentos")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "O lote foi processado. O resultado de cada pagamento está no corpo da resposta"),
+            @ApiResponse(code = 500, message = "Internal Server Error")
+    })
+    @PostMapping(value = "/pagamentos/lote", produces = "application/json", consumes = {"application/json", "application/x-ndjson"})
+    public ResponseEntity<ResultadoLoteDTO> pagarLote(InputStream corpo) throws IOException {
+
+        try (MappingIterator<Transacao> transacoes = objectMapper.readerFor(Transacao.class).readValues(corpo)) {
+            return ResponseEntity.ok().body(transacaoService.pagarLote(transacoes));
+        }
+
+    }
+
     @ApiOperation(value = "Solicita um estorno pelo id da transação")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "O estorno foi realizado"),
@@ -94,12 +275,109 @@ public class TransacaoController {
             @ApiResponse(code = 400, message = "Há campos obrigatórios que não foram preenchidos"),
             @ApiResponse(code = 500, message = "Internal Server Error")
     })
-    @PutMapping(value = "/estorno/{id}", produces = "application/json")
+    @PutMapping(value = "/estorno/{id}", produces = {FormatoEnum.JSON_VALUE, FormatoEnum.CBOR_VALUE, FormatoEnum.SMILE_VALUE, FormatoEnum.PROTOBUF_VALUE})
     public ResponseEntity<TransacaoDTO> estornar(@PathVariable Long id) throws TransacaoInexistenteException {
 
         return ResponseEntity.ok().body(transacaoService.estornar(id));
     }
 
+    //Formato da resposta quando ela não passa pelos conversores do Spring MVC: o primeiro formato suportado pelo
+    //Accept, em ordem de qualidade e especificidade. Sem Accept (ou com */*), JSON.
+    private static FormatoEnum negociar(String accept) {
+
+        if (accept == null || accept.isBlank()) {
+            return FormatoEnum.JSON;
+        }
+
+        List<MediaType> aceitos = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(aceitos);
+
+        for (MediaType aceito : aceitos) {
+            for (FormatoEnum formato : FormatoEnum.values()) {
+                if (aceito.includes(MediaType.parseMediaType(formato.getContentType()))) {
+                    return formato;
+                }
+            }
+        }
+        return FormatoEnum.JSON;
+    }
+
+    //gzip é aceito quando aparece no Accept-Encoding com q > 0 ou, se não aparece, quando * tem q > 0: "gzip;q=0"
+    //recusa o gzip. O parser do Tomcat (AcceptEncoding) não serve aqui, porque descarta as codificações com q=0.
+    private static boolean aceitaGzip(String acceptEncoding) {
+
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return false;
+        }
+
+        Double qualidadeGzip = null;
+        Double qualidadeQualquer = null;
+        for (String item : acceptEncoding.split(",")) {
+
+            String[] partes = item.split(";");
+            String codificacao = partes[0].trim();
+            double qualidade = 1;
+            for (int i = 1; i < partes.length; i++) {
+                String parametro = partes[i].trim();
+                if (parametro.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        qualidade = Double.parseDouble(parametro.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        qualidade = 0;
+                    }
+                }
+            }
+
+            if (codificacao.equalsIgnoreCase("gzip") || codificacao.equalsIgnoreCase("x-gzip")) {
+                qualidadeGzip = qualidade;
+            } else if (codificacao.equals("*")) {
+                qualidadeQualquer = qualidade;
+            }
+        }
+
+        if (qualidadeGzip != null) {
+            return qualidadeGzip > 0;
+        }
+        return qualidadeQualquer != null && qualidadeQualquer > 0;
+    }
+
+    //Cada formato é uma representação diferente do mesmo recurso, por isso ele faz parte do ETag. null sem versão
+    //(transação gravada no cache antes da existência do campo versao).
+    private static String etag(Long versao, FormatoEnum formato) {
+        return versao == null ? null : etag(versao.toString(), formato);
+    }
+
+    private static String etag(String versao, FormatoEnum formato) {
+        return "\"" + versao + "-" + formato.name().toLowerCase() + "\"";
+    }
+
+    //If-None-Match usa a comparação fraca: W/"x" e "x" são equivalentes. * corresponde a qualquer versão.
+    private static boolean naoModificado(String ifNoneMatch, String etag) {
+
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        String opaco = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidato : ifNoneMatch.split(",")) {
+            candidato = candidato.trim();
+            if (candidato.equals("*") || (candidato.startsWith("W/") ? candidato.substring(2) : candidato).equals(opaco)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //O ETag depende do Accept, então o Vary informa isso aos caches intermediários
+    private static ResponseEntity.BodyBuilder versionada(HttpStatus status, String etag) {
+
+        ResponseEntity.BodyBuilder resposta = ResponseEntity.status(status).varyBy(HttpHeaders.ACCEPT);
+        if (etag != null) {
+            resposta.eTag(etag);
+        }
+        return resposta;
+    }
+
     @ExceptionHandler(InsercaoNaoPermitidaException.class)
     public ResponseEntity<ResponseErrorDTO> InsercaoNaoPermitidaException(InsercaoNaoPermitidaException ex) {
 
@@ -107,6 +385,13 @@ public class TransacaoController {
 
     }
 
+    @ExceptionHandler(CursorInvalidoException.class)
+    public ResponseEntity<ResponseErrorDTO> CursorInvalidoException(CursorInvalidoException ex) {
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getResponseError());
+
+    }
+
     @ExceptionHandler(TransacaoInexistenteException.class)
     public ResponseEntity<ResponseErrorDTO> TranscaoInexistenteException(TransacaoInexistenteException ex) {
 
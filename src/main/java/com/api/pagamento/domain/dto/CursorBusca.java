@@ -0,0 +1,58 @@
+package com.api.pagamento.domain.dto;
+
+import com.api.pagamento.domain.enumeration.OrdemBuscaEnum;
+import lombok.Value;
+
+//Cursor de GET /transacao/v1/busca (parâmetro cursor e cabeçalho X-Proximo-Cursor): a posição da última transação da
+//página na ordem da busca (ver OrdemBuscaEnum).
+//  "123"              ordem por id: o id
+//  "d1620000000_123"  ordem por data e hora: o instante, em segundos desde 1970, e o id
+//  "v25050_123"       ordem por valor: o valor em centavos e o id
+//"0" é a primeira página e, na resposta, indica que não há próxima página. O id é o da tabela cujo índice ordena a
+//busca (ver ConsultaBusca), que no layout normalizado pode não ser o da transação.
+//
+//O Spring converte o parâmetro da requisição por valueOf: um texto inválido é respondido com 400.
+
+@Value
+public class CursorBusca {
+
+    public static final CursorBusca INICIO = new CursorBusca(OrdemBuscaEnum.ID, null, 0L);
+
+    OrdemBuscaEnum ordem;
+
+    //Data e hora ou valor da última transação da página; null na ordem por id
+    Long chave;
+
+    long id;
+
+    public boolean isInicio(){
+        return id == 0;
+    }
+
+    public static CursorBusca valueOf(String texto){
+
+        if(texto == null || texto.isEmpty()){
+            throw new IllegalArgumentException("Cursor vazio");
+        }
+
+        for(OrdemBuscaEnum ordem : OrdemBuscaEnum.values()){
+            if(ordem != OrdemBuscaEnum.ID && texto.startsWith(ordem.getPrefixo())){
+                int separador = texto.indexOf('_');
+                if(separador < 0){
+                    throw new IllegalArgumentException("Cursor sem o id: " + texto);
+                }
+                return new CursorBusca(ordem, Long.parseLong(texto.substring(ordem.getPrefixo().length(), separador)),
+                        Long.parseLong(texto.substring(separador + 1)));
+            }
+        }
+
+        long id = Long.parseLong(texto);
+        return id == 0 ? INICIO : new CursorBusca(OrdemBuscaEnum.ID, null, id);
+    }
+
+    @Override
+    public String toString(){
+        return chave == null ? String.valueOf(id) : ordem.getPrefixo() + chave + "_" + id;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.api.pagamento.domain.dto;
+
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.enumeration.TipoEnum;
+import com.api.pagamento.domain.validation.DataHora;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Pattern;
+
+//@Data = @Data é uma anotação que gera o código padronizado para classes Java: getters para todos os campos,
+//setters para todos os campos não-finais e o toString apropriado, equals e implementações hashCode
+//que envolvem os campos da classe.
+
+@Data
+
+@Builder
+
+@AllArgsConstructor
+
+@NoArgsConstructor
+
+//Filtros de GET /transacao/v1/busca, recebidos como parâmetros da URL. Todos são opcionais e combinados com "e".
+//Valores e datas usam os mesmos formatos do pagamento ("500.50" e "dd/MM/yyyy HH:mm:ss"); os intervalos incluem
+//os extremos. Com um período ou uma faixa de valor, o resultado vem em ordem de data e hora ou de valor, e não de id
+//(ver OrdemBuscaEnum).
+
+public class FiltroBuscaDTO {
+
+    private String estabelecimento;
+
+    private StatusEnum status;
+
+    private TipoEnum tipo;
+
+    //Últimos 4 dígitos do cartão
+    @Pattern(regexp = "\\d{4}", message = "deve ter os 4 últimos dígitos do cartão")
+    private String finalCartao;
+
+    @DataHora
+    private String dataHoraInicio;
+
+    @DataHora
+    private String dataHoraFim;
+
+    @Pattern(regexp = "\\d{1,15}(\\.\\d{1,2})?", message = "deve ser um valor com até duas casas decimais, ex.: 500.50")
+    private String valorMinimo;
+
+    @Pattern(regexp = "\\d{1,15}(\\.\\d{1,2})?", message = "deve ser um valor com até duas casas decimais, ex.: 500.50")
+    private String valorMaximo;
+
+}
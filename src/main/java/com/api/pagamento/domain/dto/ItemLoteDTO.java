@@ -0,0 +1,32 @@
+package com.api.pagamento.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//@Data = @Data é uma anotação que gera o código padronizado para classes Java: getters para todos os campos,
+//setters para todos os campos não-finais e o toString apropriado, equals e implementações hashCode
+//que envolvem os campos da classe.
+
+@Data
+
+@AllArgsConstructor
+
+@NoArgsConstructor
+
+//Resultado de um pagamento do lote.
+//indice é a posição do pagamento no corpo da requisição (a partir de 0). Quando o pagamento foi realizado, id é o id
+//da transação criada; caso contrário, erro explica por que ele foi rejeitado.
+
+public class ItemLoteDTO {
+
+    public static final String REALIZADO = "REALIZADO";
+
+    public static final String REJEITADO = "REJEITADO";
+
+    private int indice;
+    private String resultado;
+    private Long id;
+    private String erro;
+
+}
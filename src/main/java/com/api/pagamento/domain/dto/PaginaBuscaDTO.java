@@ -0,0 +1,24 @@
+package com.api.pagamento.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+
+@AllArgsConstructor
+
+@NoArgsConstructor
+
+//Página de GET /transacao/v1/busca, lida do banco.
+//proximoCursor é a posição da última transação da página (ver CursorBusca). Quando é CursorBusca.INICIO, não há
+//próxima página.
+
+public class PaginaBuscaDTO {
+
+    private List<TransacaoDTO> transacoes;
+    private CursorBusca proximoCursor;
+
+}
@@ -0,0 +1,28 @@
+package com.api.pagamento.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+//@Data = @Data é uma anotação que gera o código padronizado para classes Java: getters para todos os campos,
+//setters para todos os campos não-finais e o toString apropriado, equals e implementações hashCode
+//que envolvem os campos da classe.
+
+@Data
+
+@AllArgsConstructor
+
+@NoArgsConstructor
+
+//Resultado de um lote de pagamentos: os totais e o resultado de cada pagamento, na ordem do corpo da requisição.
+
+public class ResultadoLoteDTO {
+
+    private int total;
+    private int realizados;
+    private int rejeitados;
+    private List<ItemLoteDTO> itens;
+
+}
@@ -2,6 +2,7 @@ package com.api.pagamento.domain.dto;
 
 import com.api.pagamento.domain.model.Descricao;
 import com.api.pagamento.domain.model.FormaPagamento;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -50,4 +51,13 @@ public class TransacaoDTO {
     private DescricaoDTO descricao;
     private FormaPagamentoDTO formaPagamento;
 
+    //Versão da transação no cache (ver VersaoTransacao). Não faz parte do corpo: o GET a retorna no cabeçalho ETag.
+    @JsonIgnore
+    private Long versao;
+
+    //Transação sem versão (ex.: lida do banco)
+    public TransacaoDTO(Long id, String cartao, DescricaoDTO descricao, FormaPagamentoDTO formaPagamento) {
+        this(id, cartao, descricao, formaPagamento, null);
+    }
+
 }
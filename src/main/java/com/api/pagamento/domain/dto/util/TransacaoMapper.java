@@ -0,0 +1,104 @@
+package com.api.pagamento.domain.dto.util;
+
+import com.api.pagamento.domain.dto.DescricaoDTO;
+import com.api.pagamento.domain.dto.FormaPagamentoDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.model.Descricao;
+import com.api.pagamento.domain.model.FormaPagamento;
+import com.api.pagamento.domain.model.Transacao;
+
+//Conversões tipadas entre as entidades e os DTOs, escritas à mão: cada campo é copiado pelos getters e builders gerados pelo Lombok, sem reflexão
+//e sem cast no chamador. Substitui o Mapper.convert nos caminhos do serviço, que criava um ModelMapper (e inspecionava
+//as classes por reflexão) a cada chamada. A comparação entre os dois está em benchmark/ (MapperBenchmark).
+//
+//Ao adicionar um campo em uma entidade ou DTO, ele deve ser copiado aqui. TransacaoMapperTest compara o resultado com
+//o do ModelMapper para detectar campos esquecidos.
+
+public final class TransacaoMapper {
+
+    private TransacaoMapper() {
+    }
+
+    public static TransacaoDTO toTransacaoDTO(Transacao transacao) {
+
+        if (transacao == null) {
+            return null;
+        }
+        return TransacaoDTO.builder()
+                .id(transacao.getId())
+                .cartao(transacao.getCartao())
+                .descricao(toDescricaoDTO(transacao.getDescricao()))
+                .formaPagamento(toFormaPagamentoDTO(transacao.getFormaPagamento()))
+                .build();
+    }
+
+    public static DescricaoDTO toDescricaoDTO(Descricao descricao) {
+
+        if (descricao == null) {
+            return null;
+        }
+        return DescricaoDTO.builder()
+                .id(descricao.getId())
+                .valor(descricao.getValor())
+                .dataHora(descricao.getDataHora())
+                .estabelecimento(descricao.getEstabelecimento())
+                .nsu(descricao.getNsu())
+                .codigoAutorizacao(descricao.getCodigoAutorizacao())
+                .status(descricao.getStatus())
+                .build();
+    }
+
+    public static FormaPagamentoDTO toFormaPagamentoDTO(FormaPagamento formaPagamento) {
+
+        if (formaPagamento == null) {
+            return null;
+        }
+        return FormaPagamentoDTO.builder()
+                .id(formaPagamento.getId())
+                .tipo(formaPagamento.getTipo())
+                .parcelas(formaPagamento.getParcelas())
+                .build();
+    }
+
+    public static Transacao toTransacao(TransacaoDTO transacaoDTO) {
+
+        if (transacaoDTO == null) {
+            return null;
+        }
+        return Transacao.builder()
+                .id(transacaoDTO.getId())
+                .cartao(transacaoDTO.getCartao())
+                .descricao(toDescricao(transacaoDTO.getDescricao()))
+                .formaPagamento(toFormaPagamento(transacaoDTO.getFormaPagamento()))
+                .build();
+    }
+
+    public static Descricao toDescricao(DescricaoDTO descricaoDTO) {
+
+        if (descricaoDTO == null) {
+            return null;
+        }
+        return Descricao.builder()
+                .id(descricaoDTO.getId())
+                .valor(descricaoDTO.getValor())
+                .dataHora(descricaoDTO.getDataHora())
+                .estabelecimento(descricaoDTO.getEstabelecimento())
+                .nsu(descricaoDTO.getNsu())
+                .codigoAutorizacao(descricaoDTO.getCodigoAutorizacao())
+                .status(descricaoDTO.getStatus())
+                .build();
+    }
+
+    public static FormaPagamento toFormaPagamento(FormaPagamentoDTO formaPagamentoDTO) {
+
+        if (formaPagamentoDTO == null) {
+            return null;
+        }
+        return FormaPagamento.builder()
+                .id(formaPagamentoDTO.getId())
+                .tipo(formaPagamentoDTO.getTipo())
+                .parcelas(formaPagamentoDTO.getParcelas())
+                .build();
+    }
+
+}
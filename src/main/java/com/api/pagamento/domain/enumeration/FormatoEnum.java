@@ -0,0 +1,29 @@
+package com.api.pagamento.domain.enumeration;
+
+import lombok.Getter;
+
+//Formatos aceitos e produzidos pelo TransacaoController, escolhidos pelos cabeçalhos Accept e Content-Type.
+//Os binários (CBOR, Smile e Protobuf) são menores e mais baratos de gerar e ler do que o JSON, para os clientes
+//internos que consultam a API com frequência. O esquema Protobuf está em proto/transacao.proto.
+
+@Getter
+public enum FormatoEnum {
+
+    JSON(FormatoEnum.JSON_VALUE),
+    CBOR(FormatoEnum.CBOR_VALUE),
+    SMILE(FormatoEnum.SMILE_VALUE),
+    PROTOBUF(FormatoEnum.PROTOBUF_VALUE);
+
+    //Constantes para produces/consumes dos mapeamentos
+    public static final String JSON_VALUE = "application/json";
+    public static final String CBOR_VALUE = "application/cbor";
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final String PROTOBUF_VALUE = "application/x-protobuf";
+
+    private final String contentType;
+
+    FormatoEnum(String contentType){
+        this.contentType = contentType;
+    }
+
+}
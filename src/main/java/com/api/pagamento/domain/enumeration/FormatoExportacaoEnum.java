@@ -0,0 +1,23 @@
+package com.api.pagamento.domain.enumeration;
+
+import lombok.Getter;
+
+//Formatos da exportação de transações (GET /transacao/v1/exportacao). Os dois têm uma transação por linha, então
+//podem ser escritos e lidos sem manter o arquivo inteiro na memória.
+
+@Getter
+public enum FormatoExportacaoEnum {
+
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv;charset=UTF-8", "csv");
+
+    private final String contentType;
+
+    private final String extensao;
+
+    FormatoExportacaoEnum(String contentType, String extensao){
+        this.contentType = contentType;
+        this.extensao = extensao;
+    }
+
+}
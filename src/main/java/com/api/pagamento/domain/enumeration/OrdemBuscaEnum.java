@@ -0,0 +1,36 @@
+package com.api.pagamento.domain.enumeration;
+
+import com.api.pagamento.domain.dto.FiltroBuscaDTO;
+import lombok.Getter;
+
+//Ordem de GET /transacao/v1/busca, escolhida pelos filtros. A paginação por keyset só desce direto pelo índice a partir
+//do cursor quando a ordem da busca é a do índice que seleciona as linhas: com um período, a busca segue a ordem do
+//índice (data_hora, id); com uma faixa de valor, a de (valor_centavos, id); nos demais casos, a do id.
+//O prefixo identifica a ordem no texto do cursor (ver CursorBusca).
+
+@Getter
+public enum OrdemBuscaEnum {
+
+    ID(""),
+    DATA_HORA("d"),
+    VALOR("v");
+
+    private final String prefixo;
+
+    OrdemBuscaEnum(String prefixo){
+        this.prefixo = prefixo;
+    }
+
+    //O período tem precedência sobre a faixa de valor: com os dois, o valor é conferido linha a linha
+    public static OrdemBuscaEnum de(FiltroBuscaDTO filtro){
+
+        if(filtro.getDataHoraInicio() != null || filtro.getDataHoraFim() != null){
+            return DATA_HORA;
+        }
+        if(filtro.getValorMinimo() != null || filtro.getValorMaximo() != null){
+            return VALOR;
+        }
+        return ID;
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.api.pagamento.domain.exception;
+
+import com.api.pagamento.domain.dto.ResponseErrorDTO;
+
+public class CursorInvalidoException extends Exception{
+
+    public CursorInvalidoException( ){}
+
+    public ResponseErrorDTO getResponseError(){
+        ResponseErrorDTO rmDTO = new ResponseErrorDTO();
+        rmDTO.setStatus(400);
+        rmDTO.setError("Bad Request");
+        rmDTO.setMessage("O cursor não é de uma busca com os mesmos filtros de período e valor");
+        return rmDTO;
+    }
+
+}
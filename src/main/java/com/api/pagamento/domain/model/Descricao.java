@@ -1,6 +1,9 @@
 package com.api.pagamento.domain.model;
 
 import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.model.converter.DataHoraConverter;
+import com.api.pagamento.domain.model.converter.ValorConverter;
+import com.api.pagamento.domain.validation.DataHora;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.sun.istack.NotNull;
 import lombok.AllArgsConstructor;
@@ -11,6 +14,7 @@ import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Pattern;
 import java.io.Serializable;
 
 //@Data = @Data é uma anotação que gera o código padronizado para classes Java: getters para todos os campos,
@@ -55,7 +59,14 @@ import java.io.Serializable;
 
 //Essa anotação do JPA é usada para adicionar o nome da tabela no banco de dados
 
-@Table(name = "descricao")
+//Índices dos filtros de GET /transacao/v1/busca (ver db/indices_busca.sql)
+
+@Table(name = "descricao", indexes = {
+        @Index(name = "idx_descricao_estabelecimento_id", columnList = "estabelecimento, id"),
+        @Index(name = "idx_descricao_status_id", columnList = "status, id"),
+        @Index(name = "idx_descricao_data_hora_id", columnList = "data_hora, id"),
+        @Index(name = "idx_descricao_valor_centavos_id", columnList = "valor_centavos, id")
+})
 public class Descricao implements Serializable {
 
     //@Id = Id da tabela
@@ -87,16 +98,29 @@ public class Descricao implements Serializable {
 
     //@SequenceGenerator: https://stackoverflow.com/questions/54866321/hibernate-sequence-for-each-enitity-or-table
 
+    //allocationSize = 50: ver Transacao
+
     @Id
     @GeneratedValue(strategy= GenerationType.SEQUENCE, generator = "seq_descricao")
-    @SequenceGenerator(name = "seq_descricao", sequenceName = "seq_descricao", allocationSize=1)
+    @SequenceGenerator(name = "seq_descricao", sequenceName = "seq_descricao", allocationSize = 50)
     private Long id;
 
     //@NotNull: https://www.baeldung.com/java-bean-validation-not-null-empty-blank
+
+    //valor, dataHora (e FormaPagamento.parcelas) continuam como texto na API e no cache, mas são gravados em colunas
+    //tipadas pelos AttributeConverter: centavos (bigint), timestamptz e smallint. O @Pattern/@DataHora recusa na
+    //entrada o que o converter não conseguiria converter; o que ele aceita é normalizado no pagamento (ex.: "500.5"
+    //-> "500.50", ver ValorConverter.normalizar).
     @NotBlank
+    @Pattern(regexp = "\\d{1,15}(\\.\\d{1,2})?", message = "deve ser um valor com até duas casas decimais, ex.: 500.50")
+    @Convert(converter = ValorConverter.class)
+    @Column(name = "valor_centavos")
     private String valor;
 
     @NotBlank
+    @DataHora
+    @Convert(converter = DataHoraConverter.class)
+    @Column(name = "data_hora", columnDefinition = "timestamp with time zone")
     private String dataHora;
 
     @NotBlank
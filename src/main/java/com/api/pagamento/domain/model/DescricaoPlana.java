@@ -0,0 +1,47 @@
+package com.api.pagamento.domain.model;
+
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import com.api.pagamento.domain.model.converter.DataHoraConverter;
+import com.api.pagamento.domain.model.converter.ValorConverter;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Embeddable;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import java.io.Serializable;
+
+//@Embeddable = classe sem tabela e sem id próprios; os campos são gravados como colunas da entidade que a contém.
+//Mesmos campos e colunas da entidade Descricao, exceto o id (ver TransacaoPlana).
+
+@Data
+
+@NoArgsConstructor
+
+@AllArgsConstructor
+
+@Embeddable
+public class DescricaoPlana implements Serializable {
+
+    @Convert(converter = ValorConverter.class)
+    @Column(name = "valor_centavos")
+    private String valor;
+
+    @Convert(converter = DataHoraConverter.class)
+    @Column(name = "data_hora", columnDefinition = "timestamp with time zone")
+    private String dataHora;
+
+    private String estabelecimento;
+
+    private String nsu;
+
+    private String codigoAutorizacao;
+
+    @Enumerated(EnumType.ORDINAL)
+    private StatusEnum status;
+
+}
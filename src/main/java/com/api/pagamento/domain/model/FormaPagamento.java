@@ -1,6 +1,7 @@
 package com.api.pagamento.domain.model;
 
 import com.api.pagamento.domain.enumeration.TipoEnum;
+import com.api.pagamento.domain.model.converter.ParcelasConverter;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -11,6 +12,7 @@ import org.hibernate.annotations.DynamicUpdate;
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
 
 import java.io.Serializable;
 
@@ -56,7 +58,9 @@ import java.io.Serializable;
 
 //Essa anotação do JPA é usada para adicionar o nome da tabela no banco de dados
 
-@Table(name = "forma_pagamento")
+//Índice do filtro por tipo de GET /transacao/v1/busca (ver db/indices_busca.sql)
+
+@Table(name = "forma_pagamento", indexes = @Index(name = "idx_forma_pagamento_tipo_id", columnList = "tipo, id"))
 public class FormaPagamento implements Serializable {
 
     //@Id = Id da tabela
@@ -88,9 +92,11 @@ public class FormaPagamento implements Serializable {
 
     //@SequenceGenerator: https://stackoverflow.com/questions/54866321/hibernate-sequence-for-each-enitity-or-table
 
+    //allocationSize = 50: ver Transacao
+
     @Id
-    @GeneratedValue(strategy= GenerationType.AUTO, generator = "seq_forma_pagamento")
-    @SequenceGenerator(name = "seq_forma_pagamento", sequenceName = "seq_forma_pagamento", allocationSize=1)
+    @GeneratedValue(strategy= GenerationType.SEQUENCE, generator = "seq_forma_pagamento")
+    @SequenceGenerator(name = "seq_forma_pagamento", sequenceName = "seq_forma_pagamento", allocationSize = 50)
     private Long id;
 
     //@NotNull: https://www.baeldung.com/java-bean-validation-not-null-empty-blank
@@ -100,6 +106,8 @@ public class FormaPagamento implements Serializable {
     private TipoEnum tipo;
 
     @NotBlank
+    @Pattern(regexp = "\\d{1,4}", message = "deve ser um número inteiro de parcelas")
+    @Convert(converter = ParcelasConverter.class)
     private String parcelas;
 
 }
\ No newline at end of file
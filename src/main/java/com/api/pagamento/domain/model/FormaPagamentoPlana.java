@@ -0,0 +1,33 @@
+package com.api.pagamento.domain.model;
+
+import com.api.pagamento.domain.enumeration.TipoEnum;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import com.api.pagamento.domain.model.converter.ParcelasConverter;
+
+import javax.persistence.Convert;
+import javax.persistence.Embeddable;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import java.io.Serializable;
+
+//Mesmos campos e colunas da entidade FormaPagamento, exceto o id (ver TransacaoPlana)
+
+@Data
+
+@NoArgsConstructor
+
+@AllArgsConstructor
+
+@Embeddable
+public class FormaPagamentoPlana implements Serializable {
+
+    @Enumerated(EnumType.ORDINAL)
+    private TipoEnum tipo;
+
+    @Convert(converter = ParcelasConverter.class)
+    private String parcelas;
+
+}
@@ -86,9 +86,14 @@ public class Transacao implements Serializable {
 
     //@SequenceGenerator: https://stackoverflow.com/questions/54866321/hibernate-sequence-for-each-enitity-or-table
 
+    //allocationSize = 50: a sequence é criada com INCREMENT BY 50 e cada nextval reserva um bloco de 50 ids, que o
+    //otimizador pooled do Hibernate distribui em memória. Com allocationSize=1 cada pagamento fazia três nextval
+    //(transacao, descricao e forma_pagamento) antes dos INSERTs. Os ids passam a ter lacunas após um restart.
+    //O allocationSize precisa ser igual ao INCREMENT BY da sequence no banco (ver db/sequencias_pooled.sql).
+
     @Id
     @GeneratedValue(strategy= GenerationType.SEQUENCE, generator = "seq_transacao")
-    @SequenceGenerator(name = "seq_transacao", sequenceName = "seq_transacao", allocationSize=1)
+    @SequenceGenerator(name = "seq_transacao", sequenceName = "seq_transacao", allocationSize = 50)
 
     private Long id;
 
@@ -0,0 +1,52 @@
+package com.api.pagamento.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+//Layout plano da transação (transacao.persistencia.modelo: plano): os dados de Descricao e FormaPagamento ficam
+//embutidos na mesma linha, em vez de em tabelas ligadas por @OneToOne. Ver PlanaTransacaoPersistencia.
+
+@Data
+
+@Entity
+
+@DynamicUpdate
+
+@NoArgsConstructor
+
+@AllArgsConstructor
+
+//Índices dos filtros de GET /transacao/v1/busca. Nos filtros por igualdade o id vem em seguida, na ordem da
+//paginação: o banco vai direto ao cursor dentro do valor filtrado e lê apenas as linhas da página.
+
+@Table(name = "transacao_plana", indexes = {
+        @Index(name = "idx_transacao_plana_estabelecimento", columnList = "estabelecimento, id"),
+        @Index(name = "idx_transacao_plana_status", columnList = "status, id"),
+        @Index(name = "idx_transacao_plana_tipo", columnList = "tipo, id"),
+        @Index(name = "idx_transacao_plana_data_hora_id", columnList = "data_hora, id"),
+        @Index(name = "idx_transacao_plana_valor_centavos_id", columnList = "valor_centavos, id")
+})
+public class TransacaoPlana implements Serializable {
+
+    //Mesma sequence da tabela transacao: os ids continuam únicos durante a migração entre os dois layouts
+    //(ver db/transacao_plana.sql). O allocationSize precisa ser igual ao de Transacao.
+    @Id
+    @GeneratedValue(strategy= GenerationType.SEQUENCE, generator = "seq_transacao_plana")
+    @SequenceGenerator(name = "seq_transacao_plana", sequenceName = "seq_transacao", allocationSize = 50)
+    private Long id;
+
+    private String cartao;
+
+    //@Embedded: os campos do @Embeddable viram colunas desta tabela
+    @Embedded
+    private DescricaoPlana descricao;
+
+    @Embedded
+    private FormaPagamentoPlana formaPagamento;
+
+}
@@ -0,0 +1,35 @@
+package com.api.pagamento.domain.model.converter;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+
+//Data e hora em texto ("01/05/2021 18:00:00") <-> timestamptz. O texto não tem fuso horário; ele é interpretado no
+//horário de Brasília, o mesmo usado pelos estabelecimentos que enviam os pagamentos.
+//O tipo do lado do banco é Timestamp (um instante) porque o Hibernate 5 não reconhece OffsetDateTime como resultado
+//de um AttributeConverter e gravaria a coluna como binário.
+
+@Converter
+public class DataHoraConverter implements AttributeConverter<String, Timestamp> {
+
+    public static final ZoneId FUSO_HORARIO = ZoneId.of("America/Sao_Paulo");
+
+    //STRICT: datas inexistentes (ex.: 31/02) são recusadas em vez de ajustadas para o último dia do mês
+    public static final DateTimeFormatter FORMATO = DateTimeFormatter.ofPattern("dd/MM/uuuu HH:mm:ss")
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    @Override
+    public Timestamp convertToDatabaseColumn(String dataHora) {
+        return dataHora == null ? null : Timestamp.from(LocalDateTime.parse(dataHora, FORMATO).atZone(FUSO_HORARIO).toInstant());
+    }
+
+    @Override
+    public String convertToEntityAttribute(Timestamp dataHora) {
+        return dataHora == null ? null : dataHora.toInstant().atZone(FUSO_HORARIO).format(FORMATO);
+    }
+
+}
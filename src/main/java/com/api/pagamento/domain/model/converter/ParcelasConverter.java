@@ -0,0 +1,27 @@
+package com.api.pagamento.domain.model.converter;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+//Parcelas em texto ("1") <-> smallint
+
+@Converter
+public class ParcelasConverter implements AttributeConverter<String, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(String parcelas) {
+        return parcelas == null ? null : Short.valueOf(parcelas);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Short parcelas) {
+        return parcelas == null ? null : parcelas.toString();
+    }
+
+    //Texto que a leitura do banco devolveria ("01" -> "1"), como em ValorConverter.normalizar
+    public static String normalizar(String parcelas) {
+        ParcelasConverter converter = new ParcelasConverter();
+        return converter.convertToEntityAttribute(converter.convertToDatabaseColumn(parcelas));
+    }
+
+}
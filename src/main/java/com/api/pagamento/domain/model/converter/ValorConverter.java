@@ -0,0 +1,35 @@
+package com.api.pagamento.domain.model.converter;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.math.BigDecimal;
+
+//AttributeConverter
+//Converte o valor de um atributo da entidade para o tipo da coluna ao gravar e de volta ao ler. A entidade, o DTO e
+//o cache continuam com o texto recebido pela API; apenas a coluna muda de tipo.
+
+//Valor em texto ("500.50") <-> centavos (bigint). Um inteiro em centavos não tem erro de arredondamento, ocupa 8 bytes
+//e pode ser indexado e comparado no banco. Na leitura o valor volta sempre com duas casas decimais.
+
+@Converter
+public class ValorConverter implements AttributeConverter<String, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(String valor) {
+        //longValueExact falha se houver mais de duas casas decimais, em vez de arredondar o valor silenciosamente
+        return valor == null ? null : new BigDecimal(valor).movePointRight(2).longValueExact();
+    }
+
+    @Override
+    public String convertToEntityAttribute(Long centavos) {
+        return centavos == null ? null : BigDecimal.valueOf(centavos, 2).toPlainString();
+    }
+
+    //Texto que a leitura do banco devolveria ("500.5" -> "500.50", "500" -> "500.00"). Aplicado no pagamento, antes de
+    //a transação ir para o cache, para que a resposta não mude quando ela for recarregada do banco.
+    public static String normalizar(String valor) {
+        ValorConverter converter = new ValorConverter();
+        return converter.convertToEntityAttribute(converter.convertToDatabaseColumn(valor));
+    }
+
+}
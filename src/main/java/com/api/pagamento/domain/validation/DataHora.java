@@ -0,0 +1,24 @@
+package com.api.pagamento.domain.validation;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//Data e hora no formato dd/MM/yyyy HH:mm:ss, e que exista no calendário. Nulo é aceito (ver @NotBlank).
+//O pagamento é recusado na entrada da API, antes de chegar ao DataHoraConverter.
+
+@Target({ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+@Constraint(validatedBy = DataHoraValidator.class)
+public @interface DataHora {
+
+    String message() default "deve ser uma data e hora válida no formato dd/MM/yyyy HH:mm:ss";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+
+}
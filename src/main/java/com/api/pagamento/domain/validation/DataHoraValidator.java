@@ -0,0 +1,26 @@
+package com.api.pagamento.domain.validation;
+
+import com.api.pagamento.domain.model.converter.DataHoraConverter;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+public class DataHoraValidator implements ConstraintValidator<DataHora, String> {
+
+    @Override
+    public boolean isValid(String dataHora, ConstraintValidatorContext context) {
+
+        if (dataHora == null) {
+            return true;
+        }
+        try {
+            LocalDateTime.parse(dataHora, DataHoraConverter.FORMATO);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+}
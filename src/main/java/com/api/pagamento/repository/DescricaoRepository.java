@@ -1,6 +1,26 @@
 package com.api.pagamento.repository;
 
+import com.api.pagamento.domain.enumeration.StatusEnum;
 import com.api.pagamento.domain.model.Descricao;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface DescricaoRepository extends JpaRepository<Descricao, Long> { }
+public interface DescricaoRepository extends JpaRepository<Descricao, Long> {
+
+    //@Modifying
+    //Indica que a @Query é um UPDATE/DELETE: o Spring Data executa com executeUpdate e devolve a quantidade de linhas
+    //alteradas, sem carregar a entidade no contexto de persistência.
+
+    //Altera o status da descricao da transação informada, apenas se ele ainda for o status atual informado. O merge
+    //(save) de uma Descricao faria um SELECT antes do UPDATE e gravaria o status mesmo que outra requisição já o
+    //tivesse alterado. A condição no WHERE garante que, entre dois estornos concorrentes, só um altera a linha.
+    @Modifying
+    @Transactional
+    @Query("update Descricao d set d.status = :novo where d.status = :atual " +
+            "and d.id = (select t.descricao.id from Transacao t where t.id = :id)")
+    int atualizarStatus(@Param("id") Long id, @Param("atual") StatusEnum atual, @Param("novo") StatusEnum novo);
+
+}
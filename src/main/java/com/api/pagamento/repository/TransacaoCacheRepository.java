@@ -1,106 +1,391 @@
 package com.api.pagamento.repository;
 
-import com.api.pagamento.domain.dto.DescricaoDTO;
-import com.api.pagamento.domain.dto.FormaPagamentoDTO;
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.dto.PaginaTransacaoDTO;
 import com.api.pagamento.domain.dto.TransacaoDTO;
 import com.api.pagamento.domain.enumeration.StatusEnum;
-import com.api.pagamento.domain.enumeration.TipoEnum;
 import com.api.pagamento.domain.model.Transacao;
-import lombok.RequiredArgsConstructor;
+import com.api.pagamento.repository.codec.BinarioTransacaoCodec;
+import com.api.pagamento.repository.codec.HashTransacaoCodec;
+import com.api.pagamento.repository.codec.JsonRespostaTransacao;
+import com.api.pagamento.repository.codec.TransacaoCacheCodec;
+import com.api.pagamento.repository.codec.VersaoTransacao;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.micrometer.core.annotation.Timed;
+import io.lettuce.core.output.ArrayOutput;
+import lombok.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.lettuce.LettuceConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Repository;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+//As transações ficam no hash transacao::<id>. O formato dos campos do hash é definido por um TransacaoCacheCodec:
+//a escrita usa o codec configurado em transacao.cache.codec e a leitura reconhece qualquer um dos codecs, o que permite
+//migrar de formato sem invalidar o cache.
+//Os comandos são enviados com chaves e valores em bytes, diretamente pela conexão, porque o formato binário não pode
+//passar pelos serializadores de String do RedisTemplate.
 
 @Repository
-@RequiredArgsConstructor
+@Timed(value = "transacao.cache.operacao", histogram = true)
 public class TransacaoCacheRepository {
 
+    private static final String PREFIXO_CHAVE = "transacao::";
+
+    private static final byte[] PADRAO_CHAVE = (PREFIXO_CHAVE + "*").getBytes(StandardCharsets.UTF_8);
+
+    private static final int LOTE_LEITURA = 100;
+
+    private static final byte[] CAMPO_JSON = JsonRespostaTransacao.CAMPO.getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] CAMPO_VERSAO = VersaoTransacao.CAMPO.getBytes(StandardCharsets.UTF_8);
+
+    //HMGET do formato binário: o campo com a transação, a versão e um campo do formato hash, que só serve para saber se
+    //a chave existe quando ela foi gravada por outro codec
+    private static final byte[][] CAMPOS_BINARIO = {
+            BinarioTransacaoCodec.CAMPO.getBytes(StandardCharsets.UTF_8),
+            VersaoTransacao.CAMPO.getBytes(StandardCharsets.UTF_8),
+            HashTransacaoCodec.CAMPO_ID.getBytes(StandardCharsets.UTF_8)
+    };
+
+    private static final byte[] CHAVE_VERSAO_LISTAGEM = VersaoTransacao.CHAVE_LISTAGEM.getBytes(StandardCharsets.UTF_8);
+
+    //O SHA1 do script é calculado uma única vez, na carga da classe
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SCRIPT_ESTORNO = RedisScript.of(new ClassPathResource("scripts/estornar.lua"), List.class);
+
     private final RedisTemplate<String, Object> redisTemplate;
 
+    private final List<TransacaoCacheCodec> codecs;
+
+    private final TransacaoCacheCodec codecEscrita;
+
+    //null quando o codec de escrita não é o binário: a leitura usa HGETALL
+    private final BinarioTransacaoCodec binario;
+
+    private final JsonRespostaTransacao jsonRespostaTransacao;
+
+    private final boolean writeBehind;
+
+    public TransacaoCacheRepository(RedisTemplate<String, Object> redisTemplate, List<TransacaoCacheCodec> codecs,
+                                    JsonRespostaTransacao jsonRespostaTransacao, TransacaoProperties transacaoProperties) {
+
+        this.redisTemplate = redisTemplate;
+        this.codecs = codecs;
+        this.jsonRespostaTransacao = jsonRespostaTransacao;
+        this.codecEscrita = codecs.stream()
+                .filter(codec -> codec.nome().equals(transacaoProperties.getCache().getCodec()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Codec de cache desconhecido: " + transacaoProperties.getCache().getCodec()));
+        this.binario = codecEscrita instanceof BinarioTransacaoCodec ? (BinarioTransacaoCodec) codecEscrita : null;
+        this.writeBehind = transacaoProperties.getWriteBehind().isEnabled();
+    }
+
     public boolean existHashMap(String key) {
         return redisTemplate.hasKey(key);
     }
 
     public TransacaoDTO getHashMapByKey(String key){
 
-        if (existHashMap(key)){
-
-            Map<Object, Object> mapTransacao = redisTemplate.opsForHash().entries(key);
-
-            TransacaoDTO transacaoDTO = new TransacaoDTO();
-            transacaoDTO.setId(Long.parseLong(mapTransacao.get("id").toString()));
-            transacaoDTO.setCartao(mapTransacao.get("cartao").toString());
-            transacaoDTO.setDescricao(new DescricaoDTO());
-            transacaoDTO.getDescricao().setId(Long.parseLong(mapTransacao.get("descricao::id").toString()));
-            transacaoDTO.getDescricao().setValor(mapTransacao.get("descricao::valor").toString());
-            transacaoDTO.getDescricao().setDataHora(mapTransacao.get("descricao::dataHora").toString());
-            transacaoDTO.getDescricao().setEstabelecimento(mapTransacao.get("descricao::estabelecimento").toString());
-            transacaoDTO.getDescricao().setNsu(mapTransacao.get("descricao::nsu").toString());
-            transacaoDTO.getDescricao().setCodigoAutorizacao(mapTransacao.get("descricao::codigoAutorizacao").toString());
-            if (mapTransacao.get("descricao::status").toString().equals("AUTORIZADO")) {
-                transacaoDTO.getDescricao().setStatus(StatusEnum.AUTORIZADO);
-            } else if (mapTransacao.get("descricao::status").toString().equals("NEGADO")) {
-                transacaoDTO.getDescricao().setStatus(StatusEnum.NEGADO);
+        byte[] chave = toBytes(key);
+
+        //Formato binário: apenas o campo dados (e a versão), decodificado direto do byte[], sem montar o mapa do hash
+        if (binario != null) {
+            return decodeBinario(chave, redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                    connection.hashCommands().hMGet(chave, CAMPOS_BINARIO)));
+        }
+
+        //HGETALL de uma chave inexistente retorna um mapa vazio, por isso não é necessário um EXISTS antes
+        return decode(hGetAll(chave));
+
+    }
+
+    //Apenas os campos "json" (ver JsonRespostaTransacao) e "versao", sem decodificar, com um único HMGET: null quando a
+    //chave ou o campo json não existem
+    public JsonCache getJsonByKey(String key){
+
+        List<byte[]> valores = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.hashCommands().hMGet(toBytes(key), CAMPO_JSON, CAMPO_VERSAO));
+
+        if (valores == null || valores.get(0) == null){
+            return null;
+        }
+        return new JsonCache(valores.get(0), VersaoTransacao.ler(valores.get(1)));
+    }
+
+    //Apenas o campo "versao" (ver VersaoTransacao): null quando a chave ou o campo não existem
+    public Long getVersaoByKey(String key){
+        return VersaoTransacao.ler(redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.hashCommands().hGet(toBytes(key), CAMPO_VERSAO)));
+    }
+
+    //Contador versao::transacoes (ver VersaoTransacao): null enquanto nenhuma transação foi gravada desde que a chave
+    //foi criada ou perdida
+    public Long getVersaoListagem(){
+        return VersaoTransacao.ler(redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(CHAVE_VERSAO_LISTAGEM)));
+    }
+
+    //SCAN restrito ao namespace transacao::* a partir do cursor informado, seguido das leituras em pipeline (ver
+    //percorrer). Como o COUNT do SCAN é apenas uma sugestão, a página pode ter um pouco mais ou menos transações do que
+    //o tamanho pedido.
+    public PaginaTransacaoDTO getPageHashMap(long cursor, int tamanho){
+
+        PaginaChaves paginaChaves = scanPage(cursor, tamanho);
+
+        List<TransacaoDTO> transacoesDTO = new ArrayList<>(paginaChaves.getChaves().size());
+        percorrer(paginaChaves, transacoesDTO::add);
+
+        return new PaginaTransacaoDTO(transacoesDTO, paginaChaves.getProximoCursor());
+    }
+
+    //Apenas as chaves da página e o cursor da próxima. As transações são lidas depois, por percorrer, o que permite
+    //decidir o cursor (e se a página está vazia) antes de começar a escrever a resposta.
+    public PaginaChaves scanPage(long cursor, int tamanho){
+
+        List<byte[]> keys = new ArrayList<>(tamanho);
+
+        do {
+            cursor = scan(cursor, tamanho - keys.size(), keys);
+        } while (cursor != 0 && keys.size() < tamanho);
+
+        return new PaginaChaves(keys, cursor);
+    }
+
+    //Lê as transações da página em lotes de LOTE_LEITURA chaves, um pipeline por lote, e entrega cada uma ao
+    //consumidor assim que o lote chega: só um lote de transações fica na memória de cada vez.
+    public void percorrer(PaginaChaves paginaChaves, Consumer<TransacaoDTO> consumidor){
+
+        List<byte[]> keys = paginaChaves.getChaves();
+
+        for (int inicio = 0; inicio < keys.size(); inicio += LOTE_LEITURA) {
+
+            List<byte[]> lote = keys.subList(inicio, Math.min(inicio + LOTE_LEITURA, keys.size()));
+
+            List<Object> resultados = redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+                connection.openPipeline();
+                lote.forEach(key -> {
+                    if (binario != null) {
+                        connection.hashCommands().hMGet(key, CAMPOS_BINARIO);
+                    } else {
+                        connection.hashCommands().hGetAll(key);
+                    }
+                });
+                return connection.closePipeline();
+            });
+
+            for (int i = 0; i < resultados.size(); i++) {
+                @SuppressWarnings("unchecked")
+                TransacaoDTO transacaoDTO = binario != null
+                        ? decodeBinario(lote.get(i), (List<byte[]>) resultados.get(i))
+                        : decode((Map<byte[], byte[]>) resultados.get(i));
+                //A chave pode ter expirado ou sido removida entre o SCAN e a leitura
+                if (transacaoDTO != null) {
+                    consumidor.accept(transacaoDTO);
+                }
             }
-            transacaoDTO.setFormaPagamento(new FormaPagamentoDTO());
-            transacaoDTO.getFormaPagamento().setId(Long.parseLong(mapTransacao.get("formaPagamento::id").toString()));
-            if (mapTransacao.get("formaPagamento::tipo").toString().equals("AVISTA")) {
-                transacaoDTO.getFormaPagamento().setTipo(TipoEnum.AVISTA);
-            } else if (mapTransacao.get("formaPagamento::tipo").toString().equals("PARCELADO_LOJA")) {
-                transacaoDTO.getFormaPagamento().setTipo(TipoEnum.PARCELADO_LOJA);
-            } else if (mapTransacao.get("formaPagamento::tipo").toString().equals("PARCELADO_EMISSOR")) {
-                transacaoDTO.getFormaPagamento().setTipo(TipoEnum.PARCELADO_EMISSOR);
+        }
+    }
+
+    private long scan(long cursor, int count, List<byte[]> keys){
+
+        byte[][] args = {toBytes(String.valueOf(cursor)), toBytes("MATCH"), PADRAO_CHAVE, toBytes("COUNT"), toBytes(String.valueOf(count))};
+
+        //O Lettuce decodifica a resposta de comandos arbitrários como um único byte[], por isso o formato da resposta
+        //(cursor + lista de chaves) é informado explicitamente. A conexão é exposta sem proxy para permitir o cast.
+        List<?> resultado = (List<?>) redisTemplate.execute((RedisCallback<Object>) connection ->
+                connection instanceof LettuceConnection
+                        ? ((LettuceConnection) connection).execute("SCAN", new ArrayOutput<>(ByteArrayCodec.INSTANCE), args)
+                        : connection.execute("SCAN", args), true);
+
+        for (Object key : (List<?>) resultado.get(1)) {
+            keys.add((byte[]) key);
+        }
+
+        return Long.parseLong(new String((byte[]) resultado.get(0), StandardCharsets.UTF_8));
+    }
+
+    //DEL + HSET em pipeline: a transação inteira é gravada em uma única ida e volta ao Redis. O DEL remove os campos
+    //de um formato anterior quando a transação é regravada com outro codec.
+    public void setHashMap(Transacao transacao){
+        setHashMaps(List.of(transacao));
+    }
+
+    //Grava um lote de transações no mesmo pipeline
+    public void setHashMaps(List<Transacao> transacoes){
+
+        List<byte[]> keys = new ArrayList<>(transacoes.size());
+        List<Map<byte[], byte[]>> mapsTransacao = new ArrayList<>(transacoes.size());
+        for (Transacao transacao : transacoes) {
+            keys.add(toBytes("transacao::"+transacao.getId()));
+            Map<byte[], byte[]> mapTransacao = codecEscrita.encode(transacao);
+            jsonRespostaTransacao.adicionar(transacao, mapTransacao);
+            VersaoTransacao.adicionar(transacao, mapTransacao);
+            mapsTransacao.add(mapTransacao);
+        }
+
+        redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+            connection.openPipeline();
+            for (int i = 0; i < keys.size(); i++) {
+                connection.keyCommands().del(keys.get(i));
+                connection.hashCommands().hMSet(keys.get(i), mapsTransacao.get(i));
             }
-            transacaoDTO.getFormaPagamento().setParcelas(mapTransacao.get("formaPagamento::parcelas").toString());
-            return transacaoDTO;
+            VersaoTransacao.incrementarListagem(connection);
+            return connection.closePipeline();
+        });
+
+    }
+
+    //Estorno do lado do cache em uma única ida e volta: o script verifica a existência e o status atual, troca o status
+    //para NEGADO (no campo descricao::status ou no byte de status do formato binário, e no campo json, se existir),
+    //incrementa as versões da transação e da listagem e devolve o hash atualizado.
+    //Como o script é executado atomicamente pelo Redis, dois estornos concorrentes da mesma transação não podem ambos
+    //encontrá-la AUTORIZADO. O RedisTemplate envia o script por EVALSHA e só reenvia o corpo (EVAL) quando o Redis
+    //responde NOSCRIPT, ou seja, na primeira execução após um restart ou SCRIPT FLUSH.
+    //O resultado é desserializado como byte[] porque o campo do formato binário não é texto.
+    //Com o write-behind habilitado, o próprio script adiciona a entrada do estorno ao stream (ver
+    //TransacaoWriteBehindRepository), na mesma execução atômica que troca o status.
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public EstornoCache estornarHashMapByKey(String key){
+
+        List<String> keys = List.of(key, VersaoTransacao.CHAVE_LISTAGEM);
+        List<Object> args = new ArrayList<>(List.of(StatusEnum.AUTORIZADO.toString(), StatusEnum.NEGADO.toString(),
+                String.valueOf(StatusEnum.AUTORIZADO.ordinal()), String.valueOf(StatusEnum.NEGADO.ordinal()),
+                String.valueOf(BinarioTransacaoCodec.POSICAO_STATUS),
+                JsonRespostaTransacao.trechoStatus(StatusEnum.AUTORIZADO), JsonRespostaTransacao.trechoStatus(StatusEnum.NEGADO),
+                VersaoTransacao.semente()));
+        if (writeBehind) {
+            keys = List.of(key, VersaoTransacao.CHAVE_LISTAGEM, TransacaoWriteBehindRepository.STREAM);
+            args.add(TransacaoWriteBehindRepository.TIPO_ESTORNO);
+            args.add(key.substring(PREFIXO_CHAVE.length()));
         }
 
-        return null;
+        List<Object> resultado = redisTemplate.execute(SCRIPT_ESTORNO, RedisSerializer.string(), (RedisSerializer) RedisSerializer.byteArray(),
+                keys, args.toArray());
 
+        ResultadoEstorno resultadoEstorno = ResultadoEstorno.values()[((Number) resultado.get(0)).intValue()];
+        if (resultadoEstorno == ResultadoEstorno.INEXISTENTE) {
+            return new EstornoCache(resultadoEstorno, null);
+        }
+
+        Map<String, byte[]> campos = new HashMap<>(resultado.size());
+        for (int i = 1; i + 1 < resultado.size(); i += 2) {
+            campos.put(new String((byte[]) resultado.get(i), StandardCharsets.UTF_8), (byte[]) resultado.get(i + 1));
+        }
+
+        return new EstornoCache(resultadoEstorno, decodeCampos(campos));
     }
 
-    public List<TransacaoDTO> getAllHashMap(){
+    public void deleteHashMap(String key){
+        redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+            connection.openPipeline();
+            connection.keyCommands().del(toBytes(key));
+            VersaoTransacao.incrementarListagem(connection);
+            return connection.closePipeline();
+        });
+    }
 
-       if(!redisTemplate.countExistingKeys(redisTemplate.keys("*")).equals(0)) {
+    //Resultado do HMGET de CAMPOS_BINARIO. Um hash gravado por outro codec (migração de transacao.cache.codec) não tem o
+    //campo dados: só ele é lido por inteiro, com um HGETALL a mais.
+    private TransacaoDTO decodeBinario(byte[] chave, List<byte[]> valores){
 
-           List<TransacaoDTO> transacoesDTO = new ArrayList<>();
+        if (valores == null){
+            return null;
+        }
+        if (valores.get(0) != null){
+            TransacaoDTO transacaoDTO = binario.fromBytes(valores.get(0));
+            transacaoDTO.setVersao(VersaoTransacao.ler(valores.get(1)));
+            return transacaoDTO;
+        }
+        if (valores.get(1) == null && valores.get(2) == null){
+            return null;
+        }
+        return decode(hGetAll(chave));
+    }
+
+    private Map<byte[], byte[]> hGetAll(byte[] chave){
+        return redisTemplate.execute((RedisCallback<Map<byte[], byte[]>>) connection -> connection.hashCommands().hGetAll(chave));
+    }
 
-           redisTemplate.keys("*").forEach(key -> {
-               transacoesDTO.add(getHashMapByKey(key));
-           });
+    private TransacaoDTO decode(Map<byte[], byte[]> mapTransacao){
+        return decodeCampos(campos(mapTransacao));
+    }
+
+    private TransacaoDTO decodeCampos(Map<String, byte[]> campos){
+
+        if (campos.isEmpty()){
+            return null;
+        }
 
-           return transacoesDTO;
-       }
+        for (TransacaoCacheCodec codec : codecs) {
+            if (codec.suporta(campos)) {
+                TransacaoDTO transacaoDTO = codec.decode(campos);
+                transacaoDTO.setVersao(VersaoTransacao.ler(campos.get(VersaoTransacao.CAMPO)));
+                return transacaoDTO;
+            }
+        }
 
-       return null;
+        throw new IllegalStateException("Nenhum codec reconhece os campos " + campos.keySet());
     }
 
-    public void setHashMap(Transacao transacao){
+    //Os mapas retornados pelos drivers usam byte[] como chave, que não pode ser comparado por conteúdo
+    private static Map<String, byte[]> campos(Map<byte[], byte[]> mapTransacao){
+
+        if (mapTransacao == null || mapTransacao.isEmpty()){
+            return new HashMap<>();
+        }
 
-        redisTemplate.opsForHash().put("transacao::"+transacao.getId(), "id", transacao.getId().toString());
-        redisTemplate.opsForHash().put("transacao::"+transacao.getId(), "cartao", transacao.getCartao());
-        redisTemplate.opsForHash().put("transacao::"+transacao.getId(), "descricao::id", transacao.getDescricao().getId().toString());
-        redisTemplate.opsForHash().put("transacao::"+transacao.getId(), "descricao::valor", transacao.getDescricao().getValor());
-        redisTemplate.opsForHash().put("transacao::"+transacao.getId(), "descricao::dataHora", transacao.getDescricao().getDataHora());
-        redisTemplate.opsForHash().put("transacao::"+transacao.getId(), "descricao::estabelecimento", transacao.getDescricao().getEstabelecimento());
-        redisTemplate.opsForHash().put("transacao::"+transacao.getId(), "descricao::nsu", transacao.getDescricao().getNsu());
-        redisTemplate.opsForHash().put("transacao::"+transacao.getId(), "descricao::codigoAutorizacao", transacao.getDescricao().getCodigoAutorizacao());
-        redisTemplate.opsForHash().put("transacao::"+transacao.getId(), "descricao::status", transacao.getDescricao().getStatus().toString());
-        redisTemplate.opsForHash().put("transacao::"+transacao.getId(), "formaPagamento::id", transacao.getFormaPagamento().getId().toString());
-        redisTemplate.opsForHash().put("transacao::"+transacao.getId(), "formaPagamento::tipo", transacao.getFormaPagamento().getTipo().toString());
-        redisTemplate.opsForHash().put("transacao::"+transacao.getId(), "formaPagamento::parcelas", transacao.getFormaPagamento().getParcelas());
+        Map<String, byte[]> campos = new HashMap<>(mapTransacao.size() * 2);
+        mapTransacao.forEach((campo, valor) -> campos.put(new String(campo, StandardCharsets.UTF_8), valor));
+        return campos;
+    }
+
+    private static byte[] toBytes(String valor){
+        return valor.getBytes(StandardCharsets.UTF_8);
+    }
 
+    //Mesma ordem dos códigos retornados pelo script estornar.lua
+    public enum ResultadoEstorno {
+        INEXISTENTE, ESTORNADO, NAO_ESTORNAVEL
     }
 
-    public TransacaoDTO updateFieldHashMapByKey(String key, String field, String value){
+    @Value
+    public static class PaginaChaves {
+        List<byte[]> chaves;
+        long proximoCursor;
 
-        if (existHashMap(key)) {
-            redisTemplate.opsForHash().put(key, field, value);
-            return getHashMapByKey(key);
+        //CRC32C das chaves da página, em hexadecimal. Muda quando uma chave sai da página sem passar pela aplicação
+        //(TTL ou eviction do Redis), o que não altera o contador versao::transacoes.
+        public String impressaoDigital(){
+            CRC32C crc = new CRC32C();
+            for (byte[] chave : chaves) {
+                crc.update(chave);
+                crc.update(0);
+            }
+            return Long.toHexString(crc.getValue());
         }
-        return null;
     }
+
+    @Value
+    public static class JsonCache {
+        byte[] json;
+        Long versao;
+    }
+
+    @Value
+    public static class EstornoCache {
+        ResultadoEstorno resultado;
+        TransacaoDTO transacao;
+    }
+
 }
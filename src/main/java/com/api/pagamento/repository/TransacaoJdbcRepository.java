@@ -0,0 +1,237 @@
+package com.api.pagamento.repository;
+
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.model.converter.DataHoraConverter;
+import com.api.pagamento.domain.model.converter.ParcelasConverter;
+import com.api.pagamento.domain.model.converter.ValorConverter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+//Gravação em lote usada pelo write-behind: cada tabela recebe um único batch JDBC por lote de transações, com os ids
+//já alocados no Redis.
+//Os INSERTs usam ON CONFLICT DO NOTHING: uma entrada do stream reprocessada após uma falha (entrega at-least-once)
+//não gera erro nem linha duplicada. Antes deles, os ids do lote que já existem no banco são conferidos: se a linha
+//gravada é o mesmo pagamento, a entrada é uma reentrega; se é outro, o id foi reutilizado (ex.: o contador do Redis
+//voltou no tempo) e o pagamento é devolvido como conflito, sem ser gravado, em vez de ser descartado em silêncio.
+
+@Repository
+@RequiredArgsConstructor
+public class TransacaoJdbcRepository {
+
+    private static final String INSERT_FORMA_PAGAMENTO =
+            "INSERT INTO forma_pagamento (id, tipo, parcelas) VALUES (?, ?, ?) ON CONFLICT (id) DO NOTHING";
+
+    private static final String INSERT_DESCRICAO =
+            "INSERT INTO descricao (id, valor_centavos, data_hora, estabelecimento, nsu, codigo_autorizacao, status) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+
+    private static final String INSERT_TRANSACAO =
+            "INSERT INTO transacao (id, cartao, descricao_id, forma_pagamento_id) VALUES (?, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+
+    private static final String UPDATE_ESTORNO =
+            "UPDATE descricao SET status = ? FROM transacao WHERE transacao.descricao_id = descricao.id AND transacao.id = ? AND descricao.status = ?";
+
+    //Layout plano (transacao.persistencia.modelo: plano): um INSERT e um UPDATE por transação, na mesma linha
+    private static final String INSERT_TRANSACAO_PLANA =
+            "INSERT INTO transacao_plana (id, cartao, valor_centavos, data_hora, estabelecimento, nsu, codigo_autorizacao, status, tipo, parcelas) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+
+    private static final String UPDATE_ESTORNO_PLANO =
+            "UPDATE transacao_plana SET status = ? WHERE id = ? AND status = ?";
+
+    //Pagamentos já gravados com os ids do lote, com os campos informados pelo cliente. No layout normalizado, a
+    //transação só é o mesmo pagamento se apontar para a descricao e a forma_pagamento de mesmo id.
+    private static final String SELECT_EXISTENTES =
+            "SELECT t.id, t.cartao, d.valor_centavos, d.data_hora, d.estabelecimento, f.tipo, f.parcelas, " +
+            "t.descricao_id = t.id AND t.forma_pagamento_id = t.id AS mesmos_ids " +
+            "FROM transacao t JOIN descricao d ON d.id = t.descricao_id JOIN forma_pagamento f ON f.id = t.forma_pagamento_id " +
+            "WHERE t.id IN (%s)";
+
+    //Ids de descricao e forma_pagamento gerados pelo JPA (sequences próprias) que coincidem com os do lote
+    private static final String SELECT_EXISTENTES_TABELAS_LIGADAS =
+            "SELECT id FROM descricao WHERE id IN (%1$s) UNION SELECT id FROM forma_pagamento WHERE id IN (%1$s)";
+
+    private static final String SELECT_EXISTENTES_PLANO =
+            "SELECT id, cartao, valor_centavos, data_hora, estabelecimento, tipo, parcelas, true AS mesmos_ids " +
+            "FROM transacao_plana WHERE id IN (%s)";
+
+    private static final ValorConverter VALOR = new ValorConverter();
+
+    private static final DataHoraConverter DATA_HORA = new DataHoraConverter();
+
+    private static final ParcelasConverter PARCELAS = new ParcelasConverter();
+
+    private static final String[] SEQUENCIAS = {"seq_transacao", "seq_descricao", "seq_forma_pagamento"};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransacaoProperties transacaoProperties;
+
+    //Retorna os ids em conflito: já existem no banco com outro pagamento. Eles não são gravados.
+    public List<Long> inserirPagamentos(List<TransacaoDTO> pagamentos) {
+
+        boolean plano = transacaoProperties.getPersistencia().isPlano();
+
+        //Reentregas ficam de fora do INSERT; conflitos também, e são devolvidos
+        Map<Long, List<Object>> existentes = existentes(pagamentos, plano);
+        List<Long> conflitos = new ArrayList<>();
+        List<TransacaoDTO> transacoes = new ArrayList<>(pagamentos.size());
+        for (TransacaoDTO pagamento : pagamentos) {
+            if (!existentes.containsKey(pagamento.getId())) {
+                transacoes.add(pagamento);
+            } else if (!campos(pagamento).equals(existentes.get(pagamento.getId()))) {
+                conflitos.add(pagamento.getId());
+            }
+        }
+        if (transacoes.isEmpty()) {
+            return conflitos;
+        }
+
+        if (plano) {
+            jdbcTemplate.batchUpdate(INSERT_TRANSACAO_PLANA, transacoes.stream()
+                    .map(t -> new Object[]{t.getId(), t.getCartao(), valor(t), dataHora(t),
+                            t.getDescricao().getEstabelecimento(), t.getDescricao().getNsu(), t.getDescricao().getCodigoAutorizacao(),
+                            ordinal(t.getDescricao().getStatus()), ordinal(t.getFormaPagamento().getTipo()), parcelas(t)})
+                    .collect(Collectors.toList()));
+            return conflitos;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_FORMA_PAGAMENTO, transacoes.stream()
+                .map(t -> new Object[]{t.getFormaPagamento().getId(), ordinal(t.getFormaPagamento().getTipo()), parcelas(t)})
+                .collect(Collectors.toList()));
+
+        jdbcTemplate.batchUpdate(INSERT_DESCRICAO, transacoes.stream()
+                .map(t -> new Object[]{t.getDescricao().getId(), valor(t), dataHora(t),
+                        t.getDescricao().getEstabelecimento(), t.getDescricao().getNsu(), t.getDescricao().getCodigoAutorizacao(),
+                        ordinal(t.getDescricao().getStatus())})
+                .collect(Collectors.toList()));
+
+        jdbcTemplate.batchUpdate(INSERT_TRANSACAO, transacoes.stream()
+                .map(t -> new Object[]{t.getId(), t.getCartao(), t.getDescricao().getId(), t.getFormaPagamento().getId()})
+                .collect(Collectors.toList()));
+
+        return conflitos;
+    }
+
+    //Campos gravados de cada id do lote que já existe no banco, na mesma ordem de campos(TransacaoDTO). Um id que só
+    //existe em descricao ou forma_pagamento, ou cuja transação aponta para linhas de outros ids, nunca é igual.
+    private Map<Long, List<Object>> existentes(List<TransacaoDTO> pagamentos, boolean plano) {
+
+        Object[] ids = pagamentos.stream().map(TransacaoDTO::getId).toArray();
+        String marcadores = String.join(", ", Collections.nCopies(ids.length, "?"));
+
+        Map<Long, List<Object>> existentes = new HashMap<>();
+        jdbcTemplate.query(String.format(plano ? SELECT_EXISTENTES_PLANO : SELECT_EXISTENTES, marcadores), rs -> {
+            existentes.put(rs.getLong("id"), rs.getBoolean("mesmos_ids")
+                    ? Arrays.asList(rs.getString("cartao"), numero(rs.getObject("valor_centavos")), rs.getTimestamp("data_hora"),
+                            rs.getString("estabelecimento"), numero(rs.getObject("tipo")), numero(rs.getObject("parcelas")))
+                    : List.of());
+        }, ids);
+
+        if (!plano) {
+            Object[] idsDuasVezes = new Object[ids.length * 2];
+            System.arraycopy(ids, 0, idsDuasVezes, 0, ids.length);
+            System.arraycopy(ids, 0, idsDuasVezes, ids.length, ids.length);
+            for (Long id : jdbcTemplate.queryForList(String.format(SELECT_EXISTENTES_TABELAS_LIGADAS, marcadores), Long.class, idsDuasVezes)) {
+                existentes.putIfAbsent(id, List.of());
+            }
+        }
+        return existentes;
+    }
+
+    //Os números são comparados como Long: o driver devolve smallint e integer com outros tipos
+    private static List<Object> campos(TransacaoDTO transacao) {
+        return Arrays.asList(transacao.getCartao(), numero(valor(transacao)), dataHora(transacao), transacao.getDescricao().getEstabelecimento(),
+                numero(ordinal(transacao.getFormaPagamento().getTipo())), numero(parcelas(transacao)));
+    }
+
+    private static Long numero(Object valor) {
+        return valor == null ? null : ((Number) valor).longValue();
+    }
+
+    //Mesma condição do estorno síncrono (TransacaoPersistencia.estornar): só altera o que ainda está AUTORIZADO
+    //
+    //Retorna os ids cujo pagamento ainda não está no banco. Um UPDATE que não altera nenhuma linha pode significar
+    //que a transação já foi estornada (nada a fazer) ou que o pagamento ainda não foi gravado: a entrada do pagamento
+    //ficou pendente no stream (ex.: uma falha no lote anterior) enquanto a do estorno foi lida como nova. Nesse caso o
+    //estorno precisa ser aplicado de novo depois que o pagamento for gravado.
+    public List<Long> estornar(List<Long> ids) {
+
+        boolean plano = transacaoProperties.getPersistencia().isPlano();
+        int[] alteradas = jdbcTemplate.batchUpdate(plano ? UPDATE_ESTORNO_PLANO : UPDATE_ESTORNO, ids.stream()
+                .map(id -> new Object[]{StatusEnum.NEGADO.ordinal(), id, StatusEnum.AUTORIZADO.ordinal()})
+                .collect(Collectors.toList()));
+
+        //Statement.SUCCESS_NO_INFO (-2) não diz quantas linhas foram alteradas: só o 0 é conferido
+        List<Long> semAlteracao = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (alteradas[i] == 0) {
+                semAlteracao.add(ids.get(i));
+            }
+        }
+        if (semAlteracao.isEmpty()) {
+            return List.of();
+        }
+
+        Set<Long> existentes = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM " + (plano ? "transacao_plana" : "transacao") + " WHERE id IN (" +
+                String.join(", ", Collections.nCopies(semAlteracao.size(), "?")) + ")",
+                Long.class, semAlteracao.toArray()));
+        return semAlteracao.stream()
+                .filter(id -> !existentes.contains(id))
+                .collect(Collectors.toList());
+    }
+
+    //Maior valor já gerado pelas sequences das três tabelas. Com o otimizador pooled, o last_value é o fim do último
+    //bloco reservado, portanto nenhum id gerado pelo JPA é maior que ele.
+    public long maiorId() {
+
+        Long maiorId = jdbcTemplate.queryForObject("SELECT GREATEST(" +
+                "(SELECT last_value FROM seq_transacao), (SELECT last_value FROM seq_descricao), (SELECT last_value FROM seq_forma_pagamento))",
+                Long.class);
+        return maiorId == null ? 0 : maiorId;
+    }
+
+    //Os ids do write-behind vêm do Redis. As sequences são avançadas até eles para que um pagamento gravado pelo JPA
+    //(write-behind desabilitado) não gere um id já usado. O setval não altera o INCREMENT BY: o próximo nextval
+    //reserva o bloco (id, id + 50].
+    public void avancarSequencias(long id) {
+
+        for (String sequencia : SEQUENCIAS) {
+            jdbcTemplate.queryForObject("SELECT setval('" + sequencia + "', GREATEST((SELECT last_value FROM " + sequencia + "), ?))",
+                    Long.class, id);
+        }
+    }
+
+    //Mesmas conversões feitas pelo JPA nas entidades (ver Descricao e FormaPagamento)
+    private static Long valor(TransacaoDTO transacao) {
+        return VALOR.convertToDatabaseColumn(transacao.getDescricao().getValor());
+    }
+
+    private static Timestamp dataHora(TransacaoDTO transacao) {
+        return DATA_HORA.convertToDatabaseColumn(transacao.getDescricao().getDataHora());
+    }
+
+    private static Short parcelas(TransacaoDTO transacao) {
+        return PARCELAS.convertToDatabaseColumn(transacao.getFormaPagamento().getParcelas());
+    }
+
+    private static Integer ordinal(Enum<?> valor) {
+        return valor == null ? null : valor.ordinal();
+    }
+
+}
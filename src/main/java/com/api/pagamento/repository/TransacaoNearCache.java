@@ -0,0 +1,121 @@
+package com.api.pagamento.repository;
+
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Near-cache: cache local e limitado (tamanho e TTL) que fica na frente do TransacaoCacheRepository.
+//Quando uma transação muda, a instância que fez a alteração publica o id no canal de invalidação do Redis e todas
+//as instâncias (inclusive ela mesma) removem a transação do seu cache local.
+//
+//Uma leitura que começou antes de uma invalidação (ex.: leu do Redis a versão AUTORIZADO e o estorno foi tratado
+//enquanto ela voltava) não pode colocar a versão antiga no cache depois dela. Cada invalidação incrementa a época do
+//id; a leitura guarda a época antes de ler (marca) e o put é recusado se ela mudou. As épocas ficam em faixas
+//indexadas pelo id, com memória fixa: ids da mesma faixa só fazem um put ser recusado sem necessidade.
+
+@Component
+public class TransacaoNearCache implements MessageListener, MeterBinder {
+
+    public static final String CANAL_INVALIDACAO = "transacao::invalidacao";
+
+    private static final int FAIXAS_EPOCA = 1024;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final boolean enabled;
+
+    private final Cache<Long, TransacaoDTO> cache;
+
+    private final AtomicLongArray epocas = new AtomicLongArray(FAIXAS_EPOCA);
+
+    public TransacaoNearCache(RedisTemplate<String, Object> redisTemplate, TransacaoProperties transacaoProperties) {
+
+        TransacaoProperties.NearCache nearCache = transacaoProperties.getCache().getNearCache();
+
+        this.redisTemplate = redisTemplate;
+        this.enabled = nearCache.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(nearCache.getTamanhoMaximo())
+                .expireAfterWrite(nearCache.getTtl())
+                .recordStats()
+                .build();
+    }
+
+    public TransacaoDTO get(Long id) {
+        return enabled ? cache.getIfPresent(id) : null;
+    }
+
+    //Para uma transação que nenhuma instância pode ter invalidado (ex.: id recém-gerado pelo pagamento)
+    public void put(Long id, TransacaoDTO transacaoDTO) {
+        if (enabled) {
+            cache.put(id, transacaoDTO);
+        }
+    }
+
+    //Época do id, a ser lida antes de buscar a transação no Redis ou no banco e passada ao put
+    public long marca(Long id) {
+        return epocas.get(faixa(id));
+    }
+
+    //Só guarda a transação se o id não foi invalidado desde a marca. A época é conferida de novo depois do put: uma
+    //invalidação entre a primeira conferência e o put incrementou a época antes, e a entrada é removida aqui; uma
+    //invalidação depois da segunda conferência remove a entrada ela mesma.
+    public void put(Long id, TransacaoDTO transacaoDTO, long marca) {
+        if (enabled && epocas.get(faixa(id)) == marca) {
+            cache.put(id, transacaoDTO);
+            if (epocas.get(faixa(id)) != marca) {
+                cache.asMap().remove(id, transacaoDTO);
+            }
+        }
+    }
+
+    public void invalidar(Long id) {
+        if (enabled) {
+            remover(id);
+            redisTemplate.convertAndSend(CANAL_INVALIDACAO, id.toString());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        remover(Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8)));
+    }
+
+    private void remover(Long id) {
+        epocas.incrementAndGet(faixa(id));
+        cache.invalidate(id);
+    }
+
+    private static int faixa(Long id) {
+        return (int) (id & (FAIXAS_EPOCA - 1));
+    }
+
+    //Contadores de acertos (hits) e falhas (misses) do cache local
+    public CacheStats estatisticas() {
+        return cache.stats();
+    }
+
+    public long tamanho() {
+        return cache.estimatedSize();
+    }
+
+    //Publica acertos, falhas, evicções e tamanho do cache local como cache.gets, cache.evictions, cache.size...
+    //com a tag cache=transacao.near-cache
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "transacao.near-cache");
+    }
+
+}
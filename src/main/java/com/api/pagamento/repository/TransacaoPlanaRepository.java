@@ -0,0 +1,30 @@
+package com.api.pagamento.repository;
+
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.model.TransacaoPlana;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface TransacaoPlanaRepository extends JpaRepository<TransacaoPlana, Long> {
+
+    //Mesma paginação por keyset de TransacaoRepository.findLoteAnteriorA, sem join
+    @Query("select t from TransacaoPlana t where t.id < :id order by t.id desc")
+    List<TransacaoPlana> findLoteAnteriorA(@Param("id") Long id, Pageable pageable);
+
+    @Query("select t from TransacaoPlana t where t.id < :id and t.descricao.dataHora >= :inicio order by t.id desc")
+    List<TransacaoPlana> findLoteAnteriorADesde(@Param("id") Long id, @Param("inicio") String inicio, Pageable pageable);
+
+    //UPDATE direto da linha, sem carregar a entidade antes. Só altera a transação que está com o status atual
+    //informado e devolve a quantidade de linhas alteradas.
+    @Modifying
+    @Transactional
+    @Query("update TransacaoPlana t set t.descricao.status = :novo where t.id = :id and t.descricao.status = :atual")
+    int atualizarStatus(@Param("id") Long id, @Param("atual") StatusEnum atual, @Param("novo") StatusEnum novo);
+
+}
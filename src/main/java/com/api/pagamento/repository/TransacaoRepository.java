@@ -1,7 +1,12 @@
 package com.api.pagamento.repository;
 
 import com.api.pagamento.domain.model.Transacao;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 //JPA
 //Java Persistence API (ou simplesmente JPA) é uma API padrão da linguagem Java que descreve uma interface comum
@@ -22,4 +27,17 @@ import org.springframework.data.jpa.repository.JpaRepository;
 //Com a utilização do Hibernate, não há necessidade de escrever SQL “puro”, pois ele utiliza seu próprio código,
 //chamado de HQL (Hibernate Query Language).
 
-public interface TransacaoRepository extends JpaRepository<Transacao, Long> { }
+public interface TransacaoRepository extends JpaRepository<Transacao, Long> {
+
+    //Paginação por keyset: as transações com id menor que o informado, da mais recente para a mais antiga. Ao contrário
+    //do OFFSET, o custo de cada página não cresce com a posição. Descricao e FormaPagamento vêm no mesmo SELECT
+    //(join fetch), sem uma consulta extra por transação.
+    @Query("select t from Transacao t join fetch t.descricao join fetch t.formaPagamento where t.id < :id order by t.id desc")
+    List<Transacao> findLoteAnteriorA(@Param("id") Long id, Pageable pageable);
+
+    //Mesma paginação, apenas com as transações a partir de inicio (dataHora passa pelo DataHoraConverter, então o
+    //parâmetro é o texto da API e a comparação é feita na coluna timestamptz)
+    @Query("select t from Transacao t join fetch t.descricao d join fetch t.formaPagamento where t.id < :id and d.dataHora >= :inicio order by t.id desc")
+    List<Transacao> findLoteAnteriorADesde(@Param("id") Long id, @Param("inicio") String inicio, Pageable pageable);
+
+}
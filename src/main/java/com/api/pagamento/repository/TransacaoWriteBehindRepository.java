@@ -0,0 +1,261 @@
+package com.api.pagamento.repository;
+
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.repository.codec.BinarioTransacaoCodec;
+import com.api.pagamento.repository.codec.JsonRespostaTransacao;
+import com.api.pagamento.repository.codec.TransacaoCacheCodec;
+import com.api.pagamento.repository.codec.VersaoTransacao;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands.Limit;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Write-behind: o pagamento é registrado no Redis (stream write-behind::transacoes + hash do cache) e persistido no
+//banco depois, em lotes, pelo WriteBehindFlusher.
+//
+//Cada entrada do stream tem os campos:
+//  tipo   "pagamento" ou "estorno"
+//  dados  pagamento: a transação no formato do BinarioTransacaoCodec
+//  id     estorno: o id da transação estornada
+//
+//As entradas de estorno são adicionadas pelo script estornar.lua (TransacaoCacheRepository.estornarHashMapByKey), junto
+//com a troca do status no cache.
+//
+//As chaves ficam fora do namespace transacao::* para não aparecerem no SCAN da listagem de transações.
+
+@Repository
+public class TransacaoWriteBehindRepository {
+
+    public static final String STREAM = "write-behind::transacoes";
+
+    public static final String SEQUENCIA = "write-behind::sequencia";
+
+    public static final String GRUPO = "persistencia";
+
+    public static final String TIPO_PAGAMENTO = "pagamento";
+
+    public static final String TIPO_ESTORNO = "estorno";
+
+    private static final byte[] STREAM_BYTES = toBytes(STREAM);
+
+    private static final RedisScript<Long> SCRIPT_RESERVAR_IDS = RedisScript.of(new ClassPathResource("scripts/reservar_ids.lua"), Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final BinarioTransacaoCodec binarioTransacaoCodec;
+
+    private final TransacaoCacheCodec codecEscrita;
+
+    private final JsonRespostaTransacao jsonRespostaTransacao;
+
+    private final int blocoIds;
+
+    //Faixa de ids reservada por esta instância: (proximoId, ultimoId]
+    private long proximoId;
+
+    private long ultimoId;
+
+    private final ReentrantLock travaIds = new ReentrantLock();
+
+    //Piso da reserva de ids (ver proximoId)
+    private final AtomicLong piso = new AtomicLong();
+
+    public TransacaoWriteBehindRepository(RedisTemplate<String, Object> redisTemplate, BinarioTransacaoCodec binarioTransacaoCodec,
+                                          List<TransacaoCacheCodec> codecs, JsonRespostaTransacao jsonRespostaTransacao,
+                                          TransacaoProperties transacaoProperties) {
+
+        this.redisTemplate = redisTemplate;
+        this.binarioTransacaoCodec = binarioTransacaoCodec;
+        this.jsonRespostaTransacao = jsonRespostaTransacao;
+        this.codecEscrita = codecs.stream()
+                .filter(codec -> codec.nome().equals(transacaoProperties.getCache().getCodec()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Codec de cache desconhecido: " + transacaoProperties.getCache().getCodec()));
+        this.blocoIds = transacaoProperties.getWriteBehind().getBlocoIds();
+    }
+
+    //Os ids são reservados em blocos com um INCRBY, então apenas um pagamento a cada blocoIds faz uma ida e volta
+    //extra ao Redis. Ids de um bloco não usado (ex.: restart) são descartados, o que só deixa buracos na sequência.
+    //ReentrantLock em vez de synchronized: com threads virtuais, o INCRBY dentro de um synchronized prenderia a thread
+    //de plataforma (ver ThreadsConfig)
+    //
+    //O contador do Redis não é confiável sozinho: ele pode voltar no tempo (restart sem o fim do AOF, failover para uma
+    //réplica atrasada) e entregar ids que o banco já tem. Cada reserva envia o piso (o maior id do banco, atualizado
+    //pelo WriteBehindFlusher, ou o último id reservado por esta instância) e o script avança o contador até ele antes
+    //do INCRBY (ver reservar_ids.lua).
+    public long proximoId() {
+
+        travaIds.lock();
+        try {
+            if (proximoId >= ultimoId) {
+                ultimoId = redisTemplate.execute(SCRIPT_RESERVAR_IDS, List.of(SEQUENCIA),
+                        String.valueOf(Math.max(piso.get(), ultimoId)), String.valueOf(blocoIds));
+                proximoId = ultimoId - blocoIds;
+            }
+            return ++proximoId;
+        } finally {
+            travaIds.unlock();
+        }
+    }
+
+    //Maior id já gravado no banco. Nunca recua.
+    public void atualizarPiso(long maiorId) {
+        piso.accumulateAndGet(maiorId, Math::max);
+    }
+
+    //XADD + DEL + HSET no mesmo pipeline: o pagamento fica registrado no stream e disponível no cache em uma única
+    //ida e volta ao Redis
+    public void registrarPagamento(Transacao transacao) {
+        registrarPagamentos(List.of(transacao));
+    }
+
+    //Registra um lote de pagamentos no mesmo pipeline
+    public void registrarPagamentos(List<Transacao> transacoes) {
+
+        byte[] tipo = toBytes("tipo");
+        byte[] dados = toBytes("dados");
+        byte[] pagamento = toBytes(TIPO_PAGAMENTO);
+
+        List<byte[]> keys = new ArrayList<>(transacoes.size());
+        List<Map<byte[], byte[]>> entradas = new ArrayList<>(transacoes.size());
+        List<Map<byte[], byte[]>> mapsTransacao = new ArrayList<>(transacoes.size());
+        for (Transacao transacao : transacoes) {
+            Map<byte[], byte[]> entrada = new HashMap<>(4);
+            entrada.put(tipo, pagamento);
+            entrada.put(dados, binarioTransacaoCodec.toBytes(transacao));
+            entradas.add(entrada);
+            keys.add(toBytes("transacao::" + transacao.getId()));
+            Map<byte[], byte[]> mapTransacao = codecEscrita.encode(transacao);
+            jsonRespostaTransacao.adicionar(transacao, mapTransacao);
+            VersaoTransacao.adicionar(transacao, mapTransacao);
+            mapsTransacao.add(mapTransacao);
+        }
+
+        redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+            connection.openPipeline();
+            for (int i = 0; i < keys.size(); i++) {
+                connection.streamCommands().xAdd(StreamRecords.rawBytes(entradas.get(i)).withStreamKey(STREAM_BYTES));
+                connection.keyCommands().del(keys.get(i));
+                connection.hashCommands().hMSet(keys.get(i), mapsTransacao.get(i));
+            }
+            VersaoTransacao.incrementarListagem(connection);
+            return connection.closePipeline();
+        });
+    }
+
+    //Cria o stream e o grupo de consumo, caso ainda não existam
+    public void criarGrupo() {
+        redisTemplate.execute((RedisCallback<String>) connection -> {
+            try {
+                return connection.streamCommands().xGroupCreate(STREAM_BYTES, GRUPO, ReadOffset.from("0"), true);
+            } catch (RuntimeException e) {
+                //BUSYGROUP: o grupo já existe
+                return null;
+            }
+        });
+    }
+
+    //Entradas ainda não entregues a nenhum consumidor. Bloqueia por até "espera" quando o stream está vazio.
+    @SuppressWarnings("unchecked")
+    public List<ByteRecord> lerNovas(String consumidor, int quantidade, Duration espera) {
+        return redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xReadGroup(Consumer.from(GRUPO, consumidor),
+                        StreamReadOptions.empty().count(quantidade).block(espera),
+                        StreamOffset.create(STREAM_BYTES, ReadOffset.lastConsumed())));
+    }
+
+    //Entradas entregues há mais de "ociosidade" e não confirmadas (ex.: a instância caiu ou a gravação no banco
+    //falhou). Elas passam para este consumidor e são processadas novamente.
+    public List<ByteRecord> reivindicarPendentes(String consumidor, int quantidade, Duration ociosidade) {
+
+        return redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection -> {
+
+            PendingMessages pendentes = connection.streamCommands().xPending(STREAM_BYTES, GRUPO, Range.unbounded(), (long) quantidade);
+            if (pendentes == null || pendentes.isEmpty()) {
+                return List.of();
+            }
+
+            RecordId[] ids = pendentes.stream()
+                    .filter(pendente -> pendente.getElapsedTimeSinceLastDelivery().compareTo(ociosidade) >= 0)
+                    .map(PendingMessage::getId)
+                    .toArray(RecordId[]::new);
+            if (ids.length == 0) {
+                return List.of();
+            }
+
+            return connection.streamCommands().xClaim(STREAM_BYTES, GRUPO, consumidor, ociosidade, ids);
+        });
+    }
+
+    //XACK + XDEL: depois de confirmadas, as entradas são removidas, então o tamanho do stream é o que falta persistir
+    public void confirmar(List<RecordId> ids) {
+
+        RecordId[] array = ids.toArray(RecordId[]::new);
+        redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+            connection.openPipeline();
+            connection.streamCommands().xAck(STREAM_BYTES, GRUPO, array);
+            connection.streamCommands().xDel(STREAM_BYTES, array);
+            return connection.closePipeline();
+        });
+    }
+
+    public long tamanho() {
+        Long tamanho = redisTemplate.execute((RedisCallback<Long>) connection -> connection.streamCommands().xLen(STREAM_BYTES));
+        return tamanho == null ? 0 : tamanho;
+    }
+
+    //Atraso, em milissegundos, da entrada mais antiga ainda não persistida (0 quando o stream está vazio). O id de
+    //uma entrada do stream começa com o instante em que ela foi adicionada.
+    public long atrasoMillis() {
+
+        List<ByteRecord> maisAntiga = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xRange(STREAM_BYTES, Range.unbounded(), Limit.limit().count(1)));
+
+        if (maisAntiga == null || maisAntiga.isEmpty()) {
+            return 0;
+        }
+        return Math.max(0, System.currentTimeMillis() - maisAntiga.get(0).getId().getTimestamp());
+    }
+
+    public static String campo(ByteRecord entrada, String campo) {
+
+        byte[] valor = valor(entrada, campo);
+        return valor == null ? null : new String(valor, StandardCharsets.UTF_8);
+    }
+
+    public static byte[] valor(ByteRecord entrada, String campo) {
+
+        return entrada.getValue().entrySet().stream()
+                .filter(e -> new String(e.getKey(), StandardCharsets.UTF_8).equals(campo))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static byte[] toBytes(String valor) {
+        return valor.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
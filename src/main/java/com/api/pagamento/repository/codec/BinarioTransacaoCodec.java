@@ -0,0 +1,194 @@
+package com.api.pagamento.repository.codec;
+
+import com.api.pagamento.domain.dto.DescricaoDTO;
+import com.api.pagamento.domain.dto.FormaPagamentoDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.enumeration.TipoEnum;
+import com.api.pagamento.domain.model.Transacao;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+//Formato binário compacto: a transação inteira fica em um único campo do hash ("dados").
+//
+//  byte 0      versão do formato
+//  byte 1      ordinal do status (0xFF = nulo). Fica em uma posição fixa para poder ser alterado sem decodificar o resto
+//  byte 2      ordinal do tipo da forma de pagamento (0xFF = nulo)
+//  varints     id, descricao.id, formaPagamento.id (0 = nulo)
+//  strings     cartao, valor, dataHora, estabelecimento, nsu, codigoAutorizacao, parcelas
+//              cada uma como varint (tamanho + 1, 0 = nulo) seguido dos bytes UTF-8
+//
+//Varints usam 7 bits por byte, com o bit mais significativo indicando que há mais bytes.
+
+@Component
+public class BinarioTransacaoCodec implements TransacaoCacheCodec {
+
+    public static final String NOME = "binario";
+
+    public static final String CAMPO = "dados";
+
+    public static final byte VERSAO = 1;
+
+    public static final int POSICAO_STATUS = 1;
+
+    private static final byte[] CAMPO_BYTES = CAMPO.getBytes(StandardCharsets.UTF_8);
+
+    private static final int NULO = 0xFF;
+
+    private static final StatusEnum[] STATUS = StatusEnum.values();
+
+    private static final TipoEnum[] TIPOS = TipoEnum.values();
+
+    @Override
+    public String nome() {
+        return NOME;
+    }
+
+    @Override
+    public Map<byte[], byte[]> encode(Transacao transacao) {
+
+        Map<byte[], byte[]> mapTransacao = new HashMap<>(2);
+        mapTransacao.put(CAMPO_BYTES, toBytes(transacao));
+        return mapTransacao;
+
+    }
+
+    @Override
+    public boolean suporta(Map<String, byte[]> campos) {
+        return campos.containsKey(CAMPO);
+    }
+
+    @Override
+    public TransacaoDTO decode(Map<String, byte[]> campos) {
+        return fromBytes(campos.get(CAMPO));
+    }
+
+    public byte[] toBytes(Transacao transacao) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+
+        out.write(VERSAO);
+        out.write(transacao.getDescricao().getStatus() == null ? NULO : transacao.getDescricao().getStatus().ordinal());
+        out.write(transacao.getFormaPagamento().getTipo() == null ? NULO : transacao.getFormaPagamento().getTipo().ordinal());
+
+        writeVarLong(out, transacao.getId());
+        writeVarLong(out, transacao.getDescricao().getId());
+        writeVarLong(out, transacao.getFormaPagamento().getId());
+
+        writeString(out, transacao.getCartao());
+        writeString(out, transacao.getDescricao().getValor());
+        writeString(out, transacao.getDescricao().getDataHora());
+        writeString(out, transacao.getDescricao().getEstabelecimento());
+        writeString(out, transacao.getDescricao().getNsu());
+        writeString(out, transacao.getDescricao().getCodigoAutorizacao());
+        writeString(out, transacao.getFormaPagamento().getParcelas());
+
+        return out.toByteArray();
+
+    }
+
+    public TransacaoDTO fromBytes(byte[] dados) {
+
+        if (dados[0] != VERSAO) {
+            throw new IllegalArgumentException("Versão do formato binário desconhecida: " + dados[0]);
+        }
+
+        Leitor leitor = new Leitor(dados, 1);
+
+        int status = leitor.readByte();
+        int tipo = leitor.readByte();
+
+        TransacaoDTO transacaoDTO = new TransacaoDTO();
+        transacaoDTO.setDescricao(new DescricaoDTO());
+        transacaoDTO.setFormaPagamento(new FormaPagamentoDTO());
+
+        transacaoDTO.getDescricao().setStatus(status == NULO ? null : STATUS[status]);
+        transacaoDTO.getFormaPagamento().setTipo(tipo == NULO ? null : TIPOS[tipo]);
+
+        transacaoDTO.setId(leitor.readVarLong());
+        transacaoDTO.getDescricao().setId(leitor.readVarLong());
+        transacaoDTO.getFormaPagamento().setId(leitor.readVarLong());
+
+        transacaoDTO.setCartao(leitor.readString());
+        transacaoDTO.getDescricao().setValor(leitor.readString());
+        transacaoDTO.getDescricao().setDataHora(leitor.readString());
+        transacaoDTO.getDescricao().setEstabelecimento(leitor.readString());
+        transacaoDTO.getDescricao().setNsu(leitor.readString());
+        transacaoDTO.getDescricao().setCodigoAutorizacao(leitor.readString());
+        transacaoDTO.getFormaPagamento().setParcelas(leitor.readString());
+
+        return transacaoDTO;
+
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, Long valor) {
+
+        long v = valor == null ? 0 : valor;
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String valor) {
+
+        if (valor == null) {
+            writeVarLong(out, 0L);
+            return;
+        }
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes, 0, bytes.length);
+
+    }
+
+    private static class Leitor {
+
+        private final byte[] dados;
+
+        private int posicao;
+
+        Leitor(byte[] dados, int posicao) {
+            this.dados = dados;
+            this.posicao = posicao;
+        }
+
+        int readByte() {
+            return dados[posicao++] & 0xFF;
+        }
+
+        Long readVarLong() {
+
+            long v = 0;
+            int deslocamento = 0;
+            int b;
+            do {
+                b = dados[posicao++];
+                v |= (long) (b & 0x7F) << deslocamento;
+                deslocamento += 7;
+            } while ((b & 0x80) != 0);
+            return v == 0 ? null : v;
+
+        }
+
+        String readString() {
+
+            Long tamanho = readVarLong();
+            if (tamanho == null) {
+                return null;
+            }
+            String valor = new String(dados, posicao, (int) (tamanho - 1), StandardCharsets.UTF_8);
+            posicao += (int) (tamanho - 1);
+            return valor;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.api.pagamento.repository.codec;
+
+import com.api.pagamento.domain.dto.DescricaoDTO;
+import com.api.pagamento.domain.dto.FormaPagamentoDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.enumeration.TipoEnum;
+import com.api.pagamento.domain.model.Transacao;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+//Formato original: um campo do hash por atributo da transação, com os valores em texto (UTF-8).
+
+@Component
+public class HashTransacaoCodec implements TransacaoCacheCodec {
+
+    public static final String NOME = "hash";
+
+    //Campo presente em todo hash gravado por este codec
+    public static final String CAMPO_ID = "id";
+
+    @Override
+    public String nome() {
+        return NOME;
+    }
+
+    @Override
+    public Map<byte[], byte[]> encode(Transacao transacao) {
+
+        Map<byte[], byte[]> mapTransacao = new HashMap<>(16);
+        put(mapTransacao, "id", transacao.getId().toString());
+        put(mapTransacao, "cartao", transacao.getCartao());
+        put(mapTransacao, "descricao::id", transacao.getDescricao().getId().toString());
+        put(mapTransacao, "descricao::valor", transacao.getDescricao().getValor());
+        put(mapTransacao, "descricao::dataHora", transacao.getDescricao().getDataHora());
+        put(mapTransacao, "descricao::estabelecimento", transacao.getDescricao().getEstabelecimento());
+        put(mapTransacao, "descricao::nsu", transacao.getDescricao().getNsu());
+        put(mapTransacao, "descricao::codigoAutorizacao", transacao.getDescricao().getCodigoAutorizacao());
+        put(mapTransacao, "descricao::status", transacao.getDescricao().getStatus().toString());
+        put(mapTransacao, "formaPagamento::id", transacao.getFormaPagamento().getId().toString());
+        put(mapTransacao, "formaPagamento::tipo", transacao.getFormaPagamento().getTipo().toString());
+        put(mapTransacao, "formaPagamento::parcelas", transacao.getFormaPagamento().getParcelas());
+        return mapTransacao;
+
+    }
+
+    @Override
+    public boolean suporta(Map<String, byte[]> campos) {
+        return campos.containsKey(CAMPO_ID);
+    }
+
+    @Override
+    public TransacaoDTO decode(Map<String, byte[]> campos) {
+
+        TransacaoDTO transacaoDTO = new TransacaoDTO();
+        transacaoDTO.setId(Long.parseLong(get(campos, "id")));
+        transacaoDTO.setCartao(get(campos, "cartao"));
+        transacaoDTO.setDescricao(new DescricaoDTO());
+        transacaoDTO.getDescricao().setId(Long.parseLong(get(campos, "descricao::id")));
+        transacaoDTO.getDescricao().setValor(get(campos, "descricao::valor"));
+        transacaoDTO.getDescricao().setDataHora(get(campos, "descricao::dataHora"));
+        transacaoDTO.getDescricao().setEstabelecimento(get(campos, "descricao::estabelecimento"));
+        transacaoDTO.getDescricao().setNsu(get(campos, "descricao::nsu"));
+        transacaoDTO.getDescricao().setCodigoAutorizacao(get(campos, "descricao::codigoAutorizacao"));
+        transacaoDTO.getDescricao().setStatus(StatusEnum.valueOf(get(campos, "descricao::status")));
+        transacaoDTO.setFormaPagamento(new FormaPagamentoDTO());
+        transacaoDTO.getFormaPagamento().setId(Long.parseLong(get(campos, "formaPagamento::id")));
+        transacaoDTO.getFormaPagamento().setTipo(TipoEnum.valueOf(get(campos, "formaPagamento::tipo")));
+        transacaoDTO.getFormaPagamento().setParcelas(get(campos, "formaPagamento::parcelas"));
+        return transacaoDTO;
+
+    }
+
+    private static void put(Map<byte[], byte[]> mapTransacao, String campo, String valor) {
+        mapTransacao.put(campo.getBytes(StandardCharsets.UTF_8), valor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String get(Map<String, byte[]> campos, String campo) {
+        return new String(campos.get(campo), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.api.pagamento.repository.codec;
+
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.model.Transacao;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+//JSON pronto (transacao.cache.json-pronto): junto com os campos do codec, o hash transacao::<id> recebe o campo "json",
+//com o corpo que o GET /transacao/v1/{id} retornaria para a transação. O GET escreve esses bytes direto na resposta,
+//sem montar o TransacaoDTO e sem passar pelo Jackson.
+//
+//O JSON é gerado pelo ObjectMapper da aplicação, o mesmo usado pelo Spring MVC, para que o corpo seja idêntico ao do
+//caminho normal. No estorno, o script estornar.lua troca o trecho "status":"AUTORIZADO" por "status":"NEGADO" dentro
+//do campo: o trecho não pode aparecer dentro de um valor de texto, porque as aspas de um texto são escapadas.
+
+@Component
+public class JsonRespostaTransacao {
+
+    public static final String CAMPO = "json";
+
+    private static final byte[] CAMPO_BYTES = CAMPO.getBytes(StandardCharsets.UTF_8);
+
+    private final boolean enabled;
+
+    private final ObjectWriter writer;
+
+    public JsonRespostaTransacao(ObjectMapper objectMapper, TransacaoProperties transacaoProperties) {
+        this.enabled = transacaoProperties.getCache().isJsonPronto();
+        this.writer = objectMapper.writerFor(TransacaoDTO.class);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //Acrescenta o campo "json" aos campos gerados pelo codec de escrita
+    public void adicionar(Transacao transacao, Map<byte[], byte[]> mapTransacao) {
+
+        if (!enabled) {
+            return;
+        }
+        try {
+            mapTransacao.put(CAMPO_BYTES, writer.writeValueAsBytes(TransacaoMapper.toTransacaoDTO(transacao)));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+
+    }
+
+    //Trecho do JSON com o status, no mesmo formato gerado pelo Jackson (sem espaços)
+    public static String trechoStatus(StatusEnum status) {
+        return "\"status\":\"" + status + "\"";
+    }
+
+}
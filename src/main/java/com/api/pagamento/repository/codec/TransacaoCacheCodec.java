@@ -0,0 +1,23 @@
+package com.api.pagamento.repository.codec;
+
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.model.Transacao;
+
+import java.util.Map;
+
+//Define como uma transação é gravada no hash transacao::<id> do Redis.
+//O codec usado na escrita é escolhido pela propriedade transacao.cache.codec. Na leitura, o codec é escolhido pelos
+//campos presentes no hash, por isso entradas gravadas por um codec continuam legíveis depois de trocar para outro.
+
+public interface TransacaoCacheCodec {
+
+    String nome();
+
+    Map<byte[], byte[]> encode(Transacao transacao);
+
+    //Indica se o hash (campo -> valor) foi gravado por este codec
+    boolean suporta(Map<String, byte[]> campos);
+
+    TransacaoDTO decode(Map<String, byte[]> campos);
+
+}
@@ -0,0 +1,61 @@
+package com.api.pagamento.repository.codec;
+
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.model.Transacao;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+//Versões usadas como ETag pelos GETs de /transacao/v1.
+//
+//Versão da transação: junto com os campos do codec, o hash transacao::<id> recebe o campo "versao", em texto para que
+//o estorno possa incrementá-lo com HINCRBY (ver estornar.lua). Como o status é a única parte da transação que muda, a
+//versão gravada é calculada a partir dele (AUTORIZADO = 1, NEGADO = 2): uma transação recarregada do banco depois de
+//um restart do Redis volta com a mesma versão que tinha, e um ETag de antes do estorno nunca recebe um 304.
+//
+//Versão da listagem: o contador versao::transacoes é incrementado a cada escrita no namespace transacao::*. Se a chave
+//se perder (ex.: restart do Redis sem persistência), ele recomeça do instante atual em microssegundos, que é maior do
+//que qualquer valor já entregue enquanto houver menos de um milhão de escritas por segundo. Uma transação que expira
+//(TTL) ou sai pela eviction não incrementa o contador: o ETag da listagem também leva as chaves da página (ver
+//TransacaoCacheRepository.PaginaChaves).
+//A chave fica fora do namespace transacao::* para não aparecer no SCAN da listagem.
+
+public final class VersaoTransacao {
+
+    public static final String CAMPO = "versao";
+
+    public static final String CHAVE_LISTAGEM = "versao::transacoes";
+
+    private static final byte[] CAMPO_BYTES = CAMPO.getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] CHAVE_LISTAGEM_BYTES = CHAVE_LISTAGEM.getBytes(StandardCharsets.UTF_8);
+
+    private VersaoTransacao() {
+    }
+
+    public static long inicial(StatusEnum status) {
+        return status == StatusEnum.NEGADO ? 2 : 1;
+    }
+
+    //Acrescenta o campo "versao" aos campos gerados pelo codec de escrita
+    public static void adicionar(Transacao transacao, Map<byte[], byte[]> mapTransacao) {
+        mapTransacao.put(CAMPO_BYTES, String.valueOf(inicial(transacao.getDescricao().getStatus())).getBytes(StandardCharsets.UTF_8));
+    }
+
+    //null para um hash gravado antes da existência do campo
+    public static Long ler(byte[] valor) {
+        return valor == null ? null : Long.parseLong(new String(valor, StandardCharsets.UTF_8));
+    }
+
+    //SET NX + INCR, no pipeline (ou script) da escrita que altera a listagem
+    public static void incrementarListagem(RedisConnection connection) {
+        connection.stringCommands().setNX(CHAVE_LISTAGEM_BYTES, semente().getBytes(StandardCharsets.UTF_8));
+        connection.stringCommands().incr(CHAVE_LISTAGEM_BYTES);
+    }
+
+    public static String semente() {
+        return String.valueOf(System.currentTimeMillis() * 1000);
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.api.pagamento.repository.persistencia;
+
+import com.api.pagamento.domain.dto.CursorBusca;
+import com.api.pagamento.domain.dto.FiltroBuscaDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.OrdemBuscaEnum;
+import com.api.pagamento.domain.model.converter.DataHoraConverter;
+import com.api.pagamento.domain.model.converter.ValorConverter;
+import org.hibernate.jpa.QueryHints;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+//Monta a consulta da busca para os dois layouts. Cada layout informa o SELECT/FROM, o caminho até os campos de
+//Descricao e FormaPagamento ("d." e "f." no normalizado, "t.descricao." e "t.formaPagamento." no plano) e o id de cada
+//uma ("d.id" e "f.id" no normalizado, "t.id" no plano).
+//
+//Paginação por keyset, sem OFFSET (que lê e descarta todas as linhas anteriores): a página seguinte começa logo depois
+//da última transação da página anterior, na ordem de um índice que também seleciona as linhas do filtro. Assim o banco
+//desce pelo índice direto a partir do cursor e lê só as linhas da página, com o mesmo custo da primeira à última.
+//
+//  período                    data_hora, id decrescentes     índice (data_hora, id) de descricao / transacao_plana
+//  faixa de valor             valor_centavos, id             índice (valor_centavos, id)
+//  estabelecimento ou status  id da descricao                índice (estabelecimento, id) / (status, id)
+//  tipo                       id da forma_pagamento          índice (tipo, id) de forma_pagamento / transacao_plana
+//  final do cartão ou nenhum  id da transacao                índice (right(cartao, 4), id) / chave primária
+//
+//No layout normalizado a ordem é a do id da tabela que tem o filtro: a consulta desce pelo índice de descricao (ou de
+//forma_pagamento) e busca a transacao de cada linha pela chave estrangeira (ver db/indices_busca.sql). Os demais
+//filtros da requisição são conferidos linha a linha nas linhas lidas pelo índice da ordem.
+//
+//Os parâmetros de valor e data são passados como texto: o Hibernate aplica ao parâmetro o mesmo AttributeConverter
+//do campo comparado, então a comparação é feita em centavos e em timestamptz, usando os índices.
+//
+//Exportação: a mesma consulta, sem cursor e sem limite, lida por um ResultSet forward-only. Com o fetch size definido
+//e o autocommit desligado (a leitura acontece dentro da transação do serviço), o driver do Postgres usa um cursor no
+//servidor e traz fetchSize linhas por ida ao banco, em vez de materializar o resultado inteiro na memória. Como a
+//projeção não cria entidades, o contexto de persistência não cresce com o tamanho da exportação.
+
+final class ConsultaBusca {
+
+    private static final DataHoraConverter DATA_HORA = new DataHoraConverter();
+
+    private static final ValorConverter VALOR = new ValorConverter();
+
+    private final String selectFrom;
+
+    private final String descricao;
+
+    private final String formaPagamento;
+
+    private final String idDescricao;
+
+    private final String idFormaPagamento;
+
+    ConsultaBusca(String selectFrom, String descricao, String formaPagamento, String idDescricao, String idFormaPagamento) {
+        this.selectFrom = selectFrom;
+        this.descricao = descricao;
+        this.formaPagamento = formaPagamento;
+        this.idDescricao = idDescricao;
+        this.idFormaPagamento = idFormaPagamento;
+    }
+
+    List<TransacaoDTO> executar(EntityManager entityManager, FiltroBuscaDTO filtro, CursorBusca cursor, int tamanho) {
+
+        return montar(entityManager, filtro, cursor)
+                .setMaxResults(tamanho)
+                .getResultList();
+    }
+
+    void exportar(EntityManager entityManager, FiltroBuscaDTO filtro, int tamanhoFetch, Consumer<TransacaoDTO> consumidor) {
+
+        TypedQuery<TransacaoDTO> query = montar(entityManager, filtro, CursorBusca.INICIO)
+                .setHint(QueryHints.HINT_FETCH_SIZE, tamanhoFetch)
+                .setHint(QueryHints.HINT_READONLY, true);
+
+        try (Stream<TransacaoDTO> transacoes = query.getResultStream()) {
+            transacoes.forEach(consumidor);
+        }
+    }
+
+    //Posição da transação na ordem da busca: o cursor da página seguinte, quando ela é a última da página
+    CursorBusca cursorApos(FiltroBuscaDTO filtro, TransacaoDTO transacao) {
+
+        OrdemBuscaEnum ordem = OrdemBuscaEnum.de(filtro);
+        String id = id(filtro, ordem);
+        long valorId = id.equals(idDescricao) ? transacao.getDescricao().getId()
+                : id.equals(idFormaPagamento) ? transacao.getFormaPagamento().getId()
+                : transacao.getId();
+
+        switch (ordem) {
+            case DATA_HORA:
+                return new CursorBusca(ordem, DATA_HORA.convertToDatabaseColumn(transacao.getDescricao().getDataHora())
+                        .getTime() / 1000, valorId);
+            case VALOR:
+                return new CursorBusca(ordem, VALOR.convertToDatabaseColumn(transacao.getDescricao().getValor()), valorId);
+            default:
+                return new CursorBusca(ordem, null, valorId);
+        }
+    }
+
+    //Id que ordena a busca e desempata as ordens por data e hora e por valor: o da tabela do índice que dirige a busca
+    private String id(FiltroBuscaDTO filtro, OrdemBuscaEnum ordem) {
+
+        if (ordem != OrdemBuscaEnum.ID || filtro.getEstabelecimento() != null || filtro.getStatus() != null) {
+            return idDescricao;
+        }
+        if (filtro.getTipo() != null) {
+            return idFormaPagamento;
+        }
+        return "t.id";
+    }
+
+    private TypedQuery<TransacaoDTO> montar(EntityManager entityManager, FiltroBuscaDTO filtro, CursorBusca cursor) {
+
+        List<String> condicoes = new ArrayList<>();
+        Map<String, Object> parametros = new HashMap<>();
+
+        if (filtro.getEstabelecimento() != null) {
+            condicoes.add(descricao + "estabelecimento = :estabelecimento");
+            parametros.put("estabelecimento", filtro.getEstabelecimento());
+        }
+        if (filtro.getStatus() != null) {
+            condicoes.add(descricao + "status = :status");
+            parametros.put("status", filtro.getStatus());
+        }
+        if (filtro.getTipo() != null) {
+            condicoes.add(formaPagamento + "tipo = :tipo");
+            parametros.put("tipo", filtro.getTipo());
+        }
+        if (filtro.getFinalCartao() != null) {
+            //Coberto pelo índice de expressão right(cartao, 4) (ver db/indices_busca.sql)
+            condicoes.add("function('right', t.cartao, 4) = :finalCartao");
+            parametros.put("finalCartao", filtro.getFinalCartao());
+        }
+        if (filtro.getDataHoraInicio() != null) {
+            condicoes.add(descricao + "dataHora >= :dataHoraInicio");
+            parametros.put("dataHoraInicio", filtro.getDataHoraInicio());
+        }
+        if (filtro.getDataHoraFim() != null) {
+            condicoes.add(descricao + "dataHora <= :dataHoraFim");
+            parametros.put("dataHoraFim", filtro.getDataHoraFim());
+        }
+        if (filtro.getValorMinimo() != null) {
+            condicoes.add(descricao + "valor >= :valorMinimo");
+            parametros.put("valorMinimo", filtro.getValorMinimo());
+        }
+        if (filtro.getValorMaximo() != null) {
+            condicoes.add(descricao + "valor <= :valorMaximo");
+            parametros.put("valorMaximo", filtro.getValorMaximo());
+        }
+
+        OrdemBuscaEnum ordem = OrdemBuscaEnum.de(filtro);
+        String id = id(filtro, ordem);
+        String chave = ordem == OrdemBuscaEnum.DATA_HORA ? descricao + "dataHora"
+                : ordem == OrdemBuscaEnum.VALOR ? descricao + "valor"
+                : null;
+
+        if (!cursor.isInicio()) {
+            parametros.put("antesDoId", cursor.getId());
+            if (chave == null) {
+                condicoes.add(id + " < :antesDoId");
+            } else {
+                //(chave, id) < (chave do cursor, id do cursor). O "chave <=" isolado delimita a faixa do índice; o
+                //"or" só desempata as linhas com a mesma chave do cursor.
+                condicoes.add(chave + " <= :chave and (" + chave + " < :chave or " + id + " < :antesDoId)");
+                parametros.put("chave", ordem == OrdemBuscaEnum.DATA_HORA
+                        ? DATA_HORA.convertToEntityAttribute(new Timestamp(cursor.getChave() * 1000))
+                        : VALOR.convertToEntityAttribute(cursor.getChave()));
+            }
+        }
+
+        StringBuilder jpql = new StringBuilder(selectFrom);
+        if (!condicoes.isEmpty()) {
+            jpql.append(" where ").append(String.join(" and ", condicoes));
+        }
+        jpql.append(" order by ");
+        if (chave != null) {
+            jpql.append(chave).append(" desc, ");
+        }
+        jpql.append(id).append(" desc");
+
+        TypedQuery<TransacaoDTO> query = entityManager.createQuery(jpql.toString(), TransacaoDTO.class);
+        parametros.forEach(query::setParameter);
+        return query;
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.api.pagamento.repository.persistencia;
+
+import com.api.pagamento.domain.dto.CursorBusca;
+import com.api.pagamento.domain.dto.FiltroBuscaDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.repository.DescricaoRepository;
+import com.api.pagamento.repository.TransacaoRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+//Layout normalizado: um pagamento são três INSERTs (forma_pagamento, descricao e transacao), uma leitura é um join
+//entre as três tabelas e o estorno é um UPDATE da linha da descricao.
+
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "transacao.persistencia", name = "modelo", havingValue = "normalizado", matchIfMissing = true)
+public class NormalizadaTransacaoPersistencia implements TransacaoPersistencia {
+
+    private static final String SELECT_BUSCA = "select new " + TransacaoProjecao.class.getName() + "(" +
+            "t.id, t.cartao, d.id, d.valor, d.dataHora, d.estabelecimento, d.nsu, d.codigoAutorizacao, d.status, " +
+            "f.id, f.tipo, f.parcelas) from Transacao t join t.descricao d join t.formaPagamento f";
+
+    private static final ConsultaBusca CONSULTA_BUSCA = new ConsultaBusca(SELECT_BUSCA, "d.", "f.", "d.id", "f.id");
+
+    private final TransacaoRepository transacaoRepository;
+
+    private final DescricaoRepository descricaoRepository;
+
+    private final EntityManager entityManager;
+
+    @Override
+    public Transacao salvar(Transacao transacao) {
+        return transacaoRepository.save(transacao);
+    }
+
+    @Override
+    public List<Transacao> salvarTodos(List<Transacao> transacoes) {
+        return transacaoRepository.saveAll(transacoes);
+    }
+
+    @Override
+    public Optional<Transacao> procurarPeloId(Long id) {
+        return transacaoRepository.findById(id);
+    }
+
+    @Override
+    public List<Transacao> procurarLoteAnteriorA(Long id, String dataHoraInicio, int tamanho) {
+        return dataHoraInicio == null
+                ? transacaoRepository.findLoteAnteriorA(id, PageRequest.of(0, tamanho))
+                : transacaoRepository.findLoteAnteriorADesde(id, dataHoraInicio, PageRequest.of(0, tamanho));
+    }
+
+    @Override
+    public List<TransacaoDTO> buscar(FiltroBuscaDTO filtro, CursorBusca cursor, int tamanho) {
+        return CONSULTA_BUSCA.executar(entityManager, filtro, cursor, tamanho);
+    }
+
+    @Override
+    public CursorBusca cursorApos(FiltroBuscaDTO filtro, TransacaoDTO transacao) {
+        return CONSULTA_BUSCA.cursorApos(filtro, transacao);
+    }
+
+    @Override
+    public void exportar(FiltroBuscaDTO filtro, int tamanhoFetch, Consumer<TransacaoDTO> consumidor) {
+        CONSULTA_BUSCA.exportar(entityManager, filtro, tamanhoFetch, consumidor);
+    }
+
+    @Override
+    public int estornar(Long id) {
+        return descricaoRepository.atualizarStatus(id, StatusEnum.AUTORIZADO, StatusEnum.NEGADO);
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.api.pagamento.repository.persistencia;
+
+import com.api.pagamento.domain.dto.CursorBusca;
+import com.api.pagamento.domain.dto.FiltroBuscaDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.model.Descricao;
+import com.api.pagamento.domain.model.DescricaoPlana;
+import com.api.pagamento.domain.model.FormaPagamento;
+import com.api.pagamento.domain.model.FormaPagamentoPlana;
+import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.domain.model.TransacaoPlana;
+import com.api.pagamento.repository.TransacaoPlanaRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+//Layout plano: a transação inteira é uma linha de transacao_plana. Um pagamento é um único INSERT, uma leitura não
+//tem join e o estorno é um UPDATE da mesma linha, sem SELECT antes.
+//Descricao e FormaPagamento não têm mais ids próprios; a transação é devolvida com o id dela nos três, o que mantém
+//o TransacaoDTO e o formato do cache iguais aos do layout normalizado.
+
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "transacao.persistencia", name = "modelo", havingValue = "plano")
+public class PlanaTransacaoPersistencia implements TransacaoPersistencia {
+
+    private static final String SELECT_BUSCA = "select new " + TransacaoProjecao.class.getName() + "(" +
+            "t.id, t.cartao, t.id, t.descricao.valor, t.descricao.dataHora, t.descricao.estabelecimento, t.descricao.nsu, " +
+            "t.descricao.codigoAutorizacao, t.descricao.status, t.id, t.formaPagamento.tipo, t.formaPagamento.parcelas) " +
+            "from TransacaoPlana t";
+
+    private static final ConsultaBusca CONSULTA_BUSCA = new ConsultaBusca(SELECT_BUSCA, "t.descricao.", "t.formaPagamento.", "t.id", "t.id");
+
+    private final TransacaoPlanaRepository transacaoPlanaRepository;
+
+    private final EntityManager entityManager;
+
+    @Override
+    public Transacao salvar(Transacao transacao) {
+        atribuirId(transacao, transacaoPlanaRepository.save(paraPlana(transacao)).getId());
+        return transacao;
+    }
+
+    @Override
+    public List<Transacao> salvarTodos(List<Transacao> transacoes) {
+
+        List<TransacaoPlana> planas = transacaoPlanaRepository.saveAll(transacoes.stream()
+                .map(PlanaTransacaoPersistencia::paraPlana)
+                .collect(Collectors.toList()));
+
+        List<Transacao> salvas = new ArrayList<>(transacoes.size());
+        for (int i = 0; i < transacoes.size(); i++) {
+            atribuirId(transacoes.get(i), planas.get(i).getId());
+            salvas.add(transacoes.get(i));
+        }
+        return salvas;
+    }
+
+    @Override
+    public Optional<Transacao> procurarPeloId(Long id) {
+        return transacaoPlanaRepository.findById(id).map(PlanaTransacaoPersistencia::paraTransacao);
+    }
+
+    @Override
+    public List<Transacao> procurarLoteAnteriorA(Long id, String dataHoraInicio, int tamanho) {
+        List<TransacaoPlana> lote = dataHoraInicio == null
+                ? transacaoPlanaRepository.findLoteAnteriorA(id, PageRequest.of(0, tamanho))
+                : transacaoPlanaRepository.findLoteAnteriorADesde(id, dataHoraInicio, PageRequest.of(0, tamanho));
+        return lote.stream()
+                .map(PlanaTransacaoPersistencia::paraTransacao)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<TransacaoDTO> buscar(FiltroBuscaDTO filtro, CursorBusca cursor, int tamanho) {
+        return CONSULTA_BUSCA.executar(entityManager, filtro, cursor, tamanho);
+    }
+
+    @Override
+    public CursorBusca cursorApos(FiltroBuscaDTO filtro, TransacaoDTO transacao) {
+        return CONSULTA_BUSCA.cursorApos(filtro, transacao);
+    }
+
+    @Override
+    public void exportar(FiltroBuscaDTO filtro, int tamanhoFetch, Consumer<TransacaoDTO> consumidor) {
+        CONSULTA_BUSCA.exportar(entityManager, filtro, tamanhoFetch, consumidor);
+    }
+
+    @Override
+    public int estornar(Long id) {
+        return transacaoPlanaRepository.atualizarStatus(id, StatusEnum.AUTORIZADO, StatusEnum.NEGADO);
+    }
+
+    private static void atribuirId(Transacao transacao, Long id) {
+        transacao.setId(id);
+        transacao.getDescricao().setId(id);
+        transacao.getFormaPagamento().setId(id);
+    }
+
+    private static TransacaoPlana paraPlana(Transacao transacao) {
+
+        Descricao descricao = transacao.getDescricao();
+        FormaPagamento formaPagamento = transacao.getFormaPagamento();
+
+        return new TransacaoPlana(transacao.getId(), transacao.getCartao(),
+                new DescricaoPlana(descricao.getValor(), descricao.getDataHora(), descricao.getEstabelecimento(),
+                        descricao.getNsu(), descricao.getCodigoAutorizacao(), descricao.getStatus()),
+                new FormaPagamentoPlana(formaPagamento.getTipo(), formaPagamento.getParcelas()));
+    }
+
+    private static Transacao paraTransacao(TransacaoPlana transacaoPlana) {
+
+        DescricaoPlana descricao = transacaoPlana.getDescricao();
+        FormaPagamentoPlana formaPagamento = transacaoPlana.getFormaPagamento();
+
+        return new Transacao(transacaoPlana.getId(), transacaoPlana.getCartao(),
+                new Descricao(transacaoPlana.getId(), descricao.getValor(), descricao.getDataHora(), descricao.getEstabelecimento(),
+                        descricao.getNsu(), descricao.getCodigoAutorizacao(), descricao.getStatus()),
+                new FormaPagamento(transacaoPlana.getId(), formaPagamento.getTipo(), formaPagamento.getParcelas()));
+    }
+
+}
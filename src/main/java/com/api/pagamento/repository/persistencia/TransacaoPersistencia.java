@@ -0,0 +1,50 @@
+package com.api.pagamento.repository.persistencia;
+
+import com.api.pagamento.domain.dto.CursorBusca;
+import com.api.pagamento.domain.dto.FiltroBuscaDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.model.Transacao;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+//Persistência das transações no banco, independente do layout das tabelas (transacao.persistencia.modelo):
+//
+//  normalizado   transacao, descricao e forma_pagamento em tabelas separadas, ligadas por @OneToOne (padrão)
+//  plano         uma única linha por transação na tabela transacao_plana (ver TransacaoPlana)
+//
+//O serviço e o aquecimento do cache trabalham sempre com a entidade Transacao; cada implementação converte para o seu
+//layout. O contrato REST (TransacaoDTO) não muda.
+
+public interface TransacaoPersistencia {
+
+    //Grava o pagamento e devolve a transação com os ids preenchidos
+    Transacao salvar(Transacao transacao);
+
+    //Grava os pagamentos na mesma transação do banco, com os INSERTs em batches JDBC
+    List<Transacao> salvarTodos(List<Transacao> transacoes);
+
+    Optional<Transacao> procurarPeloId(Long id);
+
+    //Paginação por keyset: as transações com id menor que o informado, da mais recente para a mais antiga. Com
+    //dataHoraInicio (texto da API, ex.: "01/05/2021 18:00:00"), apenas as transações a partir dessa data e hora;
+    //null = todas.
+    List<Transacao> procurarLoteAnteriorA(Long id, String dataHoraInicio, int tamanho);
+
+    //Busca com filtros, projetada direto para TransacaoDTO, em ordem decrescente de data e hora, de valor ou de id,
+    //conforme os filtros (ver OrdemBuscaEnum e ConsultaBusca), a partir das transações depois do cursor
+    List<TransacaoDTO> buscar(FiltroBuscaDTO filtro, CursorBusca cursor, int tamanho);
+
+    //Cursor da página seguinte a uma página da busca que termina na transação informada
+    CursorBusca cursorApos(FiltroBuscaDTO filtro, TransacaoDTO transacao);
+
+    //Todas as transações que atendem ao filtro, na mesma ordem da busca, entregues uma a uma ao consumidor enquanto
+    //são lidas do banco, tamanhoFetch linhas por ida ao banco. Deve ser chamado dentro de uma transação.
+    void exportar(FiltroBuscaDTO filtro, int tamanhoFetch, Consumer<TransacaoDTO> consumidor);
+
+    //Estorno em um único UPDATE condicional: o status só passa para NEGADO se ainda estiver AUTORIZADO. Devolve a
+    //quantidade de linhas alteradas; 0 significa que a transação não existe ou já estava estornada no banco.
+    int estornar(Long id);
+
+}
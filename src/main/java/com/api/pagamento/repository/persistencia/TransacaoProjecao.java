@@ -0,0 +1,25 @@
+package com.api.pagamento.repository.persistencia;
+
+import com.api.pagamento.domain.dto.DescricaoDTO;
+import com.api.pagamento.domain.dto.FormaPagamentoDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.enumeration.TipoEnum;
+
+//Projeção da busca: a consulta JPQL monta o TransacaoDTO direto das colunas (select new ...), sem carregar as
+//entidades no contexto de persistência e sem passar pelo ModelMapper. O construtor é plano porque uma expressão
+//"select new" não aceita construtores aninhados.
+
+public class TransacaoProjecao extends TransacaoDTO {
+
+    public TransacaoProjecao(Long id, String cartao,
+                             Long descricaoId, String valor, String dataHora, String estabelecimento, String nsu,
+                             String codigoAutorizacao, StatusEnum status,
+                             Long formaPagamentoId, TipoEnum tipo, String parcelas) {
+
+        super(id, cartao,
+                new DescricaoDTO(descricaoId, valor, dataHora, estabelecimento, nsu, codigoAutorizacao, status),
+                new FormaPagamentoDTO(formaPagamentoId, tipo, parcelas));
+    }
+
+}
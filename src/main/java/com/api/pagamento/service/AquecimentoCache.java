@@ -0,0 +1,163 @@
+package com.api.pagamento.service;
+
+import com.api.pagamento.config.FabricaThreads;
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.domain.model.converter.DataHoraConverter;
+import com.api.pagamento.repository.TransacaoCacheRepository;
+import com.api.pagamento.repository.persistencia.TransacaoPersistencia;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Aquecimento do cache na inicialização
+//
+//Com o Redis vazio (primeira subida ou após um FLUSH), toda consulta por id cai no banco. Quando habilitado
+//(transacao.aquecimento.enabled), as transações são lidas do banco em lotes por keyset, da mais recente para a mais
+//antiga, e gravadas no Redis em pipelines por um pool de threads, enquanto a thread principal já lê o próximo lote.
+//
+//O Spring Boot só marca a aplicação como pronta (ReadinessState.ACCEPTING_TRAFFIC) depois que todos os
+//ApplicationRunner terminam. Por isso o aquecimento é executado aqui: a aplicação fica pronta quando ele termina ou
+//quando o prazo se esgota, o que acontecer primeiro.
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AquecimentoCache implements ApplicationRunner, MeterBinder {
+
+    private final TransacaoPersistencia transacaoPersistencia;
+
+    private final TransacaoCacheRepository transacaoCacheRepository;
+
+    private final TransacaoProperties transacaoProperties;
+
+    private final FabricaThreads fabricaThreads;
+
+    //Progresso
+    private final AtomicLong transacoesLidas = new AtomicLong();
+
+    private final AtomicLong transacoesGravadas = new AtomicLong();
+
+    private final AtomicLong lotesComFalha = new AtomicLong();
+
+    private volatile boolean concluido;
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+
+        TransacaoProperties.Aquecimento aquecimento = transacaoProperties.getAquecimento();
+        if (!aquecimento.isEnabled()) {
+            concluido = true;
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        long limite = inicio + aquecimento.getPrazo().toNanos();
+
+        //Fila limitada: quando os gravadores não dão conta, a própria thread de leitura grava o lote (CallerRunsPolicy),
+        //o que segura a leitura do banco em vez de acumular lotes na memória
+        ThreadPoolExecutor gravadores = new ThreadPoolExecutor(aquecimento.getThreads(), aquecimento.getThreads(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(aquecimento.getThreads() * 2), fabricaThreads.criar("aquecimento-cache-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        try {
+            ler(aquecimento, limite, gravadores);
+        } catch (RuntimeException e) {
+            //O aquecimento é opcional: uma falha não impede a aplicação de subir, as consultas usam o read-through
+            log.warn("Aquecimento do cache interrompido", e);
+        }
+
+        gravadores.shutdown();
+        if (!gravadores.awaitTermination(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+            gravadores.shutdownNow();
+            log.warn("Prazo do aquecimento do cache esgotado");
+        }
+
+        concluido = true;
+        log.info("Aquecimento do cache: {} transações lidas, {} gravadas, {} lotes com falha em {} ms",
+                transacoesLidas.get(), transacoesGravadas.get(), lotesComFalha.get(),
+                Duration.ofNanos(System.nanoTime() - inicio).toMillis());
+    }
+
+    private void ler(TransacaoProperties.Aquecimento aquecimento, long limite, ThreadPoolExecutor gravadores) {
+
+        //A janela é filtrada na própria consulta, na coluna data_hora (timestamptz). O texto segue o formato da API,
+        //no fuso do DataHoraConverter, que o converte no parâmetro da consulta.
+        String inicioJanela = aquecimento.getDias() > 0
+                ? LocalDateTime.now(DataHoraConverter.FUSO_HORARIO).minusDays(aquecimento.getDias()).format(DataHoraConverter.FORMATO)
+                : null;
+        long ultimoId = Long.MAX_VALUE;
+
+        while (System.nanoTime() < limite) {
+
+            List<Transacao> lote = transacaoPersistencia.procurarLoteAnteriorA(ultimoId, inicioJanela, aquecimento.getTamanhoLote());
+            if (lote.isEmpty()) {
+                return;
+            }
+            transacoesLidas.addAndGet(lote.size());
+            ultimoId = lote.get(lote.size() - 1).getId();
+
+            gravadores.execute(() -> gravar(lote));
+
+            if (lote.size() < aquecimento.getTamanhoLote()) {
+                return;
+            }
+        }
+    }
+
+    private void gravar(List<Transacao> lote) {
+        try {
+            transacaoCacheRepository.setHashMaps(lote);
+            transacoesGravadas.addAndGet(lote.size());
+        } catch (RuntimeException e) {
+            lotesComFalha.incrementAndGet();
+            log.warn("Falha ao gravar um lote de {} transações no cache", lote.size(), e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+
+        FunctionCounter.builder("transacao.aquecimento.transacoes", transacoesLidas, AtomicLong::get)
+                .tag("etapa", "lidas")
+                .register(registry);
+        FunctionCounter.builder("transacao.aquecimento.transacoes", transacoesGravadas, AtomicLong::get)
+                .tag("etapa", "gravadas")
+                .register(registry);
+        FunctionCounter.builder("transacao.aquecimento.lotes-com-falha", lotesComFalha, AtomicLong::get)
+                .register(registry);
+        Gauge.builder("transacao.aquecimento.concluido", this, aquecimento -> aquecimento.isConcluido() ? 1 : 0)
+                .register(registry);
+    }
+
+    public long getTransacoesLidas() {
+        return transacoesLidas.get();
+    }
+
+    public long getTransacoesGravadas() {
+        return transacoesGravadas.get();
+    }
+
+    public long getLotesComFalha() {
+        return lotesComFalha.get();
+    }
+
+    public boolean isConcluido() {
+        return concluido;
+    }
+
+}
@@ -1,12 +1,20 @@
 package com.api.pagamento.service;
 
+import com.api.pagamento.domain.dto.CursorBusca;
+import com.api.pagamento.domain.dto.FiltroBuscaDTO;
+import com.api.pagamento.domain.dto.PaginaBuscaDTO;
+import com.api.pagamento.domain.dto.ResultadoLoteDTO;
 import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.exception.CursorInvalidoException;
 import com.api.pagamento.domain.exception.InsercaoNaoPermitidaException;
 import com.api.pagamento.domain.exception.TransacaoInexistenteException;
 import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.repository.TransacaoCacheRepository.JsonCache;
+import com.api.pagamento.repository.TransacaoCacheRepository.PaginaChaves;
 
 import javax.transaction.Transactional;
-import java.util.List;
+import java.util.Iterator;
+import java.util.function.Consumer;
 
 //@Transactional
 
@@ -19,8 +27,20 @@ import java.util.List;
 public interface TransacaoService {
 
     TransacaoDTO procurarPeloId(Long id) throws TransacaoInexistenteException;
-    List<TransacaoDTO> procurarTodos() throws TransacaoInexistenteException;
+    JsonCache procurarJsonPeloId(Long id);
+    Long procurarVersaoPeloId(Long id);
+    Long procurarVersaoDaListagem();
+    //Só faz o SCAN das chaves no Redis: não precisa de uma transação (nem de uma conexão com o banco)
+    @Transactional(Transactional.TxType.SUPPORTS)
+    PaginaChaves procurarTodos(long cursor, int tamanho) throws TransacaoInexistenteException;
+    //Executado pelo StreamingResponseBody da listagem, fora da thread da requisição: só lê o Redis e não precisa de
+    //uma transação (nem de uma conexão com o banco)
+    @Transactional(Transactional.TxType.SUPPORTS)
+    void lerPagina(PaginaChaves paginaChaves, Consumer<TransacaoDTO> consumidor);
+    PaginaBuscaDTO buscar(FiltroBuscaDTO filtro, CursorBusca cursor, int tamanho) throws CursorInvalidoException;
+    void exportar(FiltroBuscaDTO filtro, Consumer<TransacaoDTO> consumidor);
     TransacaoDTO pagar(Transacao transacao) throws InsercaoNaoPermitidaException;
+    ResultadoLoteDTO pagarLote(Iterator<Transacao> transacoes);
     TransacaoDTO estornar(Long id) throws TransacaoInexistenteException;
 
 }
@@ -1,31 +1,59 @@
 package com.api.pagamento.service;
 
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.dto.CursorBusca;
 import com.api.pagamento.domain.dto.DescricaoDTO;
+import com.api.pagamento.domain.dto.FiltroBuscaDTO;
+import com.api.pagamento.domain.dto.ItemLoteDTO;
+import com.api.pagamento.domain.dto.ResultadoLoteDTO;
 import com.api.pagamento.domain.dto.FormaPagamentoDTO;
+import com.api.pagamento.domain.dto.PaginaBuscaDTO;
 import com.api.pagamento.domain.dto.TransacaoDTO;
-import com.api.pagamento.domain.dto.util.Mapper;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
+import com.api.pagamento.domain.enumeration.OrdemBuscaEnum;
 import com.api.pagamento.domain.enumeration.StatusEnum;
 import com.api.pagamento.domain.enumeration.TipoEnum;
+import com.api.pagamento.domain.exception.CursorInvalidoException;
 import com.api.pagamento.domain.exception.InsercaoNaoPermitidaException;
 import com.api.pagamento.domain.exception.TransacaoInexistenteException;
 import com.api.pagamento.domain.model.Transacao;
-import com.api.pagamento.repository.DescricaoRepository;
+import com.api.pagamento.domain.model.converter.ParcelasConverter;
+import com.api.pagamento.domain.model.converter.ValorConverter;
 import com.api.pagamento.repository.TransacaoCacheRepository;
-import com.api.pagamento.repository.TransacaoRepository;
+import com.api.pagamento.repository.TransacaoCacheRepository.EstornoCache;
+import com.api.pagamento.repository.TransacaoCacheRepository.JsonCache;
+import com.api.pagamento.repository.TransacaoCacheRepository.PaginaChaves;
+import com.api.pagamento.repository.TransacaoCacheRepository.ResultadoEstorno;
+import com.api.pagamento.repository.TransacaoNearCache;
+import com.api.pagamento.repository.TransacaoWriteBehindRepository;
+import com.api.pagamento.repository.codec.VersaoTransacao;
+import com.api.pagamento.repository.persistencia.TransacaoPersistencia;
+import com.api.pagamento.service.util.RequestCoalescer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import com.google.gson.Gson;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.core.NestedExceptionUtils;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import redis.clients.jedis.Jedis;
 
 import javax.transaction.Transactional;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 //@Service
@@ -50,55 +78,249 @@ import java.util.stream.Collectors;
 //Gera um construtor com argumentos necessários. Os argumentos obrigatórios são campos finais e campos com restrições como @NonNull.
 
 @RequiredArgsConstructor
+
+//@Timed
+//Com o TimedAspect (ver MetricasConfig), cada método público gera o timer transacao.service, com as tags class,
+//method e exception e um histograma para o cálculo de percentis no Prometheus.
+
+@Timed(value = "transacao.service", histogram = true)
 public class TransacaoServiceImp implements TransacaoService {
 
-    private final TransacaoRepository transacaoRepository;
+    private static final int TAMANHO_MAXIMO_PAGINA = 1000;
 
-    private final DescricaoRepository descricaoRepository;
+    private final TransacaoPersistencia transacaoPersistencia;
 
     private final TransacaoCacheRepository transacaoCacheRepository;
 
+    private final TransacaoNearCache transacaoNearCache;
+
+    private final TransacaoWriteBehindRepository transacaoWriteBehindRepository;
+
+    private final TransacaoProperties transacaoProperties;
+
+    private final MeterRegistry meterRegistry;
 
+    private final Validator validator;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final RequestCoalescer<Long, TransacaoDTO> carregamentos = new RequestCoalescer<>();
+
+
+    //Acertos do near-cache e do Redis não abrem uma transação (nem pegam uma conexão do pool do banco): apenas a
+    //leitura do read-through roda em uma transação, somente leitura (ver carregarDoBanco)
     @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
     public TransacaoDTO procurarPeloId(Long id) throws TransacaoInexistenteException {
 
+        //Near-cache
+        TransacaoDTO transacaoDTO = transacaoNearCache.get(id);
+        if(transacaoDTO != null){
+            return transacaoDTO;
+        }
+
+        //A marca é lida antes do Redis e do banco: se a transação for invalidada (ex.: estornada) enquanto a leitura
+        //volta, a versão lida não entra no near-cache
+        long marca = transacaoNearCache.marca(id);
+
         //Cache
-        TransacaoDTO transacaoDTO = transacaoCacheRepository.getHashMapByKey("transacao::"+id);
+        transacaoDTO = transacaoCacheRepository.getHashMapByKey("transacao::"+id);
         if(transacaoDTO != null){
+            contar("id", "redis", "acerto");
+            transacaoNearCache.put(id, transacaoDTO, marca);
             return transacaoDTO;
-        }else {
-            throw new TransacaoInexistenteException();
         }
+        contar("id", "redis", "falha");
+
+        //DataBase (read-through)
+        //Misses concorrentes do mesmo id compartilham uma única consulta ao banco
+        if(transacaoProperties.getCache().isReadThrough()){
+            transacaoDTO = carregamentos.carregar(id, () -> carregarDoBanco(id));
+            if(transacaoDTO != null){
+                contar("id", "banco", "acerto");
+                transacaoNearCache.put(id, transacaoDTO, marca);
+                return transacaoDTO;
+            }
+            contar("id", "banco", "falha");
+        }
+
+        throw new TransacaoInexistenteException();
+
+    }
+
+    //JSON pronto da transação e a sua versão, lidos do Redis com um único HMGET e sem decodificação (ver
+    //JsonRespostaTransacao). null quando a opção está desabilitada ou o campo não existe: nesse caso o controller usa
+    //procurarPeloId. Só lê o Redis, por isso não abre uma transação (nem uma conexão com o banco).
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public JsonCache procurarJsonPeloId(Long id) {
+
+        if(!transacaoProperties.getCache().isJsonPronto()){
+            return null;
+        }
+
+        //Cache
+        JsonCache json = transacaoCacheRepository.getJsonByKey("transacao::"+id);
+        contar("id", "redis-json", json == null ? "falha" : "acerto");
+        return json;
+
+    }
+
+    //Versão da transação para a requisição condicional (If-None-Match), sem ler a transação do Redis: o near-cache
+    //já tem a transação inteira e, fora dele, apenas o campo versao é lido. null quando a transação não está no cache
+    //(ou foi gravada antes da existência do campo): nesse caso o controller segue para procurarPeloId.
+    //Só lê o Redis, por isso não abre uma transação (nem uma conexão com o banco).
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public Long procurarVersaoPeloId(Long id) {
+
+        //Near-cache
+        TransacaoDTO transacaoDTO = transacaoNearCache.get(id);
+        if(transacaoDTO != null && transacaoDTO.getVersao() != null){
+            return transacaoDTO.getVersao();
+        }
+
+        //Cache
+        Long versao = transacaoCacheRepository.getVersaoByKey("transacao::"+id);
+        contar("versao", "redis", versao == null ? "falha" : "acerto");
+        return versao;
+
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public Long procurarVersaoDaListagem() {
+
+        //Cache
+        return transacaoCacheRepository.getVersaoListagem();
 
     }
 
+    //Fora de uma transação (procurarPeloId, estornar), a leitura abre uma transação somente leitura. Dentro de uma (ex.:
+    //um chamador com @Transactional), ela participa da transação existente.
+    private TransacaoDTO carregarDoBanco(Long id) {
+
+        TransactionTemplate leitura = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        leitura.setReadOnly(true);
+
+        //DataBase
+        Optional<Transacao> carregada = leitura.execute(status -> transacaoPersistencia.procurarPeloId(id));
+
+        return carregada.map(transacao -> {
+
+            //Cache
+            transacaoCacheRepository.setHashMap(transacao);
+
+            TransacaoDTO transacaoDTO = TransacaoMapper.toTransacaoDTO(transacao);
+            transacaoDTO.setVersao(VersaoTransacao.inicial(transacao.getDescricao().getStatus()));
+            return transacaoDTO;
+
+        }).orElse(null);
+
+    }
+
+    //Só as chaves da página são lidas aqui, para que o controller tenha o cursor da próxima página (e a resposta 404)
+    //antes de começar a escrever o corpo. As transações são lidas por lerPagina, durante a escrita.
+    //O @Transactional da classe tem precedência sobre o do método da interface, por isso o SUPPORTS é repetido aqui
     @Override
-    public List<TransacaoDTO> procurarTodos() throws TransacaoInexistenteException {
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public PaginaChaves procurarTodos(long cursor, int tamanho) throws TransacaoInexistenteException {
 
         //Cache
-        if(transacaoCacheRepository.getAllHashMap()!=null){
-            return transacaoCacheRepository.getAllHashMap();
-        }else {
+        PaginaChaves paginaChaves = transacaoCacheRepository.scanPage(cursor, Math.max(1, Math.min(tamanho, TAMANHO_MAXIMO_PAGINA)));
+
+        contar("pagina", "redis", paginaChaves.getChaves().isEmpty() ? "vazio" : "acerto");
+
+        //Uma primeira página vazia significa que não há nenhuma transação no cache
+        if(cursor == 0 && paginaChaves.getChaves().isEmpty()){
             throw new TransacaoInexistenteException();
         }
+        return paginaChaves;
     }
 
+    //O @Transactional da classe tem precedência sobre o do método da interface, por isso o SUPPORTS é repetido aqui
     @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public void lerPagina(PaginaChaves paginaChaves, Consumer<TransacaoDTO> consumidor) {
+
+        //Cache
+        transacaoCacheRepository.percorrer(paginaChaves, consumidor);
+    }
+
+    //A busca vai direto ao banco: o Redis só é indexado por id. O cursor é a posição da última transação da página
+    //anterior na ordem da busca (CursorBusca.INICIO = primeira página); um cursor de outra ordem (ex.: de uma busca
+    //sem período, enviado com um período) é recusado. Uma transação a mais é lida para saber se existe uma próxima
+    //página sem outra consulta. No modo write-behind, pagamentos e estornos ainda no stream não aparecem na busca.
+    @Override
+    public PaginaBuscaDTO buscar(FiltroBuscaDTO filtro, CursorBusca cursor, int tamanho) throws CursorInvalidoException {
+
+        if(!cursor.isInicio() && cursor.getOrdem() != OrdemBuscaEnum.de(filtro)){
+            throw new CursorInvalidoException();
+        }
+
+        int limite = Math.max(1, Math.min(tamanho, TAMANHO_MAXIMO_PAGINA));
+
+        //DataBase
+        List<TransacaoDTO> transacoes = transacaoPersistencia.buscar(filtro, cursor, limite + 1);
+
+        if(transacoes.size() <= limite){
+            return new PaginaBuscaDTO(transacoes, CursorBusca.INICIO);
+        }
+
+        transacoes = new ArrayList<>(transacoes.subList(0, limite));
+        return new PaginaBuscaDTO(transacoes, transacaoPersistencia.cursorApos(filtro, transacoes.get(limite - 1)));
+    }
+
+    //Exportação direto do banco, com os mesmos filtros da busca. Cada transação é entregue ao consumidor assim que é
+    //lida, sem montar a lista. A transação do serviço (@Transactional em TransacaoService) mantém o cursor aberto.
+    @Override
+    public void exportar(FiltroBuscaDTO filtro, Consumer<TransacaoDTO> consumidor) {
+
+        //DataBase
+        transacaoPersistencia.exportar(filtro, transacaoProperties.getExportacao().getTamanhoFetch(), consumidor);
+    }
+
+    //No write-behind, o pagamento só usa o Redis: nenhuma transação é aberta e nenhuma conexão do pool do banco é
+    //usada. Sem ele, apenas o INSERT roda em uma transação (TransactionTemplate).
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
     public TransacaoDTO pagar(Transacao transacao) throws InsercaoNaoPermitidaException {
 
-        if(transacao.getDescricao().getStatus() == null && transacao.getDescricao().getNsu() == null && transacao.getDescricao().getCodigoAutorizacao() == null && transacao.getId() == null && transacao.getDescricao().getId() == null && transacao.getFormaPagamento().getId() == null) {
+        if(podeInserir(transacao)) {
 
-            transacao.getDescricao().setNsu("1234567890");
-            transacao.getDescricao().setCodigoAutorizacao("147258369");
-            transacao.getDescricao().setStatus(StatusEnum.AUTORIZADO);
+            prepararPagamento(transacao);
 
-            //DataBase
-            Transacao transacaoSave = transacaoRepository.save(transacao);
+            Transacao transacaoSave;
 
-            //Cache
-            transacaoCacheRepository.setHashMap(transacaoSave);
+            if(transacaoProperties.getWriteBehind().isEnabled()){
+
+                //Write-behind
+                //O id vem do Redis e é o mesmo nas três tabelas. O pagamento é registrado no stream e no cache em uma
+                //única ida e volta; o WriteBehindFlusher o grava no banco depois.
+                atribuirId(transacao);
 
-            return (TransacaoDTO) Mapper.convert(transacaoSave, TransacaoDTO.class);
+                transacaoWriteBehindRepository.registrarPagamento(transacao);
+                transacaoSave = transacao;
+
+            }else{
+
+                //DataBase
+                transacaoSave = transactionTemplate.execute(status -> transacaoPersistencia.salvar(transacao));
+
+                //Cache
+                transacaoCacheRepository.setHashMap(transacaoSave);
+
+            }
+
+            TransacaoDTO transacaoDTO = TransacaoMapper.toTransacaoDTO(transacaoSave);
+            transacaoDTO.setVersao(VersaoTransacao.inicial(transacaoSave.getDescricao().getStatus()));
+
+            //Near-cache
+            //O id acabou de ser gerado, então nenhuma instância tem uma versão antiga dele para invalidar. A transação já
+            //entra no cache local porque pagamentos recentes são os mais consultados (ex.: terminais POS).
+            transacaoNearCache.put(transacaoDTO.getId(), transacaoDTO);
+
+            return transacaoDTO;
 
         }else{
             throw new InsercaoNaoPermitidaException();
@@ -106,22 +328,236 @@ public class TransacaoServiceImp implements TransacaoService {
 
     }
 
-    public TransacaoDTO estornar(Long id) throws TransacaoInexistenteException {
+    //Os pagamentos são lidos um a um do iterator (o corpo da requisição não é carregado inteiro na memória) e gravados
+    //em chunks: cada chunk é uma transação do banco, com os INSERTs em batches JDBC, e um único pipeline no Redis.
+    //Um pagamento inválido é rejeitado sem interromper os demais. O lote não é uma única transação do banco, por isso
+    //o @Transactional da classe não se aplica aqui.
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public ResultadoLoteDTO pagarLote(Iterator<Transacao> transacoes) {
 
-        Transacao transacao = (Transacao) Mapper.convert(procurarPeloId(id), Transacao.class);
-        transacao.getDescricao().setStatus(StatusEnum.NEGADO);
+        TransacaoProperties.Lote lote = transacaoProperties.getLote();
 
-        //Database
-        descricaoRepository.save(transacao.getDescricao());
+        List<ItemLoteDTO> itens = new ArrayList<>();
+        List<Transacao> chunk = new ArrayList<>(lote.getTamanhoChunk());
+        List<ItemLoteDTO> itensChunk = new ArrayList<>(lote.getTamanhoChunk());
+
+        for(int indice = 0; ; indice++){
+
+            Transacao transacao;
+            try{
+                if(!transacoes.hasNext()){
+                    break;
+                }
+                transacao = transacoes.next();
+            }catch(RuntimeJsonMappingException e){
+                //O item é um JSON válido, mas não uma Transacao. A leitura continua no próximo item.
+                itens.add(new ItemLoteDTO(indice, ItemLoteDTO.REJEITADO, null, e.getMessage()));
+                continue;
+            }catch(RuntimeException e){
+                //JSON malformado: não há como encontrar o início do próximo item
+                itens.add(new ItemLoteDTO(indice, ItemLoteDTO.REJEITADO, null, "Leitura interrompida: " + mensagem(e)));
+                break;
+            }
+
+            if(indice >= lote.getTamanhoMaximo()){
+                itens.add(new ItemLoteDTO(indice, ItemLoteDTO.REJEITADO, null, "O lote excede o máximo de " + lote.getTamanhoMaximo() + " pagamentos"));
+                break;
+            }
+
+            String erro = validar(transacao);
+            if(erro != null){
+                itens.add(new ItemLoteDTO(indice, ItemLoteDTO.REJEITADO, null, erro));
+                continue;
+            }
+
+            prepararPagamento(transacao);
+
+            ItemLoteDTO item = new ItemLoteDTO(indice, ItemLoteDTO.REALIZADO, null, null);
+            itens.add(item);
+            chunk.add(transacao);
+            itensChunk.add(item);
+
+            if(chunk.size() == lote.getTamanhoChunk()){
+                persistirChunk(chunk, itensChunk);
+                chunk.clear();
+                itensChunk.clear();
+            }
+        }
+
+        if(!chunk.isEmpty()){
+            persistirChunk(chunk, itensChunk);
+        }
+
+        int realizados = (int) itens.stream().filter(item -> ItemLoteDTO.REALIZADO.equals(item.getResultado())).count();
+        return new ResultadoLoteDTO(itens.size(), realizados, itens.size() - realizados, itens);
+
+    }
+
+    private void persistirChunk(List<Transacao> chunk, List<ItemLoteDTO> itens) {
+
+        List<Transacao> salvas;
+
+        if(transacaoProperties.getWriteBehind().isEnabled()){
+
+            //Write-behind
+            chunk.forEach(this::atribuirId);
+            transacaoWriteBehindRepository.registrarPagamentos(chunk);
+            salvas = chunk;
 
-        //Cache
-        TransacaoDTO transacaoDTO = transacaoCacheRepository.updateFieldHashMapByKey("transacao::"+id, "descricao::status", StatusEnum.NEGADO.toString());
-        if(transacaoDTO!=null){
-            return transacaoDTO;
         }else{
+
+            try{
+                //DataBase
+                salvas = transactionTemplate.execute(status -> transacaoPersistencia.salvarTodos(chunk));
+            }catch(RuntimeException e){
+                //Um pagamento recusado pelo banco desfaz o chunk inteiro. Os pagamentos do chunk são gravados
+                //novamente, um por transação, para rejeitar apenas o que falhou.
+                salvas = new ArrayList<>(chunk.size());
+                for(int i = 0; i < chunk.size(); i++){
+                    Transacao transacao = chunk.get(i);
+                    //Os ids atribuídos na tentativa desfeita não existem no banco
+                    transacao.setId(null);
+                    transacao.getDescricao().setId(null);
+                    transacao.getFormaPagamento().setId(null);
+                    try{
+                        salvas.add(transactionTemplate.execute(status -> transacaoPersistencia.salvar(transacao)));
+                    }catch(RuntimeException ex){
+                        itens.get(i).setResultado(ItemLoteDTO.REJEITADO);
+                        itens.get(i).setErro(mensagem(ex));
+                    }
+                }
+            }
+
+            //Cache
+            transacaoCacheRepository.setHashMaps(salvas);
+
+        }
+
+        Iterator<Transacao> iterator = salvas.iterator();
+        for(ItemLoteDTO item : itens){
+            if(ItemLoteDTO.REALIZADO.equals(item.getResultado())){
+                item.setId(iterator.next().getId());
+            }
+        }
+
+    }
+
+    //O id, o nsu, o código de autorização e o status são gerados pela aplicação
+    private static boolean podeInserir(Transacao transacao) {
+        return transacao.getDescricao().getStatus() == null && transacao.getDescricao().getNsu() == null && transacao.getDescricao().getCodigoAutorizacao() == null && transacao.getId() == null && transacao.getDescricao().getId() == null && transacao.getFormaPagamento().getId() == null;
+    }
+
+    //valor e parcelas ficam na forma canônica do banco: a transação em cache (e o seu ETag forte) é a mesma antes e
+    //depois de um recarregamento do banco
+    private static void prepararPagamento(Transacao transacao) {
+        transacao.getDescricao().setValor(ValorConverter.normalizar(transacao.getDescricao().getValor()));
+        transacao.getFormaPagamento().setParcelas(ParcelasConverter.normalizar(transacao.getFormaPagamento().getParcelas()));
+        transacao.getDescricao().setNsu("1234567890");
+        transacao.getDescricao().setCodigoAutorizacao("147258369");
+        transacao.getDescricao().setStatus(StatusEnum.AUTORIZADO);
+    }
+
+    private void atribuirId(Transacao transacao) {
+        long id = transacaoWriteBehindRepository.proximoId();
+        transacao.setId(id);
+        transacao.getDescricao().setId(id);
+        transacao.getFormaPagamento().setId(id);
+    }
+
+    //Mesmas regras do @Valid do endpoint de pagamento, aplicadas a cada item do lote
+    private String validar(Transacao transacao) {
+
+        if(transacao == null){
+            return "O pagamento não pode ser nulo";
+        }
+
+        Set<ConstraintViolation<Transacao>> violacoes = validator.validate(transacao);
+        if(!violacoes.isEmpty()){
+            return violacoes.stream()
+                    .map(violacao -> violacao.getPropertyPath() + ": " + violacao.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+
+        if(!podeInserir(transacao)){
+            return new InsercaoNaoPermitidaException().getResponseError().getMessage();
+        }
+
+        return null;
+    }
+
+    private static String mensagem(RuntimeException e) {
+        return NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+    }
+
+    //Como em pagar: no write-behind o estorno só usa o Redis; sem ele, apenas o UPDATE roda em uma transação
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public TransacaoDTO estornar(Long id) throws TransacaoInexistenteException {
+
+        String key = "transacao::"+id;
+
+        //Cache
+        //O script verifica a existência e o status e marca a transação como NEGADO em uma única ida e volta
+        EstornoCache estorno = transacaoCacheRepository.estornarHashMapByKey(key);
+
+        //DataBase (read-through)
+        //A transação pode não estar no cache (ex.: após um restart do Redis). Ela é recarregada do banco e o estorno
+        //é repetido. O near-cache não é consultado aqui porque o que importa é a chave existir no Redis.
+        if(estorno.getResultado() == ResultadoEstorno.INEXISTENTE && transacaoProperties.getCache().isReadThrough()
+                && carregamentos.carregar(id, () -> carregarDoBanco(id)) != null){
+            estorno = transacaoCacheRepository.estornarHashMapByKey(key);
+        }
+
+        if(estorno.getResultado() == ResultadoEstorno.INEXISTENTE){
             throw new TransacaoInexistenteException();
         }
-        
+
+        //Apenas quem de fato alterou o status no cache grava no banco. Um estorno repetido devolve a transação como está.
+        //Write-behind: o script do estorno já adicionou a entrada ao stream do pagamento, na mesma execução que trocou o
+        //status, então não há nada a gravar aqui.
+        if(estorno.getResultado() == ResultadoEstorno.ESTORNADO && !transacaoProperties.getWriteBehind().isEnabled()){
+
+            //Database
+            //UPDATE condicional (status = AUTORIZADO), sem SELECT antes.
+            //Se a transação do banco falhar, a chave é removida para que a próxima leitura recarregue o status
+            //verdadeiro do banco, em vez de manter no cache um estorno que não aconteceu
+            int alteradas;
+            try{
+                alteradas = transactionTemplate.execute(status -> transacaoPersistencia.estornar(id));
+            }catch(RuntimeException e){
+                transacaoCacheRepository.deleteHashMap(key);
+                transacaoNearCache.invalidar(id);
+                throw e;
+            }
+
+            //Nenhuma linha alterada significa que o cache estava desatualizado em relação ao banco (ex.: estorno
+            //aplicado no banco e cache recarregado de um valor antigo, ou transação removida do banco). O NEGADO do
+            //script não é o status verdadeiro: a chave é removida e a transação é relida do banco, que devolve o
+            //status dela e volta ao cache, ou TransacaoInexistenteException quando ela não existe mais.
+            if(alteradas == 0){
+                transacaoCacheRepository.deleteHashMap(key);
+                transacaoNearCache.invalidar(id);
+                TransacaoDTO transacaoDTO = carregarDoBanco(id);
+                if(transacaoDTO == null){
+                    throw new TransacaoInexistenteException();
+                }
+                return transacaoDTO;
+            }
+        }
+
+        //Near-cache
+        transacaoNearCache.invalidar(id);
+
+        return estorno.getTransacao();
+
+    }
+
+    //Consultas por camada: transacao.cache.consultas{operacao, camada, resultado}. Os acertos e falhas do near-cache
+    //são publicados pelo próprio TransacaoNearCache.
+    private void contar(String operacao, String camada, String resultado) {
+        meterRegistry.counter("transacao.cache.consultas", "operacao", operacao, "camada", camada, "resultado", resultado).increment();
     }
 
 }
@@ -0,0 +1,320 @@
+package com.api.pagamento.service;
+
+import com.api.pagamento.config.FabricaThreads;
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.repository.TransacaoJdbcRepository;
+import com.api.pagamento.repository.TransacaoWriteBehindRepository;
+import com.api.pagamento.repository.codec.BinarioTransacaoCodec;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+//Flusher do write-behind
+//
+//Uma thread por instância lê o stream write-behind::transacoes pelo grupo de consumo "persistencia" e grava cada lote
+//no banco em uma única transação: os pagamentos em batches JDBC e, em seguida, os estornos. Só depois do commit as
+//entradas são confirmadas (XACK) e removidas do stream. Se a instância cair ou o banco falhar antes disso, as
+//entradas continuam pendentes e são reprocessadas (at-least-once); os INSERTs idempotentes evitam duplicidade.
+//O estorno de um pagamento que ainda não está no banco (a entrada do pagamento ficou pendente) também não é
+//confirmado: ele é reivindicado depois, junto com o pagamento, e aplicado novamente.
+//
+//Um pagamento cujo id já existe no banco com outro pagamento (conflito: o contador de ids do Redis voltou no tempo)
+//não é gravado nem confirmado. Ele fica pendente no stream, é registrado no log como erro a cada nova tentativa e
+//contado em transacao.write-behind.conflitos, para ser resolvido manualmente.
+//
+//O flusher também mantém o piso da reserva de ids (TransacaoWriteBehindRepository.proximoId): o maior id do banco na
+//inicialização e a cada reivindicação, e o maior id de cada lote gravado.
+//
+//Inicia antes do servidor web (fase 0), para que o piso dos ids já esteja carregado quando o primeiro pagamento
+//chegar.
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WriteBehindFlusher implements SmartLifecycle, MeterBinder {
+
+    private final TransacaoWriteBehindRepository transacaoWriteBehindRepository;
+
+    private final TransacaoJdbcRepository transacaoJdbcRepository;
+
+    private final BinarioTransacaoCodec binarioTransacaoCodec;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransacaoProperties transacaoProperties;
+
+    private final FabricaThreads fabricaThreads;
+
+    //Métricas
+    private final AtomicLong pagamentosPersistidos = new AtomicLong();
+
+    private final AtomicLong estornosPersistidos = new AtomicLong();
+
+    private final AtomicLong lotesPersistidos = new AtomicLong();
+
+    private final AtomicLong lotesComFalha = new AtomicLong();
+
+    private final AtomicLong conflitos = new AtomicLong();
+
+    private final AtomicLong duracaoUltimoLoteMillis = new AtomicLong();
+
+    private volatile boolean executando;
+
+    private Thread thread;
+
+    @Override
+    public void start() {
+
+        if (!transacaoProperties.getWriteBehind().isEnabled()) {
+            return;
+        }
+
+        transacaoWriteBehindRepository.criarGrupo();
+        transacaoWriteBehindRepository.atualizarPiso(transacaoJdbcRepository.maiorId());
+
+        executando = true;
+        thread = fabricaThreads.nova("write-behind-flusher", this::executar);
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+
+        executando = false;
+        if (thread != null) {
+            try {
+                //O lote em andamento é concluído. O que ficar no stream é gravado por esta ou outra instância depois.
+                thread.join(transacaoProperties.getWriteBehind().getEspera().toMillis() * 2 + 5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executando;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void executar() {
+
+        TransacaoProperties.WriteBehind writeBehind = transacaoProperties.getWriteBehind();
+        String consumidor = consumidor(writeBehind);
+        long proximaReivindicacao = 0;
+
+        while (executando) {
+            try {
+
+                List<ByteRecord> entradas = List.of();
+
+                //De tempos em tempos, assume as entradas abandonadas por outras instâncias ou por uma falha anterior
+                if (System.nanoTime() >= proximaReivindicacao) {
+                    transacaoWriteBehindRepository.atualizarPiso(transacaoJdbcRepository.maiorId());
+                    entradas = transacaoWriteBehindRepository.reivindicarPendentes(consumidor, writeBehind.getTamanhoLote(), writeBehind.getOciosidade());
+                    proximaReivindicacao = System.nanoTime() + writeBehind.getOciosidade().toNanos() / 2;
+                }
+
+                if (entradas == null || entradas.isEmpty()) {
+                    entradas = transacaoWriteBehindRepository.lerNovas(consumidor, writeBehind.getTamanhoLote(), writeBehind.getEspera());
+                }
+
+                if (entradas != null && !entradas.isEmpty()) {
+                    persistir(entradas);
+                }
+
+            } catch (RuntimeException e) {
+                lotesComFalha.incrementAndGet();
+                log.warn("Falha ao persistir um lote do write-behind; as entradas serão reprocessadas", e);
+                pausar(writeBehind.getEspera().toMillis());
+            }
+        }
+    }
+
+    //Grava um lote de entradas no banco e as confirma no stream
+    void persistir(List<ByteRecord> entradas) {
+
+        long inicio = System.nanoTime();
+
+        List<TransacaoDTO> pagamentos = new ArrayList<>(entradas.size());
+        List<Long> estornos = new ArrayList<>();
+        List<RecordId> idsPagamentos = new ArrayList<>(entradas.size());
+        List<RecordId> idsEstornos = new ArrayList<>();
+        List<RecordId> ids = new ArrayList<>(entradas.size());
+
+        for (ByteRecord entrada : entradas) {
+            String tipo = TransacaoWriteBehindRepository.campo(entrada, "tipo");
+            if (TransacaoWriteBehindRepository.TIPO_PAGAMENTO.equals(tipo)) {
+                idsPagamentos.add(entrada.getId());
+                pagamentos.add(binarioTransacaoCodec.fromBytes(TransacaoWriteBehindRepository.valor(entrada, "dados")));
+            } else if (TransacaoWriteBehindRepository.TIPO_ESTORNO.equals(tipo)) {
+                idsEstornos.add(entrada.getId());
+                estornos.add(Long.valueOf(TransacaoWriteBehindRepository.campo(entrada, "id")));
+            } else {
+                ids.add(entrada.getId());
+                log.warn("Entrada desconhecida no write-behind descartada: {}", entrada.getId());
+            }
+        }
+
+        //Os estornos são aplicados depois dos pagamentos: o estorno de um pagamento do mesmo lote encontra a linha.
+        //O estorno de um pagamento em conflito não é aplicado: a linha do banco é de outro pagamento.
+        List<Long> emConflito = new ArrayList<>();
+        List<Long> semPagamento = transactionTemplate.execute(status -> {
+            if (!pagamentos.isEmpty()) {
+                emConflito.addAll(transacaoJdbcRepository.inserirPagamentos(pagamentos));
+                transacaoJdbcRepository.avancarSequencias(pagamentos.stream().mapToLong(TransacaoDTO::getId).max().getAsLong());
+            }
+            List<Long> aplicaveis = estornos.stream().filter(id -> !emConflito.contains(id)).collect(Collectors.toList());
+            return aplicaveis.isEmpty() ? List.<Long>of() : transacaoJdbcRepository.estornar(aplicaveis);
+        });
+
+        if (!pagamentos.isEmpty()) {
+            transacaoWriteBehindRepository.atualizarPiso(pagamentos.stream().mapToLong(TransacaoDTO::getId).max().getAsLong());
+        }
+
+        //Pagamentos em conflito ficam pendentes no stream
+        for (int i = 0; i < pagamentos.size(); i++) {
+            if (!emConflito.contains(pagamentos.get(i).getId())) {
+                ids.add(idsPagamentos.get(i));
+            }
+        }
+        if (!emConflito.isEmpty()) {
+            conflitos.addAndGet(emConflito.size());
+            log.error("Pagamento(s) do write-behind com id já usado por outro pagamento no banco, mantidos no stream sem gravar: {}", emConflito);
+        }
+
+        //O estorno de um pagamento que ainda não está no banco (ou em conflito) fica pendente no stream
+        int adiados = 0;
+        for (int i = 0; i < estornos.size(); i++) {
+            if (emConflito.contains(estornos.get(i)) || (semPagamento != null && semPagamento.contains(estornos.get(i)))) {
+                adiados++;
+            } else {
+                ids.add(idsEstornos.get(i));
+            }
+        }
+        if (adiados > 0) {
+            log.info("{} estorno(s) de pagamentos ainda não gravados no banco ficam pendentes no write-behind", adiados);
+        }
+
+        if (!ids.isEmpty()) {
+            transacaoWriteBehindRepository.confirmar(ids);
+        }
+
+        pagamentosPersistidos.addAndGet(pagamentos.size() - emConflito.size());
+        estornosPersistidos.addAndGet(estornos.size() - adiados);
+        lotesPersistidos.incrementAndGet();
+        duracaoUltimoLoteMillis.set((System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    private static String consumidor(TransacaoProperties.WriteBehind writeBehind) {
+
+        if (writeBehind.getConsumidor() != null && !writeBehind.getConsumidor().isBlank()) {
+            return writeBehind.getConsumidor();
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "write-behind";
+        }
+    }
+
+    private static void pausar(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+
+        if (!transacaoProperties.getWriteBehind().isEnabled()) {
+            return;
+        }
+
+        //Atraso: lidos do Redis a cada coleta
+        Gauge.builder("transacao.write-behind.pendentes", this, WriteBehindFlusher::getPendentes)
+                .description("Entradas do stream ainda não persistidas no banco")
+                .register(registry);
+        Gauge.builder("transacao.write-behind.atraso", this, WriteBehindFlusher::getAtrasoMillis)
+                .description("Idade da entrada mais antiga ainda não persistida")
+                .baseUnit("milliseconds")
+                .register(registry);
+
+        //Vazão
+        FunctionCounter.builder("transacao.write-behind.persistidos", pagamentosPersistidos, AtomicLong::get)
+                .tag("tipo", TransacaoWriteBehindRepository.TIPO_PAGAMENTO)
+                .register(registry);
+        FunctionCounter.builder("transacao.write-behind.persistidos", estornosPersistidos, AtomicLong::get)
+                .tag("tipo", TransacaoWriteBehindRepository.TIPO_ESTORNO)
+                .register(registry);
+        FunctionCounter.builder("transacao.write-behind.conflitos", conflitos, AtomicLong::get)
+                .description("Pagamentos com id já usado por outro pagamento no banco, mantidos no stream sem gravar")
+                .register(registry);
+        FunctionCounter.builder("transacao.write-behind.lotes", lotesPersistidos, AtomicLong::get)
+                .tag("resultado", "sucesso")
+                .register(registry);
+        FunctionCounter.builder("transacao.write-behind.lotes", lotesComFalha, AtomicLong::get)
+                .tag("resultado", "falha")
+                .register(registry);
+        Gauge.builder("transacao.write-behind.duracao-ultimo-lote", duracaoUltimoLoteMillis, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    //Entradas ainda não persistidas
+    public long getPendentes() {
+        return transacaoWriteBehindRepository.tamanho();
+    }
+
+    //Há quanto tempo a entrada mais antiga ainda não persistida está esperando
+    public long getAtrasoMillis() {
+        return transacaoWriteBehindRepository.atrasoMillis();
+    }
+
+    public long getPagamentosPersistidos() {
+        return pagamentosPersistidos.get();
+    }
+
+    public long getEstornosPersistidos() {
+        return estornosPersistidos.get();
+    }
+
+    public long getLotesPersistidos() {
+        return lotesPersistidos.get();
+    }
+
+    public long getConflitos() {
+        return conflitos.get();
+    }
+
+    public long getLotesComFalha() {
+        return lotesComFalha.get();
+    }
+
+    public long getDuracaoUltimoLoteMillis() {
+        return duracaoUltimoLoteMillis.get();
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.api.pagamento.service.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+//Agrupa carregamentos concorrentes da mesma chave: a primeira thread executa o carregamento e as demais, que chegam
+//enquanto ele está em andamento, aguardam e recebem o mesmo resultado. Assim, um id muito acessado que acabou de sair
+//do cache gera apenas uma consulta ao banco de dados.
+
+public class RequestCoalescer<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> emAndamento = new ConcurrentHashMap<>();
+
+    public V carregar(K chave, Supplier<V> carregador) {
+
+        CompletableFuture<V> carregamento = new CompletableFuture<>();
+        CompletableFuture<V> existente = emAndamento.putIfAbsent(chave, carregamento);
+
+        if (existente != null) {
+            try {
+                return existente.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            V valor = carregador.get();
+            carregamento.complete(valor);
+            return valor;
+        } catch (Throwable e) {
+            carregamento.completeExceptionally(e);
+            throw e;
+        } finally {
+            emAndamento.remove(chave, carregamento);
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+-- Colunas tipadas para valor, data_hora e parcelas (ver ValorConverter, DataHoraConverter e ParcelasConverter).
+-- Com ddl-auto: create-drop o Hibernate já cria as colunas assim; este script converte as linhas de bancos existentes.
+-- Deve ser executado com a aplicação parada e antes de db/transacao_plana.sql.
+--
+--   descricao.valor (texto, "500.50")                 -> descricao.valor_centavos (bigint, 50050)
+--   descricao.data_hora (texto, "01/05/2021 18:00:00")  -> timestamptz, interpretado no horário de Brasília
+--   forma_pagamento.parcelas (texto, "1")              -> smallint
+--
+-- Uma linha com texto fora do formato aceito pela API faz o ALTER falhar e nada é alterado (o script inteiro roda em
+-- uma transação). As linhas podem ser encontradas com as consultas comentadas no final.
+
+BEGIN;
+
+ALTER TABLE descricao
+    ALTER COLUMN valor TYPE BIGINT USING (round(valor::numeric * 100))::bigint,
+    ALTER COLUMN data_hora TYPE TIMESTAMP WITH TIME ZONE
+        USING to_timestamp(data_hora, 'DD/MM/YYYY HH24:MI:SS')::timestamp AT TIME ZONE 'America/Sao_Paulo';
+
+ALTER TABLE descricao RENAME COLUMN valor TO valor_centavos;
+
+ALTER TABLE forma_pagamento
+    ALTER COLUMN parcelas TYPE SMALLINT USING parcelas::smallint;
+
+COMMIT;
+
+-- SELECT id, valor FROM descricao WHERE valor !~ '^\d{1,15}(\.\d{1,2})?$';
+-- SELECT id, data_hora FROM descricao WHERE data_hora !~ '^\d{2}/\d{2}/\d{4} \d{2}:\d{2}:\d{2}$';
+-- SELECT id, parcelas FROM forma_pagamento WHERE parcelas !~ '^\d{1,4}$';
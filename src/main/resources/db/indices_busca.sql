@@ -0,0 +1,45 @@
+-- Índices de GET /transacao/v1/busca (ver ConsultaBusca).
+-- Com ddl-auto: create-drop o Hibernate cria os índices de coluna declarados nas entidades; o índice de expressão do
+-- final do cartão só existe neste script. CONCURRENTLY não bloqueia as gravações durante a criação, mas não pode
+-- rodar dentro de uma transação: executar cada comando separadamente (ex.: psql sem --single-transaction).
+--
+-- A busca é ordenada pelo índice que seleciona as linhas e pagina por keyset a partir do cursor, então cada índice
+-- termina no id que desempata a ordem:
+--   - período: (data_hora, id), pagina por "(data_hora, id) < cursor";
+--   - faixa de valor, sem período: (valor_centavos, id);
+--   - estabelecimento ou status, sem período e sem faixa: (coluna, id);
+--   - tipo, sem os anteriores: (tipo, id);
+--   - final do cartão ou nenhum filtro: (right(cartao, 4), id) ou a chave primária da transação.
+-- O banco desce pelo índice direto a partir do cursor e lê as linhas da página: o custo não depende da profundidade.
+-- Os demais filtros da requisição são conferidos nas linhas lidas por esse índice.
+--
+-- No layout normalizado os índices são das tabelas descricao e forma_pagamento e terminam no id delas: a busca segue
+-- a ordem do id da descricao (ou da forma_pagamento) e chega à transacao pelas chaves estrangeiras, indexadas abaixo.
+
+-- Layout plano
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transacao_plana_estabelecimento ON transacao_plana (estabelecimento, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transacao_plana_status ON transacao_plana (status, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transacao_plana_tipo ON transacao_plana (tipo, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transacao_plana_final_cartao ON transacao_plana (right(cartao, 4), id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transacao_plana_data_hora_id ON transacao_plana (data_hora, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transacao_plana_valor_centavos_id ON transacao_plana (valor_centavos, id);
+
+-- Layout normalizado
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_descricao_estabelecimento_id ON descricao (estabelecimento, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_descricao_status_id ON descricao (status, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_descricao_data_hora_id ON descricao (data_hora, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_descricao_valor_centavos_id ON descricao (valor_centavos, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_forma_pagamento_tipo_id ON forma_pagamento (tipo, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transacao_final_cartao ON transacao (right(cartao, 4), id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transacao_descricao ON transacao (descricao_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transacao_forma_pagamento ON transacao (forma_pagamento_id);
+
+-- Índices de coluna única das versões anteriores, substituídos pelos índices (coluna, id) acima. Remover depois de
+-- criar os novos.
+DROP INDEX CONCURRENTLY IF EXISTS idx_transacao_plana_data_hora;
+DROP INDEX CONCURRENTLY IF EXISTS idx_transacao_plana_valor_centavos;
+DROP INDEX CONCURRENTLY IF EXISTS idx_descricao_estabelecimento;
+DROP INDEX CONCURRENTLY IF EXISTS idx_descricao_status;
+DROP INDEX CONCURRENTLY IF EXISTS idx_descricao_data_hora;
+DROP INDEX CONCURRENTLY IF EXISTS idx_descricao_valor_centavos;
+DROP INDEX CONCURRENTLY IF EXISTS idx_forma_pagamento_tipo;
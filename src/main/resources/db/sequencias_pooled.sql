@@ -0,0 +1,14 @@
+-- Sequences com INCREMENT BY 50, igual ao allocationSize das entidades Transacao, Descricao e FormaPagamento.
+-- Com ddl-auto: create-drop o Hibernate já cria as sequences assim; este script é para bancos criados antes da mudança,
+-- em que as sequences têm INCREMENT BY 1. Deve ser executado com a aplicação parada: uma instância antiga
+-- (allocationSize = 1) usaria cada valor da sequence como id e colidiria com os blocos reservados pelas novas.
+--
+-- O setval garante que o primeiro bloco reservado comece depois do maior id existente.
+
+ALTER SEQUENCE seq_transacao INCREMENT BY 50;
+ALTER SEQUENCE seq_descricao INCREMENT BY 50;
+ALTER SEQUENCE seq_forma_pagamento INCREMENT BY 50;
+
+SELECT setval('seq_transacao', GREATEST((SELECT last_value FROM seq_transacao), (SELECT COALESCE(MAX(id), 1) FROM transacao)));
+SELECT setval('seq_descricao', GREATEST((SELECT last_value FROM seq_descricao), (SELECT COALESCE(MAX(id), 1) FROM descricao)));
+SELECT setval('seq_forma_pagamento', GREATEST((SELECT last_value FROM seq_forma_pagamento), (SELECT COALESCE(MAX(id), 1) FROM forma_pagamento)));
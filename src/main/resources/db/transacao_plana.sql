@@ -0,0 +1,36 @@
+-- Migração do layout normalizado (transacao, descricao e forma_pagamento) para o plano (transacao_plana).
+-- Com ddl-auto: create-drop o Hibernate já cria a tabela; este script é para bancos existentes, depois de
+-- db/colunas_tipadas.sql.
+--
+-- 1. Executar este script com a aplicação ainda no layout normalizado. A cópia é idempotente (ON CONFLICT DO NOTHING)
+--    e pode ser repetida para trazer os pagamentos gravados enquanto ela rodava.
+-- 2. Parar a aplicação, executar a cópia novamente e subir com transacao.persistencia.modelo: plano.
+-- As tabelas antigas não são removidas: elas permitem voltar ao layout normalizado e as sequences seq_descricao e
+-- seq_forma_pagamento continuam sendo lidas pelo write-behind (TransacaoJdbcRepository.maiorId).
+--
+-- Os ids são mantidos: o cache (transacao::<id>) continua válido e a sequence seq_transacao segue gerando os ids.
+
+CREATE TABLE IF NOT EXISTS transacao_plana (
+    id                 BIGINT PRIMARY KEY,
+    cartao             VARCHAR(255),
+    valor_centavos     BIGINT,
+    data_hora          TIMESTAMP WITH TIME ZONE,
+    estabelecimento    VARCHAR(255),
+    nsu                VARCHAR(255),
+    codigo_autorizacao VARCHAR(255),
+    status             INTEGER,
+    tipo               INTEGER,
+    parcelas           SMALLINT
+);
+
+INSERT INTO transacao_plana (id, cartao, valor_centavos, data_hora, estabelecimento, nsu, codigo_autorizacao, status, tipo, parcelas)
+SELECT t.id, t.cartao, d.valor_centavos, d.data_hora, d.estabelecimento, d.nsu, d.codigo_autorizacao, d.status, f.tipo, f.parcelas
+FROM transacao t
+JOIN descricao d ON d.id = t.descricao_id
+JOIN forma_pagamento f ON f.id = t.forma_pagamento_id
+ON CONFLICT (id) DO NOTHING;
+
+-- Estornos feitos depois da primeira cópia
+UPDATE transacao_plana p SET status = d.status
+FROM transacao t JOIN descricao d ON d.id = t.descricao_id
+WHERE t.id = p.id AND p.status IS DISTINCT FROM d.status;
@@ -0,0 +1,64 @@
+-- Estorno atômico de uma transação no cache, em uma única ida e volta ao Redis.
+--
+-- KEYS[1]  transacao::<id>
+-- KEYS[2]  versao::transacoes (versão da listagem)
+-- KEYS[3]  write-behind::transacoes (opcional: só quando o write-behind está habilitado)
+-- ARGV[1]  status que pode ser estornado, em texto (formato hash)
+-- ARGV[2]  status após o estorno, em texto (formato hash)
+-- ARGV[3]  ordinal do status que pode ser estornado (formato binário)
+-- ARGV[4]  ordinal do status após o estorno (formato binário)
+-- ARGV[5]  posição (a partir de 0) do byte de status no formato binário
+-- ARGV[6]  trecho do JSON pronto com o status que pode ser estornado (ex.: "status":"AUTORIZADO")
+-- ARGV[7]  trecho do JSON pronto com o status após o estorno
+-- ARGV[8]  valor inicial de KEYS[2], caso a chave não exista
+-- ARGV[9]  tipo da entrada de estorno no stream KEYS[3] (com KEYS[3])
+-- ARGV[10] id da transação, gravado na entrada do stream (com KEYS[3])
+--
+-- Retorno: { resultado, campo1, valor1, campo2, valor2, ... }
+--   resultado 0 = a transação não está no cache
+--   resultado 1 = o status foi alterado por esta chamada
+--   resultado 2 = a transação não estava em um status que pode ser estornado (ex.: já foi estornada)
+
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return { 0 }
+end
+
+local resultado = 2
+local dados = redis.call('HGET', KEYS[1], 'dados')
+
+if dados then
+    local posicao = tonumber(ARGV[5]) + 1
+    if string.byte(dados, posicao) == tonumber(ARGV[3]) then
+        dados = string.sub(dados, 1, posicao - 1) .. string.char(tonumber(ARGV[4])) .. string.sub(dados, posicao + 1)
+        redis.call('HSET', KEYS[1], 'dados', dados)
+        resultado = 1
+    end
+elseif redis.call('HGET', KEYS[1], 'descricao::status') == ARGV[1] then
+    redis.call('HSET', KEYS[1], 'descricao::status', ARGV[2])
+    resultado = 1
+end
+
+-- As versões da transação e da listagem (ETags) só mudam quando o status muda.
+-- JSON pronto (campo json), quando existir. A busca é literal (plain = true), sem os padrões do Lua.
+-- Write-behind: a entrada do estorno é adicionada ao stream no mesmo script que troca o status, então o cache nunca
+-- fica NEGADO sem que o estorno siga para o banco.
+if resultado == 1 then
+    if KEYS[3] then
+        redis.call('XADD', KEYS[3], '*', 'tipo', ARGV[9], 'id', ARGV[10])
+    end
+    redis.call('HINCRBY', KEYS[1], 'versao', 1)
+    redis.call('SET', KEYS[2], ARGV[8], 'NX')
+    redis.call('INCR', KEYS[2])
+
+    local json = redis.call('HGET', KEYS[1], 'json')
+    if json then
+        local inicio, fim = string.find(json, ARGV[6], 1, true)
+        if inicio then
+            redis.call('HSET', KEYS[1], 'json', string.sub(json, 1, inicio - 1) .. ARGV[7] .. string.sub(json, fim + 1))
+        end
+    end
+end
+
+local hash = redis.call('HGETALL', KEYS[1])
+table.insert(hash, 1, resultado)
+return hash
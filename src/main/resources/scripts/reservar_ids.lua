@@ -0,0 +1,17 @@
+-- Reserva um bloco de ids do write-behind. Antes do INCRBY, o contador é avançado até o piso informado, sem nunca
+-- recuá-lo: se o Redis voltar no tempo (restart sem o fim do AOF, failover para uma réplica atrasada, RDB antigo), o
+-- contador não entrega ids que o banco já tem.
+--
+-- KEYS[1]  write-behind::sequencia
+-- ARGV[1]  piso: maior id já gravado no banco ou já reservado por esta instância
+-- ARGV[2]  tamanho do bloco
+--
+-- Retorno: o último id do bloco reservado
+
+local atual = tonumber(redis.call('GET', KEYS[1]) or '0')
+
+if atual < tonumber(ARGV[1]) then
+    redis.call('SET', KEYS[1], ARGV[1])
+end
+
+return redis.call('INCRBY', KEYS[1], ARGV[2])
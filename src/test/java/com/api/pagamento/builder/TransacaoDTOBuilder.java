@@ -2,7 +2,6 @@ package com.api.pagamento.builder;
 import com.api.pagamento.domain.dto.DescricaoDTO;
 import com.api.pagamento.domain.dto.FormaPagamentoDTO;
 import com.api.pagamento.domain.dto.TransacaoDTO;
-import com.api.pagamento.domain.dto.util.Mapper;
 import com.api.pagamento.domain.model.Descricao;
 import com.api.pagamento.domain.model.FormaPagamento;
 import lombok.Builder;
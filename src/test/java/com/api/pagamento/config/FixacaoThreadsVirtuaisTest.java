@@ -0,0 +1,76 @@
+package com.api.pagamento.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+public class FixacaoThreadsVirtuaisTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private FixacaoThreadsVirtuais fixacaoThreadsVirtuais;
+
+    // @BeforeEach: Execute antes de cada método de teste.
+    @BeforeEach
+    void setUp() {
+        TransacaoProperties transacaoProperties = new TransacaoProperties();
+        transacaoProperties.getThreads().setLimiteFixacao(Duration.ofMillis(10));
+        fixacaoThreadsVirtuais = new FixacaoThreadsVirtuais(transacaoProperties);
+        fixacaoThreadsVirtuais.bindTo(meterRegistry);
+        fixacaoThreadsVirtuais.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixacaoThreadsVirtuais.stop();
+    }
+
+    //Quando uma thread virtual bloqueia dentro de um synchronized, a fixação é contada com a classe que segurava o monitor
+    @Test
+    void whenVirtualThreadBlocksInsideSynchronizedThenPinningIsCounted() throws Exception {
+
+        // Dado
+
+            Object monitor = new Object();
+
+        //Quando
+
+            Thread thread = Thread.ofVirtual().start(() -> {
+                synchronized (monitor) {
+                    dormir(100);
+                }
+            });
+            thread.join();
+
+        // Então
+
+            //Os eventos do JFR chegam ao stream com algum atraso
+            Counter fixacoes = null;
+            for (int tentativa = 0; tentativa < 100 && fixacoes == null; tentativa++) {
+                fixacoes = meterRegistry.find("transacao.threads.fixacoes").tag("origem", getClass().getName()).counter();
+                dormir(100);
+            }
+
+            assertThat(fixacoes, is(notNullValue()));
+            assertThat(fixacoes.count(), is(greaterThanOrEqualTo(1.0)));
+
+    }
+
+    private static void dormir(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.api.pagamento.config;
+
+import com.api.pagamento.builder.TransacaoDTOBuilder;
+import com.api.pagamento.domain.dto.ResponseErrorDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.FormatoEnum;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.enumeration.TipoEnum;
+import com.api.pagamento.domain.model.Transacao;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+public class FormatosTransacaoTest {
+
+    private final FormatosTransacao formatosTransacao = new FormatosTransacao(new ObjectMapper());
+
+    //Quando uma transação é escrita e lida em qualquer formato, o resultado é igual ao original, e os formatos binários
+    //são menores do que o JSON
+    @Test
+    void whenTransactionIsWrittenAndReadThenItIsTheSameInEveryFormat() throws Exception {
+
+        // Dado
+
+        TransacaoDTO transacaoDTO = newTransacaoDTO();
+
+        byte[] json = formatosTransacao.writer(FormatoEnum.JSON, TransacaoDTO.class).writeValueAsBytes(transacaoDTO);
+
+        for (FormatoEnum formato : FormatoEnum.values()) {
+
+            //Quando
+
+            byte[] corpo = formatosTransacao.writer(formato, TransacaoDTO.class).writeValueAsBytes(transacaoDTO);
+            TransacaoDTO lido = formatosTransacao.reader(formato, TransacaoDTO.class).readValue(corpo);
+
+            // Então
+
+                assertThat(formato.name(), lido, is(equalTo(transacaoDTO)));
+                if (formato != FormatoEnum.JSON) {
+                    assertThat(formato.name(), corpo.length, is(lessThan(json.length)));
+                }
+        }
+
+    }
+
+    //Quando um pagamento chega em Protobuf, ele é lido na entidade, como no POST em JSON
+    @Test
+    void whenPaymentIsReadFromProtobufThenEntityIsFilled() throws Exception {
+
+        // Dado
+
+        TransacaoDTO pagamento = newTransacaoDTO();
+        pagamento.setId(null);
+        pagamento.getDescricao().setStatus(null);
+
+        byte[] corpo = formatosTransacao.writer(FormatoEnum.PROTOBUF, TransacaoDTO.class).writeValueAsBytes(pagamento);
+
+        //Quando
+
+        Transacao transacao = formatosTransacao.reader(FormatoEnum.PROTOBUF, Transacao.class).readValue(corpo);
+
+        // Então
+
+            assertThat(transacao.getId(), is(nullValue()));
+            assertThat(transacao.getCartao(), is(equalTo(pagamento.getCartao())));
+            assertThat(transacao.getDescricao().getValor(), is(equalTo(pagamento.getDescricao().getValor())));
+            //Um campo ausente continua nulo (proto2), e não com o primeiro valor do enum
+            assertThat(transacao.getDescricao().getStatus(), is(nullValue()));
+            assertThat(transacao.getFormaPagamento().getTipo(), is(equalTo(TipoEnum.AVISTA)));
+
+    }
+
+    //Quando um erro é escrito em Protobuf, a mensagem Erro é usada
+    @Test
+    void whenErrorIsWrittenAsProtobufThenItCanBeRead() throws Exception {
+
+        // Dado
+
+        ResponseErrorDTO erro = new ResponseErrorDTO(404, "Not Found", "Transação inexistente");
+
+        //Quando
+
+        byte[] corpo = formatosTransacao.writer(FormatoEnum.PROTOBUF, ResponseErrorDTO.class).writeValueAsBytes(erro);
+
+        // Então
+
+            assertThat(formatosTransacao.reader(FormatoEnum.PROTOBUF, ResponseErrorDTO.class).readValue(corpo), is(equalTo(erro)));
+
+    }
+
+    //Os ids de descricao e formaPagamento não fazem parte da API (@JsonIgnore)
+    private static TransacaoDTO newTransacaoDTO() {
+
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+        transacaoDTO.getDescricao().setId(null);
+        transacaoDTO.getDescricao().setNsu("1234567890");
+        transacaoDTO.getDescricao().setCodigoAutorizacao("147258369");
+        transacaoDTO.getDescricao().setStatus(StatusEnum.AUTORIZADO);
+        transacaoDTO.getFormaPagamento().setId(null);
+        return transacaoDTO;
+    }
+
+}
@@ -1,32 +1,68 @@
 package com.api.pagamento.controller;
 
 import com.api.pagamento.builder.TransacaoDTOBuilder;
+import com.api.pagamento.config.FormatosTransacao;
+import com.api.pagamento.domain.dto.CursorBusca;
+import com.api.pagamento.domain.dto.FiltroBuscaDTO;
+import com.api.pagamento.domain.dto.ItemLoteDTO;
+import com.api.pagamento.domain.dto.PaginaBuscaDTO;
+import com.api.pagamento.domain.dto.ResultadoLoteDTO;
 import com.api.pagamento.domain.dto.TransacaoDTO;
-import com.api.pagamento.domain.dto.util.Mapper;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
+import com.api.pagamento.domain.enumeration.FormatoEnum;
 import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.exception.CursorInvalidoException;
 import com.api.pagamento.domain.exception.InsercaoNaoPermitidaException;
 import com.api.pagamento.domain.exception.TransacaoInexistenteException;
 import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.repository.TransacaoCacheRepository.JsonCache;
+import com.api.pagamento.repository.TransacaoCacheRepository.PaginaChaves;
 import com.api.pagamento.service.TransacaoService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
 import com.google.gson.Gson;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /*
@@ -109,6 +145,13 @@ public class TransacaoControllerTest {
     @Mock
     private TransacaoService transacaoService;
 
+    // Spy: uma instância real injetada no controller
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private FormatosTransacao formatosTransacao = new FormatosTransacao(objectMapper);
+
     // InjectMocks: Cria uma intancia e injeta as dependências necessárias que estão anotadas com @Mock.
     @InjectMocks
     private TransacaoController transacaoController;
@@ -139,7 +182,7 @@ public class TransacaoControllerTest {
         transacaoDTO.getDescricao().setStatus(StatusEnum.AUTORIZADO);
 
         //Tranforma o TransacaoDTO em um Transacao
-        Transacao transacao = (Transacao) Mapper.convert(transacaoDTO, Transacao.class);
+        Transacao transacao = TransacaoMapper.toTransacao(transacaoDTO);
 
         transacao.setId(null);
         transacao.getDescricao().setId(null);
@@ -186,7 +229,7 @@ public class TransacaoControllerTest {
         TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
 
         //Tranforma o TransacaoDTO em um Transacao
-        Transacao transacao = (Transacao) Mapper.convert(transacaoDTO, Transacao.class);
+        Transacao transacao = TransacaoMapper.toTransacao(transacaoDTO);
 
         transacao.setId(null);
         transacao.getDescricao().setId(null);
@@ -256,7 +299,7 @@ public class TransacaoControllerTest {
         transacaoDTO.getDescricao().setEstabelecimento(null);
 
         //Tranforma o TransacaoDTO em um Transacao
-        Transacao transacao = (Transacao) Mapper.convert(transacaoDTO, Transacao.class);
+        Transacao transacao = TransacaoMapper.toTransacao(transacaoDTO);
 
         transacao.setId(null);
         transacao.getDescricao().setId(null);
@@ -366,6 +409,229 @@ public class TransacaoControllerTest {
 
     }
 
+    //Quando o JSON pronto da transação está no cache, ele é retornado como está, sem passar pelo TransacaoDTO
+    @Test
+    void whenCachedJsonExistsThenItIsReturnedAsIs() throws Exception {
+
+        //Dado
+
+            byte[] json = "{\"id\":1,\"cartao\":\"4444********1234\"}".getBytes(StandardCharsets.UTF_8);
+
+        //Quando
+
+            //transacaoService.procurarJsonPeloId(1) -> json
+            when(transacaoService.procurarJsonPeloId(1L))
+                    .thenReturn(new JsonCache(json, 1L));
+
+        // Então
+
+           mockMvc.perform(get("/transacao/v1/1"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(content().bytes(json));
+
+           verify(transacaoService, never()).procurarPeloId(any());
+
+    }
+
+    //Quando o If-None-Match tem a versão atual da transação, um 304 é retornado sem que a transação seja lida
+    @Test
+    void whenIfNoneMatchHasCurrentVersionThenNotModifiedIsReturned() throws Exception {
+
+        //Quando
+
+            //transacaoService.procurarVersaoPeloId(1) -> 2
+            when(transacaoService.procurarVersaoPeloId(1L))
+                    .thenReturn(2L);
+
+        // Então
+
+           mockMvc.perform(get("/transacao/v1/1")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"1-json\", \"2-json\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"2-json\""))
+                    .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                    .andExpect(content().bytes(new byte[0]));
+
+           verify(transacaoService, never()).procurarPeloId(any());
+           verify(transacaoService, never()).procurarJsonPeloId(any());
+
+    }
+
+    //Quando a transação mudou (ex.: foi estornada), ela é retornada com o ETag da nova versão, que depende do formato
+    @Test
+    void whenVersionChangedThenTransactionIsReturnedWithNewETag() throws Exception {
+
+        //Dado
+
+            TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+            transacaoDTO.getDescricao().setStatus(StatusEnum.NEGADO);
+            transacaoDTO.setVersao(2L);
+
+        //Quando
+
+            //transacaoService.procurarVersaoPeloId(1) -> 2
+            when(transacaoService.procurarVersaoPeloId(1L))
+                    .thenReturn(2L);
+
+            //transacaoService.procurarPeloId(1) -> transacaoDTO
+            when(transacaoService.procurarPeloId(1L))
+                    .thenReturn(transacaoDTO);
+
+        // Então
+
+           mockMvc.perform(get("/transacao/v1/1")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"1-json\""))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"2-json\""))
+                    .andExpect(jsonPath("$.descricao.status", is("NEGADO")))
+                    .andExpect(jsonPath("$.versao").doesNotExist());
+
+           mockMvc.perform(get("/transacao/v1/1")
+                        .accept(FormatoEnum.CBOR_VALUE)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"2-json\""))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"2-cbor\""));
+
+    }
+
+    //Quando o If-None-Match tem a versão atual da listagem e as mesmas chaves, um 304 é retornado sem ler as transações
+    @Test
+    void whenPageIfNoneMatchHasCurrentVersionThenNotModifiedIsReturned() throws Exception {
+
+        //Dado
+
+            PaginaChaves paginaChaves = new PaginaChaves(List.of(chave(1), chave(2)), 0L);
+            String etag = "W/\"7-" + paginaChaves.impressaoDigital() + "-json\"";
+
+        //Quando
+
+            //transacaoService.procurarVersaoDaListagem() -> 7
+            when(transacaoService.procurarVersaoDaListagem())
+                    .thenReturn(7L);
+
+            //transacaoService.procurarTodos(0, 100) -> paginaChaves
+            when(transacaoService.procurarTodos(0, 100))
+                    .thenReturn(paginaChaves);
+
+        // Então
+
+           mockMvc.perform(get("/transacao/v1")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+           verify(transacaoService, never()).lerPagina(any(), any());
+
+    }
+
+    //Quando uma chave da página expirou ou foi removida pela eviction do Redis, o contador da listagem não muda, mas o
+    //ETag muda e a página é retornada
+    @Test
+    void whenPageKeyExpiredThenPageIsReturnedWithNewETag() throws Exception {
+
+        //Dado
+
+            String etagAnterior = "W/\"7-" + new PaginaChaves(List.of(chave(1), chave(2)), 0L).impressaoDigital() + "-json\"";
+            PaginaChaves paginaChaves = new PaginaChaves(List.of(chave(1)), 0L);
+
+        //Quando
+
+            //transacaoService.procurarVersaoDaListagem() -> 7, a mesma versão do ETag anterior
+            when(transacaoService.procurarVersaoDaListagem())
+                    .thenReturn(7L);
+
+            //transacaoService.procurarTodos(0, 100) -> sem a chave transacao::2
+            when(transacaoService.procurarTodos(0, 100))
+                    .thenReturn(paginaChaves);
+
+        // Então
+
+           mockMvc.perform(get("/transacao/v1")
+                        .header(HttpHeaders.IF_NONE_MATCH, etagAnterior))
+                    .andExpect(request().asyncStarted())
+                    .andExpect(header().string(HttpHeaders.ETAG, "W/\"7-" + paginaChaves.impressaoDigital() + "-json\""));
+
+    }
+
+    //Quando a transação é pedida em CBOR, ela é serializada pelo conversor de CBOR e o JSON pronto não é consultado
+    @Test
+    void whenTransactionByIdIsRequestedAsCborThenCborIsReturned() throws Exception {
+
+        //Dado
+
+            TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+            transacaoDTO.getDescricao().setStatus(StatusEnum.AUTORIZADO);
+
+        //Quando
+
+            //transacaoService.procurarPeloId(1) -> transacaoDTO
+            when(transacaoService.procurarPeloId(1L))
+                    .thenReturn(transacaoDTO);
+
+            MvcResult mvcResult = mockMvc.perform(get("/transacao/v1/1")
+                        .accept(FormatoEnum.CBOR_VALUE))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(FormatoEnum.CBOR_VALUE))
+                    .andReturn();
+
+        // Então
+
+           TransacaoDTO lido = new CBORMapper().readValue(mvcResult.getResponse().getContentAsByteArray(), TransacaoDTO.class);
+
+           assertThat(lido.getId(), is(equalTo(transacaoDTO.getId())));
+           assertThat(lido.getCartao(), is(equalTo(transacaoDTO.getCartao())));
+           assertThat(lido.getDescricao().getStatus(), is(equalTo(StatusEnum.AUTORIZADO)));
+
+           verify(transacaoService, never()).procurarJsonPeloId(any());
+
+    }
+
+    //Quando a listagem é pedida em Protobuf, o corpo é uma mensagem PaginaTransacoes com uma transação por campo
+    @Test
+    void whenPageIsRequestedAsProtobufThenPaginaTransacoesIsReturned() throws Exception {
+
+        //Dado
+
+            TransacaoDTO transacaoDTO1 = TransacaoDTOBuilder.builder().id(1L).build().toTransacaoDTO();
+            TransacaoDTO transacaoDTO2 = TransacaoDTOBuilder.builder().id(300L).build().toTransacaoDTO();
+            transacaoDTO2.getDescricao().setStatus(StatusEnum.NEGADO);
+
+        //Quando
+
+            when(transacaoService.procurarTodos(0, 100))
+                    .thenReturn(new PaginaChaves(List.of(), 0L));
+
+            doAnswer(invocation -> {
+                Consumer<TransacaoDTO> consumidor = invocation.getArgument(1);
+                consumidor.accept(transacaoDTO1);
+                consumidor.accept(transacaoDTO2);
+                return null;
+            }).when(transacaoService).lerPagina(any(), any());
+
+            MvcResult mvcResult = mockMvc.perform(get("/transacao/v1")
+                        .accept(FormatoEnum.PROTOBUF_VALUE))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+        // Então
+
+           mockMvc.perform(asyncDispatch(mvcResult))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(FormatoEnum.PROTOBUF_VALUE));
+
+           ProtobufSchema paginaTransacoes = ProtobufSchemaLoader.std.loadNative(getClass().getResource("/proto/transacao.proto")).forType("PaginaTransacoes");
+           JsonNode pagina = new ProtobufMapper().readerFor(JsonNode.class).with(paginaTransacoes).readValue(mvcResult.getResponse().getContentAsByteArray());
+
+           assertThat(pagina.get("transacoes").size(), is(equalTo(2)));
+           assertThat(pagina.get("transacoes").get(0).get("id").asLong(), is(equalTo(1L)));
+           assertThat(pagina.get("transacoes").get(1).get("id").asLong(), is(equalTo(300L)));
+           assertThat(pagina.get("transacoes").get(1).get("cartao").asText(), is(equalTo(transacaoDTO2.getCartao())));
+           //Lido sem uma classe Java, o enum vem com o número do esquema: Status.NEGADO = 1
+           assertThat(pagina.get("transacoes").get(1).get("descricao").get("status").asInt(), is(equalTo(1)));
+
+    }
+
     //Quando a transacao é chamada, todas as transações são retornadas
     @Test
     void whenTransactionIsCalledThenAllIsReturned() throws Exception {
@@ -392,9 +658,30 @@ public class TransacaoControllerTest {
 
         //Quando
 
-            //transacaoService.procurarTodos() -> transacaoDTOList
-            when(transacaoService.procurarTodos())
-                    .thenReturn(transacaoDTOList);
+            PaginaChaves paginaChaves = new PaginaChaves(List.of(), 0L);
+
+            //transacaoService.procurarTodos(0, 100) -> paginaChaves
+            when(transacaoService.procurarTodos(0, 100))
+                    .thenReturn(paginaChaves);
+
+            //transacaoService.procurarVersaoDaListagem() -> 7
+            when(transacaoService.procurarVersaoDaListagem())
+                    .thenReturn(7L);
+
+            //transacaoService.lerPagina(paginaChaves, consumidor) -> transacaoDTOList entregue ao consumidor
+            doAnswer(invocation -> {
+                Consumer<TransacaoDTO> consumidor = invocation.getArgument(1);
+                transacaoDTOList.forEach(consumidor);
+                return null;
+            }).when(transacaoService).lerPagina(any(), any());
+
+            //Os cabeçalhos com o cursor e o ETag (fraco) são definidos antes de o corpo começar a ser escrito
+            MvcResult mvcResult = mockMvc.perform(get("/transacao/v1")
+                        .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(request().asyncStarted())
+                    .andExpect(header().string(TransacaoController.CABECALHO_PROXIMO_CURSOR, "0"))
+                    .andExpect(header().string(HttpHeaders.ETAG, "W/\"7-" + paginaChaves.impressaoDigital() + "-json\""))
+                    .andReturn();
 
         // Então
 
@@ -404,9 +691,9 @@ public class TransacaoControllerTest {
             //andExpect: Espera-se que o post retorne o status OK
             //andExpect: Espera-se que $.id seja igual a transacaoDTO.getId()
 
-           mockMvc.perform(get("/transacao/v1")
-                        .contentType(MediaType.APPLICATION_JSON))
+           mockMvc.perform(asyncDispatch(mvcResult))
                     .andExpect(status().isOk())
+                    .andExpect(header().string(TransacaoController.CABECALHO_PROXIMO_CURSOR, "0"))
                     .andExpect(jsonPath("$.[0].id", is(Math.toIntExact(transacaoDTO1.getId()))))
                     .andExpect(jsonPath("$.[0].cartao", is(transacaoDTO1.getCartao())))
                     .andExpect(jsonPath("$.[0].descricao.valor", is(transacaoDTO1.getDescricao().getValor())))
@@ -428,4 +715,270 @@ public class TransacaoControllerTest {
                     .andExpect(jsonPath("$.[1].formaPagamento.tipo", is(transacaoDTO2.getFormaPagamento().getTipo().toString())))
                     .andExpect(jsonPath("$.[1].formaPagamento.parcelas", is(transacaoDTO2.getFormaPagamento().getParcelas())));
     }
+
+    //Quando a busca é chamada com filtros, eles são repassados ao serviço e o cursor da próxima página é retornado
+    @Test
+    void whenSearchIsCalledThenFiltersArePassedAndCursorIsReturned() throws Exception {
+
+        //Dado
+
+            TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+
+            FiltroBuscaDTO filtro = FiltroBuscaDTO.builder()
+                    .estabelecimento("PetShop Mundo cão")
+                    .status(StatusEnum.AUTORIZADO)
+                    .finalCartao("1234")
+                    .dataHoraInicio("01/05/2021 00:00:00")
+                    .valorMinimo("100.00")
+                    .build();
+
+        //Quando
+
+            //transacaoService.buscar(filtro, primeira página, 1) -> uma transação, próximo cursor = data e hora e id dela
+            CursorBusca proximoCursor = CursorBusca.valueOf("d1619838000_" + transacaoDTO.getId());
+            when(transacaoService.buscar(filtro, CursorBusca.INICIO, 1))
+                    .thenReturn(new PaginaBuscaDTO(List.of(transacaoDTO), proximoCursor));
+
+        // Então
+
+           mockMvc.perform(get("/transacao/v1/busca")
+                        .param("estabelecimento", "PetShop Mundo cão")
+                        .param("status", "AUTORIZADO")
+                        .param("finalCartao", "1234")
+                        .param("dataHoraInicio", "01/05/2021 00:00:00")
+                        .param("valorMinimo", "100.00")
+                        .param("tamanho", "1"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(TransacaoController.CABECALHO_PROXIMO_CURSOR, "d1619838000_" + transacaoDTO.getId()))
+                    .andExpect(jsonPath("$.[0].id", is(Math.toIntExact(transacaoDTO.getId()))));
+    }
+
+    //Quando um filtro da busca está em formato inválido, o status 400 é retornado
+    @Test
+    void whenSearchFilterIsInvalidThenBadRequestIsReturned() throws Exception {
+
+        // Então
+
+           mockMvc.perform(get("/transacao/v1/busca")
+                        .param("dataHoraInicio", "2021-05-01"))
+                    .andExpect(status().isBadRequest());
+
+           verify(transacaoService, never()).buscar(any(), any(), anyInt());
+    }
+
+    //Quando o cursor da busca está em formato inválido, o status 400 é retornado
+    @Test
+    void whenSearchCursorIsInvalidThenBadRequestIsReturned() throws Exception {
+
+        // Então
+
+           mockMvc.perform(get("/transacao/v1/busca")
+                        .param("cursor", "d1619838000"))
+                    .andExpect(status().isBadRequest());
+
+           verify(transacaoService, never()).buscar(any(), any(), anyInt());
+    }
+
+    //Quando o cursor não é da ordem dos filtros, o status 400 é retornado
+    @Test
+    void whenSearchCursorDoesNotMatchFiltersThenBadRequestIsReturned() throws Exception {
+
+        //Quando
+
+            //transacaoService.buscar(sem filtros, cursor por data e hora, 100) -> CursorInvalidoException
+            when(transacaoService.buscar(new FiltroBuscaDTO(), CursorBusca.valueOf("d1619838000_10"), 100))
+                    .thenThrow(new CursorInvalidoException());
+
+        // Então
+
+           mockMvc.perform(get("/transacao/v1/busca")
+                        .param("cursor", "d1619838000_10"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.status", is(400)));
+    }
+
+    //Quando a exportação é pedida com gzip, o corpo é um NDJSON comprimido com uma transação por linha
+    @Test
+    void whenExportIsCalledWithGzipThenCompressedNdjsonIsReturned() throws Exception {
+
+        //Dado
+
+            TransacaoDTO transacaoDTO1 = TransacaoDTOBuilder.builder().id(2L).build().toTransacaoDTO();
+            TransacaoDTO transacaoDTO2 = TransacaoDTOBuilder.builder().id(1L).build().toTransacaoDTO();
+
+        //Quando
+
+            //transacaoService.exportar(filtro, consumidor) -> duas transações entregues ao consumidor
+            exportarTransacoes(transacaoDTO1, transacaoDTO2);
+
+            MvcResult mvcResult = mockMvc.perform(get("/transacao/v1/exportacao")
+                        .param("estabelecimento", "PetShop Mundo cão")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+        // Então
+
+           mockMvc.perform(asyncDispatch(mvcResult))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                    .andExpect(content().contentType("application/x-ndjson"));
+
+           String[] linhas = gunzip(mvcResult.getResponse().getContentAsByteArray()).split("\n");
+
+           assertThat(linhas.length, is(equalTo(2)));
+           assertThat(objectMapper.readValue(linhas[0], TransacaoDTO.class).getId(), is(equalTo(transacaoDTO1.getId())));
+           assertThat(objectMapper.readValue(linhas[1], TransacaoDTO.class).getId(), is(equalTo(transacaoDTO2.getId())));
+           assertThat(objectMapper.readValue(linhas[1], TransacaoDTO.class).getDescricao().getValor(), is(equalTo(transacaoDTO2.getDescricao().getValor())));
+
+    }
+
+    //Quando o cliente recusa o gzip (q=0), a exportação não é comprimida, mesmo que ele aceite qualquer outra codificação
+    @Test
+    void whenExportIsCalledWithGzipRefusedThenUncompressedNdjsonIsReturned() throws Exception {
+
+        //Dado
+
+            TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+
+        //Quando
+
+            exportarTransacoes(transacaoDTO);
+
+            MvcResult mvcResult = mockMvc.perform(get("/transacao/v1/exportacao")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, *;q=0.5"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+        // Então
+
+           mockMvc.perform(asyncDispatch(mvcResult))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+
+           String linha = mvcResult.getResponse().getContentAsString().trim();
+
+           assertThat(objectMapper.readValue(linha, TransacaoDTO.class).getId(), is(equalTo(transacaoDTO.getId())));
+
+    }
+
+    //Quando a exportação é pedida em CSV, o corpo tem o cabeçalho e uma transação por linha, com os campos escapados
+    @Test
+    void whenExportIsCalledAsCsvThenOneLinePerTransactionIsReturned() throws Exception {
+
+        //Dado
+
+            TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+            transacaoDTO.getDescricao().setEstabelecimento("Padaria \"Pão, Leite\"");
+            transacaoDTO.getDescricao().setStatus(StatusEnum.AUTORIZADO);
+            transacaoDTO.getDescricao().setNsu(null);
+
+        //Quando
+
+            exportarTransacoes(transacaoDTO);
+
+            MvcResult mvcResult = mockMvc.perform(get("/transacao/v1/exportacao")
+                        .param("formato", "CSV"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+        // Então
+
+           mockMvc.perform(asyncDispatch(mvcResult))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                    .andExpect(content().string(EscritorExportacao.CABECALHO_CSV + "\n" +
+                            transacaoDTO.getId() + "," + transacaoDTO.getCartao() + "," +
+                            transacaoDTO.getDescricao().getValor() + "," + transacaoDTO.getDescricao().getDataHora() + "," +
+                            "\"Padaria \"\"Pão, Leite\"\"\"," +
+                            ",," + StatusEnum.AUTORIZADO + "," + transacaoDTO.getFormaPagamento().getTipo() + "," +
+                            transacaoDTO.getFormaPagamento().getParcelas() + "\n"));
+
+    }
+
+    private void exportarTransacoes(TransacaoDTO... transacoesDTO) {
+
+        doAnswer(invocation -> {
+            Consumer<TransacaoDTO> consumidor = invocation.getArgument(1);
+            for (TransacaoDTO transacaoDTO : transacoesDTO) {
+                consumidor.accept(transacaoDTO);
+            }
+            return null;
+        }).when(transacaoService).exportar(any(), any());
+
+    }
+
+    private static byte[] chave(long id) {
+        return ("transacao::" + id).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String gunzip(byte[] corpo) throws IOException {
+
+        try (GZIPInputStream entrada = new GZIPInputStream(new ByteArrayInputStream(corpo))) {
+            return new String(entrada.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+    }
+
+    // Quando um lote é enviado como NDJSON, cada linha é lida como um pagamento
+    @Test
+    void whenNdjsonBatchIsSentThenEachLineIsAPayment() throws Exception {
+
+        //Dado
+
+        Transacao transacao = TransacaoMapper.toTransacao(TransacaoDTOBuilder.builder().id(null).build().toTransacaoDTO());
+        String linha = new Gson().toJson(transacao);
+
+        //Quando
+
+        //transacaoService.pagarLote(transacoes) -> um item realizado por pagamento lido
+        when(transacaoService.pagarLote(any()))
+                .thenAnswer(invocation -> resultadoLote(invocation.getArgument(0)));
+
+        // Então
+
+        mockMvc.perform(post("/transacao/v1/pagamentos/lote")
+                        .contentType("application/x-ndjson")
+                        .content(linha + "\n" + linha + "\n" + linha + "\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(3)))
+                .andExpect(jsonPath("$.realizados", is(3)))
+                .andExpect(jsonPath("$.itens[2].indice", is(2)));
+
+    }
+
+    // Quando um lote é enviado como array JSON, cada elemento é lido como um pagamento
+    @Test
+    void whenJsonArrayBatchIsSentThenEachElementIsAPayment() throws Exception {
+
+        //Dado
+
+        Transacao transacao = TransacaoMapper.toTransacao(TransacaoDTOBuilder.builder().id(null).build().toTransacaoDTO());
+
+        //Quando
+
+        when(transacaoService.pagarLote(any()))
+                .thenAnswer(invocation -> resultadoLote(invocation.getArgument(0)));
+
+        // Então
+
+        mockMvc.perform(post("/transacao/v1/pagamentos/lote")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new Gson().toJson(List.of(transacao, transacao))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(2)))
+                .andExpect(jsonPath("$.itens[1].resultado", is(ItemLoteDTO.REALIZADO)));
+
+    }
+
+    private static ResultadoLoteDTO resultadoLote(Iterator<Transacao> transacoes) {
+
+        List<ItemLoteDTO> itens = new ArrayList<>();
+        while (transacoes.hasNext()) {
+            transacoes.next();
+            itens.add(new ItemLoteDTO(itens.size(), ItemLoteDTO.REALIZADO, (long) itens.size() + 1, null));
+        }
+        return new ResultadoLoteDTO(itens.size(), itens.size(), 0, itens);
+    }
+
 }
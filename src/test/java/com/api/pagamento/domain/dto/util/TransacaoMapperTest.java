@@ -0,0 +1,56 @@
+package com.api.pagamento.domain.dto.util;
+
+import com.api.pagamento.builder.TransacaoDTOBuilder;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.model.Transacao;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TransacaoMapperTest {
+
+    //Quando uma transação é convertida nos dois sentidos, o resultado é o mesmo do ModelMapper
+    @Test
+    void whenTransactionIsMappedThenResultMatchesModelMapper() {
+
+        // Dado
+
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+        transacaoDTO.getDescricao().setNsu("1234567890");
+        transacaoDTO.getDescricao().setCodigoAutorizacao("147258369");
+        transacaoDTO.getDescricao().setStatus(StatusEnum.AUTORIZADO);
+
+        //Quando
+
+        Transacao transacao = TransacaoMapper.toTransacao(transacaoDTO);
+
+        // Então
+
+            assertThat(transacao, is(equalTo(new ModelMapper().map(transacaoDTO, Transacao.class))));
+            assertThat(TransacaoMapper.toTransacaoDTO(transacao), is(equalTo(new ModelMapper().map(transacao, TransacaoDTO.class))));
+            assertThat(TransacaoMapper.toTransacaoDTO(transacao), is(equalTo(transacaoDTO)));
+
+    }
+
+    //Quando uma parte da transação é nula, ela continua nula na conversão
+    @Test
+    void whenNestedObjectIsNullThenItStaysNull() {
+
+        // Dado
+
+        Transacao transacao = Transacao.builder().id(1L).cartao("4444********1234").build();
+
+        // Então
+
+            assertThat(TransacaoMapper.toTransacaoDTO(transacao).getDescricao(), is(nullValue()));
+            assertThat(TransacaoMapper.toTransacaoDTO(transacao).getFormaPagamento(), is(nullValue()));
+            assertThat(TransacaoMapper.toTransacaoDTO(null), is(nullValue()));
+
+    }
+
+}
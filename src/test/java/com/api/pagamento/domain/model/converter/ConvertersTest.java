@@ -0,0 +1,90 @@
+package com.api.pagamento.domain.model.converter;
+
+import com.api.pagamento.domain.validation.DataHoraValidator;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ConvertersTest {
+
+    //Quando o valor é convertido para centavos e de volta, o texto tem sempre duas casas decimais
+    @Test
+    void whenValorIsConvertedThenItIsStoredInCents() {
+
+        ValorConverter converter = new ValorConverter();
+
+        // Então
+
+            assertThat(converter.convertToDatabaseColumn("500.50"), is(equalTo(50050L)));
+            assertThat(converter.convertToDatabaseColumn("7"), is(equalTo(700L)));
+            assertThat(converter.convertToEntityAttribute(50050L), is(equalTo("500.50")));
+            assertThat(converter.convertToEntityAttribute(700L), is(equalTo("7.00")));
+
+            //Mais de duas casas decimais não é arredondado
+            assertThrows(ArithmeticException.class, () -> converter.convertToDatabaseColumn("1.005"));
+
+    }
+
+    //Quando valor e parcelas são normalizados, o texto é o mesmo que a leitura do banco devolveria
+    @Test
+    void whenValorAndParcelasAreNormalizedThenTheyMatchTheDatabaseRead() {
+
+        // Então
+
+            assertThat(ValorConverter.normalizar("500.5"), is(equalTo("500.50")));
+            assertThat(ValorConverter.normalizar("500"), is(equalTo("500.00")));
+            assertThat(ValorConverter.normalizar("0500.50"), is(equalTo("500.50")));
+            assertThat(ParcelasConverter.normalizar("01"), is(equalTo("1")));
+            assertThat(ParcelasConverter.normalizar("12"), is(equalTo("12")));
+
+    }
+
+    //Quando a data e hora é convertida, ela é interpretada no horário de Brasília e volta no mesmo formato
+    @Test
+    void whenDataHoraIsConvertedThenItIsStoredAsAnInstant() {
+
+        DataHoraConverter converter = new DataHoraConverter();
+
+        // Então
+
+            Timestamp dataHora = converter.convertToDatabaseColumn("01/05/2021 18:00:00");
+            assertThat(dataHora.toInstant(), is(equalTo(OffsetDateTime.of(2021, 5, 1, 21, 0, 0, 0, ZoneOffset.UTC).toInstant())));
+            assertThat(converter.convertToEntityAttribute(dataHora), is(equalTo("01/05/2021 18:00:00")));
+
+    }
+
+    //Quando a data não existe no calendário, ela é recusada pela validação da API
+    @Test
+    void whenDataHoraDoesNotExistThenItIsInvalid() {
+
+        DataHoraValidator validator = new DataHoraValidator();
+
+        // Então
+
+            assertThat(validator.isValid("01/05/2021 18:00:00", null), is(true));
+            assertThat(validator.isValid("31/02/2021 18:00:00", null), is(false));
+            assertThat(validator.isValid("2021-05-01T18:00:00", null), is(false));
+
+    }
+
+    //Quando as parcelas são convertidas, o texto volta sem zeros à esquerda
+    @Test
+    void whenParcelasIsConvertedThenItIsStoredAsSmallint() {
+
+        ParcelasConverter converter = new ParcelasConverter();
+
+        // Então
+
+            assertThat(converter.convertToDatabaseColumn("12"), is(equalTo((short) 12)));
+            assertThat(converter.convertToEntityAttribute((short) 12), is(equalTo("12")));
+
+    }
+
+}
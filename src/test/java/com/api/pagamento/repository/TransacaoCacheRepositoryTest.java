@@ -0,0 +1,503 @@
+package com.api.pagamento.repository;
+
+import com.api.pagamento.builder.TransacaoDTOBuilder;
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.dto.PaginaTransacaoDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.enumeration.TipoEnum;
+import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.repository.TransacaoCacheRepository.EstornoCache;
+import com.api.pagamento.repository.TransacaoCacheRepository.JsonCache;
+import com.api.pagamento.repository.TransacaoCacheRepository.PaginaChaves;
+import com.api.pagamento.repository.TransacaoCacheRepository.ResultadoEstorno;
+import com.api.pagamento.repository.codec.BinarioTransacaoCodec;
+import com.api.pagamento.repository.codec.HashTransacaoCodec;
+import com.api.pagamento.repository.codec.JsonRespostaTransacao;
+import com.api.pagamento.repository.codec.VersaoTransacao;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.Invocation;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+//MockitoExtension.class = Extensão necessária para as anotações do mockito serem utilizadas
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class TransacaoCacheRepositoryTest {
+
+    //Métodos da conexão que não enviam comandos ao Redis
+    private static final Set<String> SEM_IDA_E_VOLTA = Set.of("openPipeline", "isPipelined", "hashCommands", "keyCommands", "stringCommands");
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    // A conexão é simulada e os callbacks passados ao RedisTemplate são executados sobre ela
+    @Mock
+    private RedisConnection connection;
+
+    private final TransacaoProperties transacaoProperties = new TransacaoProperties();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private TransacaoCacheRepository transacaoCacheRepository;
+
+    // @BeforeEach: Execute antes de cada método de teste.
+    @BeforeEach
+    void setUp() {
+        when(connection.hashCommands()).thenReturn(connection);
+        when(connection.keyCommands()).thenReturn(connection);
+        when(connection.stringCommands()).thenReturn(connection);
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0, RedisCallback.class).doInRedis(connection));
+        when(redisTemplate.execute(any(RedisCallback.class), anyBoolean()))
+                .thenAnswer(invocation -> invocation.getArgument(0, RedisCallback.class).doInRedis(connection));
+        transacaoCacheRepository = newRepository(BinarioTransacaoCodec.NOME);
+    }
+
+    // Quando uma transação é gravada no cache, apenas uma ida e volta ao Redis deve ser feita
+    @Test
+    void whenTransactionIsCachedThenOnlyOneRoundTripIsMade() {
+
+        // Dado
+
+            Transacao transacao = newTransacao();
+
+        //Quando
+
+            transacaoCacheRepository.setHashMap(transacao);
+
+        // Então
+
+            assertThat(idasEVoltas(), is(equalTo(1)));
+
+            //O formato binário grava a transação inteira em um único campo, além da versão
+            Map<String, byte[]> campos = camposGravados("transacao::1");
+            assertThat(campos.keySet(), is(equalTo(Set.of(BinarioTransacaoCodec.CAMPO, VersaoTransacao.CAMPO))));
+            assertThat(texto(campos.get(VersaoTransacao.CAMPO)), is(equalTo("1")));
+
+            //A versão da listagem muda no mesmo pipeline
+            verify(connection).incr(bytes(VersaoTransacao.CHAVE_LISTAGEM));
+
+    }
+
+    // Quando o codec configurado é o hash, o layout original de 12 campos é mantido (mais o campo versao)
+    @Test
+    void whenHashCodecIsConfiguredThenLayoutIsKept() {
+
+        // Dado
+
+            transacaoCacheRepository = newRepository(HashTransacaoCodec.NOME);
+            Transacao transacao = newTransacao();
+
+        //Quando
+
+            transacaoCacheRepository.setHashMap(transacao);
+
+        // Então
+
+            assertThat(idasEVoltas(), is(equalTo(1)));
+
+            Map<String, byte[]> campos = camposGravados("transacao::1");
+            assertThat(campos.size(), is(equalTo(13)));
+            assertThat(texto(campos.get("id")), is(equalTo("1")));
+            assertThat(texto(campos.get("cartao")), is(equalTo(transacao.getCartao())));
+            assertThat(texto(campos.get("descricao::status")), is(equalTo("AUTORIZADO")));
+            assertThat(texto(campos.get("formaPagamento::tipo")), is(equalTo("AVISTA")));
+            assertThat(texto(campos.get("formaPagamento::parcelas")), is(equalTo(transacao.getFormaPagamento().getParcelas())));
+
+    }
+
+    // Quando o JSON pronto está habilitado, o corpo da resposta é gravado no mesmo hash, na mesma ida e volta
+    @Test
+    void whenJsonIsEnabledThenResponseBodyIsCachedWithTheTransaction() throws Exception {
+
+        // Dado
+
+            transacaoProperties.getCache().setJsonPronto(true);
+            transacaoCacheRepository = newRepository(BinarioTransacaoCodec.NOME);
+            Transacao transacao = newTransacao();
+
+        //Quando
+
+            transacaoCacheRepository.setHashMap(transacao);
+
+        // Então
+
+            assertThat(idasEVoltas(), is(equalTo(1)));
+
+            Map<String, byte[]> campos = camposGravados("transacao::1");
+            assertThat(campos.keySet(), is(equalTo(Set.of(BinarioTransacaoCodec.CAMPO, JsonRespostaTransacao.CAMPO, VersaoTransacao.CAMPO))));
+            assertThat(texto(campos.get(JsonRespostaTransacao.CAMPO)), is(equalTo(objectMapper.writeValueAsString(TransacaoMapper.toTransacaoDTO(transacao)))));
+            assertThat(texto(campos.get(JsonRespostaTransacao.CAMPO)), containsString(JsonRespostaTransacao.trechoStatus(StatusEnum.AUTORIZADO)));
+
+    }
+
+    // Quando o JSON pronto é lido, apenas os campos json e versao são pedidos ao Redis e os bytes são devolvidos como estão
+    @Test
+    void whenJsonIsReadThenOnlyTheJsonAndVersionFieldsAreFetched() {
+
+        // Dado
+
+            byte[] json = bytes("{\"id\":1}");
+            when(connection.hMGet(bytes("transacao::1"), bytes(JsonRespostaTransacao.CAMPO), bytes(VersaoTransacao.CAMPO)))
+                    .thenReturn(Arrays.asList(json, bytes("2")));
+
+        //Quando
+
+            JsonCache lido = transacaoCacheRepository.getJsonByKey("transacao::1");
+
+        // Então
+
+            assertThat(idasEVoltas(), is(equalTo(1)));
+            assertThat(lido.getJson(), is(sameInstance(json)));
+            assertThat(lido.getVersao(), is(equalTo(2L)));
+
+    }
+
+    // Quando a versão é lida, apenas o campo versao é pedido ao Redis, sem a transação
+    @Test
+    void whenVersionIsReadThenOnlyTheVersionFieldIsFetched() {
+
+        // Dado
+
+            when(connection.hGet(bytes("transacao::1"), bytes(VersaoTransacao.CAMPO))).thenReturn(bytes("2"));
+
+        //Quando
+
+            Long versao = transacaoCacheRepository.getVersaoByKey("transacao::1");
+
+        // Então
+
+            assertThat(idasEVoltas(), is(equalTo(1)));
+            assertThat(versao, is(equalTo(2L)));
+            assertThat(transacaoCacheRepository.getVersaoByKey("transacao::2"), is(nullValue()));
+
+    }
+
+    // Quando a transação está no formato binário, apenas o campo dados e a versão são lidos, com um único HMGET
+    @Test
+    void whenBinaryTransactionIsReadThenOnlyTheDataFieldIsFetched() {
+
+        // Dado
+
+            Transacao transacao = newTransacao();
+
+        //Quando
+
+            when(connection.hMGet(bytes("transacao::1"), bytes(BinarioTransacaoCodec.CAMPO), bytes(VersaoTransacao.CAMPO), bytes(HashTransacaoCodec.CAMPO_ID)))
+                    .thenReturn(camposBinario(transacao));
+
+            TransacaoDTO transacaoDTO = transacaoCacheRepository.getHashMapByKey("transacao::1");
+
+        // Então
+
+            assertThat(idasEVoltas(), is(equalTo(1)));
+            verify(connection, never()).hGetAll(any());
+
+            assertThat(transacaoDTO.getId(), is(equalTo(1L)));
+            assertThat(transacaoDTO.getCartao(), is(equalTo(transacao.getCartao())));
+            assertThat(transacaoDTO.getDescricao().getStatus(), is(equalTo(StatusEnum.AUTORIZADO)));
+            assertThat(transacaoDTO.getVersao(), is(equalTo(1L)));
+
+    }
+
+    // Quando o hash foi gravado no formato antigo, ele continua sendo lido, com um HGETALL depois do HMGET
+    @Test
+    void whenLegacyHashIsReadThenItIsDecoded() {
+
+        // Dado
+
+            when(connection.hMGet(any(byte[].class), any(), any(), any())).thenReturn(Arrays.asList(null, null, bytes("1")));
+            when(connection.hGetAll(bytes("transacao::1"))).thenReturn(legacyMap("1"));
+
+        //Quando
+
+            TransacaoDTO transacaoDTO = transacaoCacheRepository.getHashMapByKey("transacao::1");
+
+        // Então
+
+            assertThat(idasEVoltas(), is(equalTo(2)));
+            assertThat(transacaoDTO.getId(), is(equalTo(1L)));
+            assertThat(transacaoDTO.getCartao(), is(equalTo("4444********1234")));
+            assertThat(transacaoDTO.getDescricao().getStatus(), is(equalTo(StatusEnum.AUTORIZADO)));
+            assertThat(transacaoDTO.getFormaPagamento().getTipo(), is(equalTo(TipoEnum.AVISTA)));
+
+    }
+
+    // Quando a chave não existe, nenhuma transação é retornada
+    @Test
+    void whenKeyDoesNotExistThenNullIsReturned() {
+
+        // Dado
+
+            when(connection.hMGet(any(byte[].class), any(), any(), any())).thenReturn(Arrays.asList(null, null, null));
+
+        // Então
+
+            assertThat(transacaoCacheRepository.getHashMapByKey("transacao::1"), is(nullValue()));
+            assertThat(idasEVoltas(), is(equalTo(1)));
+
+    }
+
+    // Quando uma página de transações é lida, um SCAN e um único pipeline de HMGET devem ser enviados ao Redis
+    @Test
+    void whenPageIsReadThenOneScanAndOnePipelineAreMade() {
+
+        // Dado
+
+            List<Object> resultadoScan = List.of(bytes("0"), List.of(bytes("transacao::1"), bytes("transacao::2")));
+
+            Transacao transacao1 = newTransacao();
+            Transacao transacao2 = newTransacao();
+            transacao2.setId(2L);
+
+        //Quando
+
+            when(connection.execute(eq("SCAN"), any(), any(), any(), any(), any())).thenReturn(resultadoScan);
+            when(connection.closePipeline()).thenReturn(List.of(camposBinario(transacao1), camposBinario(transacao2)));
+
+            PaginaTransacaoDTO paginaTransacaoDTO = transacaoCacheRepository.getPageHashMap(0, 100);
+
+        // Então
+
+            assertThat(idasEVoltas(), is(equalTo(2)));
+
+            assertThat(paginaTransacaoDTO.getProximoCursor(), is(equalTo(0L)));
+            assertThat(paginaTransacaoDTO.getTransacoes().size(), is(equalTo(2)));
+            assertThat(paginaTransacaoDTO.getTransacoes().get(0).getId(), is(equalTo(1L)));
+            assertThat(paginaTransacaoDTO.getTransacoes().get(1).getId(), is(equalTo(2L)));
+
+    }
+
+    // Quando uma página é percorrida, as transações são lidas em lotes de 100 chaves, um pipeline por lote, e entregues
+    // na ordem das chaves
+    @Test
+    void whenPageIsTraversedThenKeysAreReadInBatches() {
+
+        // Dado
+
+            List<byte[]> chaves = new ArrayList<>();
+            List<Object> lote1 = new ArrayList<>();
+            List<Object> lote2 = new ArrayList<>();
+            for (int id = 1; id <= 150; id++) {
+                chaves.add(bytes("transacao::" + id));
+                Transacao transacao = newTransacao();
+                transacao.setId((long) id);
+                (id <= 100 ? lote1 : lote2).add(camposBinario(transacao));
+            }
+
+        //Quando
+
+            when(connection.closePipeline()).thenReturn(lote1, lote2);
+
+            List<Long> ids = new ArrayList<>();
+            transacaoCacheRepository.percorrer(new PaginaChaves(chaves, 0L), transacaoDTO -> ids.add(transacaoDTO.getId()));
+
+        // Então
+
+            assertThat(idasEVoltas(), is(equalTo(2)));
+
+            assertThat(ids.size(), is(equalTo(150)));
+            assertThat(ids.get(0), is(equalTo(1L)));
+            assertThat(ids.get(149), is(equalTo(150L)));
+
+    }
+
+    // Quando uma transação é estornada, o script Lua é executado uma única vez e o hash atualizado é decodificado
+    @Test
+    void whenTransactionIsReversedThenScriptIsExecutedOnce() {
+
+        // Dado
+
+            Transacao transacao = newTransacao();
+            transacao.getDescricao().setStatus(StatusEnum.NEGADO);
+            byte[] dados = new BinarioTransacaoCodec().toBytes(transacao);
+
+        //Quando
+
+            when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), eq(List.of("transacao::1", VersaoTransacao.CHAVE_LISTAGEM)), any(), any(), any(), any(), any(), any(), any(), any()))
+                    .thenReturn(List.of(1L, bytes(BinarioTransacaoCodec.CAMPO), dados, bytes(VersaoTransacao.CAMPO), bytes("2")));
+
+            EstornoCache estorno = transacaoCacheRepository.estornarHashMapByKey("transacao::1");
+
+        // Então
+
+            verify(redisTemplate).execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), eq(List.of("transacao::1", VersaoTransacao.CHAVE_LISTAGEM)),
+                    eq("AUTORIZADO"), eq("NEGADO"), eq(String.valueOf(StatusEnum.AUTORIZADO.ordinal())),
+                    eq(String.valueOf(StatusEnum.NEGADO.ordinal())), eq(String.valueOf(BinarioTransacaoCodec.POSICAO_STATUS)),
+                    eq("\"status\":\"AUTORIZADO\""), eq("\"status\":\"NEGADO\""), any());
+            assertThat(idasEVoltas(), is(equalTo(0)));
+
+            assertThat(estorno.getResultado(), is(equalTo(ResultadoEstorno.ESTORNADO)));
+            assertThat(estorno.getTransacao().getId(), is(equalTo(1L)));
+            assertThat(estorno.getTransacao().getDescricao().getStatus(), is(equalTo(StatusEnum.NEGADO)));
+            assertThat(estorno.getTransacao().getVersao(), is(equalTo(2L)));
+
+    }
+
+    // Quando o write-behind está habilitado, o script do estorno recebe o stream e adiciona a entrada do estorno na mesma execução
+    @Test
+    void whenWriteBehindIsEnabledThenReversalIsQueuedByTheScript() {
+
+        // Dado
+
+            transacaoProperties.getWriteBehind().setEnabled(true);
+            TransacaoCacheRepository transacaoCacheRepository = newRepository("binario");
+
+            Transacao transacao = newTransacao();
+            transacao.getDescricao().setStatus(StatusEnum.NEGADO);
+            byte[] dados = new BinarioTransacaoCodec().toBytes(transacao);
+
+            List<String> keys = List.of("transacao::1", VersaoTransacao.CHAVE_LISTAGEM, TransacaoWriteBehindRepository.STREAM);
+
+        //Quando
+
+            when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), eq(keys), any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+                    .thenReturn(List.of(1L, bytes(BinarioTransacaoCodec.CAMPO), dados, bytes(VersaoTransacao.CAMPO), bytes("2")));
+
+            EstornoCache estorno = transacaoCacheRepository.estornarHashMapByKey("transacao::1");
+
+        // Então
+
+            verify(redisTemplate).execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), eq(keys),
+                    any(), any(), any(), any(), any(), any(), any(), any(), eq(TransacaoWriteBehindRepository.TIPO_ESTORNO), eq("1"));
+            assertThat(idasEVoltas(), is(equalTo(0)));
+
+            assertThat(estorno.getResultado(), is(equalTo(ResultadoEstorno.ESTORNADO)));
+
+    }
+
+    // Quando a transação a ser estornada não está no cache, nenhuma transação é retornada
+    @Test
+    void whenReversedKeyDoesNotExistThenNoTransactionIsReturned() {
+
+        //Quando
+
+            when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), eq(List.of("transacao::1", VersaoTransacao.CHAVE_LISTAGEM)), any(), any(), any(), any(), any(), any(), any(), any()))
+                    .thenReturn(List.of(0L));
+
+            EstornoCache estorno = transacaoCacheRepository.estornarHashMapByKey("transacao::1");
+
+        // Então
+
+            assertThat(estorno.getResultado(), is(equalTo(ResultadoEstorno.INEXISTENTE)));
+            assertThat(estorno.getTransacao(), is(nullValue()));
+
+    }
+
+    private TransacaoCacheRepository newRepository(String codec) {
+        transacaoProperties.getCache().setCodec(codec);
+        return new TransacaoCacheRepository(redisTemplate, List.of(new BinarioTransacaoCodec(), new HashTransacaoCodec()),
+                new JsonRespostaTransacao(objectMapper, transacaoProperties), transacaoProperties);
+    }
+
+    //Conta as idas e voltas ao Redis: cada comando enviado fora de um pipeline e cada pipeline fechado
+    private int idasEVoltas() {
+
+        int idasEVoltas = 0;
+        boolean pipeline = false;
+
+        for (Invocation invocation : mockingDetails(connection).getInvocations()) {
+            String metodo = invocation.getMethod().getName();
+            if (metodo.equals("openPipeline")) {
+                pipeline = true;
+            } else if (metodo.equals("closePipeline")) {
+                pipeline = false;
+                idasEVoltas++;
+            } else if (!pipeline && !SEM_IDA_E_VOLTA.contains(metodo)) {
+                idasEVoltas++;
+            }
+        }
+        return idasEVoltas;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, byte[]> camposGravados(String key) {
+
+        ArgumentCaptor<Map<byte[], byte[]>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(connection).hMSet(eq(bytes(key)), captor.capture());
+
+        Map<String, byte[]> campos = new HashMap<>();
+        captor.getValue().forEach((campo, valor) -> campos.put(texto(campo), valor));
+        return campos;
+    }
+
+    private static Transacao newTransacao() {
+
+        //Gera um TransacaoDTO
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+
+        transacaoDTO.getDescricao().setNsu("1234567890");
+        transacaoDTO.getDescricao().setCodigoAutorizacao("147258369");
+        transacaoDTO.getDescricao().setStatus(StatusEnum.AUTORIZADO);
+
+        //Tranforma o TransacaoDTO em um Transacao
+        return TransacaoMapper.toTransacao(transacaoDTO);
+    }
+
+    //Resposta do HMGET de dados, versao e id para uma transação gravada no formato binário
+    private static List<byte[]> camposBinario(Transacao transacao) {
+        return Arrays.asList(new BinarioTransacaoCodec().toBytes(transacao), bytes("1"), null);
+    }
+
+    private static Map<byte[], byte[]> legacyMap(String id) {
+
+        Map<byte[], byte[]> mapTransacao = new HashMap<>();
+        mapTransacao.put(bytes("id"), bytes(id));
+        mapTransacao.put(bytes("cartao"), bytes("4444********1234"));
+        mapTransacao.put(bytes("descricao::id"), bytes(id));
+        mapTransacao.put(bytes("descricao::valor"), bytes("500.50"));
+        mapTransacao.put(bytes("descricao::dataHora"), bytes("01/05/2021 18:00:00"));
+        mapTransacao.put(bytes("descricao::estabelecimento"), bytes("PetShop Mundo cão"));
+        mapTransacao.put(bytes("descricao::nsu"), bytes("1234567890"));
+        mapTransacao.put(bytes("descricao::codigoAutorizacao"), bytes("147258369"));
+        mapTransacao.put(bytes("descricao::status"), bytes("AUTORIZADO"));
+        mapTransacao.put(bytes("formaPagamento::id"), bytes(id));
+        mapTransacao.put(bytes("formaPagamento::tipo"), bytes("AVISTA"));
+        mapTransacao.put(bytes("formaPagamento::parcelas"), bytes("1"));
+        return mapTransacao;
+    }
+
+    private static byte[] bytes(String valor) {
+        return valor.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String texto(byte[] valor) {
+        return new String(valor, StandardCharsets.UTF_8);
+    }
+
+}
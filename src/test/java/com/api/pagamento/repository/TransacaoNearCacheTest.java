@@ -0,0 +1,142 @@
+package com.api.pagamento.repository;
+
+import com.api.pagamento.builder.TransacaoDTOBuilder;
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.verify;
+
+//MockitoExtension.class = Extensão necessária para as anotações do mockito serem utilizadas
+@ExtendWith(MockitoExtension.class)
+public class TransacaoNearCacheTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private TransacaoNearCache transacaoNearCache;
+
+    // @BeforeEach: Execute antes de cada método de teste.
+    @BeforeEach
+    void setUp() {
+        TransacaoProperties transacaoProperties = new TransacaoProperties();
+        transacaoProperties.getCache().getNearCache().setEnabled(true);
+        transacaoNearCache = new TransacaoNearCache(redisTemplate, transacaoProperties);
+    }
+
+    // Quando uma transação é consultada no near-cache, os acertos e as falhas devem ser contados
+    @Test
+    void whenTransactionIsReadThenHitsAndMissesAreCounted() {
+
+        // Dado
+
+            TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+
+        //Quando
+
+            transacaoNearCache.get(1L);
+            transacaoNearCache.put(1L, transacaoDTO);
+            transacaoNearCache.get(1L);
+            transacaoNearCache.get(1L);
+
+        // Então
+
+            assertThat(transacaoNearCache.estatisticas().missCount(), is(equalTo(1L)));
+            assertThat(transacaoNearCache.estatisticas().hitCount(), is(equalTo(2L)));
+
+    }
+
+    // Quando uma transação é invalidada, ela sai do cache local e o id é publicado no canal de invalidação
+    @Test
+    void whenTransactionIsInvalidatedThenItIsPublished() {
+
+        // Dado
+
+            transacaoNearCache.put(1L, TransacaoDTOBuilder.builder().build().toTransacaoDTO());
+
+        //Quando
+
+            transacaoNearCache.invalidar(1L);
+
+        // Então
+
+            assertThat(transacaoNearCache.get(1L), is(nullValue()));
+            verify(redisTemplate).convertAndSend(TransacaoNearCache.CANAL_INVALIDACAO, "1");
+
+    }
+
+    // Quando outra instância publica uma invalidação, a transação sai do cache local
+    @Test
+    void whenInvalidationIsReceivedThenTransactionIsRemoved() {
+
+        // Dado
+
+            transacaoNearCache.put(1L, TransacaoDTOBuilder.builder().build().toTransacaoDTO());
+
+        //Quando
+
+            transacaoNearCache.onMessage(new DefaultMessage(
+                    TransacaoNearCache.CANAL_INVALIDACAO.getBytes(StandardCharsets.UTF_8),
+                    "1".getBytes(StandardCharsets.UTF_8)), null);
+
+        // Então
+
+            assertThat(transacaoNearCache.get(1L), is(nullValue()));
+
+    }
+
+    // Quando a transação é invalidada depois da marca de uma leitura, a versão lida não entra no cache local
+    @Test
+    void whenTransactionIsInvalidatedAfterMarkThenReadIsNotCached() {
+
+        // Dado
+
+            long marca = transacaoNearCache.marca(1L);
+
+        //Quando
+
+            //O estorno é tratado por outra instância enquanto a leitura da versão antiga volta do Redis
+            transacaoNearCache.onMessage(new DefaultMessage(
+                    TransacaoNearCache.CANAL_INVALIDACAO.getBytes(StandardCharsets.UTF_8),
+                    "1".getBytes(StandardCharsets.UTF_8)), null);
+            transacaoNearCache.put(1L, TransacaoDTOBuilder.builder().build().toTransacaoDTO(), marca);
+
+        // Então
+
+            assertThat(transacaoNearCache.get(1L), is(nullValue()));
+
+    }
+
+    // Quando nenhuma invalidação acontece depois da marca, a leitura entra no cache local
+    @Test
+    void whenTransactionIsNotInvalidatedAfterMarkThenReadIsCached() {
+
+        // Dado
+
+            TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+            transacaoNearCache.invalidar(1L);
+            long marca = transacaoNearCache.marca(1L);
+
+        //Quando
+
+            transacaoNearCache.put(1L, transacaoDTO, marca);
+
+        // Então
+
+            assertThat(transacaoNearCache.get(1L), is(equalTo(transacaoDTO)));
+
+    }
+
+}
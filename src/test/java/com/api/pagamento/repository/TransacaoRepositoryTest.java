@@ -0,0 +1,120 @@
+package com.api.pagamento.repository;
+
+import com.api.pagamento.builder.TransacaoDTOBuilder;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
+import com.api.pagamento.domain.model.Transacao;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+//Conta os comandos JDBC de uma gravação de pagamentos em um banco H2 em memória, com o mapeamento e as propriedades
+//do Hibernate de application.yaml (somente o banco é trocado).
+//Com allocationSize=1 e sem batch, cada pagamento custava 6 comandos: 3 nextval e 3 INSERTs.
+
+@DataJpaTest(properties = {
+        "spring.jpa.database=H2",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class TransacaoRepositoryTest {
+
+    private static final int PAGAMENTOS = 200;
+
+    @Autowired
+    private TransacaoRepository transacaoRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    //Quando vários pagamentos são gravados, os ids vêm em blocos da sequence e os INSERTs são enviados em batches
+    @Test
+    void whenPaymentsAreSavedThenIdsArePooledAndInsertsAreBatched() {
+
+        // Dado
+
+        List<Transacao> transacoes = new ArrayList<>(PAGAMENTOS);
+        for (int i = 0; i < PAGAMENTOS; i++) {
+            transacoes.add(newPagamento());
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //Quando
+
+        transacaoRepository.saveAll(transacoes);
+        entityManager.flush();
+
+        // Então
+
+        assertThat(statistics.getEntityInsertCount(), is(equalTo(3L * PAGAMENTOS)));
+
+        //INSERTs em batches de 50 por tabela e um nextval por bloco de 50 ids, em vez de 1200 comandos
+        assertThat(statistics.getPrepareStatementCount(), is(lessThanOrEqualTo(20L)));
+
+    }
+
+    //Quando o lote é lido a partir de uma data e hora, o filtro é aplicado na coluna data_hora pelo banco
+    @Test
+    void whenBatchIsReadSinceDateTimeThenOlderTransactionsAreFiltered() {
+
+        // Dado
+
+        Transacao antiga = newPagamento();
+        antiga.getDescricao().setDataHora("01/05/2021 17:00:00");
+        Transacao recente = newPagamento();
+        recente.getDescricao().setDataHora("01/05/2021 19:00:00");
+        transacaoRepository.saveAll(List.of(antiga, recente));
+        entityManager.flush();
+        entityManager.clear();
+
+        //Quando
+
+        List<Transacao> lote = transacaoRepository.findLoteAnteriorADesde(Long.MAX_VALUE, "01/05/2021 18:00:00", PageRequest.of(0, 10));
+
+        // Então
+
+        assertThat(lote.size(), is(equalTo(1)));
+        assertThat(lote.get(0).getId(), is(equalTo(recente.getId())));
+
+    }
+
+    private static Transacao newPagamento() {
+
+        //Gera um TransacaoDTO sem ids, como enviado pelo cliente
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().id(null).build().toTransacaoDTO();
+        transacaoDTO.getDescricao().setId(null);
+        transacaoDTO.getFormaPagamento().setId(null);
+
+        //Tranforma o TransacaoDTO em um Transacao
+        return TransacaoMapper.toTransacao(transacaoDTO);
+    }
+
+    //Configuração mínima para o teste: a classe da aplicação habilita o Spring MVC, que exige um contexto web
+    @SpringBootConfiguration
+    @AutoConfigurationPackage
+    @EntityScan(basePackageClasses = Transacao.class)
+    static class Configuracao {
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.api.pagamento.repository.codec;
+
+import com.api.pagamento.builder.TransacaoDTOBuilder;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.enumeration.TipoEnum;
+import com.api.pagamento.domain.model.Transacao;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+
+public class BinarioTransacaoCodecTest {
+
+    private final BinarioTransacaoCodec codec = new BinarioTransacaoCodec();
+
+    // Quando uma transação é codificada e decodificada, todos os campos devem ser preservados
+    @Test
+    void whenTransactionIsEncodedThenDecodingRestoresAllFields() {
+
+        // Dado
+
+            //Gera um TransacaoDTO
+            TransacaoDTO expectedTransacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+
+            expectedTransacaoDTO.setId(300L);
+            expectedTransacaoDTO.getDescricao().setNsu("1234567890");
+            expectedTransacaoDTO.getDescricao().setCodigoAutorizacao("147258369");
+            expectedTransacaoDTO.getDescricao().setStatus(StatusEnum.NEGADO);
+            expectedTransacaoDTO.getFormaPagamento().setTipo(TipoEnum.PARCELADO_EMISSOR);
+
+            //Tranforma o TransacaoDTO em um Transacao
+            Transacao transacao = TransacaoMapper.toTransacao(expectedTransacaoDTO);
+
+        //Quando
+
+            byte[] dados = codec.toBytes(transacao);
+
+        // Então
+
+            assertThat(dados[0], is(equalTo(BinarioTransacaoCodec.VERSAO)));
+            assertThat((int) dados[BinarioTransacaoCodec.POSICAO_STATUS], is(equalTo(StatusEnum.NEGADO.ordinal())));
+
+            assertThat(codec.fromBytes(dados), is(equalTo(expectedTransacaoDTO)));
+
+    }
+
+    // Quando um campo opcional é nulo, ele continua nulo depois da decodificação
+    @Test
+    void whenOptionalFieldIsNullThenItStaysNull() {
+
+        // Dado
+
+            TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+            Transacao transacao = TransacaoMapper.toTransacao(transacaoDTO);
+
+        //Quando
+
+            TransacaoDTO decodedTransacaoDTO = codec.fromBytes(codec.toBytes(transacao));
+
+        // Então
+
+            assertThat(decodedTransacaoDTO.getDescricao().getNsu(), is(nullValue()));
+            assertThat(decodedTransacaoDTO.getDescricao().getStatus(), is(nullValue()));
+            assertThat(decodedTransacaoDTO.getDescricao().getValor(), is(equalTo(transacaoDTO.getDescricao().getValor())));
+
+    }
+
+    // O formato binário deve ocupar menos bytes do que a soma dos campos e valores do formato hash
+    @Test
+    void whenTransactionIsEncodedThenBinaryIsSmallerThanHash() {
+
+        // Dado
+
+            TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+            transacaoDTO.getDescricao().setNsu("1234567890");
+            transacaoDTO.getDescricao().setCodigoAutorizacao("147258369");
+            transacaoDTO.getDescricao().setStatus(StatusEnum.AUTORIZADO);
+            Transacao transacao = TransacaoMapper.toTransacao(transacaoDTO);
+
+        //Quando
+
+            int tamanhoHash = new HashTransacaoCodec().encode(transacao).entrySet().stream()
+                    .mapToInt(campo -> campo.getKey().length + campo.getValue().length)
+                    .sum();
+
+            int tamanhoBinario = BinarioTransacaoCodec.CAMPO.length() + codec.toBytes(transacao).length;
+
+        // Então
+
+            assertThat(tamanhoBinario * 2, is(lessThan(tamanhoHash)));
+
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.api.pagamento.repository.persistencia;
+
+import com.api.pagamento.builder.TransacaoDTOBuilder;
+import com.api.pagamento.domain.dto.CursorBusca;
+import com.api.pagamento.domain.dto.FiltroBuscaDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.repository.TransacaoRepository;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+//Estorno no layout normalizado em um banco H2 em memória
+
+@DataJpaTest(properties = {
+        "spring.jpa.database=H2",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class NormalizadaTransacaoPersistenciaTest {
+
+    @Autowired
+    private NormalizadaTransacaoPersistencia normalizadaTransacaoPersistencia;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    //Quando a transação é estornada, o status é alterado por um único UPDATE condicional. Um segundo estorno não
+    //altera nenhuma linha.
+    @Test
+    void whenPaymentIsReversedThenOnlyOneConditionalUpdateIsExecuted() {
+
+        // Dado
+
+        Transacao transacao = normalizadaTransacaoPersistencia.salvar(newPagamento());
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //Quando
+
+        int alteradas = normalizadaTransacaoPersistencia.estornar(transacao.getId());
+
+        // Então
+
+            assertThat(alteradas, is(equalTo(1)));
+            assertThat(statistics.getPrepareStatementCount(), is(equalTo(1L)));
+            assertThat(normalizadaTransacaoPersistencia.estornar(transacao.getId()), is(equalTo(0)));
+
+            assertThat(normalizadaTransacaoPersistencia.procurarPeloId(transacao.getId()).orElseThrow().getDescricao().getStatus(),
+                    is(equalTo(StatusEnum.NEGADO)));
+
+    }
+
+    //Quando a busca é filtrada e paginada por keyset, cada página continua a partir do cursor da anterior
+    @Test
+    void whenSearchIsFilteredThenMatchingTransactionsArePagedByKeyset() {
+
+        // Dado
+
+        Transacao transacao1 = normalizadaTransacaoPersistencia.salvar(newPagamento("Padaria", "10.00", "01/05/2021 08:00:00"));
+        Transacao transacao2 = normalizadaTransacaoPersistencia.salvar(newPagamento("Padaria", "250.50", "02/05/2021 08:00:00"));
+        Transacao transacao3 = normalizadaTransacaoPersistencia.salvar(newPagamento("Padaria", "990.00", "03/05/2021 08:00:00"));
+        normalizadaTransacaoPersistencia.salvar(newPagamento("Farmácia", "500.00", "02/05/2021 08:00:00"));
+        entityManager.flush();
+        entityManager.clear();
+
+        FiltroBuscaDTO filtro = FiltroBuscaDTO.builder()
+                .estabelecimento("Padaria")
+                .valorMinimo("100")
+                .dataHoraFim("03/05/2021 08:00:00")
+                .finalCartao("1234")
+                .build();
+
+        //Quando
+
+        List<TransacaoDTO> primeiraPagina = normalizadaTransacaoPersistencia.buscar(filtro, CursorBusca.INICIO, 1);
+        List<TransacaoDTO> segundaPagina = normalizadaTransacaoPersistencia.buscar(filtro, normalizadaTransacaoPersistencia.cursorApos(filtro, primeiraPagina.get(0)), 1);
+        List<TransacaoDTO> terceiraPagina = normalizadaTransacaoPersistencia.buscar(filtro, normalizadaTransacaoPersistencia.cursorApos(filtro, segundaPagina.get(0)), 1);
+
+        // Então
+
+            //Com um período, da data e hora mais recente para a mais antiga; transacao1 fica fora da faixa de valor
+            assertThat(primeiraPagina.get(0).getId(), is(equalTo(transacao3.getId())));
+            assertThat(segundaPagina.get(0).getId(), is(equalTo(transacao2.getId())));
+            assertThat(terceiraPagina, is(empty()));
+
+            //Valor e data voltam no formato da API
+            assertThat(segundaPagina.get(0).getDescricao().getValor(), is(equalTo("250.50")));
+            assertThat(segundaPagina.get(0).getDescricao().getDataHora(), is(equalTo("02/05/2021 08:00:00")));
+            assertThat(segundaPagina.get(0).getFormaPagamento().getParcelas(), is(equalTo("1")));
+            assertThat(transacao1.getId(), is(lessThan(transacao2.getId())));
+
+    }
+
+    //Quando a busca tem uma faixa de valor, ela é ordenada por valor e id, e o cursor desempata as transações de mesmo
+    //valor pelo id
+    @Test
+    void whenSearchHasValueRangeThenPagesFollowValueAndIdOrder() {
+
+        // Dado
+
+        Transacao transacao1 = normalizadaTransacaoPersistencia.salvar(newPagamento("Padaria", "50.00", "01/05/2021 08:00:00"));
+        Transacao transacao2 = normalizadaTransacaoPersistencia.salvar(newPagamento("Padaria", "50.00", "02/05/2021 08:00:00"));
+        Transacao transacao3 = normalizadaTransacaoPersistencia.salvar(newPagamento("Padaria", "20.00", "03/05/2021 08:00:00"));
+        normalizadaTransacaoPersistencia.salvar(newPagamento("Padaria", "5.00", "04/05/2021 08:00:00"));
+        entityManager.flush();
+        entityManager.clear();
+
+        FiltroBuscaDTO filtro = FiltroBuscaDTO.builder()
+                .valorMinimo("10")
+                .build();
+
+        //Quando
+
+        List<TransacaoDTO> primeiraPagina = normalizadaTransacaoPersistencia.buscar(filtro, CursorBusca.INICIO, 1);
+        CursorBusca cursor = normalizadaTransacaoPersistencia.cursorApos(filtro, primeiraPagina.get(0));
+        List<TransacaoDTO> segundaPagina = normalizadaTransacaoPersistencia.buscar(filtro, CursorBusca.valueOf(cursor.toString()), 1);
+        List<TransacaoDTO> terceiraPagina = normalizadaTransacaoPersistencia.buscar(filtro, normalizadaTransacaoPersistencia.cursorApos(filtro, segundaPagina.get(0)), 1);
+        List<TransacaoDTO> quartaPagina = normalizadaTransacaoPersistencia.buscar(filtro, normalizadaTransacaoPersistencia.cursorApos(filtro, terceiraPagina.get(0)), 1);
+
+        // Então
+
+            assertThat(primeiraPagina.get(0).getId(), is(equalTo(transacao2.getId())));
+            assertThat(segundaPagina.get(0).getId(), is(equalTo(transacao1.getId())));
+            assertThat(terceiraPagina.get(0).getId(), is(equalTo(transacao3.getId())));
+            assertThat(quartaPagina, is(empty()));
+
+            //Valor em centavos e id da descricao, que tem o índice da ordem
+            assertThat(cursor.toString(), is(equalTo("v5000_" + transacao2.getDescricao().getId())));
+
+    }
+
+    //Quando as transações são exportadas, elas chegam ao consumidor em uma única consulta, sem entidades no contexto de
+    //persistência
+    @Test
+    void whenTransactionsAreExportedThenRowsAreStreamedFromASingleQuery() {
+
+        // Dado
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(0, normalizadaTransacaoPersistencia.salvar(newPagamento("Padaria", "10.00", "01/05/2021 08:00:00")).getId());
+        }
+        normalizadaTransacaoPersistencia.salvar(newPagamento("Farmácia", "10.00", "01/05/2021 08:00:00"));
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        FiltroBuscaDTO filtro = FiltroBuscaDTO.builder().estabelecimento("Padaria").build();
+
+        List<Long> exportados = new ArrayList<>();
+
+        //Quando
+
+        normalizadaTransacaoPersistencia.exportar(filtro, 2, transacaoDTO -> exportados.add(transacaoDTO.getId()));
+
+        // Então
+
+            //Da mais recente para a mais antiga, como na busca
+            assertThat(exportados, is(equalTo(ids)));
+            assertThat(statistics.getPrepareStatementCount(), is(equalTo(1L)));
+            assertThat(entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount(), is(equalTo(0)));
+
+    }
+
+    private static Transacao newPagamento() {
+        return newPagamento("PetShop Mundo cão", "500.50", "01/05/2021 18:00:00");
+    }
+
+    private static Transacao newPagamento(String estabelecimento, String valor, String dataHora) {
+
+        //Gera um TransacaoDTO sem ids, como enviado pelo cliente
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().id(null).build().toTransacaoDTO();
+        transacaoDTO.getDescricao().setEstabelecimento(estabelecimento);
+        transacaoDTO.getDescricao().setValor(valor);
+        transacaoDTO.getDescricao().setDataHora(dataHora);
+        transacaoDTO.getDescricao().setId(null);
+        transacaoDTO.getFormaPagamento().setId(null);
+        transacaoDTO.getDescricao().setStatus(StatusEnum.AUTORIZADO);
+
+        //Tranforma o TransacaoDTO em um Transacao
+        return TransacaoMapper.toTransacao(transacaoDTO);
+    }
+
+    //Configuração mínima para o teste: a classe da aplicação habilita o Spring MVC, que exige um contexto web
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = Transacao.class)
+    @EnableJpaRepositories(basePackageClasses = TransacaoRepository.class)
+    @Import(NormalizadaTransacaoPersistencia.class)
+    static class Configuracao {
+    }
+
+}
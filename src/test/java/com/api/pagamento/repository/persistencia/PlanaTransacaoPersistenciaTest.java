@@ -0,0 +1,258 @@
+package com.api.pagamento.repository.persistencia;
+
+import com.api.pagamento.builder.TransacaoDTOBuilder;
+import com.api.pagamento.domain.dto.CursorBusca;
+import com.api.pagamento.domain.dto.FiltroBuscaDTO;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.repository.TransacaoPlanaRepository;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+//Layout plano em um banco H2 em memória: escrita, leitura e estorno são um comando cada, sobre a mesma linha
+
+@DataJpaTest(properties = {
+        "spring.jpa.database=H2",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "transacao.persistencia.modelo=plano"
+})
+public class PlanaTransacaoPersistenciaTest {
+
+    @Autowired
+    private PlanaTransacaoPersistencia planaTransacaoPersistencia;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    //Quando o pagamento é gravado e lido novamente, o TransacaoDTO é o mesmo do layout normalizado
+    @Test
+    void whenPaymentIsSavedThenItIsReadBackFromASingleRow() {
+
+        // Dado
+
+        Transacao transacao = newPagamento();
+
+        //Quando
+
+        Transacao salva = planaTransacaoPersistencia.salvar(transacao);
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = statistics();
+
+        Transacao lida = planaTransacaoPersistencia.procurarPeloId(salva.getId()).orElseThrow();
+
+        // Então
+
+            //Descricao e FormaPagamento recebem o id da transação
+            assertThat(salva.getDescricao().getId(), is(equalTo(salva.getId())));
+            assertThat(salva.getFormaPagamento().getId(), is(equalTo(salva.getId())));
+
+            assertThat(TransacaoMapper.toTransacaoDTO(lida), is(equalTo(TransacaoMapper.toTransacaoDTO(salva))));
+
+            //Um único SELECT, sem join
+            assertThat(statistics.getPrepareStatementCount(), is(equalTo(1L)));
+
+    }
+
+    //Quando a transação é estornada, apenas o status da linha é atualizado, sem SELECT antes. Um segundo estorno
+    //não altera nenhuma linha.
+    @Test
+    void whenPaymentIsReversedThenOnlyOneUpdateIsExecuted() {
+
+        // Dado
+
+        Transacao transacao = planaTransacaoPersistencia.salvar(newPagamento());
+        entityManager.flush();
+        entityManager.clear();
+
+        //Quando
+
+        Statistics statistics = statistics();
+
+        int alteradas = planaTransacaoPersistencia.estornar(transacao.getId());
+
+        // Então
+
+            assertThat(alteradas, is(equalTo(1)));
+            assertThat(statistics.getPrepareStatementCount(), is(equalTo(1L)));
+            assertThat(planaTransacaoPersistencia.estornar(transacao.getId()), is(equalTo(0)));
+
+            assertThat(planaTransacaoPersistencia.procurarPeloId(transacao.getId()).orElseThrow().getDescricao().getStatus(),
+                    is(equalTo(StatusEnum.NEGADO)));
+
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    //Quando a busca é filtrada e paginada por keyset, cada página continua a partir do cursor da anterior
+    @Test
+    void whenSearchIsFilteredThenMatchingTransactionsArePagedByKeyset() {
+
+        // Dado
+
+        Transacao transacao1 = planaTransacaoPersistencia.salvar(newPagamento("Padaria", "10.00", "01/05/2021 08:00:00"));
+        Transacao transacao2 = planaTransacaoPersistencia.salvar(newPagamento("Padaria", "250.50", "02/05/2021 08:00:00"));
+        Transacao transacao3 = planaTransacaoPersistencia.salvar(newPagamento("Padaria", "990.00", "03/05/2021 08:00:00"));
+        planaTransacaoPersistencia.salvar(newPagamento("Farmácia", "500.00", "02/05/2021 08:00:00"));
+        entityManager.flush();
+        entityManager.clear();
+
+        FiltroBuscaDTO filtro = FiltroBuscaDTO.builder()
+                .estabelecimento("Padaria")
+                .valorMinimo("100")
+                .dataHoraFim("03/05/2021 08:00:00")
+                .finalCartao("1234")
+                .build();
+
+        //Quando
+
+        List<TransacaoDTO> primeiraPagina = planaTransacaoPersistencia.buscar(filtro, CursorBusca.INICIO, 1);
+        List<TransacaoDTO> segundaPagina = planaTransacaoPersistencia.buscar(filtro, planaTransacaoPersistencia.cursorApos(filtro, primeiraPagina.get(0)), 1);
+        List<TransacaoDTO> terceiraPagina = planaTransacaoPersistencia.buscar(filtro, planaTransacaoPersistencia.cursorApos(filtro, segundaPagina.get(0)), 1);
+
+        // Então
+
+            //Com um período, da data e hora mais recente para a mais antiga; transacao1 fica fora da faixa de valor
+            assertThat(primeiraPagina.get(0).getId(), is(equalTo(transacao3.getId())));
+            assertThat(segundaPagina.get(0).getId(), is(equalTo(transacao2.getId())));
+            assertThat(terceiraPagina, is(empty()));
+
+            //Valor e data voltam no formato da API
+            assertThat(segundaPagina.get(0).getDescricao().getValor(), is(equalTo("250.50")));
+            assertThat(segundaPagina.get(0).getDescricao().getDataHora(), is(equalTo("02/05/2021 08:00:00")));
+            assertThat(segundaPagina.get(0).getFormaPagamento().getParcelas(), is(equalTo("1")));
+            assertThat(transacao1.getId(), is(lessThan(transacao2.getId())));
+
+    }
+
+    //Quando a busca tem um período, ela é ordenada por data e hora e id, e o cursor desempata as transações do mesmo
+    //instante pelo id
+    @Test
+    void whenSearchHasPeriodThenPagesFollowDateTimeAndIdOrder() {
+
+        // Dado
+
+        Transacao transacao1 = planaTransacaoPersistencia.salvar(newPagamento("Padaria", "10.00", "02/05/2021 08:00:00"));
+        Transacao transacao2 = planaTransacaoPersistencia.salvar(newPagamento("Padaria", "10.00", "01/05/2021 08:00:00"));
+        Transacao transacao3 = planaTransacaoPersistencia.salvar(newPagamento("Padaria", "10.00", "02/05/2021 08:00:00"));
+        planaTransacaoPersistencia.salvar(newPagamento("Padaria", "10.00", "30/04/2021 08:00:00"));
+        entityManager.flush();
+        entityManager.clear();
+
+        FiltroBuscaDTO filtro = FiltroBuscaDTO.builder()
+                .dataHoraInicio("01/05/2021 00:00:00")
+                .build();
+
+        //Quando
+
+        List<TransacaoDTO> primeiraPagina = planaTransacaoPersistencia.buscar(filtro, CursorBusca.INICIO, 1);
+        CursorBusca cursor = planaTransacaoPersistencia.cursorApos(filtro, primeiraPagina.get(0));
+        List<TransacaoDTO> segundaPagina = planaTransacaoPersistencia.buscar(filtro, CursorBusca.valueOf(cursor.toString()), 1);
+        List<TransacaoDTO> terceiraPagina = planaTransacaoPersistencia.buscar(filtro, planaTransacaoPersistencia.cursorApos(filtro, segundaPagina.get(0)), 1);
+        List<TransacaoDTO> quartaPagina = planaTransacaoPersistencia.buscar(filtro, planaTransacaoPersistencia.cursorApos(filtro, terceiraPagina.get(0)), 1);
+
+        // Então
+
+            assertThat(primeiraPagina.get(0).getId(), is(equalTo(transacao3.getId())));
+            assertThat(segundaPagina.get(0).getId(), is(equalTo(transacao1.getId())));
+            assertThat(terceiraPagina.get(0).getId(), is(equalTo(transacao2.getId())));
+            assertThat(quartaPagina, is(empty()));
+
+            //02/05/2021 08:00:00 em São Paulo = 11:00:00 UTC
+            assertThat(cursor.toString(), is(equalTo("d1619953200_" + transacao3.getId())));
+
+    }
+
+    //Quando as transações são exportadas, elas chegam ao consumidor em uma única consulta, sem entidades no contexto de
+    //persistência
+    @Test
+    void whenTransactionsAreExportedThenRowsAreStreamedFromASingleQuery() {
+
+        // Dado
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(0, planaTransacaoPersistencia.salvar(newPagamento("Padaria", "10.00", "01/05/2021 08:00:00")).getId());
+        }
+        planaTransacaoPersistencia.salvar(newPagamento("Farmácia", "10.00", "01/05/2021 08:00:00"));
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        FiltroBuscaDTO filtro = FiltroBuscaDTO.builder().estabelecimento("Padaria").build();
+
+        List<Long> exportados = new ArrayList<>();
+
+        //Quando
+
+        planaTransacaoPersistencia.exportar(filtro, 2, transacaoDTO -> exportados.add(transacaoDTO.getId()));
+
+        // Então
+
+            //Da mais recente para a mais antiga, como na busca
+            assertThat(exportados, is(equalTo(ids)));
+            assertThat(statistics.getPrepareStatementCount(), is(equalTo(1L)));
+            assertThat(entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount(), is(equalTo(0)));
+
+    }
+
+    private static Transacao newPagamento() {
+        return newPagamento("PetShop Mundo cão", "500.50", "01/05/2021 18:00:00");
+    }
+
+    private static Transacao newPagamento(String estabelecimento, String valor, String dataHora) {
+
+        //Gera um TransacaoDTO sem ids, como enviado pelo cliente
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().id(null).build().toTransacaoDTO();
+        transacaoDTO.getDescricao().setEstabelecimento(estabelecimento);
+        transacaoDTO.getDescricao().setValor(valor);
+        transacaoDTO.getDescricao().setDataHora(dataHora);
+        transacaoDTO.getDescricao().setId(null);
+        transacaoDTO.getFormaPagamento().setId(null);
+        transacaoDTO.getDescricao().setStatus(StatusEnum.AUTORIZADO);
+
+        //Tranforma o TransacaoDTO em um Transacao
+        return TransacaoMapper.toTransacao(transacaoDTO);
+    }
+
+    //Configuração mínima para o teste: a classe da aplicação habilita o Spring MVC, que exige um contexto web
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = Transacao.class)
+    @EnableJpaRepositories(basePackageClasses = TransacaoPlanaRepository.class)
+    @Import(PlanaTransacaoPersistencia.class)
+    static class Configuracao {
+    }
+
+}
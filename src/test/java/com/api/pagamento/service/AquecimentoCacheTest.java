@@ -0,0 +1,153 @@
+package com.api.pagamento.service;
+
+import com.api.pagamento.builder.TransacaoDTOBuilder;
+import com.api.pagamento.config.FabricaThreads;
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
+import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.domain.model.converter.DataHoraConverter;
+import com.api.pagamento.repository.TransacaoCacheRepository;
+import com.api.pagamento.repository.persistencia.TransacaoPersistencia;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+//MockitoExtension.class = Extensão necessária para as anotações do mockito serem utilizadas
+@ExtendWith(MockitoExtension.class)
+public class AquecimentoCacheTest {
+
+    @Mock
+    private TransacaoPersistencia transacaoPersistencia;
+
+    @Mock
+    private TransacaoCacheRepository transacaoCacheRepository;
+
+    private final TransacaoProperties transacaoProperties = new TransacaoProperties();
+
+    private AquecimentoCache aquecimentoCache;
+
+    // @BeforeEach: Execute antes de cada método de teste.
+    @BeforeEach
+    void setUp() {
+        transacaoProperties.getAquecimento().setEnabled(true);
+        transacaoProperties.getAquecimento().setTamanhoLote(2);
+        transacaoProperties.getAquecimento().setThreads(2);
+        aquecimentoCache = new AquecimentoCache(transacaoPersistencia, transacaoCacheRepository, transacaoProperties,
+                new FabricaThreads(transacaoProperties));
+    }
+
+    // Quando o aquecimento é executado, as transações são lidas por keyset e gravadas em lotes no cache
+    @Test
+    void whenWarmUpRunsThenTransactionsAreCachedInBatches() throws Exception {
+
+        // Dado
+
+            String agora = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"));
+            Transacao transacao3 = newTransacao(3L, agora);
+            Transacao transacao2 = newTransacao(2L, agora);
+            Transacao transacao1 = newTransacao(1L, agora);
+
+        //Quando
+
+            when(transacaoPersistencia.procurarLoteAnteriorA(eq(Long.MAX_VALUE), anyString(), eq(2)))
+                    .thenReturn(List.of(transacao3, transacao2));
+            when(transacaoPersistencia.procurarLoteAnteriorA(eq(2L), anyString(), eq(2)))
+                    .thenReturn(List.of(transacao1));
+
+            aquecimentoCache.run(null);
+
+        // Então
+
+            verify(transacaoCacheRepository).setHashMaps(List.of(transacao3, transacao2));
+            verify(transacaoCacheRepository).setHashMaps(List.of(transacao1));
+
+            assertThat(aquecimentoCache.isConcluido(), is(true));
+            assertThat(aquecimentoCache.getTransacoesLidas(), is(equalTo(3L)));
+            assertThat(aquecimentoCache.getTransacoesGravadas(), is(equalTo(3L)));
+
+    }
+
+    // Quando há uma janela configurada, o início dela é passado para a consulta e a leitura termina no primeiro lote vazio
+    @Test
+    void whenWindowIsConfiguredThenItIsFilteredByTheQuery() throws Exception {
+
+        // Dado
+
+            transacaoProperties.getAquecimento().setDias(30);
+            LocalDateTime esperado = LocalDateTime.now(DataHoraConverter.FUSO_HORARIO).minusDays(30);
+
+        //Quando
+
+            when(transacaoPersistencia.procurarLoteAnteriorA(eq(Long.MAX_VALUE), anyString(), eq(2)))
+                    .thenReturn(List.of());
+
+            aquecimentoCache.run(null);
+
+        // Então
+
+            ArgumentCaptor<String> inicio = ArgumentCaptor.forClass(String.class);
+            verify(transacaoPersistencia).procurarLoteAnteriorA(eq(Long.MAX_VALUE), inicio.capture(), eq(2));
+            verify(transacaoCacheRepository, never()).setHashMaps(any());
+
+            LocalDateTime inicioJanela = LocalDateTime.parse(inicio.getValue(), DataHoraConverter.FORMATO);
+            assertThat(Duration.between(esperado, inicioJanela).abs().getSeconds(), is(lessThan(5L)));
+            assertThat(aquecimentoCache.isConcluido(), is(true));
+            assertThat(aquecimentoCache.getTransacoesGravadas(), is(equalTo(0L)));
+
+    }
+
+    // Sem janela (dias = 0), todas as transações são lidas
+    @Test
+    void whenWindowIsDisabledThenAllTransactionsAreRead() throws Exception {
+
+        // Dado
+
+            transacaoProperties.getAquecimento().setDias(0);
+            Transacao transacao1 = newTransacao(1L, "01/05/2021 17:00:00");
+
+        //Quando
+
+            when(transacaoPersistencia.procurarLoteAnteriorA(Long.MAX_VALUE, null, 2))
+                    .thenReturn(List.of(transacao1));
+
+            aquecimentoCache.run(null);
+
+        // Então
+
+            verify(transacaoCacheRepository).setHashMaps(List.of(transacao1));
+
+            assertThat(aquecimentoCache.getTransacoesGravadas(), is(equalTo(1L)));
+
+    }
+
+    private static Transacao newTransacao(Long id, String dataHora) {
+
+        //Gera um TransacaoDTO
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().id(id).build().toTransacaoDTO();
+        transacaoDTO.getDescricao().setDataHora(dataHora);
+
+        //Tranforma o TransacaoDTO em um Transacao
+        return TransacaoMapper.toTransacao(transacaoDTO);
+    }
+
+}
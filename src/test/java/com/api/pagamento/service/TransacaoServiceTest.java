@@ -1,31 +1,69 @@
 package com.api.pagamento.service;
 
 import com.api.pagamento.builder.TransacaoDTOBuilder;
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.dto.CursorBusca;
+import com.api.pagamento.domain.dto.FiltroBuscaDTO;
+import com.api.pagamento.domain.dto.ItemLoteDTO;
+import com.api.pagamento.domain.dto.PaginaBuscaDTO;
+import com.api.pagamento.domain.dto.ResultadoLoteDTO;
 import com.api.pagamento.domain.dto.TransacaoDTO;
-import com.api.pagamento.domain.dto.util.Mapper;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
 import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.exception.CursorInvalidoException;
 import com.api.pagamento.domain.exception.InsercaoNaoPermitidaException;
 import com.api.pagamento.domain.exception.TransacaoInexistenteException;
 import com.api.pagamento.domain.model.Transacao;
-import com.api.pagamento.repository.DescricaoRepository;
-import com.api.pagamento.repository.TransacaoRepository;
+import com.api.pagamento.repository.TransacaoCacheRepository;
+import com.api.pagamento.repository.TransacaoCacheRepository.EstornoCache;
+import com.api.pagamento.repository.TransacaoCacheRepository.JsonCache;
+import com.api.pagamento.repository.TransacaoCacheRepository.PaginaChaves;
+import com.api.pagamento.repository.TransacaoCacheRepository.ResultadoEstorno;
+import com.api.pagamento.repository.TransacaoNearCache;
+import com.api.pagamento.repository.TransacaoWriteBehindRepository;
+import com.api.pagamento.repository.persistencia.TransacaoPersistencia;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
 import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import javax.validation.Validator;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /*
@@ -102,14 +140,34 @@ public class TransacaoServiceTest {
     // Mock: cria uma instancia de uma classe, porém Mockada (simulada). Se você chamar um metodo ele não irá chamar
     // o metodo real, a não ser que você queira.
     @Mock
-    private TransacaoRepository transacaoRepository;
+    private TransacaoPersistencia transacaoPersistencia;
 
     // InjectMocks: Cria uma intancia e injeta as dependências necessárias que estão anotadas com @Mock.
     @InjectMocks
     private TransacaoServiceImp transacaoService;
 
     @Mock
-    private DescricaoRepository descricaoRepository;
+    private TransacaoCacheRepository transacaoCacheRepository;
+
+    @Mock
+    private TransacaoNearCache transacaoNearCache;
+
+    @Mock
+    private TransacaoWriteBehindRepository transacaoWriteBehindRepository;
+
+    // Spy: uma instância real cujos métodos podem ser verificados. As propriedades usam os valores padrão.
+    @Spy
+    private TransacaoProperties transacaoProperties = new TransacaoProperties();
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    // O gerenciador de transações é simulado: o TransactionTemplate apenas executa o callback
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
 
 
     // @Test = A anotação de teste informa ao JUnit que o método void público ao qual está anexado pode ser executado
@@ -128,7 +186,7 @@ public class TransacaoServiceTest {
             TransacaoDTO expectedTransacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
 
             //Tranforma o TransacaoDTO em um Transacao
-            Transacao transacao = (Transacao) Mapper.convert(expectedTransacaoDTO, Transacao.class);
+            Transacao transacao = TransacaoMapper.toTransacao(expectedTransacaoDTO);
 
             transacao.setId(null);
             transacao.getDescricao().setId(null);
@@ -136,10 +194,10 @@ public class TransacaoServiceTest {
 
         //Quando
 
-            //transacaoService.save( -> transacaoRepository.save(expectedTransacao) -> expectedTransacao
-            when(transacaoRepository
-                    .save(transacao))
-                    .thenReturn((Transacao) Mapper.convert(expectedTransacaoDTO,Transacao.class));
+            //transacaoService.save( -> transacaoPersistencia.salvar(expectedTransacao) -> expectedTransacao
+            when(transacaoPersistencia
+                    .salvar(transacao))
+                    .thenReturn(TransacaoMapper.toTransacao(expectedTransacaoDTO));
 
         // Então
 
@@ -157,6 +215,9 @@ public class TransacaoServiceTest {
             assertThat(createdTransacaoDTO.getFormaPagamento().getTipo(), is(equalTo(expectedTransacaoDTO.getFormaPagamento().getTipo())));
             assertThat(createdTransacaoDTO.getFormaPagamento().getParcelas(), is(equalTo(expectedTransacaoDTO.getFormaPagamento().getParcelas())));
 
+            //Verifica se o pagamento recebeu a versão inicial
+            assertThat(createdTransacaoDTO.getVersao(), is(equalTo(1L)));
+
     }
 
     // Quando o nsu, codigo_pagamento ou o status é informado, uma exceção deve ser lançada
@@ -169,7 +230,7 @@ public class TransacaoServiceTest {
             TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
 
             //Tranforma o TransacaoDTO em um Transacao
-            Transacao transacao = (Transacao) Mapper.convert(transacaoDTO, Transacao.class);
+            Transacao transacao = TransacaoMapper.toTransacao(transacaoDTO);
 
             transacao.setId(null);
             transacao.getDescricao().setId(null);
@@ -197,7 +258,7 @@ public class TransacaoServiceTest {
 
         //Quando
 
-        //transacaoRepository.procurarPeloId(id) -> TransacaoInexistenteException
+        //transacaoPersistencia.procurarPeloId(id) -> TransacaoInexistenteException
 
         // Então
 
@@ -215,7 +276,7 @@ public class TransacaoServiceTest {
             TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
 
             //Tranforma o TransacaoDTO em um Transacao
-            Transacao transacao = (Transacao) Mapper.convert(transacaoDTO, Transacao.class);
+            Transacao transacao = TransacaoMapper.toTransacao(transacaoDTO);
 
             transacao.setId(null);
             transacao.getDescricao().setId(null);
@@ -224,8 +285,8 @@ public class TransacaoServiceTest {
 
         //Quando
 
-        //transacaoRepository.save(transacao) -> ConstraintViolationException
-            when(transacaoRepository.save(transacao))
+        //transacaoPersistencia.salvar(transacao) -> ConstraintViolationException
+            when(transacaoPersistencia.salvar(transacao))
                    .thenThrow(ConstraintViolationException.class);
 
         // Então
@@ -250,14 +311,15 @@ public class TransacaoServiceTest {
         expectedTransacaoDTO.getDescricao().setCodigoAutorizacao("147258369");
         expectedTransacaoDTO.getDescricao().setStatus(StatusEnum.NEGADO);
 
-        //Tranforma o TransacaoDTO em um Transacao
-        Transacao transacao = (Transacao) Mapper.convert(expectedTransacaoDTO, Transacao.class);
-
         //When
 
-        //transacaoService.findById(id) -> transacao
-        when(transacaoRepository.findById(id))
-                .thenReturn(Optional.ofNullable(transacao));
+        //transacaoCacheRepository.estornarHashMapByKey("transacao::"+id) -> ESTORNADO, expectedTransacaoDTO
+        when(transacaoCacheRepository.estornarHashMapByKey("transacao::"+id))
+                .thenReturn(new EstornoCache(ResultadoEstorno.ESTORNADO, expectedTransacaoDTO));
+
+        //transacaoPersistencia.estornar(id) -> 1 linha alterada
+        when(transacaoPersistencia.estornar(id))
+                .thenReturn(1);
 
         // Então
 
@@ -296,14 +358,11 @@ public class TransacaoServiceTest {
         expectedTransacaoDTO.getDescricao().setCodigoAutorizacao("147258369");
         expectedTransacaoDTO.getDescricao().setStatus(StatusEnum.AUTORIZADO);
 
-        //Tranforma o TransacaoDTO em um Transacao
-        Transacao transacao = (Transacao) Mapper.convert(expectedTransacaoDTO, Transacao.class);
-
         //When
 
-        //transacaoService.findById(id) -> transacao
-        when(transacaoRepository.findById(id))
-                .thenReturn(Optional.ofNullable(transacao));
+        //transacaoCacheRepository.getHashMapByKey("transacao::"+id) -> expectedTransacaoDTO
+        when(transacaoCacheRepository.getHashMapByKey("transacao::"+id))
+                .thenReturn(expectedTransacaoDTO);
 
         // Então
 
@@ -326,6 +385,635 @@ public class TransacaoServiceTest {
 
     }
 
+    //Quando a transacao está no near-cache, o Redis não é consultado
+    @Test
+    void whenTransactionIsInNearCacheThenRedisIsNotQueried() throws Exception {
+
+        // Dado
+
+        Long id = 1L;
+
+        //Gera um TransacaoDTO
+        TransacaoDTO expectedTransacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+
+        //Quando
+
+        //transacaoNearCache.get(id) -> expectedTransacaoDTO
+        when(transacaoNearCache.get(id))
+                .thenReturn(expectedTransacaoDTO);
+
+        // Então
+
+            assertThat(transacaoService.procurarPeloId(id), is(equalTo(expectedTransacaoDTO)));
+
+            verify(transacaoCacheRepository, never()).getHashMapByKey("transacao::"+id);
+
+    }
+
+    //Quando a transacao está no near-cache, a versão vem dela e o Redis não é consultado
+    @Test
+    void whenTransactionIsInNearCacheThenVersionIsReadFromIt() {
+
+        // Dado
+
+        Long id = 1L;
+
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+        transacaoDTO.setVersao(2L);
+
+        //Quando
+
+        //transacaoNearCache.get(id) -> transacaoDTO
+        when(transacaoNearCache.get(id))
+                .thenReturn(transacaoDTO);
+
+        // Então
+
+            assertThat(transacaoService.procurarVersaoPeloId(id), is(equalTo(2L)));
+
+            verify(transacaoCacheRepository, never()).getVersaoByKey(any());
+
+    }
+
+    //Quando a transacao não está no near-cache, apenas a versão é lida do Redis, sem a transação
+    @Test
+    void whenTransactionIsNotInNearCacheThenOnlyVersionIsReadFromRedis() {
+
+        // Dado
+
+        Long id = 1L;
+
+        //Quando
+
+        //transacaoCacheRepository.getVersaoByKey("transacao::1") -> 2
+        when(transacaoCacheRepository.getVersaoByKey("transacao::"+id))
+                .thenReturn(2L);
+
+        // Então
+
+            assertThat(transacaoService.procurarVersaoPeloId(id), is(equalTo(2L)));
+
+            verify(transacaoCacheRepository, never()).getHashMapByKey(any());
+            assertThat(meterRegistry.counter("transacao.cache.consultas", "operacao", "versao", "camada", "redis", "resultado", "acerto").count(), is(equalTo(1.0)));
+
+    }
+
+    //Quando o estorno é realizado, a transação é invalidada no near-cache de todas as instâncias
+    @Test
+    void whenReversalIsDoneThenNearCacheIsInvalidated() throws Exception {
+
+        // Dado
+
+        Long id = 1L;
+
+        //Gera um TransacaoDTO
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+
+        transacaoDTO.getDescricao().setStatus(StatusEnum.NEGADO);
+
+        //Quando
+
+        when(transacaoCacheRepository.estornarHashMapByKey("transacao::"+id))
+                .thenReturn(new EstornoCache(ResultadoEstorno.ESTORNADO, transacaoDTO));
+
+        //transacaoPersistencia.estornar(id) -> uma linha alterada
+        when(transacaoPersistencia.estornar(id))
+                .thenReturn(1);
+
+        transacaoService.estornar(id);
+
+        // Então
+
+            verify(transacaoNearCache).invalidar(id);
+
+    }
+
+    //Quando a transação já foi estornada, ela é retornada sem uma nova gravação no banco
+    @Test
+    void whenTransactionIsAlreadyReversedThenDatabaseIsNotUpdated() throws Exception {
+
+        // Dado
+
+        Long id = 1L;
+
+        //Gera um TransacaoDTO
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+
+        transacaoDTO.getDescricao().setStatus(StatusEnum.NEGADO);
+
+        //Quando
+
+        when(transacaoCacheRepository.estornarHashMapByKey("transacao::"+id))
+                .thenReturn(new EstornoCache(ResultadoEstorno.NAO_ESTORNAVEL, transacaoDTO));
+
+        // Então
+
+            assertThat(transacaoService.estornar(id), is(equalTo(transacaoDTO)));
+
+            verify(transacaoPersistencia, never()).estornar(anyLong());
+
+    }
+
+    //Quando a transação a ser estornada não está no cache, ela é recarregada do banco e o estorno é repetido
+    @Test
+    void whenReversedTransactionIsNotCachedThenItIsReloadedAndReversed() throws Exception {
+
+        // Dado
+
+        Long id = 1L;
+
+        //Gera um TransacaoDTO
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+
+        transacaoDTO.getDescricao().setStatus(StatusEnum.AUTORIZADO);
+
+        Transacao transacao = TransacaoMapper.toTransacao(transacaoDTO);
+
+        //Quando
+
+        when(transacaoCacheRepository.estornarHashMapByKey("transacao::"+id))
+                .thenReturn(new EstornoCache(ResultadoEstorno.INEXISTENTE, null))
+                .thenReturn(new EstornoCache(ResultadoEstorno.ESTORNADO, transacaoDTO));
+        when(transacaoPersistencia.procurarPeloId(id))
+                .thenReturn(Optional.of(transacao));
+        when(transacaoPersistencia.estornar(id))
+                .thenReturn(1);
+
+        // Então
+
+            assertThat(transacaoService.estornar(id), is(equalTo(transacaoDTO)));
+
+            verify(transacaoCacheRepository).setHashMap(transacao);
+            verify(transacaoPersistencia).estornar(id);
+
+    }
+
+    //Quando o banco já tem a transação estornada, o UPDATE não altera nenhuma linha: a chave é removida do cache e a
+    //transação é relida do banco, com o status dele
+    @Test
+    void whenDatabaseIsAlreadyReversedThenCacheKeyIsReloadedFromDatabase() throws Exception {
+
+        // Dado
+
+        Long id = 1L;
+
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+        transacaoDTO.getDescricao().setStatus(StatusEnum.NEGADO);
+
+        Transacao transacao = TransacaoMapper.toTransacao(transacaoDTO);
+
+        //Quando
+
+        when(transacaoCacheRepository.estornarHashMapByKey("transacao::"+id))
+                .thenReturn(new EstornoCache(ResultadoEstorno.ESTORNADO, transacaoDTO));
+
+        //transacaoPersistencia.estornar(id) -> nenhuma linha com status AUTORIZADO
+        when(transacaoPersistencia.estornar(id))
+                .thenReturn(0);
+
+        //transacaoPersistencia.procurarPeloId(id) -> a transação, já estornada no banco
+        when(transacaoPersistencia.procurarPeloId(id))
+                .thenReturn(Optional.of(transacao));
+
+        TransacaoDTO estornada = transacaoService.estornar(id);
+
+        // Então
+
+            assertThat(estornada.getDescricao().getStatus(), is(equalTo(StatusEnum.NEGADO)));
+            verify(transacaoCacheRepository).deleteHashMap("transacao::"+id);
+            verify(transacaoCacheRepository).setHashMap(transacao);
+            verify(transacaoNearCache).invalidar(id);
+
+    }
+
+    //Quando a transação não existe mais no banco, o UPDATE não altera nenhuma linha: a chave é removida do cache e a
+    //exceção TransacaoInexistenteException é lançada, em vez de devolver o NEGADO do cache
+    @Test
+    void whenReversedTransactionIsNotInDatabaseThenExceptionIsThrown() {
+
+        // Dado
+
+        Long id = 1L;
+
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+        transacaoDTO.getDescricao().setStatus(StatusEnum.NEGADO);
+
+        //Quando
+
+        when(transacaoCacheRepository.estornarHashMapByKey("transacao::"+id))
+                .thenReturn(new EstornoCache(ResultadoEstorno.ESTORNADO, transacaoDTO));
+
+        //transacaoPersistencia.estornar(id) -> nenhuma linha
+        when(transacaoPersistencia.estornar(id))
+                .thenReturn(0);
+
+        //transacaoPersistencia.procurarPeloId(id) -> a transação não existe
+        when(transacaoPersistencia.procurarPeloId(id))
+                .thenReturn(Optional.empty());
+
+        // Então
+
+            assertThrows(TransacaoInexistenteException.class, () -> transacaoService.estornar(id));
+            verify(transacaoCacheRepository).deleteHashMap("transacao::"+id);
+            verify(transacaoCacheRepository, never()).setHashMap(any());
+            verify(transacaoNearCache).invalidar(id);
+
+    }
+
+    //Quando o UPDATE do estorno falha, a chave é removida do cache (que ficaria NEGADO sem o estorno no banco) e o erro é propagado
+    @Test
+    void whenDatabaseReversalFailsThenCacheKeyIsRemoved() throws Exception {
+
+        // Dado
+
+        Long id = 1L;
+
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+        transacaoDTO.getDescricao().setStatus(StatusEnum.NEGADO);
+
+        //Quando
+
+        when(transacaoCacheRepository.estornarHashMapByKey("transacao::"+id))
+                .thenReturn(new EstornoCache(ResultadoEstorno.ESTORNADO, transacaoDTO));
+
+        //transacaoPersistencia.estornar(id) -> falha no banco
+        when(transacaoPersistencia.estornar(id))
+                .thenThrow(new IllegalStateException());
+
+        // Então
+
+            assertThrows(IllegalStateException.class, () -> transacaoService.estornar(id));
+
+            verify(transacaoCacheRepository).deleteHashMap("transacao::"+id);
+            verify(transacaoNearCache).invalidar(id);
+
+    }
+
+    //Quando a busca encontra mais transações do que o tamanho da página, a posição da última transação retornada é o
+    //próximo cursor
+    @Test
+    void whenSearchHasMoreResultsThenLastIdIsTheNextCursor() throws CursorInvalidoException {
+
+        // Dado
+
+        FiltroBuscaDTO filtro = FiltroBuscaDTO.builder().estabelecimento("PetShop Mundo cão").build();
+
+        List<TransacaoDTO> transacoesDTO = new ArrayList<>();
+        for (long id = 3; id >= 1; id--) {
+            TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+            transacaoDTO.setId(id);
+            transacoesDTO.add(transacaoDTO);
+        }
+
+        //Quando
+
+        //transacaoPersistencia.buscar(filtro, sem cursor, tamanho + 1) -> 3 transações
+        when(transacaoPersistencia.buscar(filtro, CursorBusca.INICIO, 3))
+                .thenReturn(transacoesDTO);
+
+        //transacaoPersistencia.cursorApos(filtro, segunda transação) -> cursor do id 2
+        when(transacaoPersistencia.cursorApos(filtro, transacoesDTO.get(1)))
+                .thenReturn(CursorBusca.valueOf("2"));
+
+        PaginaBuscaDTO pagina = transacaoService.buscar(filtro, CursorBusca.INICIO, 2);
+
+        // Então
+
+            assertThat(pagina.getTransacoes().size(), is(equalTo(2)));
+            assertThat(pagina.getProximoCursor().toString(), is(equalTo("2")));
+
+    }
+
+    //Quando a busca não encontra mais transações do que o tamanho da página, o próximo cursor é 0
+    @Test
+    void whenSearchReachesTheEndThenNextCursorIsZero() throws CursorInvalidoException {
+
+        // Dado
+
+        FiltroBuscaDTO filtro = new FiltroBuscaDTO();
+
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+
+        //Quando
+
+        //transacaoPersistencia.buscar(filtro, 10, tamanho + 1) -> 1 transação
+        when(transacaoPersistencia.buscar(filtro, CursorBusca.valueOf("10"), 3))
+                .thenReturn(List.of(transacaoDTO));
+
+        PaginaBuscaDTO pagina = transacaoService.buscar(filtro, CursorBusca.valueOf("10"), 2);
+
+        // Então
+
+            assertThat(pagina.getTransacoes().size(), is(equalTo(1)));
+            assertThat(pagina.getProximoCursor().toString(), is(equalTo("0")));
+
+    }
+
+    //Quando o cursor é de outra ordem que a dos filtros (ex.: sem período, enviado com um período), a exceção
+    //CursorInvalidoException é lançada sem consultar o banco
+    @Test
+    void whenCursorDoesNotMatchFilterOrderThenExceptionIsThrown() {
+
+        // Dado
+
+        FiltroBuscaDTO filtro = FiltroBuscaDTO.builder().dataHoraInicio("01/05/2021 00:00:00").build();
+
+        //Quando
+
+        // Então
+
+            assertThrows(CursorInvalidoException.class, () -> transacaoService.buscar(filtro, CursorBusca.valueOf("10"), 2));
+            verify(transacaoPersistencia, never()).buscar(any(), any(), anyInt());
+
+    }
+
+    //Quando a transação a ser estornada não existe, a exceção TransacaoInexistenteException é lançada
+    @Test
+    void whenReversedTransactionDoesNotExistThenExceptionIsThrown() {
+
+        // Dado
+
+        Long id = 1L;
+
+        //Quando
+
+        when(transacaoCacheRepository.estornarHashMapByKey("transacao::"+id))
+                .thenReturn(new EstornoCache(ResultadoEstorno.INEXISTENTE, null));
+        when(transacaoPersistencia.procurarPeloId(id))
+                .thenReturn(Optional.empty());
+
+        // Então
+
+            assertThrows(TransacaoInexistenteException.class, () -> transacaoService.estornar(id));
+
+    }
+
+    //Quando o write-behind está habilitado, o pagamento é registrado no Redis sem passar pelo banco
+    @Test
+    void whenWriteBehindIsEnabledThenPaymentIsNotSavedInDatabase() throws Exception {
+
+        // Dado
+
+        transacaoProperties.getWriteBehind().setEnabled(true);
+
+        //Gera um TransacaoDTO
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().id(null).build().toTransacaoDTO();
+        transacaoDTO.getDescricao().setId(null);
+        transacaoDTO.getFormaPagamento().setId(null);
+
+        //Tranforma o TransacaoDTO em um Transacao
+        Transacao transacao = TransacaoMapper.toTransacao(transacaoDTO);
+
+        //Quando
+
+        when(transacaoWriteBehindRepository.proximoId())
+                .thenReturn(42L);
+
+        TransacaoDTO createdTransacaoDTO = transacaoService.pagar(transacao);
+
+        // Então
+
+            assertThat(createdTransacaoDTO.getId(), is(equalTo(42L)));
+            assertThat(createdTransacaoDTO.getDescricao().getId(), is(equalTo(42L)));
+            assertThat(createdTransacaoDTO.getFormaPagamento().getId(), is(equalTo(42L)));
+            assertThat(createdTransacaoDTO.getDescricao().getStatus(), is(equalTo(StatusEnum.AUTORIZADO)));
+
+            verify(transacaoWriteBehindRepository).registrarPagamento(transacao);
+            verify(transacaoPersistencia, never()).salvar(any());
+
+    }
+
+    //Quando o pagamento chega com valor e parcelas fora da forma canônica, eles são gravados no cache como o banco os devolveria
+    @Test
+    void whenPaymentHasNonCanonicalAmountsThenTheyAreNormalizedBeforeCaching() throws Exception {
+
+        // Dado
+
+        transacaoProperties.getWriteBehind().setEnabled(true);
+
+        //Gera um TransacaoDTO
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().id(null).build().toTransacaoDTO();
+        transacaoDTO.getDescricao().setId(null);
+        transacaoDTO.getFormaPagamento().setId(null);
+        transacaoDTO.getDescricao().setValor("500.5");
+        transacaoDTO.getFormaPagamento().setParcelas("01");
+
+        //Tranforma o TransacaoDTO em um Transacao
+        Transacao transacao = TransacaoMapper.toTransacao(transacaoDTO);
+
+        //Quando
+
+        when(transacaoWriteBehindRepository.proximoId())
+                .thenReturn(42L);
+
+        TransacaoDTO createdTransacaoDTO = transacaoService.pagar(transacao);
+
+        // Então
+
+            assertThat(createdTransacaoDTO.getDescricao().getValor(), is(equalTo("500.50")));
+            assertThat(createdTransacaoDTO.getFormaPagamento().getParcelas(), is(equalTo("1")));
+
+            verify(transacaoWriteBehindRepository).registrarPagamento(argThat(registrada ->
+                    registrada.getDescricao().getValor().equals("500.50") && registrada.getFormaPagamento().getParcelas().equals("1")));
+
+    }
+
+    //Quando o write-behind está habilitado, o estorno segue pelo stream (adicionado pelo script do cache) em vez de ser gravado no banco
+    @Test
+    void whenWriteBehindIsEnabledThenReversalIsNotSavedInDatabase() throws Exception {
+
+        // Dado
+
+        Long id = 1L;
+
+        transacaoProperties.getWriteBehind().setEnabled(true);
+
+        //Gera um TransacaoDTO
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+
+        transacaoDTO.getDescricao().setStatus(StatusEnum.NEGADO);
+
+        //Quando
+
+        when(transacaoCacheRepository.estornarHashMapByKey("transacao::"+id))
+                .thenReturn(new EstornoCache(ResultadoEstorno.ESTORNADO, transacaoDTO));
+
+        transacaoService.estornar(id);
+
+        // Então
+
+            verify(transacaoPersistencia, never()).estornar(anyLong());
+
+    }
+
+    //Quando um lote é pago, os itens válidos são gravados em um único saveAll e os inválidos são rejeitados
+    @Test
+    void whenBatchIsPaidThenValidItemsAreSavedAndInvalidOnesAreRejected() throws Exception {
+
+        // Dado
+
+        String valido = new Gson().toJson(newPagamento());
+
+        Transacao semCartao = newPagamento();
+        semCartao.setCartao(null);
+
+        String tipoInvalido = valido.replace("\"AVISTA\"", "\"XYZ\"");
+
+        String ndjson = String.join("\n", valido, tipoInvalido, new Gson().toJson(semCartao), valido);
+        Iterator<Transacao> transacoes = new ObjectMapper().readerFor(Transacao.class).readValues(ndjson);
+
+        //Quando
+
+        //transacaoPersistencia.salvarTodos(chunk) -> chunk com ids
+        when(transacaoPersistencia.salvarTodos(any()))
+                .thenAnswer(invocation -> comIds(invocation.getArgument(0), 10L));
+
+        ResultadoLoteDTO resultadoLoteDTO = transacaoService.pagarLote(transacoes);
+
+        // Então
+
+            assertThat(resultadoLoteDTO.getTotal(), is(equalTo(4)));
+            assertThat(resultadoLoteDTO.getRealizados(), is(equalTo(2)));
+            assertThat(resultadoLoteDTO.getRejeitados(), is(equalTo(2)));
+
+            assertThat(resultadoLoteDTO.getItens().get(0).getId(), is(equalTo(10L)));
+            assertThat(resultadoLoteDTO.getItens().get(1).getResultado(), is(equalTo(ItemLoteDTO.REJEITADO)));
+            assertThat(resultadoLoteDTO.getItens().get(2).getResultado(), is(equalTo(ItemLoteDTO.REJEITADO)));
+            assertThat(resultadoLoteDTO.getItens().get(2).getErro(), is(containsString("cartao")));
+            assertThat(resultadoLoteDTO.getItens().get(3).getId(), is(equalTo(11L)));
+
+            //Um único saveAll e um único pipeline para o chunk
+            verify(transacaoPersistencia).salvarTodos(any());
+            verify(transacaoCacheRepository).setHashMaps(any());
+
+    }
+
+    //Quando o banco recusa um item do chunk, os demais itens são gravados individualmente
+    @Test
+    void whenDatabaseRejectsAnItemThenOtherItemsAreSaved() throws Exception {
+
+        // Dado
+
+        Transacao transacao1 = newPagamento();
+        Transacao transacao2 = newPagamento();
+
+        //Quando
+
+        when(transacaoPersistencia.salvarTodos(any()))
+                .thenThrow(new DataIntegrityViolationException("valor inválido"));
+        //Os dois pagamentos são iguais pelo equals, por isso são diferenciados pela ordem das chamadas
+        when(transacaoPersistencia.salvar(any()))
+                .thenAnswer(invocation -> comIds(List.of(invocation.<Transacao>getArgument(0)), 20L).get(0))
+                .thenThrow(new DataIntegrityViolationException("valor inválido"));
+
+        ResultadoLoteDTO resultadoLoteDTO = transacaoService.pagarLote(List.of(transacao1, transacao2).iterator());
+
+        // Então
+
+            assertThat(resultadoLoteDTO.getRealizados(), is(equalTo(1)));
+            assertThat(resultadoLoteDTO.getItens().get(0).getId(), is(equalTo(20L)));
+            assertThat(resultadoLoteDTO.getItens().get(1).getResultado(), is(equalTo(ItemLoteDTO.REJEITADO)));
+
+            verify(transacaoCacheRepository).setHashMaps(List.of(transacao1));
+
+    }
+
+    //Quando a transacao não está no cache mas existe no banco, ela é retornada e gravada novamente no cache
+    @Test
+    void whenTransactionIsNotCachedButExistsInDatabaseThenItIsReturnedAndCached() throws Exception {
+
+        // Dado
+
+        Long id = 1L;
+
+        //Gera um TransacaoDTO
+        TransacaoDTO expectedTransacaoDTO = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
+
+        expectedTransacaoDTO.getDescricao().setNsu("1234567890");
+        expectedTransacaoDTO.getDescricao().setCodigoAutorizacao("147258369");
+        expectedTransacaoDTO.getDescricao().setStatus(StatusEnum.AUTORIZADO);
+
+        //Tranforma o TransacaoDTO em um Transacao
+        Transacao transacao = TransacaoMapper.toTransacao(expectedTransacaoDTO);
+
+        //Quando
+
+        //transacaoCacheRepository.getHashMapByKey("transacao::"+id) -> null (miss)
+        //transacaoPersistencia.procurarPeloId(id) -> transacao
+        when(transacaoPersistencia.procurarPeloId(id))
+                .thenReturn(Optional.of(transacao));
+
+        // Então
+
+            TransacaoDTO createdTransacaoDTO  = transacaoService.procurarPeloId(id);
+
+            assertThat(createdTransacaoDTO.getId(), is(equalTo(expectedTransacaoDTO.getId())));
+            assertThat(createdTransacaoDTO.getCartao(), is(equalTo(expectedTransacaoDTO.getCartao())));
+            assertThat(createdTransacaoDTO.getDescricao().getStatus(), is(equalTo(expectedTransacaoDTO.getDescricao().getStatus())));
+
+            //Verifica se o hash foi gravado novamente no cache
+            verify(transacaoCacheRepository).setHashMap(transacao);
+
+            //Verifica se a falha no Redis e o acerto no banco foram contados
+            assertThat(meterRegistry.counter("transacao.cache.consultas", "operacao", "id", "camada", "redis", "resultado", "falha").count(), is(equalTo(1.0)));
+            assertThat(meterRegistry.counter("transacao.cache.consultas", "operacao", "id", "camada", "banco", "resultado", "acerto").count(), is(equalTo(1.0)));
+
+    }
+
+    //Quando o read-through está desligado, o banco de dados não é consultado em um miss do cache
+    @Test
+    void whenReadThroughIsDisabledThenDatabaseIsNotQueried() {
+
+        // Dado
+
+        Long id = 1L;
+
+        transacaoProperties.getCache().setReadThrough(false);
+
+        // Então
+
+            assertThrows(TransacaoInexistenteException.class, () -> transacaoService.procurarPeloId(id));
+
+            verify(transacaoPersistencia, never()).procurarPeloId(id);
+
+    }
+
+    //Quando o JSON pronto está desligado, o Redis não é consultado e o controller usa o caminho normal
+    @Test
+    void whenJsonIsDisabledThenCacheIsNotQueried() {
+
+        // Então
+
+            assertThat(transacaoService.procurarJsonPeloId(1L), is(nullValue()));
+
+            verify(transacaoCacheRepository, never()).getJsonByKey(any());
+
+    }
+
+    //Quando o JSON pronto está ligado, os bytes do cache são retornados e o acerto é contado
+    @Test
+    void whenJsonIsEnabledThenCachedBytesAreReturned() {
+
+        // Dado
+
+        byte[] json = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+
+        transacaoProperties.getCache().setJsonPronto(true);
+
+        //Quando
+
+        //transacaoCacheRepository.getJsonByKey("transacao::1") -> json
+        when(transacaoCacheRepository.getJsonByKey("transacao::1"))
+                .thenReturn(new JsonCache(json, 1L));
+
+        // Então
+
+            assertThat(transacaoService.procurarJsonPeloId(1L).getJson(), is(sameInstance(json)));
+
+            assertThat(meterRegistry.counter("transacao.cache.consultas", "operacao", "id", "camada", "redis-json", "resultado", "acerto").count(), is(equalTo(1.0)));
+
+    }
+
     //Quando a transacao não é informada, todas as transações são retornadas
     @Test
     void whenTransactionIsCalledThenAllIsReturned() throws Exception {
@@ -340,7 +1028,7 @@ public class TransacaoServiceTest {
         transacaoDTO1.getDescricao().setStatus(StatusEnum.AUTORIZADO);
 
         //Tranforma o TransacaoDTO em um Transacao
-        Transacao transacao1 = (Transacao) Mapper.convert(transacaoDTO1, Transacao.class);
+        Transacao transacao1 = TransacaoMapper.toTransacao(transacaoDTO1);
 
         //Gera um TransacaoDTO
         TransacaoDTO transacaoDTO2 = TransacaoDTOBuilder.builder().build().toTransacaoDTO();
@@ -350,7 +1038,7 @@ public class TransacaoServiceTest {
         transacaoDTO2.getDescricao().setStatus(StatusEnum.AUTORIZADO);
 
         //Tranforma o TransacaoDTO em um Transacao
-        Transacao transacao2 = (Transacao) Mapper.convert(transacaoDTO2, Transacao.class);
+        Transacao transacao2 = TransacaoMapper.toTransacao(transacaoDTO2);
 
         List<TransacaoDTO> transacaoDTOList = new ArrayList<>();
         transacaoDTOList.add(transacaoDTO1);
@@ -362,13 +1050,23 @@ public class TransacaoServiceTest {
 
         //Quando
 
-        //transacaoService.procurarTodos() -> transacaoDTOList
-        when(transacaoRepository.findAll())
-                .thenReturn(transacaoList);
+        PaginaChaves paginaChaves = new PaginaChaves(List.of("transacao::1".getBytes(StandardCharsets.UTF_8), "transacao::2".getBytes(StandardCharsets.UTF_8)), 0L);
+
+        //transacaoCacheRepository.scanPage(0, 100) -> paginaChaves
+        when(transacaoCacheRepository.scanPage(0, 100))
+                .thenReturn(paginaChaves);
+
+        //transacaoCacheRepository.percorrer(paginaChaves, consumidor) -> transacaoDTOList entregue ao consumidor
+        doAnswer(invocation -> {
+            Consumer<TransacaoDTO> consumidor = invocation.getArgument(1);
+            transacaoDTOList.forEach(consumidor);
+            return null;
+        }).when(transacaoCacheRepository).percorrer(eq(paginaChaves), any());
 
 
         //Cria um TransacaoDTO
-        List<TransacaoDTO> createdTransacaoDTOList  = transacaoService.procurarTodos();
+        List<TransacaoDTO> createdTransacaoDTOList = new ArrayList<>();
+        transacaoService.lerPagina(transacaoService.procurarTodos(0, 100), createdTransacaoDTOList::add);
 
         //Verifica se o atributo id do createdTransacaoDTO é igual ao atributo id do expectedDTO
 
@@ -390,4 +1088,45 @@ public class TransacaoServiceTest {
 
     }
 
+    //Quando a primeira página não tem nenhuma chave, a listagem falha antes de qualquer transação ser lida
+    @Test
+    void whenFirstPageHasNoKeysThenAnExceptionIsThrown() {
+
+        //Quando
+
+        //transacaoCacheRepository.scanPage(0, 100) -> nenhuma chave
+        when(transacaoCacheRepository.scanPage(0, 100))
+                .thenReturn(new PaginaChaves(List.of(), 0L));
+
+        // Então
+
+            assertThrows(TransacaoInexistenteException.class, () -> transacaoService.procurarTodos(0, 100));
+
+            verify(transacaoCacheRepository, never()).percorrer(any(), any());
+
+    }
+
+    private static Transacao newPagamento() {
+
+        //Gera um TransacaoDTO sem ids, como enviado pelo cliente
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().id(null).build().toTransacaoDTO();
+        transacaoDTO.getDescricao().setId(null);
+        transacaoDTO.getFormaPagamento().setId(null);
+
+        //Tranforma o TransacaoDTO em um Transacao
+        return TransacaoMapper.toTransacao(transacaoDTO);
+    }
+
+    private static List<Transacao> comIds(List<Transacao> transacoes, long primeiroId) {
+
+        long id = primeiroId;
+        for (Transacao transacao : transacoes) {
+            transacao.setId(id);
+            transacao.getDescricao().setId(id);
+            transacao.getFormaPagamento().setId(id);
+            id++;
+        }
+        return transacoes;
+    }
+
 }
@@ -0,0 +1,195 @@
+package com.api.pagamento.service;
+
+import com.api.pagamento.builder.TransacaoDTOBuilder;
+import com.api.pagamento.config.FabricaThreads;
+import com.api.pagamento.config.TransacaoProperties;
+import com.api.pagamento.domain.dto.TransacaoDTO;
+import com.api.pagamento.domain.dto.util.TransacaoMapper;
+import com.api.pagamento.domain.enumeration.StatusEnum;
+import com.api.pagamento.domain.model.Transacao;
+import com.api.pagamento.repository.TransacaoJdbcRepository;
+import com.api.pagamento.repository.TransacaoWriteBehindRepository;
+import com.api.pagamento.repository.codec.BinarioTransacaoCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+//MockitoExtension.class = Extensão necessária para as anotações do mockito serem utilizadas
+@ExtendWith(MockitoExtension.class)
+public class WriteBehindFlusherTest {
+
+    @Mock
+    private TransacaoWriteBehindRepository transacaoWriteBehindRepository;
+
+    @Mock
+    private TransacaoJdbcRepository transacaoJdbcRepository;
+
+    private final BinarioTransacaoCodec binarioTransacaoCodec = new BinarioTransacaoCodec();
+
+    private WriteBehindFlusher writeBehindFlusher;
+
+    // @BeforeEach: Execute antes de cada método de teste.
+    @BeforeEach
+    void setUp() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        TransacaoProperties transacaoProperties = new TransacaoProperties();
+        writeBehindFlusher = new WriteBehindFlusher(transacaoWriteBehindRepository, transacaoJdbcRepository,
+                binarioTransacaoCodec, transactionTemplate, transacaoProperties, new FabricaThreads(transacaoProperties));
+    }
+
+    // Quando um lote é persistido, os pagamentos são gravados antes dos estornos e as entradas são confirmadas depois
+    @Test
+    void whenBatchIsPersistedThenEntriesAreAcknowledged() {
+
+        // Dado
+
+            ByteRecord pagamento = pagamento("1-0", 7L);
+            ByteRecord estorno = estorno("1-1", 7L);
+
+        //Quando
+
+            writeBehindFlusher.persistir(List.of(pagamento, estorno));
+
+        // Então
+
+            @SuppressWarnings("unchecked")
+            ArgumentCaptor<List<TransacaoDTO>> pagamentos = ArgumentCaptor.forClass(List.class);
+
+            InOrder ordem = inOrder(transacaoJdbcRepository, transacaoWriteBehindRepository);
+            ordem.verify(transacaoJdbcRepository).inserirPagamentos(pagamentos.capture());
+            ordem.verify(transacaoJdbcRepository).avancarSequencias(7L);
+            ordem.verify(transacaoJdbcRepository).estornar(List.of(7L));
+            ordem.verify(transacaoWriteBehindRepository).confirmar(List.of(RecordId.of("1-0"), RecordId.of("1-1")));
+
+            assertThat(pagamentos.getValue().get(0).getId(), is(equalTo(7L)));
+            assertThat(writeBehindFlusher.getPagamentosPersistidos(), is(equalTo(1L)));
+            assertThat(writeBehindFlusher.getEstornosPersistidos(), is(equalTo(1L)));
+
+    }
+
+    // Quando o pagamento estornado ainda não está no banco, a entrada do estorno não é confirmada e é reprocessada depois
+    @Test
+    void whenRefundedPaymentIsNotInDatabaseThenRefundIsNotAcknowledged() {
+
+        // Dado
+
+            ByteRecord pagamento = pagamento("1-0", 8L);
+            ByteRecord estorno = estorno("1-1", 7L);
+
+        //Quando
+
+            //A entrada do pagamento 7 ficou pendente no stream: o UPDATE do estorno não encontra a linha
+            when(transacaoJdbcRepository.estornar(List.of(7L))).thenReturn(List.of(7L));
+
+            writeBehindFlusher.persistir(List.of(pagamento, estorno));
+
+        // Então
+
+            verify(transacaoWriteBehindRepository).confirmar(List.of(RecordId.of("1-0")));
+
+            assertThat(writeBehindFlusher.getPagamentosPersistidos(), is(equalTo(1L)));
+            assertThat(writeBehindFlusher.getEstornosPersistidos(), is(equalTo(0L)));
+
+    }
+
+    // Quando o id de um pagamento já existe no banco com outro pagamento, ele e o seu estorno ficam pendentes no stream e o conflito é contado
+    @Test
+    void whenPaymentIdConflictsThenPaymentIsNotAcknowledged() {
+
+        // Dado
+
+            ByteRecord pagamento = pagamento("1-0", 7L);
+            ByteRecord outroPagamento = pagamento("1-1", 8L);
+            ByteRecord estorno = estorno("1-2", 7L);
+
+        //Quando
+
+            when(transacaoJdbcRepository.inserirPagamentos(any())).thenReturn(List.of(7L));
+
+            writeBehindFlusher.persistir(List.of(pagamento, outroPagamento, estorno));
+
+        // Então
+
+            verify(transacaoJdbcRepository, never()).estornar(any());
+            verify(transacaoWriteBehindRepository).confirmar(List.of(RecordId.of("1-1")));
+            verify(transacaoWriteBehindRepository).atualizarPiso(8L);
+
+            assertThat(writeBehindFlusher.getConflitos(), is(equalTo(1L)));
+            assertThat(writeBehindFlusher.getPagamentosPersistidos(), is(equalTo(1L)));
+            assertThat(writeBehindFlusher.getEstornosPersistidos(), is(equalTo(0L)));
+
+    }
+
+    // Quando a gravação no banco falha, as entradas não são confirmadas e continuam pendentes no stream
+    @Test
+    void whenDatabaseFailsThenEntriesAreNotAcknowledged() {
+
+        // Dado
+
+            ByteRecord pagamento = pagamento("1-0", 7L);
+
+        //Quando
+
+            doThrow(new IllegalStateException()).when(transacaoJdbcRepository).inserirPagamentos(any());
+
+        // Então
+
+            assertThrows(IllegalStateException.class, () -> writeBehindFlusher.persistir(List.of(pagamento)));
+
+            verify(transacaoWriteBehindRepository, never()).confirmar(any());
+
+    }
+
+    private ByteRecord pagamento(String recordId, Long id) {
+
+        //Gera um TransacaoDTO
+        TransacaoDTO transacaoDTO = TransacaoDTOBuilder.builder().id(id).build().toTransacaoDTO();
+        transacaoDTO.getDescricao().setStatus(StatusEnum.AUTORIZADO);
+
+        //Tranforma o TransacaoDTO em um Transacao
+        Transacao transacao = TransacaoMapper.toTransacao(transacaoDTO);
+
+        return StreamRecords.rawBytes(Map.of(bytes("tipo"), bytes(TransacaoWriteBehindRepository.TIPO_PAGAMENTO),
+                        bytes("dados"), binarioTransacaoCodec.toBytes(transacao)))
+                .withStreamKey(bytes(TransacaoWriteBehindRepository.STREAM))
+                .withId(RecordId.of(recordId));
+    }
+
+    private static ByteRecord estorno(String recordId, Long id) {
+
+        return StreamRecords.rawBytes(Map.of(bytes("tipo"), bytes(TransacaoWriteBehindRepository.TIPO_ESTORNO),
+                        bytes("id"), bytes(String.valueOf(id))))
+                .withStreamKey(bytes(TransacaoWriteBehindRepository.STREAM))
+                .withId(RecordId.of(recordId));
+    }
+
+    private static byte[] bytes(String valor) {
+        return valor.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
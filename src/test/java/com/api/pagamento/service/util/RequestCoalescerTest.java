@@ -0,0 +1,81 @@
+package com.api.pagamento.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RequestCoalescerTest {
+
+    // Quando várias threads carregam a mesma chave ao mesmo tempo, o carregamento deve ser executado apenas uma vez
+    @Test
+    void whenSameKeyIsLoadedConcurrentlyThenLoaderRunsOnce() throws Exception {
+
+        // Dado
+
+            RequestCoalescer<Long, String> coalescer = new RequestCoalescer<>();
+            AtomicInteger carregamentos = new AtomicInteger();
+            CountDownLatch liberarCarregamento = new CountDownLatch(1);
+            int threads = 8;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        //Quando
+
+            //O primeiro carregamento fica bloqueado até que todas as threads tenham chegado
+            List<Future<String>> resultados = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                resultados.add(executor.submit(() -> coalescer.carregar(1L, () -> {
+                    carregamentos.incrementAndGet();
+                    try {
+                        liberarCarregamento.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "transacao::1";
+                })));
+            }
+
+            Thread.sleep(200);
+            liberarCarregamento.countDown();
+
+        // Então
+
+            for (Future<String> resultado : resultados) {
+                assertThat(resultado.get(5, TimeUnit.SECONDS), is(equalTo("transacao::1")));
+            }
+            assertThat(carregamentos.get(), is(equalTo(1)));
+
+            executor.shutdown();
+
+    }
+
+    // Quando o carregamento falha, a exceção é propagada e uma nova tentativa executa o carregamento novamente
+    @Test
+    void whenLoaderFailsThenExceptionIsPropagatedAndNextCallRetries() {
+
+        // Dado
+
+            RequestCoalescer<Long, String> coalescer = new RequestCoalescer<>();
+
+        // Então
+
+            assertThrows(IllegalStateException.class, () -> coalescer.carregar(1L, () -> {
+                throw new IllegalStateException();
+            }));
+
+            assertThat(coalescer.carregar(1L, () -> "transacao::1"), is(equalTo("transacao::1")));
+
+    }
+
+}